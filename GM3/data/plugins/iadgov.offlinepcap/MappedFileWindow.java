@@ -0,0 +1,92 @@
+package iadgov.offlinepcap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only access to a file through a memory-mapped window that is moved along the file as it is read.  A single
+ * mapping is limited to 2 GB, so larger files are read by remapping the window at the position being read whenever a
+ * read falls outside of it.
+ */
+class MappedFileWindow implements Closeable {
+    private static final long SIZE_WINDOW = 1L << 28;
+
+    private final FileChannel channel;
+    private final long size;
+    private ByteOrder order;
+
+    private MappedByteBuffer window;
+    private long posWindow;
+
+    public MappedFileWindow(final Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.order = ByteOrder.BIG_ENDIAN;
+        this.window = null;
+        this.posWindow = 0;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Sets the byte order used by getInt; slices are always big-endian.
+     */
+    public void order(final ByteOrder order) {
+        this.order = order;
+        if(window != null) {
+            window.order(order);
+        }
+    }
+
+    /**
+     * Maps a window containing the given range of the file, unless the current window already does.
+     * @return The offset of position within the window.
+     */
+    private int require(final long position, final int length) throws IOException {
+        if(window == null || position < posWindow || position + length > posWindow + window.limit()) {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, Math.max(SIZE_WINDOW, length)));
+            window.order(order);
+            posWindow = position;
+        }
+        return (int)(position - posWindow);
+    }
+
+    public int getInt(final long position) throws IOException {
+        final int offset = require(position, 4);
+        return window.getInt(offset);
+    }
+
+    public void get(final long position, final byte[] bytes) throws IOException {
+        final ByteBuffer view = window(position, bytes.length);
+        view.get(bytes);
+    }
+
+    /**
+     * @return A big-endian view of the given range of the file, positioned at 0; the bytes are not copied.
+     */
+    public ByteBuffer slice(final long position, final int length) throws IOException {
+        return window(position, length).slice();
+    }
+
+    private ByteBuffer window(final long position, final int length) throws IOException {
+        final int offset = require(position, length);
+        final ByteBuffer view = window.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
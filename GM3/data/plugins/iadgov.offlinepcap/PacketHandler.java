@@ -6,7 +6,6 @@ import core.fingerprint.PacketData;
 import core.importmodule.ImportItem;
 import core.protocol.IEEE_802_15_4;
 import core.protocol.Zep;
-import org.jnetpcap.nio.JBuffer;
 import util.Cidr;
 
 import java.lang.InterruptedException;
@@ -148,7 +147,7 @@ public class PacketHandler {
         // Transport Layer (Itemize Tcp and Udp with metadata-only handling of other packets)
         final int portSource;
         final int portDest;
-        final JBuffer temp;
+        final ByteBuffer temp;
         final PMetaData meta;
 
         switch(protocol) {
@@ -160,13 +159,13 @@ public class PacketHandler {
 
                 if(idxLastIpByte - (startCurrentHeader + cbTcpHeaders) == 0) {
                     //Hack to allow 0-byte TCP packets
-                    temp = new JBuffer(1);
+                    temp = ByteBuffer.allocate(1);
                     cbPayload = 0;
                 } else {
                     final byte[] contents = new byte[idxLastIpByte - (startCurrentHeader + cbTcpHeaders)];
                     bufPayload.position(startCurrentHeader + cbTcpHeaders);
                     bufPayload.get(contents);
-                    temp = new JBuffer(contents);
+                    temp = ByteBuffer.wrap(contents);
                     cbPayload = contents.length;
                 }
                 meta = new PMetaData(source, msSinceEpoch, idxFrame, portSource, portDest, protocol,
@@ -219,7 +218,7 @@ public class PacketHandler {
                     }
                 }
                 if (contents.length > 0) {
-                    temp = new JBuffer(contents);
+                    temp = ByteBuffer.wrap(contents);
                 } else {
                     temp = null;
                 }
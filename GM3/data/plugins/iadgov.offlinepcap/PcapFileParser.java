@@ -1,9 +1,11 @@
 package iadgov.offlinepcap;
 
+import core.Configuration;
 import core.exec.IEEE802154Data;
 import core.fingerprint.PMetaData;
 import core.fingerprint.PacketData;
 import core.importmodule.ImportItem;
+import core.importmodule.inputIterators.pcap.PcapChunkReader;
 import core.protocol.IEEE_802_15_4;
 import core.protocol.Zep;
 import org.jnetpcap.nio.JBuffer;
@@ -26,7 +28,7 @@ import java.util.concurrent.BlockingQueue;
 public class PcapFileParser {
     private final ImportItem source;
     protected final Path inPath;
-    private boolean done;
+    private volatile boolean done;
     private BlockingQueue<Object> packetQueue;
 
     private final PacketHandler handler;
@@ -48,16 +50,22 @@ public class PcapFileParser {
 
     protected void parseSource() throws IllegalStateException{
         done = false;
+        if(parseChunked()) {
+            return;
+        }
 
         Runnable loop = () -> {
             int idxFrame = 1;
-            try(ByteChannel reader = Files.newByteChannel(inPath)) {
+            //The file is read through a moving memory-mapped window, and each packet is handed to the handler as a view of
+            //the mapping, so no packet is copied and there are no read calls once a window is mapped.
+            try(MappedFileWindow reader = new MappedFileWindow(inPath)) {
+                if(reader.size() < 24) {
+                    //Invalid header
+                    return;
+                }
                 // Read header
                 byte[] header = new byte[24];
-                ByteBuffer buffer = ByteBuffer.allocate(header.length);
-                reader.read(buffer);
-                buffer.rewind();
-                buffer.get(header);
+                reader.get(0, header);
                 // Process header
                 final boolean isSwapped;
                 //TODO: These need to be adjsuted for sign, what with signed byte values being a thing.
@@ -77,40 +85,27 @@ public class PcapFileParser {
                 //TODO: SnapLen
                 //TODO: Network
 
-                final ByteBuffer reusableBuffer = ByteBuffer.allocateDirect(1500);
-
-                buffer = ByteBuffer.allocateDirect(16);
-                buffer.mark();
                 if (isSwapped) {
-                    buffer.order(ByteOrder.BIG_ENDIAN);
+                    reader.order(ByteOrder.BIG_ENDIAN);
                 } else {
-                    buffer.order(ByteOrder.LITTLE_ENDIAN);
+                    reader.order(ByteOrder.LITTLE_ENDIAN);
                 }
-                while(16 == reader.read(buffer)) {
-                    final long sTimestamp = buffer.getInt(0);//intFromBytes(headerPacket, 0, 4, true);
-                    final long usTimestamp = buffer.getInt(4);//intFromBytes(headerPacket, 4, 4, true);
-                    final int lengthPacket = buffer.getInt(8);//intFromBytes(headerPacket, 8, 4, true);       //This is the captured length
-
-                    final ByteBuffer contentsPacket;
-                    if (lengthPacket <= 1500) {
-                        contentsPacket = reusableBuffer;
-                        contentsPacket.limit(lengthPacket);
-                        contentsPacket.position(0);
-                    } else {
-                        contentsPacket = ByteBuffer.allocateDirect(lengthPacket);
-                    }
+                long offset = header.length;
+                while(offset + 16 <= reader.size()) {
+                    final long sTimestamp = reader.getInt(offset);
+                    final long usTimestamp = reader.getInt(offset + 4);
+                    final int lengthPacket = reader.getInt(offset + 8);       //This is the captured length
 
-                    int read = reader.read(contentsPacket);
-                    if(lengthPacket != read) {
+                    if(lengthPacket < 0 || offset + 16 + lengthPacket > reader.size()) {
                         //Insufficient bytes in file to read packet
                         return;
                     }
-                    contentsPacket.rewind();
+                    final ByteBuffer contentsPacket = reader.slice(offset + 16, lengthPacket);
 
                     final int cbProcessed = handler.handle(contentsPacket, (sTimestamp + secGmtOffset) * 1000L + usTimestamp / 1000, idxFrame++);
                     source.recordTaskProgress(lengthPacket + 16 - cbProcessed);
 
-                    buffer.reset();
+                    offset += 16 + lengthPacket;
                 }
             } catch(IOException ex) {
                 ex.printStackTrace();
@@ -123,6 +118,58 @@ public class PcapFileParser {
         loopThread.start();
     }
 
+    /**
+     * Decodes the file on several threads, each with its own PacketHandler, working through packet-aligned chunks of
+     * the file.  An IP datagram whose fragments fall in different chunks is not reassembled, so this is only done when
+     * more than one decoder thread is configured; by default the file is read sequentially through a MappedFileWindow.
+     * @return true if the file is being read in chunks, false if it has to be read sequentially.
+     */
+    protected boolean parseChunked() {
+        final int cntThreads = (int)Configuration.getPreferenceLong(Configuration.Fields.PCAP_DECODER_THREADS);
+        if(cntThreads <= 1) {
+            return false;
+        }
+
+        final long secGmtOffset;
+        //The header is read again for the offset, which is taken from the same bytes as the sequential reader uses.
+        try(ByteChannel channel = Files.newByteChannel(inPath)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(24);
+            channel.read(buffer);
+            secGmtOffset = intFromBytes(buffer.array(), 9, 4, buffer.get(0) == -95);
+        } catch(IOException ex) {
+            return false;
+        }
+        final PcapChunkReader reader;
+        try {
+            reader = PcapChunkReader.open(inPath);
+        } catch(IOException ex) {
+            return false;
+        }
+        if(reader == null) {
+            return false;
+        }
+        if(reader.isNanosecond()) {
+            //The sequential reader, like the import's format check, only accepts microsecond files.
+            try {
+                reader.close();
+            } catch(IOException ex) {
+                //Ignore; the file was only being read.
+            }
+            return false;
+        }
+
+        final long cbChunk = Configuration.getPreferenceLong(Configuration.Fields.PCAP_DECODER_CHUNK_SIZE);
+        reader.readParallel("pcap decoder", cntThreads, cbChunk, 1, () -> {
+            final PacketHandler handler = new PacketHandler(source, packetQueue);
+            return (contents, idxFrame, seconds, nanos, lengthOriginal) -> {
+                final int lengthPacket = contents.limit();
+                final int cbProcessed = handler.handle(contents, (seconds + secGmtOffset) * 1000L + nanos / 1000000L, (int)idxFrame);
+                source.recordTaskProgress(lengthPacket + 16 - cbProcessed);
+            };
+        }, () -> done = true);
+        return true;
+    }
+
     protected static int intFromBytes(byte[] buffer, int offset, int size, boolean isSwapped) {
         int result = 0;
         for(int idx = 0; idx < size; idx++) {
@@ -0,0 +1,156 @@
+package core.document.graph;
+
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import util.Benchmark;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the heap taken by the incident edge index of NetworkGraph and the latency of getEdgesInvolving, neighbors
+ * and degree, against the scan of every edge that getEdgesInvolving used to make.
+ *
+ * Usage: AdjacencyBenchmark [-degree N] [-queries N]
+ * Graphs of 10k, 100k and 1M edges are built between random pairs of edges / (degree / 2) nodes, so that nodes have
+ * the given degree on average.  Lightweight nodes and edges are used so that the index is a visible part of the heap.
+ */
+public class AdjacencyBenchmark {
+    private static final int[] EDGES = {10000, 100000, 1000000};
+
+    private static class Node implements INode<Node> {
+        private final int id;
+
+        public Node(final int id) {
+            this.id = id;
+        }
+
+        @Override
+        public StringProperty titleProperty() {
+            return new SimpleStringProperty(Integer.toString(id));
+        }
+        @Override
+        public StringProperty subtitleProperty() {
+            return new SimpleStringProperty();
+        }
+        @Override
+        public BooleanProperty dirtyProperty() {
+            return new SimpleBooleanProperty();
+        }
+        @Override
+        public Map<String, String> getGroups() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public int compareTo(final Node rhs) {
+            return Integer.compare(id, rhs.id);
+        }
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Node && ((Node)obj).id == id;
+        }
+        @Override
+        public int hashCode() {
+            return Integer.hashCode(id);
+        }
+        @Override
+        public String toString() {
+            return Integer.toString(id);
+        }
+    }
+
+    private static class Edge extends AbstractBidirectionalEdge<Node> {
+        public Edge(final Node source, final Node destination) {
+            super(source, destination);
+        }
+    }
+
+    /**
+     * getEdgesInvolving as it was, before the index.
+     */
+    private static List<Edge> scan(final List<Edge> edges, final Node node) {
+        return edges.stream().filter(edge -> edge.getSource().equals(node) || edge.getDestination().equals(node)).collect(Collectors.toList());
+    }
+
+    @FunctionalInterface
+    private interface Query {
+        int run(Node node);
+    }
+
+    /**
+     * @return The mean latency of query, in ns, over cntQueries random nodes, after as many untimed queries.
+     */
+    private static double latency(final Query query, final Node[] nodes, final int cntQueries) {
+        final Random rng = new Random(1);
+        long total = 0;
+        for(int idx = 0; idx < cntQueries; idx++) {
+            total += query.run(nodes[rng.nextInt(nodes.length)]);
+        }
+        final long nsStart = System.nanoTime();
+        for(int idx = 0; idx < cntQueries; idx++) {
+            total += query.run(nodes[rng.nextInt(nodes.length)]);
+        }
+        final long nsElapsed = System.nanoTime() - nsStart;
+        if(total < 0) {
+            throw new IllegalStateException();
+        }
+        return (double)nsElapsed / cntQueries;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int degree = Benchmark.arg(args, "degree", 20);
+        final int cntQueries = Benchmark.arg(args, "queries", 2000);
+        final Field fieldAdjacency = NetworkGraph.class.getDeclaredField("adjacency");
+        fieldAdjacency.setAccessible(true);
+
+        System.out.println(String.format("Average degree %d; latency is the mean of %d queries of random nodes (the scan gets a tenth of them)", degree, cntQueries));
+        System.out.println(String.format("%8s %10s %10s %8s %12s %12s %12s %12s", "edges", "graph MB", "index MB", "B/edge", "scan ns", "involving ns", "neighbors ns", "degree ns"));
+        for(int cntEdges : EDGES) {
+            final int cntNodes = Math.max(2, cntEdges * 2 / degree);
+            final Node[] nodes = new Node[cntNodes];
+            for(int idx = 0; idx < cntNodes; idx++) {
+                nodes[idx] = new Node(idx);
+            }
+
+            final long cbBefore = Benchmark.usedHeapAfterGc();
+            final NetworkGraph<Node, Edge> graph = new NetworkGraph<>(true);
+            final Random rng = new Random(cntEdges);
+            while(graph.getRawEdgeList().size() < cntEdges) {
+                for(int idx = graph.getRawEdgeList().size(); idx < cntEdges; idx++) {
+                    final int source = rng.nextInt(cntNodes);
+                    final int destination = (source + 1 + rng.nextInt(cntNodes - 1)) % cntNodes;
+                    graph.addEdge(new Edge(nodes[source], nodes[destination]));
+                }
+            }
+            final long cbGraph = Benchmark.usedHeapAfterGc() - cbBefore;
+            final List<Edge> edges = new ArrayList<>(graph.getRawEdgeList());
+
+            final double nsScan = latency(node -> scan(edges, node).size(), nodes, Math.max(1, cntQueries / 10));
+            final double nsInvolving = latency(node -> graph.getEdgesInvolving(node).size(), nodes, cntQueries);
+            final double nsNeighbors = latency(node -> graph.neighbors(node).size(), nodes, cntQueries);
+            final double nsDegree = latency(graph::degree, nodes, cntQueries);
+
+            //The index is measured by what the heap gives back once it is emptied.
+            final long cbWithIndex = Benchmark.usedHeapAfterGc();
+            ((Map<?, ?>)fieldAdjacency.get(graph)).clear();
+            final long cbIndex = cbWithIndex - Benchmark.usedHeapAfterGc();
+            //Uses the graph and nodes after the measurement; otherwise they could be collected with the index.
+            if(graph.getRawNodeList().size() > nodes.length) {
+                throw new IllegalStateException();
+            }
+
+            System.out.println(String.format("%8d %10.1f %10.1f %8.1f %12.0f %12.0f %12.0f %12.0f", cntEdges,
+                    cbGraph / (double)(1 << 20), cbIndex / (double)(1 << 20), (double)cbIndex / cntEdges,
+                    nsScan, nsInvolving, nsNeighbors, nsDegree));
+            edges.clear();
+        }
+    }
+}
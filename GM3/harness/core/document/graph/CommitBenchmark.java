@@ -0,0 +1,95 @@
+package core.document.graph;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import util.Benchmark;
+import util.Cidr;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Measures how long each refresh of a growing graph takes to commit to the ObservableLists on the JavaFX thread, against
+ * the commit it replaced, which diffed every node and edge against CopyOnWriteArrayList-backed lists.
+ *
+ * Usage: CommitBenchmark [-edges N] [-batch N] [-hosts N] [-limit MS]
+ * Each refresh adds a batch of edges, as an import does between two refreshes.  The replaced commit is run on the same
+ * graph until a single commit takes longer than the limit.
+ */
+public class CommitBenchmark {
+    /**
+     * Process_commitUI as it was, with its own lists; the dirty flags and their listeners are left to the current commit.
+     */
+    private static class ReferenceCommit {
+        private final ObservableList<LogicalNode> nodesObservable = FXCollections.observableList(new CopyOnWriteArrayList<>());
+        private final ObservableList<LogicalEdge> edgesObservable = FXCollections.observableList(new CopyOnWriteArrayList<>());
+
+        public void commit(final NetworkGraph<LogicalNode, LogicalEdge> graph) {
+            final List<LogicalNode> nodesNew = new LinkedList<>(graph.getRawNodeList());
+            final List<LogicalEdge> edgesNew = new LinkedList<>(graph.getRawEdgeList());
+            final List<LogicalNode> nodesRemoved = new LinkedList<>(nodesObservable);
+            nodesRemoved.removeAll(nodesNew);
+            final List<LogicalEdge> edgesRemoved = new LinkedList<>(edgesObservable);
+            edgesRemoved.removeAll(edgesNew);
+            edgesNew.removeAll(edgesObservable);
+            nodesNew.removeAll(nodesObservable);
+
+            edgesObservable.removeAll(edgesRemoved);
+            nodesObservable.removeAll(nodesRemoved);
+            nodesObservable.addAll(nodesNew);
+            edgesObservable.addAll(edgesNew);
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int cntEdges = Benchmark.arg(args, "edges", 200000);
+        final int cntBatch = Benchmark.arg(args, "batch", 5000);
+        final int cntHosts = Benchmark.arg(args, "hosts", 40000);
+        final long msLimit = Benchmark.arg(args, "limit", 5000);
+        Benchmark.startFx();
+
+        final ObservableList<Cidr> networks = FXCollections.observableArrayList();
+        final NetworkGraph<LogicalNode, LogicalEdge> graph = Benchmark.onFx(() -> new NetworkGraph<>(true));
+        final ReferenceCommit reference = new ReferenceCommit();
+        final LogicalNode[] hosts = new LogicalNode[cntHosts];
+        for(int idx = 0; idx < cntHosts; idx++) {
+            hosts[idx] = new LogicalNode(new Cidr(0x0A000000L + idx), new byte[6], networks);
+        }
+
+        System.out.println(String.format("Refreshes of %d new edges between %d hosts, up to %d edges", cntBatch, cntHosts, cntEdges));
+        System.out.println(String.format("%8s %8s %14s %14s", "nodes", "edges", "commit ms", "replaced ms"));
+        final Random rng = new Random(1);
+        boolean referenceRunning = true;
+        while(graph.getRawEdgeList().size() < cntEdges) {
+            final int cntTarget = Math.min(cntEdges, graph.getRawEdgeList().size() + cntBatch);
+            while(graph.getRawEdgeList().size() < cntTarget) {
+                final int source = rng.nextInt(cntHosts);
+                final int destination = (source + 1 + rng.nextInt(cntHosts - 1)) % cntHosts;
+                graph.addEdge(new LogicalEdge(hosts[source], hosts[destination]));
+            }
+
+            final long nsCommit = Benchmark.onFx(() -> {
+                graph.Process_commitUI();
+                return graph.getLastCommitDuration();
+            });
+            String textReference = "-";
+            if(referenceRunning) {
+                final long nsReference = Benchmark.onFx(() -> {
+                    final long nsStart = System.nanoTime();
+                    reference.commit(graph);
+                    return System.nanoTime() - nsStart;
+                });
+                textReference = String.format("%.1f", Benchmark.millis(nsReference));
+                if(Benchmark.millis(nsReference) > msLimit) {
+                    referenceRunning = false;
+                    textReference += " (stopped)";
+                }
+            }
+            System.out.println(String.format("%8d %8d %14.1f %14s", graph.getNodes().size(), graph.getEdges().size(), Benchmark.millis(nsCommit), textReference));
+        }
+        //The JavaFX toolkit is not a daemon thread.
+        System.exit(0);
+    }
+}
@@ -0,0 +1,95 @@
+package core.document.graph;
+
+import core.importmodule.ImportItem;
+import core.importmodule.SyntheticImport;
+import util.Benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the heap that the frame history of LogicalEdge.ConnectionDetails takes, per million frames, against the
+ * FrameRecord-per-frame lists it replaced.  The same number of frames is spread over more and more edges, since every
+ * edge also pays for the initial capacity of its history.
+ *
+ * Usage: FrameHistoryBenchmark [-frames N]
+ */
+public class FrameHistoryBenchmark {
+    private static final int[] EDGES = {1, 1000, 100000};
+
+    /**
+     * The frame history as it was: a FrameRecord per frame, in a list per ImportItem with room for 1024 frames.
+     */
+    private static class ReferenceDetails {
+        private final Map<ImportItem, List<LogicalEdge.ConnectionDetails.FrameRecord>> frames = new HashMap<>();
+
+        public void AddPacket(ImportItem source, int portSource, int portDestination, long cntBytes, long idxFrame, int proto, long time) {
+            List<LogicalEdge.ConnectionDetails.FrameRecord> list = frames.get(source);
+            if(list == null) {
+                list = new ArrayList<>(1024);
+                frames.put(source, list);
+            }
+            list.add(new LogicalEdge.ConnectionDetails.FrameRecord(portSource, portDestination, proto, idxFrame, time, (int)cntBytes));
+        }
+    }
+
+    @FunctionalInterface
+    private interface Store {
+        void add(int idxEdge, long idxFrame);
+    }
+
+    /**
+     * @return The bytes of heap retained by stores once cntFrames frames have been added to them.
+     */
+    private static long retained(final Object[] stores, final Store store, final int cntFrames) {
+        final long before = Benchmark.usedHeapAfterGc();
+        for(int idxFrame = 0; idxFrame < cntFrames; idxFrame++) {
+            store.add(idxFrame % stores.length, idxFrame);
+        }
+        final long after = Benchmark.usedHeapAfterGc();
+        //Keeps the stores reachable until after the measurement.
+        if(stores[0] == null) {
+            throw new IllegalStateException();
+        }
+        return after - before;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int cntFrames = Benchmark.arg(args, "frames", 1000000);
+        final ImportItem source = new SyntheticImport(0, 2, 0, 0);
+        //ConnectionDetails keeps its byte count in a property that notifies on the JavaFX thread; adding from that thread
+        //keeps the notifications out of the measurement.
+        Benchmark.startFx();
+
+        System.out.println(String.format("%d frames from one import; heap retained per million frames", cntFrames));
+        System.out.println(String.format("%8s %14s %14s %10s %10s", "edges", "FrameRecord MB", "columns MB", "ref B/f", "new B/f"));
+        for(int cntEdges : EDGES) {
+            final ReferenceDetails[] references = new ReferenceDetails[cntEdges];
+            for(int idx = 0; idx < cntEdges; idx++) {
+                references[idx] = new ReferenceDetails();
+            }
+            final long cbReference = retained(references, (idxEdge, idxFrame) -> references[idxEdge].AddPacket(source, 40000, 502, 64, idxFrame, 6, idxFrame * 1000), cntFrames);
+            for(int idx = 0; idx < cntEdges; idx++) {
+                references[idx] = null;
+            }
+            references[0] = new ReferenceDetails();
+
+            final LogicalEdge.ConnectionDetails[] details = Benchmark.onFx(() -> {
+                final LogicalEdge.ConnectionDetails[] result = new LogicalEdge.ConnectionDetails[cntEdges];
+                for(int idx = 0; idx < cntEdges; idx++) {
+                    result[idx] = new LogicalEdge.ConnectionDetails();
+                }
+                return result;
+            });
+            final long cbColumns = Benchmark.onFx(() -> retained(details, (idxEdge, idxFrame) -> details[idxEdge].AddPacket(source, 40000, 502, 64, idxFrame, 6, idxFrame * 1000), cntFrames));
+
+            System.out.println(String.format("%8d %14.1f %14.1f %10.1f %10.1f", cntEdges,
+                    cbReference * 1000000.0 / cntFrames / (1 << 20), cbColumns * 1000000.0 / cntFrames / (1 << 20),
+                    (double)cbReference / cntFrames, (double)cbColumns / cntFrames));
+        }
+        //The JavaFX toolkit is not a daemon thread.
+        System.exit(0);
+    }
+}
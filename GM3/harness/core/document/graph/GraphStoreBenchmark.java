@@ -0,0 +1,99 @@
+package core.document.graph;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import util.Benchmark;
+import util.Cidr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures how the node and edge store of a NetworkGraph scales with the number of threads adding to it, for the
+ * locked LinkedHashMap store and the concurrent store that LogicalGraph uses.
+ *
+ * Usage: GraphStoreBenchmark [-operations N] [-hosts N] [-pairs N] [-rounds N]
+ * Each operation is what an import does for a packet whose edge is not cached: look the edge up and, if it is missing,
+ * add it.  The total number of operations is split evenly between the threads.
+ */
+public class GraphStoreBenchmark {
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+
+    private static long run(final boolean concurrent, final int cntThreads, final int cntOperations, final int cntHosts, final int cntPairs) throws InterruptedException {
+        final ObservableList<Cidr> networks = FXCollections.observableArrayList();
+        final NetworkGraph<LogicalNode, LogicalEdge> graph = new NetworkGraph<>(concurrent);
+
+        final List<LogicalNode> hosts = new ArrayList<>(cntHosts);
+        for(int idx = 0; idx < cntHosts; idx++) {
+            hosts.add(new LogicalNode(new Cidr(0x0A000000L + idx), new byte[6], networks));
+        }
+        //Each pair is probed with its own edge; the first thread to miss adds it, after which every probe finds it.
+        final Random rng = new Random(cntThreads);
+        final LogicalEdge[] probes = new LogicalEdge[cntPairs];
+        for(int idx = 0; idx < cntPairs; idx++) {
+            final int source = rng.nextInt(cntHosts);
+            final int destination = (source + 1 + rng.nextInt(cntHosts - 1)) % cntHosts;
+            probes[idx] = new LogicalEdge(hosts.get(source), hosts.get(destination));
+        }
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(cntThreads);
+        final int cntPerThread = cntOperations / cntThreads;
+        for(int idxThread = 0; idxThread < cntThreads; idxThread++) {
+            final Random rngThread = new Random(idxThread);
+            final Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for(int idx = 0; idx < cntPerThread; idx++) {
+                        final LogicalEdge probe = probes[rngThread.nextInt(cntPairs)];
+                        if(graph.findMatchingEdge(probe) == null) {
+                            graph.addEdge(probe);
+                        }
+                    }
+                } catch(InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    finished.countDown();
+                }
+            }, "graph store " + idxThread);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        final long nsStart = System.nanoTime();
+        start.countDown();
+        finished.await();
+        final long nsElapsed = System.nanoTime() - nsStart;
+
+        if(graph.getRawEdgeList().size() > cntPairs) {
+            throw new IllegalStateException("Duplicate edges were added.");
+        }
+        return nsElapsed;
+    }
+
+    public static void main(final String[] args) throws InterruptedException {
+        final int cntOperations = Benchmark.arg(args, "operations", 4000000);
+        final int cntHosts = Benchmark.arg(args, "hosts", 1000);
+        final int cntPairs = Benchmark.arg(args, "pairs", 20000);
+        final int cntRounds = Benchmark.arg(args, "rounds", 3);
+        //Edges bind properties that notify through Platform.runLater.
+        Benchmark.startFx();
+
+        System.out.println(String.format("%d operations over %d pairs of %d hosts, %d processors; best of %d rounds", cntOperations, cntPairs, cntHosts, Runtime.getRuntime().availableProcessors(), cntRounds));
+        System.out.println(String.format("%8s %16s %16s %8s", "threads", "locked ops/s", "concurrent ops/s", "ratio"));
+        for(int cntThreads : THREADS) {
+            long nsLocked = Long.MAX_VALUE;
+            long nsConcurrent = Long.MAX_VALUE;
+            for(int idxRound = 0; idxRound < cntRounds; idxRound++) {
+                nsLocked = Math.min(nsLocked, run(false, cntThreads, cntOperations, cntHosts, cntPairs));
+                nsConcurrent = Math.min(nsConcurrent, run(true, cntThreads, cntOperations, cntHosts, cntPairs));
+            }
+            final double rateLocked = Benchmark.perSecond(cntOperations, nsLocked);
+            final double rateConcurrent = Benchmark.perSecond(cntOperations, nsConcurrent);
+            System.out.println(String.format("%8d %16.0f %16.0f %7.2fx", cntThreads, rateLocked, rateConcurrent, rateConcurrent / rateLocked));
+        }
+        //The JavaFX toolkit is not a daemon thread.
+        System.exit(0);
+    }
+}
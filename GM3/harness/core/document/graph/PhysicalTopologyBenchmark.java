@@ -0,0 +1,366 @@
+package core.document.graph;
+
+import core.document.PhysicalDevice;
+import core.document.PhysicalTopology;
+import javafx.collections.ListChangeListener;
+import util.Benchmark;
+import util.Mac;
+import util.RateLimitedTask;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Measures how long PhysicalTopology takes to rebuild the physical graph as the devices of a synthetic switch fleet are
+ * added one at a time, as they are when each switch's show output is imported separately, and how much of the graph
+ * each rebuild changes.  The rebuild it replaced, which merged clouds by rescanning them and cleared and re-added the
+ * whole graph, is run on the same fleet until a single rebuild takes longer than the limit.
+ *
+ * Usage: PhysicalTopologyBenchmark [-ports N] [-limit MS]
+ * Fleets of 10, 100 and 1000 switches are built as a tree, four switches to a parent, joined by trunk ports that have
+ * learned the MACs of the workstations behind them.  Every switch has the given number of access ports with one
+ * workstation each; the last access port leads to a hub with three workstations, which makes a cloud.  Switches are
+ * added parents first, so every parent briefly reports a downlink to a switch that is not known yet.
+ * The graph is committed after every rebuild, on the JavaFX thread, as it would be between two imports.
+ */
+public class PhysicalTopologyBenchmark {
+    private static final int[] SWITCHES = {10, 100, 1000};
+    private static final int CHILDREN = 4;
+
+    /**
+     * Switch ports and workstations each have their own vendor prefix; the rest of the address is spread the way
+     * addresses assigned by a vendor are, rather than counting up, so that hashing them is not the thing measured.
+     */
+    private static Mac mac(final int oui, final int idxSwitch, final int idx) {
+        //An odd multiplier is a bijection modulo 2^24, so every switch and index has its own address.
+        final int value = ((idxSwitch << 6) + idx) * 0x9E3779B1;
+        return new Mac(new byte[] {0x00, (byte)oui, 0x21, (byte)(value >> 16), (byte)(value >> 8), (byte)value});
+    }
+    private static Mac macPort(final int idxSwitch, final int idxPort) {
+        return mac(0x1B, idxSwitch, idxPort);
+    }
+    private static Mac macWorkstation(final int idxSwitch, final int idxWorkstation) {
+        return mac(0x50, idxSwitch, idxWorkstation);
+    }
+
+    /**
+     * The ports of each switch are numbered from 1: the access ports, then the uplink, then the downlinks.
+     */
+    private static List<PhysicalDevice> fleet(final int cntSwitches, final int cntAccessPorts) {
+        final int cntWorkstations = cntAccessPorts + 2;
+        final List<PhysicalDevice> devices = new ArrayList<>(cntSwitches);
+        for(int idxSwitch = 0; idxSwitch < cntSwitches; idxSwitch++) {
+            final PhysicalDevice device = new PhysicalDevice("switch" + idxSwitch);
+            final int vlan = 10 + idxSwitch % 4;
+            for(int idxPort = 1; idxPort <= cntAccessPorts; idxPort++) {
+                final PhysicalDevice.Port port = device.getPort(macPort(idxSwitch, idxPort), "GigabitEthernet1/0/" + idxPort);
+                port.getVlans().add(vlan);
+                port.getEndpoints().add(new PhysicalDevice.Endpoint(vlan, macWorkstation(idxSwitch, idxPort)));
+                if(idxPort == cntAccessPorts) {
+                    port.getEndpoints().add(new PhysicalDevice.Endpoint(vlan, macWorkstation(idxSwitch, cntAccessPorts + 1)));
+                    port.getEndpoints().add(new PhysicalDevice.Endpoint(vlan, macWorkstation(idxSwitch, cntAccessPorts + 2)));
+                }
+            }
+            if(idxSwitch > 0) {
+                final int idxParent = (idxSwitch - 1) / CHILDREN;
+                final PhysicalDevice.Port uplink = device.getPort(macPort(idxSwitch, cntAccessPorts + 1), "TenGigabitEthernet1/1/1");
+                uplink.trunkProperty().set(true);
+                uplink.getEndpoints().add(new PhysicalDevice.Endpoint(1, macPort(idxParent, cntAccessPorts + 2 + (idxSwitch - 1) % CHILDREN)));
+                for(int idxWorkstation = 1; idxWorkstation <= cntWorkstations; idxWorkstation++) {
+                    uplink.getEndpoints().add(new PhysicalDevice.Endpoint(10 + idxParent % 4, macWorkstation(idxParent, idxWorkstation)));
+                }
+            }
+            for(int idxChild = 0; idxChild < CHILDREN; idxChild++) {
+                final int idxSwitchChild = idxSwitch * CHILDREN + 1 + idxChild;
+                if(idxSwitchChild >= cntSwitches) {
+                    break;
+                }
+                final PhysicalDevice.Port downlink = device.getPort(macPort(idxSwitch, cntAccessPorts + 2 + idxChild), "TenGigabitEthernet1/1/" + (2 + idxChild));
+                downlink.trunkProperty().set(true);
+                downlink.getEndpoints().add(new PhysicalDevice.Endpoint(1, macPort(idxSwitchChild, cntAccessPorts + 1)));
+                for(int idxWorkstation = 1; idxWorkstation <= cntWorkstations; idxWorkstation++) {
+                    downlink.getEndpoints().add(new PhysicalDevice.Endpoint(10 + idxSwitchChild % 4, macWorkstation(idxSwitchChild, idxWorkstation)));
+                }
+            }
+            devices.add(device);
+        }
+        return devices;
+    }
+
+    /**
+     * RebuildTopology as it was, working from a list of devices; it ends by clearing and re-adding the whole graph.
+     */
+    private static void rebuildReference(final List<PhysicalDevice> lstDevices, final NetworkGraph<PhysicalNode, PhysicalEdge> graph) {
+        final List<Mac> macSwitchPorts = lstDevices.stream()
+                .flatMap(device -> device.getPorts().stream())
+                .map(port -> port.macProperty().get())
+                .filter(mac -> mac != null && mac.hashCode() != 0)
+                .distinct()
+                .collect(Collectors.toList());
+        final List<Mac> macWorkstations = lstDevices.stream()
+                .flatMap(device -> device.getPorts().stream())
+                .flatMap(port -> port.getEndpoints().stream())
+                .map(endpoint -> endpoint.macProperty().get())
+                .filter(mac -> !macSwitchPorts.contains(mac))
+                .distinct()
+                .collect(Collectors.toList());
+
+        final HashMap<Mac, PhysicalDevice.Port> lookupPorts = new HashMap<>();
+        List<PhysicalTopology.Cloud> clouds = new LinkedList<>();
+        for(PhysicalDevice device : lstDevices) {
+            for(PhysicalDevice.Port port : device.getPorts()) {
+                if(!port.getEndpoints().isEmpty()) {
+                    Mac macPort = port.macProperty().get();
+                    lookupPorts.put(macPort, port);
+                    List<Mac> connectedMacs = port.getEndpoints().stream()
+                            .map(endpoint -> endpoint.macProperty().get())
+                            .filter(mac -> !mac.equals(Mac.NULL_MAC))
+                            .distinct()
+                            .collect(Collectors.toList());
+                    if(port.trunkProperty().get()) {
+                        connectedMacs.removeAll(macWorkstations);
+                    } else {
+                        connectedMacs.removeAll(macSwitchPorts);
+                    }
+                    if(connectedMacs.size() == 0) {
+                        clouds = mergeClouds(clouds, new PhysicalTopology.Cloud(macPort));
+                    } else {
+                        clouds = mergeClouds(clouds, new PhysicalTopology.Cloud(macPort, connectedMacs));
+                    }
+                }
+            }
+        }
+
+        final List<PhysicalTopology.Cloud> cloudsSearchable = clouds;
+        List<Mac> unmatchedWorkstations = macWorkstations.stream()
+                .filter(mac -> !cloudsSearchable.stream()
+                        .anyMatch(cloud -> cloud.contains(mac)))
+                .collect(Collectors.toList());
+        for(Mac mac : unmatchedWorkstations) {
+            if (macWorkstations.contains(mac)) {
+                for(PhysicalDevice.Port port : lookupPorts.values()) {
+                    if(port.getEndpoints().stream().anyMatch(endpoint -> endpoint.macProperty().get().equals(mac))) {
+                        for(PhysicalTopology.Cloud cloud : clouds) {
+                            if(cloud.contains(port.macProperty().get())) {
+                                clouds.remove(cloud);
+                                clouds = mergeClouds(clouds, new PhysicalTopology.Cloud(mac, cloud));
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        List<PhysicalTopology.DirectConnection> connections = new LinkedList<>();
+        List<PhysicalTopology.Cloud> cloudsFiltered = new LinkedList<>();
+        for(PhysicalTopology.Cloud cloud : clouds) {
+            if(cloud.size() == 2) {
+                Mac[] macs = cloud.toArray(new Mac[2]);
+                connections.add(new PhysicalTopology.DirectConnection(macs[0], macs[1]));
+            } else {
+                cloudsFiltered.add(cloud);
+            }
+        }
+
+        HashMap<Mac, PhysicalNode> nodeFromMac = new HashMap<>();
+        for(Mac macWorkstation : macWorkstations) {
+            nodeFromMac.put(macWorkstation, new PhysicalNic(macWorkstation));
+        }
+        for(PhysicalDevice device : lstDevices) {
+            for(PhysicalDevice.Port port : device.getPorts()) {
+                PhysicalPort nodeNew = new PhysicalPort(device, port);
+                nodeNew.connectedTo().addAll(
+                        port.getEndpoints().stream()
+                                .filter(endpoint -> endpoint.macProperty().get() != null)
+                                .map(endpoint -> endpoint.macProperty().get())
+                                .distinct()
+                                .collect(Collectors.toList())
+                );
+                nodeFromMac.put(port.macProperty().get(), nodeNew);
+            }
+        }
+        for(PhysicalTopology.Cloud cloud : clouds) {
+            Set<Integer> vlans = new HashSet<>();
+            for(Mac mac : cloud) {
+                PhysicalNode node = nodeFromMac.get(mac);
+                if(node instanceof PhysicalPort) {
+                    vlans.addAll(node.getVLans());
+                }
+            }
+            for(Mac mac : cloud) {
+                PhysicalNode node = nodeFromMac.get(mac);
+                if(!(node instanceof PhysicalPort)) {
+                    node.getVLans().addAll(vlans);
+                } else {
+                    ((PhysicalPort)node).getConnectedVlans().addAll(vlans);
+                }
+            }
+        }
+
+        final List<PhysicalNode> nodes = new ArrayList<>(nodeFromMac.values());
+        final List<PhysicalEdge> edges = new ArrayList<>(connections.size());
+        for(PhysicalTopology.DirectConnection direct : connections) {
+            edges.add(new PhysicalEdge(nodeFromMac.get(direct.start()), nodeFromMac.get(direct.end())));
+        }
+        int idxCloud = 0;
+        for(PhysicalTopology.Cloud cloud : cloudsFiltered) {
+            if(cloud.size() == 1) {
+                PhysicalNode node = nodeFromMac.get(cloud.iterator().next());
+                if(node instanceof PhysicalPort) {
+                    ((PhysicalPort)node).unknownConnectionProperty().set(true);
+                }
+            } else {
+                int idxCurrent = ++idxCloud;
+                final PhysicalCloud cloudWorkstations;
+                final PhysicalCloud cloudSwitches;
+                if (cloud.containsAny(macWorkstations)) {
+                    cloudWorkstations = new PhysicalCloud(idxCurrent, "Workstations");
+                    edges.addAll(cloud.stream()
+                                    .filter(mac -> macWorkstations.contains(mac))
+                                    .map(mac -> new PhysicalEdge(cloudWorkstations, nodeFromMac.get(mac)))
+                                    .collect(Collectors.toList())
+                    );
+                    nodes.add(cloudWorkstations);
+                } else {
+                    cloudWorkstations = null;
+                }
+                if (cloud.containsAny(macSwitchPorts)) {
+                    cloudSwitches = new PhysicalCloud(idxCurrent, "Switches");
+                    edges.addAll(cloud.stream()
+                                    .filter(mac -> !macWorkstations.contains(mac))
+                                    .map(mac -> new PhysicalEdge(cloudSwitches, nodeFromMac.get(mac)))
+                                    .collect(Collectors.toList())
+                    );
+                    nodes.add(cloudSwitches);
+                } else {
+                    cloudSwitches = null;
+                }
+                if (cloudSwitches != null && cloudWorkstations != null) {
+                    edges.add(new PhysicalEdge(cloudWorkstations, cloudSwitches));
+                }
+            }
+        }
+
+        graph.clearTopology();
+        graph.addNodes(nodes);
+        graph.addEdges(edges);
+    }
+
+    /**
+     * Cloud.mergeClouds as it was.
+     */
+    private static List<PhysicalTopology.Cloud> mergeClouds(final List<PhysicalTopology.Cloud> cloudsExisting, final PhysicalTopology.Cloud cloudNew) {
+        final List<PhysicalTopology.Cloud> cloudsResult = new LinkedList<>();
+        cloudsResult.add(cloudNew);
+        for(PhysicalTopology.Cloud cloud : cloudsExisting) {
+            if(cloudNew.containsAny(cloud)) {
+                cloudNew.addAll(cloud);
+            } else {
+                cloudsResult.add(cloud);
+            }
+        }
+        return cloudsResult;
+    }
+
+    /**
+     * A graph that is only committed when the benchmark says so, and that counts the nodes and edges each commit changes.
+     */
+    private static class CountedGraph extends PhysicalGraph {
+        private long cntChanged = 0;
+
+        public CountedGraph() {
+            taskRefreshUi = new RateLimitedTask(0, () -> {});
+            final ListChangeListener<Object> listener = change -> {
+                while(change.next()) {
+                    cntChanged += change.getAddedSize() + change.getRemovedSize();
+                }
+            };
+            getNodes().addListener(listener);
+            getEdges().addListener(listener);
+        }
+
+        /**
+         * @return The time taken by the commit, in ns.
+         */
+        public long commit() throws Exception {
+            return Benchmark.onFx(() -> {
+                Process_commitUI();
+                return getLastCommitDuration();
+            });
+        }
+    }
+
+    private static class Result {
+        private int cntDevices = 0;
+        private long nsRebuilds = 0;
+        private long nsLastRebuild = 0;
+        private long nsCommits = 0;
+        private long nsLastCommit = 0;
+        private long cntChanged = 0;
+        private boolean stopped = false;
+    }
+
+    private static void record(final Result result, final long nsRebuild, final long nsCommit, final long msLimit) {
+        result.cntDevices++;
+        result.nsRebuilds += nsRebuild;
+        result.nsLastRebuild = nsRebuild;
+        result.nsCommits += nsCommit;
+        result.nsLastCommit = nsCommit;
+        result.stopped = Benchmark.millis(nsRebuild + nsCommit) > msLimit;
+    }
+
+    private static String format(final String name, final int cntSwitches, final Result result, final CountedGraph graph) {
+        return String.format("%8d %-9s %8s %10.0f %10.1f %10.1f %10.1f %10.0f %8d %8d", cntSwitches, name,
+                result.cntDevices + (result.stopped && result.cntDevices < cntSwitches ? "*" : ""),
+                Benchmark.millis(result.nsRebuilds + result.nsCommits), Benchmark.millis(result.nsLastRebuild), Benchmark.millis(result.nsLastCommit),
+                Benchmark.millis(result.nsCommits) / result.cntDevices, (double)graph.cntChanged / result.cntDevices,
+                graph.getRawNodeList().size(), graph.getRawEdgeList().size());
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int cntAccessPorts = Benchmark.arg(args, "ports", 24);
+        if(cntAccessPorts + 2 + CHILDREN >= 64) {
+            throw new IllegalArgumentException("Each switch has room for 63 addresses.");
+        }
+        final long msLimit = Benchmark.arg(args, "limit", 2000);
+        //Nodes bind properties that notify through Platform.runLater.
+        Benchmark.startFx();
+
+        System.out.println(String.format("Switches with %d access ports, %d to a parent, added one at a time; * marks a run stopped once a rebuild took over %d ms", cntAccessPorts, CHILDREN, msLimit));
+        System.out.println(String.format("%8s %-9s %8s %10s %10s %10s %10s %10s %8s %8s", "switches", "rebuild", "added", "total ms", "last ms", "commit ms", "mean c ms", "changes", "nodes", "edges"));
+        for(int cntSwitches : SWITCHES) {
+            final List<PhysicalDevice> devices = fleet(cntSwitches, cntAccessPorts);
+
+            final CountedGraph graph = Benchmark.onFx(CountedGraph::new);
+            final PhysicalTopology topology = new PhysicalTopology(graph);
+            final Result result = new Result();
+            for(PhysicalDevice device : devices) {
+                final long nsStart = System.nanoTime();
+                topology.getDevices().add(device);
+                record(result, System.nanoTime() - nsStart, graph.commit(), Long.MAX_VALUE);
+            }
+            System.out.println(format("delta", cntSwitches, result, graph));
+
+            final CountedGraph graphReference = Benchmark.onFx(CountedGraph::new);
+            final Result reference = new Result();
+            final List<PhysicalDevice> devicesReference = new ArrayList<>();
+            for(PhysicalDevice device : devices) {
+                devicesReference.add(device);
+                final long nsStart = System.nanoTime();
+                rebuildReference(devicesReference, graphReference);
+                record(reference, System.nanoTime() - nsStart, graphReference.commit(), msLimit);
+                if(reference.stopped) {
+                    break;
+                }
+            }
+            System.out.println(format("replaced", cntSwitches, reference, graphReference));
+
+            if(reference.cntDevices == cntSwitches && (graph.getRawNodeList().size() != graphReference.getRawNodeList().size() || graph.getRawEdgeList().size() != graphReference.getRawEdgeList().size())) {
+                throw new IllegalStateException("The rebuilds produced different graphs for " + cntSwitches + " switches.");
+            }
+        }
+        //The JavaFX toolkit is not a daemon thread.
+        System.exit(0);
+    }
+}
@@ -0,0 +1,138 @@
+package core.document.serialization;
+
+import core.Configuration;
+import core.document.Session;
+import core.document.graph.LogicalEdge;
+import core.importmodule.ImportItem;
+import core.importmodule.SyntheticImport;
+import ui.TabController;
+import util.Benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Saves the same session with the logical graph as 3.2 XML and as logical.bin, then loads each file into a new session,
+ * and reports the size of the files and the time taken to save, to load, and to read back every frame.
+ *
+ * Usage: SessionFormatBenchmark [-frames N] [-hosts N] [-rounds N]
+ * Sessions of 100k and 1M frames, or of the given number of frames only, are imported from synthetic packets; with the
+ * default of 100 hosts there are a few thousand edges, with hundreds of frames each.  The binary format leaves the frames in the file
+ * until they are asked for, so the time to read every frame back is reported separately from the load.  The
+ * session.save.binary_logical preference is changed for the saves and put back afterwards.
+ */
+public class SessionFormatBenchmark {
+    private static final int[] PACKETS = {100000, 1000000};
+
+    private static class Result {
+        private long cbFile = Long.MAX_VALUE;
+        private long nsSave = Long.MAX_VALUE;
+        private long nsLoad = Long.MAX_VALUE;
+        private long nsFrames = Long.MAX_VALUE;
+    }
+
+    private static Session importSession(final int cntPackets, final int cntHosts) throws Exception {
+        final Session session = Benchmark.onFx(Session::new);
+        final SyntheticImport item = new SyntheticImport(cntPackets, cntHosts, 64, cntPackets);
+        Benchmark.onFx(() -> {
+            session.ProcessImport(item);
+            return null;
+        });
+        while(session.taskDispatcher().getLogicalItemsProcessed() < cntPackets) {
+            Thread.sleep(10);
+        }
+        item.awaitCompletion();
+        //The byte counts of the edges are updated on the JavaFX thread.
+        Benchmark.drainFx();
+        return session;
+    }
+
+    /**
+     * @return The number of frames in the logical graph of session, reading every stored frame.
+     */
+    private static long readFrames(final Session session) throws IOException {
+        long cntFrames = 0;
+        for(LogicalEdge edge : session.getLogicalGraph().getRawEdgeList()) {
+            for(LogicalEdge.ConnectionDetails details : new LogicalEdge.ConnectionDetails[] {edge.getDetailsToDestination(), edge.getDetailsToSource()}) {
+                for(ImportItem item : details.getFrameGroups()) {
+                    cntFrames += details.getFrames(item).size();
+                }
+            }
+        }
+        return cntFrames;
+    }
+
+    private static void run(final Session session, final boolean binary, final Path path, final TabController tabs, final int cntPackets, final Result result) throws Exception {
+        Configuration.setPreferenceString(Configuration.Fields.SESSION_SAVE_BINARY_LOGICAL, Boolean.toString(binary));
+        final long nsSaveStart = System.nanoTime();
+        try(ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            Grassmarlin.SaveState(zos, session, tabs);
+        }
+        result.nsSave = Math.min(result.nsSave, System.nanoTime() - nsSaveStart);
+        result.cbFile = Math.min(result.cbFile, Files.size(path));
+
+        final Session loaded = Benchmark.onFx(Session::new);
+        Benchmark.usedHeapAfterGc();
+        final long nsLoadStart = System.nanoTime();
+        if(!Grassmarlin.LoadState(path, loaded, tabs)) {
+            throw new IllegalStateException("Unable to load " + path);
+        }
+        result.nsLoad = Math.min(result.nsLoad, System.nanoTime() - nsLoadStart);
+        final long nsFramesStart = System.nanoTime();
+        final long cntFrames = readFrames(loaded);
+        result.nsFrames = Math.min(result.nsFrames, System.nanoTime() - nsFramesStart);
+        //The graphs are refreshed on the JavaFX thread once the load returns.
+        Benchmark.drainFx();
+        loaded.closeFrameArchive();
+
+        if(cntFrames != cntPackets || loaded.getLogicalGraph().getRawEdgeList().size() != session.getLogicalGraph().getRawEdgeList().size()) {
+            throw new IllegalStateException(String.format("Loaded %d frames and %d edges from %s", cntFrames, loaded.getLogicalGraph().getRawEdgeList().size(), path));
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int cntFrames = Benchmark.arg(args, "frames", 0);
+        final int cntHosts = Benchmark.arg(args, "hosts", 100);
+        final int cntRounds = Benchmark.arg(args, "rounds", 2);
+        Benchmark.startFx();
+
+        final String preferencePrevious = Configuration.getPreferenceString(Configuration.Fields.SESSION_SAVE_BINARY_LOGICAL);
+        final Path path = Files.createTempFile("session", ".gm3");
+        int status = 0;
+        try {
+            run(path, cntFrames == 0 ? PACKETS : new int[] {cntFrames}, cntHosts, cntRounds);
+        } catch(Exception ex) {
+            ex.printStackTrace();
+            status = 1;
+        } finally {
+            Configuration.setPreferenceString(Configuration.Fields.SESSION_SAVE_BINARY_LOGICAL, preferencePrevious);
+            Files.deleteIfExists(path);
+        }
+        //The JavaFX toolkit and the import workers are not daemon threads.
+        System.exit(status);
+    }
+
+    private static void run(final Path path, final int[] sizes, final int cntHosts, final int cntRounds) throws Exception {
+        final TabController tabs = new TabController();
+        System.out.println(String.format("Sessions imported from packets between %d hosts; best of %d rounds", cntHosts, cntRounds));
+        System.out.println(String.format("%8s %8s %-7s %10s %10s %10s %10s", "frames", "edges", "format", "file MB", "save ms", "load ms", "frames ms"));
+        for(int cntPackets : sizes) {
+            final Session session = importSession(cntPackets, cntHosts);
+            final Result xml = new Result();
+            final Result binary = new Result();
+            for(int idxRound = 0; idxRound < cntRounds; idxRound++) {
+                run(session, false, path, tabs, cntPackets, xml);
+                run(session, true, path, tabs, cntPackets, binary);
+            }
+            final int cntEdges = session.getLogicalGraph().getRawEdgeList().size();
+            for(Result result : new Result[] {xml, binary}) {
+                System.out.println(String.format("%8d %8d %-7s %10.1f %10.0f %10.0f %10.0f", cntPackets, cntEdges, result == xml ? "xml" : "binary",
+                        result.cbFile / (double)(1 << 20), Benchmark.millis(result.nsSave), Benchmark.millis(result.nsLoad), Benchmark.millis(result.nsFrames)));
+            }
+            session.taskDispatcher().shutdown();
+        }
+    }
+}
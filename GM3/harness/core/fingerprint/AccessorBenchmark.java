@@ -0,0 +1,204 @@
+package core.fingerprint;
+
+import org.apache.commons.lang3.ArrayUtils;
+import util.Benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Measures the time and allocation per call of the PacketData payload reads that the payload operations use, against
+ * the reads they replaced.
+ *
+ * Usage: AccessorBenchmark [-calls N] [-passes N]
+ * Each read of each implementation is measured in its own JVM.
+ * The replaced reads copied the bytes out of a JBuffer and parsed them as a BigInteger; they are reproduced here over a
+ * byte array, with the same copies, since a JBuffer needs the native pcap library.
+ */
+public class AccessorBenchmark {
+    private static final int PAYLOADS = 1024;
+    private static final int PAYLOAD_BYTES = 256;
+    private static final byte[] SEARCH = {0x05, 0x64, 0x12, (byte)0xC4};
+
+    /**
+     * The reads as they were, before the payload was a ByteBuffer.
+     */
+    private static class ReferenceReads {
+        private final byte[] payload;
+
+        public ReferenceReads(final byte[] payload) {
+            this.payload = payload;
+        }
+
+        public byte[] getByteArray(int offset, int length) {
+            byte[] ret = new byte[0];
+            if (payload.length > offset + length) {
+                ret = new byte[length];
+                System.arraycopy(payload, offset, ret, 0, length);
+            }
+            return ret;
+        }
+
+        public int getInt(int offset, int length, boolean bigEndian) {
+            int ret = 0;
+            if (payload.length > offset + length) {
+                byte[] bytes = this.getByteArray(offset, length);
+                if (!bigEndian) {
+                    ArrayUtils.reverse(bytes);
+                }
+                ret = new BigInteger(1, bytes).intValue();
+            }
+            return ret;
+        }
+
+        public int match(byte[] search, int offset, int length) {
+            int ret = -1;
+            if (offset < 0) {
+                offset = 0;
+            }
+            if (search.length <= length) {
+                int searchLength = search.length;
+                if (searchLength > 0) {
+                    int limit = Math.min(offset + length, payload.length) - searchLength - offset;
+                    byte byte0 = search[0];
+                    for (int start = offset; start <= limit; ++start) {
+                        if (payload[start] == byte0) {
+                            int i = 0;
+                            for (; i < searchLength; ++i) {
+                                if (search[i] != payload[start + i]) {
+                                    break;
+                                }
+                            }
+                            if (i == searchLength) {
+                                ret = start;
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+            return ret;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Read {
+        long apply(int idxPayload, int offset);
+    }
+
+    private static final String[] CASES = {
+            "getInt 4 bytes big-endian",
+            "getInt 4 bytes little-endian",
+            "getInt 2 bytes big-endian",
+            "getInt 3 bytes little-endian",
+            "match 4 bytes in 256"
+    };
+
+    private static Read readFor(final int idxCase, final boolean reference, final ReferenceReads[] references, final PacketData[] packets) {
+        switch(idxCase) {
+            case 0:
+                return reference ? (idx, offset) -> references[idx].getInt(offset, 4, true) : (idx, offset) -> packets[idx].getInt(offset, 4, true);
+            case 1:
+                return reference ? (idx, offset) -> references[idx].getInt(offset, 4, false) : (idx, offset) -> packets[idx].getInt(offset, 4, false);
+            case 2:
+                return reference ? (idx, offset) -> references[idx].getInt(offset, 2, true) : (idx, offset) -> packets[idx].getInt(offset, 2, true);
+            case 3:
+                return reference ? (idx, offset) -> references[idx].getInt(offset, 3, false) : (idx, offset) -> packets[idx].getInt(offset, 3, false);
+            default:
+                return reference ? (idx, offset) -> references[idx].match(SEARCH, 0, PAYLOAD_BYTES) : (idx, offset) -> packets[idx].match(SEARCH, 0, PAYLOAD_BYTES);
+        }
+    }
+
+    /**
+     * Runs a single read in this JVM and prints the fastest pass, in ns, and the least allocation of any pass, in bytes.
+     * The first half of the passes warm up.
+     */
+    private static void measure(final int idxCase, final boolean reference, final int cntCalls, final int cntPasses) {
+        final Random rng = new Random(1);
+        final ReferenceReads[] references = new ReferenceReads[PAYLOADS];
+        final PacketData[] packets = new PacketData[PAYLOADS];
+        for(int idx = 0; idx < PAYLOADS; idx++) {
+            final byte[] payload = new byte[PAYLOAD_BYTES];
+            rng.nextBytes(payload);
+            //Half of the payloads hold the search bytes, at a varying offset.
+            if(idx % 2 == 0) {
+                System.arraycopy(SEARCH, 0, payload, rng.nextInt(PAYLOAD_BYTES - SEARCH.length), SEARCH.length);
+            }
+            references[idx] = new ReferenceReads(payload);
+            packets[idx] = new PacketData(0, null, ByteBuffer.wrap(payload));
+        }
+        final Read read = readFor(idxCase, reference, references, packets);
+
+        long nsBest = Long.MAX_VALUE;
+        long cbBest = Long.MAX_VALUE;
+        long checksum = 0;
+        for(int idxPass = 0; idxPass < 2 * cntPasses; idxPass++) {
+            final long cbStart = Benchmark.allocatedBytes();
+            final long nsStart = System.nanoTime();
+            for(int idxCall = 0; idxCall < cntCalls; idxCall++) {
+                checksum += read.apply(idxCall & (PAYLOADS - 1), idxCall % (PAYLOAD_BYTES - 16));
+            }
+            final long nsElapsed = System.nanoTime() - nsStart;
+            final long cbElapsed = Benchmark.allocatedBytes() - cbStart;
+            if(idxPass >= cntPasses) {
+                nsBest = Math.min(nsBest, nsElapsed);
+                cbBest = Math.min(cbBest, cbElapsed);
+            }
+        }
+        System.out.println(nsBest + " " + cbBest + " " + checksum);
+    }
+
+    /**
+     * Runs a single read in a new JVM, so that what the JIT learned from one read does not shape the code of the next.
+     * @return The fastest pass, in ns, and the least allocation of any pass, in bytes.
+     */
+    private static long[] fork(final int idxCase, final boolean reference, final int cntCalls, final int cntPasses) throws IOException, InterruptedException {
+        final Process process = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                AccessorBenchmark.class.getName(),
+                "-case", Integer.toString(idxCase),
+                "-engine", reference ? "reference" : "current",
+                "-calls", Integer.toString(cntCalls),
+                "-passes", Integer.toString(cntPasses))
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        final String line;
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            line = reader.readLine();
+        }
+        if(process.waitFor() != 0 || line == null) {
+            throw new IllegalStateException("The measurement of " + CASES[idxCase] + " failed.");
+        }
+        final String[] fields = line.split(" ");
+        return new long[] {Long.parseLong(fields[0]), Long.parseLong(fields[1])};
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int cntCalls = Benchmark.arg(args, "calls", 10000000);
+        final int cntPasses = Benchmark.arg(args, "passes", 5);
+        final int idxCase = Benchmark.arg(args, "case", -1);
+        if(idxCase != -1) {
+            measure(idxCase, Benchmark.arg(args, "engine", "current").equals("reference"), cntCalls, cntPasses);
+            return;
+        }
+
+        System.out.println(String.format("%d calls per pass, best of %d passes, one JVM per measurement", cntCalls, cntPasses));
+        System.out.println(String.format("%-28s %10s %10s %10s %10s", "read", "ref ns", "new ns", "ref B", "new B"));
+        for(int idx = 0; idx < CASES.length; idx++) {
+            //The search reads the whole payload, so it gets fewer calls.
+            final int cntCallsCase = CASES[idx].startsWith("match") ? cntCalls / 16 : cntCalls;
+            final long[] resultReference = fork(idx, true, cntCallsCase, cntPasses);
+            final long[] resultCurrent = fork(idx, false, cntCallsCase, cntPasses);
+            System.out.println(String.format("%-28s %10.1f %10.1f %10.1f %10.1f", CASES[idx],
+                    (double)resultReference[0] / cntCallsCase, (double)resultCurrent[0] / cntCallsCase,
+                    (double)resultReference[1] / cntCallsCase, (double)resultCurrent[1] / cntCallsCase));
+        }
+    }
+}
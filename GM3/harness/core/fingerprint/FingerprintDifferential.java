@@ -0,0 +1,617 @@
+package core.fingerprint;
+
+import core.document.graph.ComputedProperty;
+import core.document.graph.LogicalNode;
+import core.fingerprint3.*;
+import core.importmodule.inputIterators.pcap.PcapChunkReader;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.jnetpcap.protocol.tcpip.Tcp;
+import util.Cidr;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs FProcessor and ReferenceFProcessor over the same packets and compares, packet by packet, what each fingerprint
+ * adds to the source and destination nodes.
+ *
+ * Usage: FingerprintDifferential [-packets N] [-seed S] [path ...]
+ * Each path is a fingerprint, a directory of fingerprints, or a classic (Ethernet) pcap file.  If no fingerprints are
+ * named, data/fingerprint and harness/corpus/fingerprint are used.  Synthetic packets are built from the values the
+ * filters test and the contents the payloads look for, so that most filters and operations are reached.
+ *
+ * The engines are expected to differ in four documented ways, which are counted but not failures:
+ *  - The reference engine cannot be constructed for a fingerprint with an MSS, Dsize, Seq, TTL or Window filter, since
+ *    it casts those values to Integer, but the schema makes them BigInteger (or Long, for Seq).
+ *  - The reference engine never passes a Flags filter on a packet that has TCP flags, since it looks for the text of
+ *    each flag in a set of Tcp.Flag.
+ *  - The reference engine throws, losing the fingerprint for that packet, on a DsizeWithin or TTLWithin that omits a
+ *    bound; the schema makes both bounds optional, and an omitted bound is now unbounded.
+ *  - The reference engine throws, losing the fingerprint for that packet, on a ByteJump Calc that uses x, since it
+ *    never substituted the jump value into the expression.
+ * Any other difference is reported, and the exit status is 1.
+ */
+public class FingerprintDifferential {
+    private static final int PACKETS_DEFAULT = 100000;
+    private static final int EXAMPLES_MAX = 10;
+    private static final short TCP_ID = 6;
+    private static final short UDP_ID = 17;
+
+    private enum Outcome {
+        IDENTICAL("identical"),
+        REJECTED("documented: the reference engine rejected the fingerprint"),
+        FLAGS("documented: Flags filter on a packet with TCP flags"),
+        OPEN_BOUND("documented: the reference engine threw on an open Within bound"),
+        CALC_VARIABLE("documented: the reference engine threw on a Calc that uses x"),
+        UNEXPECTED("unexpected");
+
+        private final String description;
+
+        Outcome(final String description) {
+            this.description = description;
+        }
+    }
+
+    private static class Subject {
+        private final String name;
+        private final ReferenceFProcessor reference;
+        private final String reasonRejected;
+        private final boolean usesFlags;
+        private final boolean usesOpenBound;
+        private final boolean usesCalcVariable;
+
+        public Subject(final Fingerprint fp) {
+            this.name = fp.getHeader().getName();
+
+            ReferenceFProcessor processor = null;
+            String reason = null;
+            try {
+                processor = new ReferenceFProcessor(Collections.singletonList(fp));
+            } catch(RuntimeException ex) {
+                reason = ex.toString();
+            }
+            this.reference = processor;
+            this.reasonRejected = reason;
+
+            boolean flags = false;
+            boolean openBound = false;
+            for(Fingerprint.Filter filter : fp.getFilter()) {
+                for(JAXBElement<?> element : filter.getAckAndMSSAndDsize()) {
+                    final Object value = element.getValue();
+                    if(element.getName().getLocalPart().equals("Flags")) {
+                        flags = true;
+                    } else if(value instanceof Fingerprint.Filter.DsizeWithin) {
+                        openBound |= ((Fingerprint.Filter.DsizeWithin)value).getMin() == null || ((Fingerprint.Filter.DsizeWithin)value).getMax() == null;
+                    } else if(value instanceof Fingerprint.Filter.TTLWithin) {
+                        openBound |= ((Fingerprint.Filter.TTLWithin)value).getMin() == null || ((Fingerprint.Filter.TTLWithin)value).getMax() == null;
+                    }
+                }
+            }
+            this.usesFlags = flags;
+            this.usesOpenBound = openBound;
+            this.usesCalcVariable = fp.getPayload().stream().anyMatch(payload -> usesCalcVariable(payload.getOperation()));
+        }
+
+        private static boolean usesCalcVariable(final List<Object> operations) {
+            for(Object op : operations) {
+                AndThen next = null;
+                if(op instanceof ByteJumpFunction) {
+                    final ByteJumpFunction jump = (ByteJumpFunction)op;
+                    if(jump.getCalc() != null && jump.getCalc().contains("x")) {
+                        return true;
+                    }
+                    next = jump.getAndThen();
+                } else if(op instanceof MatchFunction) {
+                    next = ((MatchFunction)op).getAndThen();
+                } else if(op instanceof ByteTestFunction) {
+                    next = ((ByteTestFunction)op).getAndThen();
+                } else if(op instanceof IsDataAtFunction) {
+                    next = ((IsDataAtFunction)op).getAndThen();
+                }
+                if(next != null && usesCalcVariable(next.getMatchOrByteTestOrIsDataAt())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The values that the filters test and the byte sequences that the payloads search for.  Half of the synthetic
+     * packets are built to pass one filter group; the fields of every packet are drawn from these values about half of
+     * the time.
+     */
+    static class Harvest {
+        private final Map<String, Set<Long>> valuesByFilter = new HashMap<>();
+        //For each filter group, the inclusive range each field must fall in, keyed as in valuesByFilter.
+        private final List<Map<String, long[]>> groups = new ArrayList<>();
+        private final Set<String> contents = new LinkedHashSet<>();
+        private final List<byte[]> contentBytes = new ArrayList<>();
+
+        public void add(final Fingerprint fp) {
+            for(Fingerprint.Filter filter : fp.getFilter()) {
+                final Map<String, long[]> group = new HashMap<>();
+                for(JAXBElement<?> element : filter.getAckAndMSSAndDsize()) {
+                    final String name = element.getName().getLocalPart();
+                    final Object value = element.getValue();
+                    if(value instanceof Number) {
+                        addValue(name, ((Number)value).longValue());
+                        group.put(name, new long[] {((Number)value).longValue(), ((Number)value).longValue()});
+                    } else if(value instanceof Fingerprint.Filter.DsizeWithin) {
+                        addBounds("Dsize", ((Fingerprint.Filter.DsizeWithin)value).getMin(), ((Fingerprint.Filter.DsizeWithin)value).getMax());
+                        group.put("Dsize", rangeOf(((Fingerprint.Filter.DsizeWithin)value).getMin(), ((Fingerprint.Filter.DsizeWithin)value).getMax()));
+                    } else if(value instanceof Fingerprint.Filter.TTLWithin) {
+                        addBounds("TTL", ((Fingerprint.Filter.TTLWithin)value).getMin(), ((Fingerprint.Filter.TTLWithin)value).getMax());
+                        group.put("TTL", rangeOf(((Fingerprint.Filter.TTLWithin)value).getMin(), ((Fingerprint.Filter.TTLWithin)value).getMax()));
+                    } else {
+                        group.put(name, null);
+                    }
+                }
+                groups.add(group);
+            }
+            for(Fingerprint.Payload payload : fp.getPayload()) {
+                addOperations(payload.getOperation());
+            }
+        }
+
+        private void addValue(final String name, final long value) {
+            valuesByFilter.computeIfAbsent(name, key -> new TreeSet<>()).add(value);
+        }
+
+        private void addBounds(final String name, final BigInteger min, final BigInteger max) {
+            for(BigInteger bound : new BigInteger[] {min, max}) {
+                if(bound != null) {
+                    addValue(name, bound.longValue() - 1);
+                    addValue(name, bound.longValue());
+                    addValue(name, bound.longValue() + 1);
+                }
+            }
+        }
+
+        private void addOperations(final List<Object> operations) {
+            for(Object op : operations) {
+                AndThen next = null;
+                if(op instanceof MatchFunction) {
+                    final MatchFunction match = (MatchFunction)op;
+                    if(match.getContent() != null) {
+                        addContent(contentOf(match.getContent().getType(), match.getContent().getValue()));
+                    } else if(match.getPattern() != null) {
+                        //Only the literal text up to the first metacharacter is used.
+                        final String literal = match.getPattern().split("[\\\\\\[\\](){}.*+?^$|]", 2)[0];
+                        addContent(literal.getBytes(StandardCharsets.UTF_8));
+                    }
+                    next = match.getAndThen();
+                } else if(op instanceof ByteTestFunction) {
+                    next = ((ByteTestFunction)op).getAndThen();
+                } else if(op instanceof ByteJumpFunction) {
+                    next = ((ByteJumpFunction)op).getAndThen();
+                } else if(op instanceof IsDataAtFunction) {
+                    next = ((IsDataAtFunction)op).getAndThen();
+                }
+                if(next != null) {
+                    addOperations(next.getMatchOrByteTestOrIsDataAt());
+                }
+            }
+        }
+
+        private static long[] rangeOf(final BigInteger min, final BigInteger max) {
+            final long lower = min == null ? 0 : min.longValue();
+            return new long[] {lower, max == null ? lower + 1000 : max.longValue()};
+        }
+
+        private void addContent(final byte[] content) {
+            if(content.length > 0 && contents.add(Arrays.toString(content))) {
+                contentBytes.add(content);
+            }
+        }
+
+        public long pick(final Random rng, final Map<String, long[]> target, final String name, final long valueRandom) {
+            final long[] range = target.get(name);
+            if(range != null) {
+                return range[0] + (long)(rng.nextDouble() * (range[1] - range[0] + 1));
+            }
+            final Set<Long> values = valuesByFilter.get(name);
+            if(values == null || rng.nextBoolean()) {
+                return valueRandom;
+            }
+            final int idx = rng.nextInt(values.size());
+            return values.stream().skip(idx).findFirst().get();
+        }
+    }
+
+    private final List<Subject> subjects;
+    private final FProcessor processor;
+    private final ObservableList<Cidr> networks = FXCollections.observableArrayList();
+    private final Map<Outcome, Long> counts = new EnumMap<>(Outcome.class);
+    private final Map<Outcome, List<String>> examples = new EnumMap<>(Outcome.class);
+    private final Set<String> namesAnnotated = new HashSet<>();
+    private long cntIdenticalAnnotated = 0;
+    private long cntReferenceThrew = 0;
+    private long nsProcessor = 0;
+    private long nsReference = 0;
+    private long cntPackets = 0;
+
+    public FingerprintDifferential(final List<Fingerprint> fingerprints) {
+        this.subjects = fingerprints.stream().map(Subject::new).collect(Collectors.toList());
+        this.processor = new FProcessor(fingerprints);
+        for(Outcome outcome : Outcome.values()) {
+            counts.put(outcome, 0L);
+            examples.put(outcome, new ArrayList<>());
+        }
+    }
+
+    public void compare(final PacketData data, final String description) {
+        cntPackets++;
+
+        final LogicalNode sourceProcessor = new LogicalNode(data.getSourceIp(), data.getSourceMac(), networks);
+        final LogicalNode destProcessor = new LogicalNode(data.getDestIp(), data.getDestMac(), networks);
+        data.setSourceNode(sourceProcessor);
+        data.setDestNode(destProcessor);
+        long nsStart = System.nanoTime();
+        processor.process(data);
+        nsProcessor += System.nanoTime() - nsStart;
+
+        final LogicalNode sourceReference = new LogicalNode(data.getSourceIp(), data.getSourceMac(), networks);
+        final LogicalNode destReference = new LogicalNode(data.getDestIp(), data.getDestMac(), networks);
+        data.setSourceNode(sourceReference);
+        data.setDestNode(destReference);
+        final Set<String> threw = new HashSet<>();
+        nsStart = System.nanoTime();
+        for(Subject subject : subjects) {
+            if(subject.reference != null) {
+                subject.reference.process(data);
+                threw.addAll(subject.reference.failed);
+            }
+        }
+        nsReference += System.nanoTime() - nsStart;
+        cntReferenceThrew += threw.size();
+
+        final Map<String, Map<String, Set<ComputedProperty>>> sourceActual = sourceProcessor.getAnnotationsByFingerprint();
+        final Map<String, Map<String, Set<ComputedProperty>>> destActual = destProcessor.getAnnotationsByFingerprint();
+        final Map<String, Map<String, Set<ComputedProperty>>> sourceExpected = sourceReference.getAnnotationsByFingerprint();
+        final Map<String, Map<String, Set<ComputedProperty>>> destExpected = destReference.getAnnotationsByFingerprint();
+
+        //Fingerprints may share a name, in which case their results are merged, by both engines.
+        final Set<String> names = new LinkedHashSet<>();
+        for(Subject subject : subjects) {
+            if(!names.add(subject.name)) {
+                continue;
+            }
+            final Map<String, Set<ComputedProperty>> sourceA = sourceActual.getOrDefault(subject.name, Collections.emptyMap());
+            final Map<String, Set<ComputedProperty>> sourceE = sourceExpected.getOrDefault(subject.name, Collections.emptyMap());
+            final Map<String, Set<ComputedProperty>> destA = destActual.getOrDefault(subject.name, Collections.emptyMap());
+            final Map<String, Set<ComputedProperty>> destE = destExpected.getOrDefault(subject.name, Collections.emptyMap());
+
+            final Outcome outcome;
+            if(sourceA.equals(sourceE) && destA.equals(destE)) {
+                outcome = Outcome.IDENTICAL;
+            } else if(subjects.stream().anyMatch(other -> other.name.equals(subject.name) && other.reference == null)) {
+                outcome = Outcome.REJECTED;
+            } else if(subject.usesFlags && data.getFlags() != null) {
+                outcome = Outcome.FLAGS;
+            } else if(subject.usesOpenBound && threw.contains(subject.name)) {
+                outcome = Outcome.OPEN_BOUND;
+            } else if(subject.usesCalcVariable && threw.contains(subject.name)) {
+                outcome = Outcome.CALC_VARIABLE;
+            } else {
+                outcome = Outcome.UNEXPECTED;
+            }
+            counts.merge(outcome, 1L, Long::sum);
+            if(outcome == Outcome.IDENTICAL && !(sourceA.isEmpty() && destA.isEmpty())) {
+                cntIdenticalAnnotated++;
+                namesAnnotated.add(subject.name);
+            }
+            if(outcome != Outcome.IDENTICAL && examples.get(outcome).size() < EXAMPLES_MAX) {
+                examples.get(outcome).add(String.format("%s, %s:%n      source %s, expected %s%n      destination %s, expected %s", subject.name, description, format(sourceA), format(sourceE), format(destA), format(destE)));
+            }
+        }
+    }
+
+    private static String format(final Map<String, Set<ComputedProperty>> annotations) {
+        return annotations.entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + entry.getValue().stream()
+                        .map(value -> value.getValue() + " (" + value.getConfidence() + ")")
+                        .sorted()
+                        .collect(Collectors.joining(", ", "[", "]")))
+                .sorted()
+                .collect(Collectors.joining(", ", "{", "}"));
+    }
+
+    public boolean report() {
+        System.out.println(String.format("Fingerprints: %d, of which the reference engine rejected %d", subjects.size(), subjects.stream().filter(subject -> subject.reference == null).count()));
+        subjects.stream()
+                .filter(subject -> subject.reference == null)
+                .forEach(subject -> System.out.println("  " + subject.name + ": " + subject.reasonRejected));
+        System.out.println(String.format("Packets: %d; the reference engine threw for %d fingerprint results", cntPackets, cntReferenceThrew));
+        System.out.println(String.format("Time: FProcessor %d ms, reference %d ms", nsProcessor / 1000000, nsReference / 1000000));
+        System.out.println("Fingerprint results:");
+        for(Outcome outcome : Outcome.values()) {
+            System.out.println(String.format("  %10d %s", counts.get(outcome), outcome.description));
+        }
+        System.out.println(String.format("%d identical results added annotations, for %d of the %d fingerprint names", cntIdenticalAnnotated, namesAnnotated.size(), subjects.stream().map(subject -> subject.name).distinct().count()));
+        System.out.println("  Never annotated: " + subjects.stream().map(subject -> subject.name).distinct().filter(name -> !namesAnnotated.contains(name)).collect(Collectors.joining(", ")));
+        for(Outcome outcome : Outcome.values()) {
+            if(!examples.get(outcome).isEmpty()) {
+                System.out.println("Examples, " + outcome.description + ":");
+                examples.get(outcome).forEach(example -> System.out.println("    " + example));
+            }
+        }
+        return counts.get(Outcome.UNEXPECTED) == 0;
+    }
+
+    // == Packets
+
+    static PacketData synthesize(final Random rng, final Harvest harvest, final long idxFrame) {
+        final Map<String, long[]> target = rng.nextBoolean() && !harvest.groups.isEmpty() ? harvest.groups.get(rng.nextInt(harvest.groups.size())) : Collections.emptyMap();
+        final boolean needsTcp = target.containsKey("Ack") || target.containsKey("Seq") || target.containsKey("MSS") || target.containsKey("Window") || target.containsKey("Flags");
+
+        final short protocol;
+        final int choice = rng.nextInt(10);
+        if(target.containsKey("TransportProtocol")) {
+            protocol = (short)harvest.pick(rng, target, "TransportProtocol", 0);
+        } else if(needsTcp || choice < 5) {
+            protocol = TCP_ID;
+        } else if(choice < 8) {
+            protocol = UDP_ID;
+        } else {
+            protocol = (short)harvest.pick(rng, target, "TransportProtocol", rng.nextInt(256));
+        }
+        final int portSource = (int)harvest.pick(rng, target, "SrcPort", rng.nextBoolean() ? rng.nextInt(1024) : rng.nextInt(65536));
+        final int portDest = (int)harvest.pick(rng, target, "DstPort", rng.nextBoolean() ? rng.nextInt(1024) : rng.nextInt(65536));
+        final int ethertype = (int)harvest.pick(rng, target, "Ethertype", 2048);
+        final int ttl = (int)harvest.pick(rng, target, "TTL", 1 + rng.nextInt(255));
+
+        long ack = -1;
+        long seq = -1;
+        int mss = -1;
+        int window = -1;
+        Set<Tcp.Flag> flags = null;
+        if(protocol == TCP_ID) {
+            ack = harvest.pick(rng, target, "Ack", rng.nextInt() & 0xFFFFFFFFL);
+            seq = harvest.pick(rng, target, "Seq", rng.nextInt() & 0xFFFFFFFFL);
+            mss = (int)harvest.pick(rng, target, "MSS", rng.nextBoolean() ? -1 : 536 + rng.nextInt(1000));
+            window = (int)harvest.pick(rng, target, "Window", rng.nextInt(65536));
+            flags = EnumSet.noneOf(Tcp.Flag.class);
+            for(Tcp.Flag flag : Tcp.Flag.values()) {
+                if(rng.nextInt(4) == 0) {
+                    flags.add(flag);
+                }
+            }
+        }
+
+        ByteBuffer payload = null;
+        if(rng.nextInt(10) != 0) {
+            final byte[] bytes = new byte[rng.nextInt(rng.nextBoolean() ? 24 : 320)];
+            rng.nextBytes(bytes);
+            if(rng.nextInt(4) == 0) {
+                //Printable text, so that the patterns and case-insensitive matches have something to find.
+                for(int idx = 0; idx < bytes.length; idx++) {
+                    bytes[idx] = (byte)(' ' + rng.nextInt(95));
+                }
+            }
+            final int cntContents = harvest.contentBytes.isEmpty() ? 0 : rng.nextInt(4);
+            for(int idxContent = 0; idxContent < cntContents; idxContent++) {
+                final byte[] content = harvest.contentBytes.get(rng.nextInt(harvest.contentBytes.size()));
+                if(content.length <= bytes.length) {
+                    final int offset = rng.nextBoolean() ? 0 : rng.nextInt(bytes.length - content.length + 1);
+                    System.arraycopy(content, 0, bytes, offset, content.length);
+                }
+            }
+            payload = ByteBuffer.wrap(bytes);
+        }
+        final long dSize = harvest.pick(rng, target, "Dsize", (payload == null ? 0 : payload.limit()) + 54);
+
+        final PMetaData meta = new PMetaData(null, idxFrame, idxFrame, portSource, portDest, protocol,
+                new Cidr(0x0A000000L | rng.nextInt(256)), new byte[6], new Cidr(0x0A000100L | rng.nextInt(256)), new byte[6],
+                ack, dSize, ethertype, mss, seq, ttl, window, flags);
+        return new PacketData(0, meta, payload);
+    }
+
+    /**
+     * Decodes Ethernet/IPv4 records into the same PacketData the pcap import produces.
+     */
+    private static PacketData decode(final ByteBuffer frame, final long idxFrame, final int lengthOriginal) {
+        if(frame.limit() < 14) {
+            return null;
+        }
+        int offset = 12;
+        int ethertype = frame.getShort(offset) & 0xFFFF;
+        if(ethertype == 0x8100 && frame.limit() >= 18) {
+            offset += 4;
+            ethertype = frame.getShort(offset) & 0xFFFF;
+        }
+        offset += 2;
+        if(ethertype != 0x0800 || frame.limit() < offset + 20) {
+            return null;
+        }
+        final byte[] macSource = new byte[6];
+        final byte[] macDest = new byte[6];
+        ((ByteBuffer)frame.duplicate().position(0)).get(macDest);
+        ((ByteBuffer)frame.duplicate().position(6)).get(macSource);
+
+        final int lengthHeader = (frame.get(offset) & 0x0F) * 4;
+        final int end = Math.min(frame.limit(), offset + (frame.getShort(offset + 2) & 0xFFFF));
+        final int ttl = frame.get(offset + 8) & 0xFF;
+        final short protocol = (short)(frame.get(offset + 9) & 0xFF);
+        final Cidr ipSource = new Cidr(frame.getInt(offset + 12) & 0xFFFFFFFFL);
+        final Cidr ipDest = new Cidr(frame.getInt(offset + 16) & 0xFFFFFFFFL);
+        final int offsetTransport = offset + lengthHeader;
+
+        if(protocol == TCP_ID && end >= offsetTransport + 20) {
+            final int lengthTcp = ((frame.get(offsetTransport + 12) >> 4) & 0x0F) * 4;
+            final int bitsFlags = ((frame.get(offsetTransport + 12) & 0x01) << 8) | (frame.get(offsetTransport + 13) & 0xFF);
+            final Set<Tcp.Flag> flags = EnumSet.noneOf(Tcp.Flag.class);
+            for(Tcp.Flag flag : Tcp.Flag.values()) {
+                if((bitsFlags & (1 << flag.ordinal())) != 0) {
+                    flags.add(flag);
+                }
+            }
+            int mss = -1;
+            for(int idx = offsetTransport + 20; idx < Math.min(end, offsetTransport + lengthTcp); ) {
+                final int kind = frame.get(idx) & 0xFF;
+                if(kind == 0) {
+                    break;
+                } else if(kind == 1) {
+                    idx++;
+                    continue;
+                }
+                if(idx + 1 >= end) {
+                    break;
+                }
+                final int length = frame.get(idx + 1) & 0xFF;
+                if(kind == 2 && length == 4 && idx + 4 <= end) {
+                    mss = frame.getShort(idx + 2) & 0xFFFF;
+                }
+                idx += Math.max(length, 2);
+            }
+            final PMetaData meta = new PMetaData(null, idxFrame, idxFrame, frame.getShort(offsetTransport) & 0xFFFF, frame.getShort(offsetTransport + 2) & 0xFFFF, TCP_ID,
+                    ipSource, macSource, ipDest, macDest, frame.getInt(offsetTransport + 8) & 0xFFFFFFFFL, lengthOriginal, 2048,
+                    mss, frame.getInt(offsetTransport + 4) & 0xFFFFFFFFL, ttl, frame.getShort(offsetTransport + 14) & 0xFFFF, flags);
+            return new PacketData(0, meta, ByteBuffer.wrap(payloadOf(frame, offsetTransport + lengthTcp, end)));
+        } else if(protocol == UDP_ID && end >= offsetTransport + 8) {
+            final PMetaData meta = new PMetaData(null, idxFrame, idxFrame, frame.getShort(offsetTransport) & 0xFFFF, frame.getShort(offsetTransport + 2) & 0xFFFF, UDP_ID,
+                    ipSource, macSource, ipDest, macDest, -1, frame.limit() + 16, 2048,
+                    -1, -1, ttl, -1, null);
+            return new PacketData(0, meta, ByteBuffer.wrap(payloadOf(frame, offsetTransport + 8, end)));
+        } else {
+            final PMetaData meta = new PMetaData(null, idxFrame, idxFrame, -1, -1, (short)-1, ipSource, macSource, ipDest, macDest, -1,
+                    lengthOriginal, 2048, -1, -1, ttl, -1, null);
+            return new PacketData(0, meta);
+        }
+    }
+
+    /**
+     * As in the import, the payload is followed by one zero byte.
+     */
+    private static byte[] payloadOf(final ByteBuffer frame, final int start, final int end) {
+        final byte[] payload = new byte[Math.max(0, end - start) + 1];
+        for(int idx = start; idx < end; idx++) {
+            payload[idx - start] = frame.get(idx);
+        }
+        return payload;
+    }
+
+    private static byte[] contentOf(final ContentType type, String value) {
+        //The same conversion both engines apply to Content.
+        try {
+            switch(type) {
+                case HEX:
+                    return new BigInteger(value, 16).toByteArray();
+                case STRING:
+                    return value.getBytes(StandardCharsets.UTF_8);
+                case RAW_BYTES:
+                    value = value.replaceAll("\\s+", "");
+                    final byte[] bytes = new byte[value.length() / 2];
+                    for(int idx = 0; idx < value.length(); idx += 2) {
+                        bytes[idx / 2] = (byte)Integer.parseInt(value.substring(idx, idx + 2), 16);
+                    }
+                    return bytes;
+                case INTEGER:
+                    return new BigInteger(value).toByteArray();
+            }
+        } catch(NumberFormatException ex) {
+            //Ignore; there is nothing to look for.
+        }
+        return new byte[0];
+    }
+
+    // == Entry point
+
+    /**
+     * @return The fingerprints in paths, each of which is a fingerprint or a directory of them.
+     */
+    static List<Fingerprint> load(final List<Path> paths) throws IOException, JAXBException {
+        final List<Fingerprint> fingerprints = new ArrayList<>();
+        for(Path path : paths) {
+            final List<Path> files;
+            if(Files.isDirectory(path)) {
+                try(Stream<Path> stream = Files.list(path)) {
+                    files = stream.filter(file -> file.toString().endsWith(".xml")).sorted().collect(Collectors.toList());
+                }
+            } else {
+                files = Collections.singletonList(path);
+            }
+            for(Path file : files) {
+                final Fingerprint[] loaded = FingerprintBuilder.loadFingerprint(file);
+                if(loaded != null) {
+                    fingerprints.add(loaded[1]);
+                }
+            }
+        }
+        return fingerprints;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        int cntPackets = PACKETS_DEFAULT;
+        long seed = 1;
+        final List<Path> pathsFingerprint = new ArrayList<>();
+        final List<Path> pathsPcap = new ArrayList<>();
+        for(int idx = 0; idx < args.length; idx++) {
+            if(args[idx].equals("-packets")) {
+                cntPackets = Integer.parseInt(args[++idx]);
+            } else if(args[idx].equals("-seed")) {
+                seed = Long.parseLong(args[++idx]);
+            } else {
+                final Path path = Paths.get(args[idx]);
+                if(path.toString().endsWith(".xml") || Files.isDirectory(path)) {
+                    pathsFingerprint.add(path);
+                } else {
+                    pathsPcap.add(path);
+                }
+            }
+        }
+        if(pathsFingerprint.isEmpty()) {
+            pathsFingerprint.add(Paths.get("data", "fingerprint"));
+            pathsFingerprint.add(Paths.get("harness", "corpus", "fingerprint"));
+        }
+
+        final List<Fingerprint> fingerprints = load(pathsFingerprint);
+
+        final Harvest harvest = new Harvest();
+        fingerprints.forEach(harvest::add);
+        final FingerprintDifferential differential = new FingerprintDifferential(fingerprints);
+
+        final Random rng = new Random(seed);
+        for(int idx = 0; idx < cntPackets; idx++) {
+            differential.compare(synthesize(rng, harvest, idx), "synthetic packet " + idx + " of seed " + seed);
+        }
+
+        for(Path path : pathsPcap) {
+            try(PcapChunkReader reader = PcapChunkReader.open(path)) {
+                if(reader == null || reader.getLinkType() != PcapChunkReader.LINKTYPE_ETHERNET) {
+                    System.out.println("Skipped " + path + ": not a classic Ethernet pcap file");
+                    continue;
+                }
+                final BlockingQueue<PcapChunkReader.Chunk> chunks = new LinkedBlockingQueue<>();
+                reader.scan(1 << 24, 0, chunks);
+                for(PcapChunkReader.Chunk chunk : chunks) {
+                    reader.read(chunk, (frame, idxFrame, seconds, nanos, lengthOriginal) -> {
+                        final PacketData data = decode(frame, idxFrame, lengthOriginal);
+                        if(data != null) {
+                            differential.compare(data, "frame " + idxFrame + " of " + path.getFileName());
+                        }
+                    });
+                }
+            } catch(IOException ex) {
+                System.out.println("Unable to read " + path + ": " + ex.getMessage());
+            }
+        }
+
+        if(!differential.report()) {
+            System.exit(1);
+        }
+    }
+}
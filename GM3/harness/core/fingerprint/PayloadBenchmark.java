@@ -0,0 +1,116 @@
+package core.fingerprint;
+
+import core.document.graph.LogicalNode;
+import core.fingerprint3.Fingerprint;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import util.Benchmark;
+import util.Cidr;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures, fingerprint by fingerprint, how long FProcessor and ReferenceFProcessor take per packet and how much each
+ * allocates per packet.  The packets for a fingerprint are synthesized from its own filters and payloads, as in
+ * FingerprintDifferential, so that about half of them pass a filter and reach the payload operations.
+ *
+ * Usage: PayloadBenchmark [-packets N] [-passes N] [-seed S] [path ...]
+ * The time reported is the fastest of the timed passes, after as many untimed passes.  Fingerprints that the reference
+ * engine cannot construct are listed but not timed.
+ */
+public class PayloadBenchmark {
+    @FunctionalInterface
+    private interface Engine {
+        void process(PacketData data);
+    }
+
+    private static class Measurement {
+        private final long nsPerPacket;
+        private final long bytesPerPacket;
+
+        public Measurement(final long nsPerPacket, final long bytesPerPacket) {
+            this.nsPerPacket = nsPerPacket;
+            this.bytesPerPacket = bytesPerPacket;
+        }
+    }
+
+    private static Measurement measure(final Engine engine, final PacketData[] packets, final int cntPasses) {
+        for(int idxPass = 0; idxPass < cntPasses; idxPass++) {
+            for(PacketData packet : packets) {
+                engine.process(packet);
+            }
+        }
+        long nsBest = Long.MAX_VALUE;
+        long cbBest = Long.MAX_VALUE;
+        for(int idxPass = 0; idxPass < cntPasses; idxPass++) {
+            final long cbStart = Benchmark.allocatedBytes();
+            final long nsStart = System.nanoTime();
+            for(PacketData packet : packets) {
+                engine.process(packet);
+            }
+            nsBest = Math.min(nsBest, System.nanoTime() - nsStart);
+            cbBest = Math.min(cbBest, Benchmark.allocatedBytes() - cbStart);
+        }
+        return new Measurement(nsBest / packets.length, cbBest / packets.length);
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int cntPackets = Benchmark.arg(args, "packets", 5000);
+        final int cntPasses = Benchmark.arg(args, "passes", 5);
+        final long seed = Benchmark.arg(args, "seed", 1);
+        final List<Path> paths = new ArrayList<>();
+        for(int idx = 0; idx < args.length; idx++) {
+            if(args[idx].startsWith("-")) {
+                idx++;
+            } else {
+                paths.add(Paths.get(args[idx]));
+            }
+        }
+        if(paths.isEmpty()) {
+            paths.add(Paths.get("data", "fingerprint"));
+        }
+
+        final ObservableList<Cidr> networks = FXCollections.observableArrayList();
+        long nsReferenceTotal = 0;
+        long nsProcessorTotal = 0;
+        int cntTimed = 0;
+        System.out.println(String.format("%-48s %12s %12s %8s %12s %12s", "fingerprint", "ref ns/pkt", "new ns/pkt", "speedup", "ref B/pkt", "new B/pkt"));
+        for(Fingerprint fp : FingerprintDifferential.load(paths)) {
+            final String name = fp.getHeader().getName();
+            final ReferenceFProcessor reference;
+            try {
+                reference = new ReferenceFProcessor(Collections.singletonList(fp));
+            } catch(RuntimeException ex) {
+                System.out.println(String.format("%-48s rejected by the reference engine: %s", name, ex));
+                continue;
+            }
+            final FProcessor processor = new FProcessor(Collections.singletonList(fp));
+
+            final FingerprintDifferential.Harvest harvest = new FingerprintDifferential.Harvest();
+            harvest.add(fp);
+            final Random rng = new Random(seed);
+            final PacketData[] packets = new PacketData[cntPackets];
+            for(int idx = 0; idx < cntPackets; idx++) {
+                packets[idx] = FingerprintDifferential.synthesize(rng, harvest, idx);
+                //Both engines annotate the same nodes; after the first pass, every annotation is already present.
+                packets[idx].setSourceNode(new LogicalNode(packets[idx].getSourceIp(), packets[idx].getSourceMac(), networks));
+                packets[idx].setDestNode(new LogicalNode(packets[idx].getDestIp(), packets[idx].getDestMac(), networks));
+            }
+
+            final Measurement measuredReference = measure(reference::process, packets, cntPasses);
+            final Measurement measuredProcessor = measure(processor::process, packets, cntPasses);
+            nsReferenceTotal += measuredReference.nsPerPacket;
+            nsProcessorTotal += measuredProcessor.nsPerPacket;
+            cntTimed++;
+            System.out.println(String.format("%-48s %12d %12d %7.1fx %12d %12d", name.length() > 48 ? name.substring(0, 48) : name,
+                    measuredReference.nsPerPacket, measuredProcessor.nsPerPacket, (double)measuredReference.nsPerPacket / Math.max(1, measuredProcessor.nsPerPacket),
+                    measuredReference.bytesPerPacket, measuredProcessor.bytesPerPacket));
+        }
+        System.out.println(String.format("%d fingerprints timed; sum of ns/packet: reference %d, FProcessor %d (%.1fx)", cntTimed, nsReferenceTotal, nsProcessorTotal, (double)nsReferenceTotal / Math.max(1, nsProcessorTotal)));
+    }
+}
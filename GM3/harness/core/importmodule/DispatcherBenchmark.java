@@ -0,0 +1,96 @@
+package core.importmodule;
+
+import core.document.Session;
+import core.document.fingerprint.FPDocument;
+import util.Benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Imports the same synthetic packets through each TaskDispatcher.DispatchMode and reports throughput, the depth of the
+ * work queue while importing, and the CPU used while importing and while idle afterwards.
+ *
+ * Usage: DispatcherBenchmark [-packets N] [-hosts N] [-threads N] [-rounds N] [-fingerprints DIR]
+ * The shipped fingerprints are loaded unless -fingerprints names another directory; "none" loads no fingerprints.
+ * The queue depth is in the dispatcher's own units: packets when polling, batches of up to 256 packets when batched.
+ */
+public class DispatcherBenchmark {
+    private static final long IDLE_SAMPLE_MILLIS = 2000;
+
+    public static void main(final String[] args) throws Exception {
+        final int cntPackets = Benchmark.arg(args, "packets", 200000);
+        final int cntHosts = Benchmark.arg(args, "hosts", 100);
+        final int cntThreads = Benchmark.arg(args, "threads", Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+        final int cntRounds = Benchmark.arg(args, "rounds", 3);
+        final String dirFingerprints = Benchmark.arg(args, "fingerprints", Paths.get("data", "fingerprint").toString());
+
+        Benchmark.startFx();
+        if(!dirFingerprints.equals("none")) {
+            final List<Path> paths;
+            try(Stream<Path> stream = Files.list(Paths.get(dirFingerprints))) {
+                paths = stream.filter(path -> path.toString().endsWith(".xml")).collect(Collectors.toList());
+            }
+            for(Path path : paths) {
+                FPDocument.getInstance().load(path);
+            }
+            FPDocument.getInstance().awaitCompiledFingerprints();
+        }
+
+        System.out.println(String.format("%d packets between %d hosts, %d worker threads, %d fingerprints", cntPackets, cntHosts, cntThreads, FPDocument.getInstance().getEnabledFingerprints().size()));
+        try {
+            System.out.println(String.format("%-8s %10s %12s %10s %10s %10s %10s", "mode", "ms", "packets/s", "peak q", "mean q", "cpu ms", "idle cpu%"));
+            for(int idxRound = 0; idxRound < cntRounds; idxRound++) {
+                for(TaskDispatcher.DispatchMode mode : TaskDispatcher.DispatchMode.values()) {
+                    run(mode, cntPackets, cntHosts, cntThreads, idxRound);
+                }
+            }
+        } catch(Exception ex) {
+            ex.printStackTrace();
+            System.exit(1);
+        }
+        //The JavaFX toolkit and the polling workers are not daemon threads.
+        System.exit(0);
+    }
+
+    private static void run(final TaskDispatcher.DispatchMode mode, final int cntPackets, final int cntHosts, final int cntThreads, final int seed) throws Exception {
+        final Session session = Benchmark.onFx(Session::new);
+        final SyntheticImport item = new SyntheticImport(cntPackets, cntHosts, 64, seed);
+        final TaskDispatcher dispatcher = new TaskDispatcher(cntThreads, session, mode);
+        Benchmark.usedHeapAfterGc();
+
+        final long cpuStart = Benchmark.processCpuNanos();
+        final long nsStart = System.nanoTime();
+        dispatcher.run();
+        dispatcher.accept(item);
+        long cntSamples = 0;
+        long sumDepth = 0;
+        int peakDepth = 0;
+        //Both modes count every packet; the batched mode also counts the completion of the import.
+        while(dispatcher.getLogicalItemsProcessed() < cntPackets) {
+            final int depth = dispatcher.getQueueDepth();
+            cntSamples++;
+            sumDepth += depth;
+            peakDepth = Math.max(peakDepth, depth);
+            Thread.sleep(1);
+        }
+        final long nsElapsed = System.nanoTime() - nsStart;
+        final long cpuImport = Benchmark.processCpuNanos() - cpuStart;
+
+        //With nothing left to import, any CPU the dispatcher uses is overhead.
+        item.awaitCompletion();
+        Thread.sleep(200);
+        final long cpuIdleStart = Benchmark.processCpuNanos();
+        Thread.sleep(IDLE_SAMPLE_MILLIS);
+        final long cpuIdle = Benchmark.processCpuNanos() - cpuIdleStart;
+        dispatcher.shutdown();
+
+        System.out.println(String.format("%-8s %10.0f %12.0f %10d %10.1f %10d %9.1f%%", mode, Benchmark.millis(nsElapsed), Benchmark.perSecond(cntPackets, nsElapsed),
+                peakDepth, cntSamples == 0 ? 0.0 : (double)sumDepth / cntSamples, TimeUnit.NANOSECONDS.toMillis(cpuImport), 100.0 * cpuIdle / TimeUnit.MILLISECONDS.toNanos(IDLE_SAMPLE_MILLIS)));
+    }
+}
@@ -0,0 +1,102 @@
+package core.importmodule;
+
+import core.fingerprint.PMetaData;
+import core.fingerprint.PacketData;
+import core.fingerprint3.Fingerprint;
+import org.jnetpcap.protocol.tcpip.Tcp;
+import util.Cidr;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * An import of generated TCP and UDP packets between a fixed set of hosts, for the benchmarks.  The packets are built
+ * up front so that generating them is not part of what is measured.
+ */
+public class SyntheticImport extends ImportItem {
+    private final PacketData[] packets;
+    private final long cntUnits;
+    private final CountDownLatch completed;
+
+    /**
+     * @param cntHosts The endpoints are 10.0.0.0 and up; each packet is between two of them chosen at random.
+     * @param cbPayload Length of every payload.
+     */
+    public SyntheticImport(final int cntPackets, final int cntHosts, final int cbPayload, final long seed) {
+        super(Paths.get("synthetic.pcap"), Collections.emptyList());
+
+        this.completed = new CountDownLatch(1);
+        this.packets = new PacketData[cntPackets];
+        final Random rng = new Random(seed);
+        long units = 0;
+        for(int idx = 0; idx < cntPackets; idx++) {
+            final long ipSource = 0x0A000000L + rng.nextInt(cntHosts);
+            final long ipDest = 0x0A000000L + rng.nextInt(cntHosts);
+            final boolean isTcp = rng.nextInt(4) != 0;
+            final byte[] payload = new byte[cbPayload];
+            rng.nextBytes(payload);
+
+            final PMetaData meta = new PMetaData(this, 1_500_000_000_000L + idx, idx, 1024 + rng.nextInt(60000), rng.nextBoolean() ? 502 : 44818, isTcp ? (short)6 : (short)17,
+                    new Cidr(ipSource), macOf(ipSource), new Cidr(ipDest), macOf(ipDest), isTcp ? rng.nextInt() & 0xFFFFFFFFL : -1, cbPayload + 54, 2048,
+                    -1, isTcp ? rng.nextInt() & 0xFFFFFFFFL : -1, 64, isTcp ? 8192 : -1, isTcp ? EnumSet.of(Tcp.Flag.ACK, Tcp.Flag.PSH) : null);
+            packets[idx] = new PacketData(cbPayload + 54, meta, ByteBuffer.wrap(payload));
+            units += cbPayload + 54;
+        }
+        this.cntUnits = units;
+    }
+
+    /**
+     * Recreates the import when a saved session that contains it is loaded; it has no packets left to import.
+     */
+    public SyntheticImport(final Path path, final List<Fingerprint> fingerprints) {
+        super(path, Collections.emptyList());
+
+        this.completed = new CountDownLatch(1);
+        this.packets = new PacketData[0];
+        this.cntUnits = 0;
+    }
+
+    private static byte[] macOf(final long ip) {
+        return new byte[] {0x00, 0x11, 0x22, (byte)(ip >> 16), (byte)(ip >> 8), (byte)ip};
+    }
+
+    public PacketData[] getPackets() {
+        return packets;
+    }
+
+    /**
+     * Waits until the dispatcher has processed the completion of this import.
+     */
+    public void awaitCompletion() throws InterruptedException {
+        completed.await();
+    }
+
+    @Override
+    public void recordTaskCompletion() {
+        super.recordTaskCompletion();
+        completed.countDown();
+    }
+
+    @Override
+    protected long getTotalUnits() {
+        return cntUnits;
+    }
+
+    @Override
+    protected Iterator<?> getLogicalIterator() {
+        return Arrays.asList(packets).iterator();
+    }
+
+    @Override
+    protected Iterator<?> getPhysicalIterator() {
+        return null;
+    }
+
+    @Override
+    public String getDisplaySize() {
+        return packets.length + " packets";
+    }
+}
@@ -0,0 +1,228 @@
+package iadgov.offlinepcap;
+
+import util.Benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Reads the same pcap file with the sequential loop of PcapFileParser, through a MappedFileWindow, and with the
+ * ByteChannel loop it replaced, and reports the throughput, the read system calls and page faults of each, and what
+ * each allocates on the heap and as direct buffers.
+ *
+ * Usage: PcapReaderBenchmark [-mb N] [-jumbo PERCENT] [-rounds N]
+ * A file of the given size is written to the temporary directory; the given share of its packets are larger than 1500
+ * bytes, as TSO and jumbo frames are.  Every packet is summed by the benchmark in place of PacketHandler, so that both
+ * readers touch every byte.  The file is read once before measuring, so both readers are measured from the page cache.
+ * The system calls and page faults are those of the whole process, taken from /proc/self, and are only reported on Linux.
+ */
+public class PcapReaderBenchmark {
+    private static class Result {
+        private long ns = Long.MAX_VALUE;
+        private long cntReads;
+        private long cntFaults;
+        private long cbAllocated;
+        private long cbDirect;
+        private long checksum;
+    }
+
+    @FunctionalInterface
+    private interface Reader {
+        /**
+         * @return The number of packets read.
+         */
+        long read(Path path, Result result) throws IOException;
+    }
+
+    private static long sum(final ByteBuffer contents, final int length) {
+        long sum = 0;
+        int idx = 0;
+        for(; idx + 8 <= length; idx += 8) {
+            sum += contents.getLong(idx);
+        }
+        for(; idx < length; idx++) {
+            sum += contents.get(idx);
+        }
+        return sum;
+    }
+
+    /**
+     * The sequential loop of PcapFileParser as it was: two reads per packet, into a reused 1500 byte buffer or a new
+     * direct buffer for larger packets.
+     */
+    private static long readChannel(final Path path, final Result result) throws IOException {
+        long cntPackets = 0;
+        try(ByteChannel reader = Files.newByteChannel(path)) {
+            ByteBuffer buffer = ByteBuffer.allocate(24);
+            reader.read(buffer);
+            final ByteBuffer reusableBuffer = ByteBuffer.allocateDirect(1500);
+            buffer = ByteBuffer.allocateDirect(16);
+            buffer.mark();
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            while(16 == reader.read(buffer)) {
+                final int lengthPacket = buffer.getInt(8);
+                final ByteBuffer contentsPacket;
+                if (lengthPacket <= 1500) {
+                    contentsPacket = reusableBuffer;
+                    contentsPacket.limit(lengthPacket);
+                    contentsPacket.position(0);
+                } else {
+                    contentsPacket = ByteBuffer.allocateDirect(lengthPacket);
+                    result.cbDirect += lengthPacket;
+                }
+                if(lengthPacket != reader.read(contentsPacket)) {
+                    break;
+                }
+                contentsPacket.rewind();
+                result.checksum += sum(contentsPacket, lengthPacket);
+                cntPackets++;
+                buffer.reset();
+            }
+        }
+        return cntPackets;
+    }
+
+    /**
+     * The sequential loop of PcapFileParser, with the handler replaced by the sum.
+     */
+    private static long readMapped(final Path path, final Result result) throws IOException {
+        long cntPackets = 0;
+        try(MappedFileWindow reader = new MappedFileWindow(path)) {
+            reader.order(ByteOrder.LITTLE_ENDIAN);
+            long offset = 24;
+            while(offset + 16 <= reader.size()) {
+                final int lengthPacket = reader.getInt(offset + 8);
+                if(lengthPacket < 0 || offset + 16 + lengthPacket > reader.size()) {
+                    break;
+                }
+                final ByteBuffer contentsPacket = reader.slice(offset + 16, lengthPacket);
+                result.checksum += sum(contentsPacket, lengthPacket);
+                cntPackets++;
+                offset += 16 + lengthPacket;
+            }
+        }
+        return cntPackets;
+    }
+
+    /**
+     * @return The read system calls made by the process, from /proc/self/io, or -1 if it cannot be read.
+     */
+    private static long readSyscalls() {
+        try {
+            for(String line : Files.readAllLines(Paths.get("/proc/self/io"), StandardCharsets.US_ASCII)) {
+                if(line.startsWith("syscr:")) {
+                    return Long.parseLong(line.substring(6).trim());
+                }
+            }
+        } catch(IOException | NumberFormatException ex) {
+            //Not Linux.
+        }
+        return -1;
+    }
+
+    /**
+     * @return The minor and major page faults of the process, from /proc/self/stat, or -1 if it cannot be read.
+     */
+    private static long pageFaults() {
+        try {
+            final String stat = new String(Files.readAllBytes(Paths.get("/proc/self/stat")), StandardCharsets.US_ASCII);
+            //The fields after the command name, which is in parentheses, start with the state, which is field 3.
+            final String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            return Long.parseLong(fields[10 - 3]) + Long.parseLong(fields[12 - 3]);
+        } catch(IOException | NumberFormatException | IndexOutOfBoundsException ex) {
+            return -1;
+        }
+    }
+
+    private static void measure(final Reader reader, final Path path, final Result result) throws IOException {
+        final Result round = new Result();
+        final long readsStart = readSyscalls();
+        final long faultsStart = pageFaults();
+        final long cbStart = Benchmark.allocatedBytes();
+        final long nsStart = System.nanoTime();
+        reader.read(path, round);
+        final long nsElapsed = System.nanoTime() - nsStart;
+        if(nsElapsed < result.ns) {
+            result.ns = nsElapsed;
+            result.cbAllocated = Benchmark.allocatedBytes() - cbStart;
+            result.cntReads = readSyscalls() - readsStart;
+            result.cntFaults = pageFaults() - faultsStart;
+            result.cbDirect = round.cbDirect;
+        }
+        result.checksum = round.checksum;
+    }
+
+    /**
+     * Writes a little-endian, microsecond pcap file of at least cbFile bytes.
+     * @return The number of packets written.
+     */
+    private static long write(final Path path, final long cbFile, final int pctJumbo) throws IOException {
+        final Random rng = new Random(1);
+        final byte[] noise = new byte[1 << 16];
+        rng.nextBytes(noise);
+        final ByteBuffer header = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0xA1B2C3D4).putShort((short)2).putShort((short)4).putInt(0).putInt(0).putInt(65535).putInt(1);
+        long cntPackets = 0;
+        try(OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 20)) {
+            out.write(header.array());
+            final ByteBuffer record = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            long cbWritten = 24;
+            while(cbWritten < cbFile) {
+                final int length = rng.nextInt(100) < pctJumbo ? 1501 + rng.nextInt(7500) : 60 + rng.nextInt(1441);
+                record.clear();
+                record.putInt((int)(1_500_000_000L + cntPackets / 1000)).putInt((int)(cntPackets % 1000) * 1000).putInt(length).putInt(length);
+                out.write(record.array());
+                out.write(noise, rng.nextInt(noise.length - length), length);
+                cbWritten += 16 + length;
+                cntPackets++;
+            }
+        }
+        return cntPackets;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int mb = Benchmark.arg(args, "mb", 1024);
+        final int pctJumbo = Benchmark.arg(args, "jumbo", 30);
+        final int cntRounds = Benchmark.arg(args, "rounds", 3);
+
+        final Path path = Files.createTempFile("benchmark", ".pcap");
+        try {
+            final long cntPackets = write(path, (long)mb << 20, pctJumbo);
+            final String[] names = {"channel", "mapped"};
+            final Reader[] readers = {PcapReaderBenchmark::readChannel, PcapReaderBenchmark::readMapped};
+            final Result[] results = {new Result(), new Result()};
+            for(int idx = 0; idx < readers.length; idx++) {
+                //Warms the page cache and the JIT.
+                readers[idx].read(path, new Result());
+            }
+            for(int idxRound = 0; idxRound < cntRounds; idxRound++) {
+                for(int idx = 0; idx < readers.length; idx++) {
+                    measure(readers[idx], path, results[idx]);
+                }
+            }
+            if(results[0].checksum != results[1].checksum) {
+                throw new IllegalStateException("The readers did not read the same bytes.");
+            }
+
+            System.out.println(String.format("%d MB, %d packets, %d%% over 1500 bytes; best of %d rounds", mb, cntPackets, pctJumbo, cntRounds));
+            System.out.println(String.format("%-8s %8s %10s %12s %12s %12s %10s %10s", "reader", "ms", "MB/s", "packets/s", "read calls", "page faults", "heap MB", "direct MB"));
+            for(int idx = 0; idx < readers.length; idx++) {
+                final Result result = results[idx];
+                System.out.println(String.format("%-8s %8.0f %10.0f %12.0f %12d %12d %10.1f %10.1f", names[idx], Benchmark.millis(result.ns),
+                        Benchmark.perSecond(mb, result.ns), Benchmark.perSecond(cntPackets, result.ns), result.cntReads, result.cntFaults,
+                        result.cbAllocated / (double)(1 << 20), result.cbDirect / (double)(1 << 20)));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package util;
+
+import com.sun.javafx.application.PlatformImpl;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Helpers shared by the benchmarks in the harness.  Every benchmark is a main method that prints its measurements; none
+ * of them are run as part of the build.
+ */
+public class Benchmark {
+    private Benchmark() {
+    }
+
+    /**
+     * Starts the JavaFX toolkit, for code that hands work to Platform.runLater.  Nothing is shown.
+     */
+    public static void startFx() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        try {
+            PlatformImpl.startup(started::countDown);
+        } catch(IllegalStateException ex) {
+            //Already running.
+            PlatformImpl.runLater(started::countDown);
+        }
+        started.await();
+    }
+
+    /**
+     * Waits until every task that has already been passed to Platform.runLater has run.
+     */
+    public static void drainFx() throws InterruptedException {
+        final CountDownLatch drained = new CountDownLatch(1);
+        PlatformImpl.runLater(drained::countDown);
+        drained.await();
+    }
+
+    /**
+     * Runs task on the JavaFX application thread and waits for its result; a Session, for example, has to be built there.
+     */
+    public static <T> T onFx(final Callable<T> task) throws Exception {
+        final FutureTask<T> future = new FutureTask<>(task);
+        PlatformImpl.runLater(future);
+        return future.get();
+    }
+
+    /**
+     * @return The number of bytes the calling thread has allocated so far, or -1 if the JVM cannot report it.
+     */
+    public static long allocatedBytes() {
+        final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * @return The CPU time used by the whole process, in nanoseconds, or -1 if the JVM cannot report it.
+     */
+    public static long processCpuNanos() {
+        final java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if(os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean)os).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    /**
+     * @return The heap in use once garbage collection has settled.
+     */
+    public static long usedHeapAfterGc() {
+        final Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for(int idx = 0; idx < 5; idx++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch(InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    /**
+     * @return The value following "-name" in args, or valueDefault if it is not present.
+     */
+    public static String arg(final String[] args, final String name, final String valueDefault) {
+        for(int idx = 0; idx < args.length - 1; idx++) {
+            if(args[idx].equals("-" + name)) {
+                return args[idx + 1];
+            }
+        }
+        return valueDefault;
+    }
+
+    public static int arg(final String[] args, final String name, final int valueDefault) {
+        return Integer.parseInt(arg(args, name, Integer.toString(valueDefault)));
+    }
+
+    public static double perSecond(final long count, final long nsElapsed) {
+        return nsElapsed == 0 ? 0.0 : count * 1_000_000_000.0 / nsElapsed;
+    }
+
+    public static double millis(final long nsElapsed) {
+        return nsElapsed / 1_000_000.0;
+    }
+}
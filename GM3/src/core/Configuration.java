@@ -94,6 +94,12 @@ public class Configuration {
         PATH_PCAP_FILTERS("path.data.kb", () -> getAppDataDirectory() + File.separator + "PcapFilters.txt"),
         PCAP_FILTER_STRING("pcap.filter.string", () -> " "),
         PCAP_FILTER_TITLE("pcap.filter.title", () -> "ALLOW ALL TRAFFIC"),
+        PCAP_DECODER_THREADS("pcap.decoder.threads", () -> "1"), //Threads decoding a pcap file in parallel; 1 reads it sequentially.  IP fragments split across chunks are not reassembled when this is more than 1.
+        PCAP_DECODER_CHUNK_SIZE("pcap.decoder.chunk_size", () -> "33554432"), //Bytes of a pcap file handed to a decoder thread at a time.
+        PCAP_LIVE_RING_SLOTS("pcap.live.ring_slots", () -> "16384"), //Packets buffered between the live capture callback and the decoder threads.
+        PCAP_LIVE_DROP_POLICY("pcap.live.drop_policy", () -> "DROP_NEWEST"), //DROP_NEWEST, DROP_OLDEST or SAMPLE; what live capture does when the ring is full.
+        PCAP_LIVE_SAMPLE_RATE("pcap.live.sample_rate", () -> "8"), //With SAMPLE, 1 in this many packets is kept while the ring is more than half full.
+        PCAP_LIVE_REPLAY_FILE("pcap.live.replay_file", () -> ""), //For testing; live capture replays this pcap file into the ring as fast as it can be read instead of capturing from the device.
 
         UI_VIEW_UPDATE_DELAY("ui.viewupdatedelay", () -> "1500"),
 
@@ -107,6 +113,10 @@ public class Configuration {
         // == Other Preferences ===============================================
         LOGICAL_CREATE_DYNAMIC_SUBNETS("logical.use_dynamic_subnets", () -> "true"),
         LOGICAL_DYNAMIC_SUBNET_BITS("logical.dynamic_subnet_size", () -> "24"),
+        LOGICAL_CONCURRENT_GRAPH("logical.graph.concurrent", () -> "true"),
+        IMPORT_DISPATCH_MODE("import.dispatch.mode", () -> "Batched"), //Batched or Polling; see TaskDispatcher.DispatchMode
+        SESSION_SAVE_BINARY_LOGICAL("session.save.binary_logical", () -> "false"), //Write the logical graph as logical.bin instead of logical.xml; loading detects either.
+        SESSION_FRAME_CACHE_SIZE("session.frame_cache_size", () -> "1048576"), //Frames read back from each logical.bin session that are kept in memory; see FrameArchive.
 
         LAST_RUN_VERSION("last_version", () -> ""),
         SUPPRESS_UNCHANGED_VERSION_NOTES("suppress_version_notes", () -> "true"),
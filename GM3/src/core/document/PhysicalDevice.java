@@ -2,7 +2,7 @@ package core.document;
 
 import com.sun.javafx.collections.ObservableListWrapper;
 import com.sun.javafx.collections.ObservableSetWrapper;
-import core.document.serialization.xml.Escaping;
+import core.document.serialization.xml.XmlStreamWriter;
 import core.logging.Logger;
 import core.logging.Severity;
 import javafx.beans.property.*;
@@ -12,9 +12,7 @@ import util.Cidr;
 import util.Mac;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.zip.ZipOutputStream;
 
 /**
  * A PhysicalDevice represents either a Router or Switch.
@@ -59,8 +57,13 @@ public class PhysicalDevice {
             this.serial = serial;
         }
 
-        public void toXml(ZipOutputStream zos) throws IOException {
-            zos.write(("<version ver='" + Escaping.XmlString(version) + "' soft='" + Escaping.XmlString(software) + "' model='" + Escaping.XmlString(model) + "' serial='" + Escaping.XmlString(serial) + "' />").getBytes(StandardCharsets.UTF_8));
+        public void toXml(XmlStreamWriter writer) throws IOException {
+            writer.startElement("version");
+            writer.attribute("ver", version);
+            writer.attribute("soft", software);
+            writer.attribute("model", model);
+            writer.attribute("serial", serial);
+            writer.endElement();
         }
     }
 
@@ -93,8 +96,11 @@ public class PhysicalDevice {
             return mac;
         }
 
-        public void toXml(ZipOutputStream zos) throws IOException {
-            zos.write(("<endpoint vlan='" + vlan.get() + "' mac='" + mac.get() + "' />").getBytes(StandardCharsets.UTF_8));
+        public void toXml(XmlStreamWriter writer) throws IOException {
+            writer.startElement("endpoint");
+            writer.attribute("vlan", vlan.get());
+            writer.attribute("mac", String.valueOf(mac.get()));
+            writer.endElement();
         }
     }
 
@@ -194,24 +200,31 @@ public class PhysicalDevice {
             return subinterfaces;
         }
 
-        public void toXml(ZipOutputStream zos) throws IOException {
-            zos.write(("<port name='" + Escaping.XmlString(name.get()) +
-                    "' mac='" + mac.get() +
-                    (description.get() != null ? "' description='" + Escaping.XmlString(description.get()) : "") +
-                    (cidr.get() != null ? "' cidr='" + cidr.get().toString() : "") +
-                    "' isTrunk='" + trunkProperty().getValue().toString() +
-                    "' isConnected='" + connectedProperty().getValue().toString() +
-                    "' isEnabled='" + enabled.getValue().toString() +
-                    "'>").getBytes(StandardCharsets.UTF_8));
+        public void toXml(XmlStreamWriter writer) throws IOException {
+            writer.startElement("port");
+            writer.attribute("name", name.get());
+            writer.attribute("mac", String.valueOf(mac.get()));
+            if(description.get() != null) {
+                writer.attribute("description", description.get());
+            }
+            if(cidr.get() != null) {
+                writer.attribute("cidr", cidr.get().toString());
+            }
+            writer.attribute("isTrunk", trunkProperty().getValue().toString());
+            writer.attribute("isConnected", connectedProperty().getValue().toString());
+            writer.attribute("isEnabled", enabled.getValue().toString());
+            writer.closeStartTag();
             for(int vlan : vlans) {
-                zos.write(("<vlan id='" + vlan + "'/>").getBytes(StandardCharsets.UTF_8));
+                writer.startElement("vlan");
+                writer.attribute("id", vlan);
+                writer.endElement();
             }
             for(Endpoint endpoint : getEndpoints()) {
-                endpoint.toXml(zos);
+                endpoint.toXml(writer);
             }
             //TODO: Subinterfaces
 
-            zos.write("</port>".getBytes(StandardCharsets.UTF_8));
+            writer.endElement();
         }
     }
 
@@ -353,19 +366,22 @@ public class PhysicalDevice {
         }
     }
 
-    public void toXml(ZipOutputStream zos) throws IOException {
-        zos.write(("<device name='" + Escaping.XmlString(nameProperty().get()) + "' version='" + Escaping.XmlString(versionNameProperty().get()) + "'>").getBytes(StandardCharsets.UTF_8));
+    public void toXml(XmlStreamWriter writer) throws IOException {
+        writer.startElement("device");
+        writer.attribute("name", nameProperty().get());
+        writer.attribute("version", versionNameProperty().get());
+        writer.closeStartTag();
         if(version.get() != null) {
-            version.get().toXml(zos);
+            version.get().toXml(writer);
         }
         for(Port port : ports) {
-            port.toXml(zos);
+            port.toXml(writer);
         }
 
         //TODO: VLans; nothing actually uses them at present
         //private final HashMap<Integer, VLan> vlans;
 
-        zos.write("</device>".getBytes(StandardCharsets.UTF_8));
+        writer.endElement();
     }
 
 }
@@ -2,18 +2,16 @@ package core.document;
 
 import com.sun.javafx.collections.ObservableListWrapper;
 import core.document.graph.*;
-import javafx.application.Platform;
+import core.document.serialization.xml.XmlStreamWriter;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import util.Mac;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
-import java.util.zip.ZipOutputStream;
 
 /**
  * This class builds the Physical network graph by building associations between a list of PhysicalDevices.
@@ -74,28 +72,80 @@ public class PhysicalTopology {
         public boolean containsAny(final Collection<Mac> other) {
             return this.stream().filter(other::contains).findAny().isPresent();
         }
+    }
 
-        public static List<Cloud> mergeClouds(List<Cloud> cloudsExisting, Cloud cloudNew) {
-            List<Cloud> cloudsResult = new LinkedList<>();
-            cloudsResult.add(cloudNew);
-            for(Cloud cloud : cloudsExisting) {
-                if(cloudNew.containsAny(cloud)) {
-                    cloudNew.addAll(cloud);
-                } else {
-                    cloudsResult.add(cloud);
+    /**
+     * Union-find over MACs; every set is a cloud.  Merging two clouds that share a MAC is a union, so building the
+     * clouds is close to linear in the number of MACs, rather than rescanning every existing cloud for each new one.
+     */
+    protected static class CloudSets {
+        //Roots map to themselves.  Insertion order is kept so that the clouds are listed in the order they were started.
+        private final LinkedHashMap<Mac, Mac> parent = new LinkedHashMap<>();
+        private final HashMap<Mac, Integer> rank = new HashMap<>();
+
+        public boolean contains(final Mac mac) {
+            return parent.containsKey(mac);
+        }
+
+        public Mac find(final Mac mac) {
+            Mac current = parent.get(mac);
+            if(current == null && !parent.containsKey(mac)) {
+                parent.put(mac, mac);
+                return mac;
+            }
+            current = mac;
+            while(!Objects.equals(parent.get(current), current)) {
+                //Path halving
+                final Mac grandparent = parent.get(parent.get(current));
+                parent.put(current, grandparent);
+                current = grandparent;
+            }
+            return current;
+        }
+
+        public void union(final Mac mac1, final Mac mac2) {
+            final Mac root1 = find(mac1);
+            final Mac root2 = find(mac2);
+            if(Objects.equals(root1, root2)) {
+                return;
+            }
+            final int rank1 = rank.getOrDefault(root1, 0);
+            final int rank2 = rank.getOrDefault(root2, 0);
+            if(rank1 < rank2) {
+                parent.put(root1, root2);
+            } else {
+                parent.put(root2, root1);
+                if(rank1 == rank2) {
+                    rank.put(root1, rank1 + 1);
                 }
             }
+        }
 
-            return cloudsResult;
+        public List<Cloud> getClouds() {
+            final LinkedHashMap<Mac, Cloud> clouds = new LinkedHashMap<>();
+            for(Mac mac : new ArrayList<>(parent.keySet())) {
+                final Cloud cloud = clouds.get(find(mac));
+                if(cloud == null) {
+                    clouds.put(find(mac), new Cloud(mac));
+                } else {
+                    cloud.add(mac);
+                }
+            }
+            return new ArrayList<>(clouds.values());
         }
     }
 
     protected final ObservableListWrapper<PhysicalDevice> devices;
     protected final NetworkGraph<PhysicalNode, PhysicalEdge> graphPhysical;
     protected final AtomicBoolean pendingUpdate;
+    //The number of each cloud in the last build, by the MACs in it, and the highest number used so far.
+    private HashMap<Mac, Integer> indexCloudByMac;
+    private int idxCloudLast;
 
     public PhysicalTopology(NetworkGraph<PhysicalNode, PhysicalEdge> graphPhysical) {
         pendingUpdate = new AtomicBoolean(false);
+        indexCloudByMac = new HashMap<>();
+        idxCloudLast = 0;
         this.graphPhysical = graphPhysical;
 
         devices = new ObservableListWrapper<>(new CopyOnWriteArrayList<>());
@@ -122,104 +172,95 @@ public class PhysicalTopology {
         RebuildTopology();
     }
 
-    private void RebuildTopology() {
+    private synchronized void RebuildTopology() {
         //Take a snapshot of the device list so that, if it is modified while we're processing this, we don't end up
         //using different lists at different points in this method.
         //This shouldn't happen, but a redesign to the threading could easily introduce this sort of error.
         final ArrayList<PhysicalDevice> lstDevices = new ArrayList<>(devices);
 
         // == IDENTIFY WHICH MACS BELONG TO SWITCHES AND WHICH BELONG TO WORKSTATIONS ==
-        //We're going to manage MACs as strings instead of Byte[] because .equals() is reference equality on arrays and it is more cumbersome to do this without relying on .equals()
-        // Build a list of MAC Addresses which belong to the devices (which we will assume are all switches).
-        final List<Mac> macSwitchPorts = lstDevices.stream()
-                .flatMap(device -> device.getPorts().stream())
-                .map(port -> port.macProperty().get())
-                .filter(mac -> mac != null && mac.hashCode() != 0)
-                .distinct()
-                .collect(Collectors.toList());
-        // Build a list of all other MAC Addresses (which we will assume are all workstations).
-        final List<Mac> macWorkstations = lstDevices.stream()
-                .flatMap(device -> device.getPorts().stream())
-                .flatMap(port -> port.getEndpoints().stream())
-                .map(endpoint -> endpoint.macProperty().get())
-                .filter(mac -> !macSwitchPorts.contains(mac))
-                .distinct()
-                .collect(Collectors.toList());
+        //Both are hash sets, since every later step tests membership in them.
+        // Build a set of MAC Addresses which belong to the devices (which we will assume are all switches).
+        final Set<Mac> macSwitchPorts = new LinkedHashSet<>();
+        for(PhysicalDevice device : lstDevices) {
+            for(PhysicalDevice.Port port : device.getPorts()) {
+                final Mac mac = port.macProperty().get();
+                if(mac != null && mac.hashCode() != 0) {
+                    macSwitchPorts.add(mac);
+                }
+            }
+        }
+        // Build a set of all other MAC Addresses (which we will assume are all workstations).
+        final Set<Mac> macWorkstations = new LinkedHashSet<>();
+        for(PhysicalDevice device : lstDevices) {
+            for(PhysicalDevice.Port port : device.getPorts()) {
+                for(PhysicalDevice.Endpoint endpoint : port.getEndpoints()) {
+                    final Mac mac = endpoint.macProperty().get();
+                    if(!macSwitchPorts.contains(mac)) {
+                        macWorkstations.add(mac);
+                    }
+                }
+            }
+        }
 
         // == PRE-PROCESS PORT MAC LISTS ==
         // For every Port, if it is a trunk port, remove all workstations, otherwise remove all switch ports
         // Every remaining set of endpoints is added to a cloud.
-        final HashMap<PhysicalDevice, Set<Mac>> workstationsByDevice = new HashMap<>();
-        final HashMap<Mac, PhysicalDevice.Port> lookupPorts = new HashMap<>();
-        List<Cloud> clouds = new LinkedList<>();
+        final HashMap<Mac, PhysicalDevice.Port> lookupPorts = new LinkedHashMap<>();
+        final CloudSets clouds = new CloudSets();
         for(PhysicalDevice device : lstDevices) {
-            Set<Mac> macs = new HashSet<>();
-            workstationsByDevice.put(device, macs);
-
             for(PhysicalDevice.Port port : device.getPorts()) {
                 //Skip ports which aren't connected to anything.
                 if(port.getEndpoints().isEmpty()) {
-                    //If the port connects to nothing we skip it for now.
-                } else {
-                    //We're connected to something...
-                    //Cache the port lookup
-                    Mac macPort = port.macProperty().get();
-                    lookupPorts.put(macPort, port);
-
-                    //Get all the non-null MACs connected to this port.
-                    List<Mac> connectedMacs = port.getEndpoints().stream()
-                            .map(endpoint -> endpoint.macProperty().get())
-                            .filter(mac -> !mac.equals(Mac.NULL_MAC))
-                            .distinct() //MAC on multiple VLans will appear multiple times
-                            .collect(Collectors.toList());
-
-                    if(port.trunkProperty().get()) {
-                        connectedMacs.removeAll(macWorkstations);
-                    } else {
-                        connectedMacs.removeAll(macSwitchPorts);
+                    continue;
+                }
+                //We're connected to something...
+                //Cache the port lookup
+                final Mac macPort = port.macProperty().get();
+                lookupPorts.put(macPort, port);
+
+                //Get all the non-null MACs connected to this port; a MAC on multiple VLans will appear multiple times.
+                final Set<Mac> connectedMacs = new LinkedHashSet<>();
+                for(PhysicalDevice.Endpoint endpoint : port.getEndpoints()) {
+                    final Mac mac = endpoint.macProperty().get();
+                    if(!Mac.NULL_MAC.equals(mac)) {
+                        connectedMacs.add(mac);
                     }
+                }
+                if(port.trunkProperty().get()) {
+                    connectedMacs.removeIf(macWorkstations::contains);
+                } else {
+                    connectedMacs.removeIf(macSwitchPorts::contains);
+                }
 
-                    //If we removed everything then there is unknown infrastructure; so add everything as a cloud.
-                    // If a trunk port connects only to workstations then, logically, the workstations are connected to a switch which connects to this port.
-                    // If a non-trunk port connects only to switches then, logically, there is some other infrastructure which links them together.
-                    if(connectedMacs.size() == 0) {
-                        //This is the optimistic approach--we assume that whatever connects to this will report that fact and we will merge the clouds.
-                        //If this doesn't happen, we have to either revisit this and start estimating unknowns or we can just flag the port as being wonky.
-                        clouds = Cloud.mergeClouds(clouds, new Cloud(macPort));
-                    } else {
-                        //All remaining MACs that connect to this port are part of a single cloud.
-                        //build a cloud of those ports and integrate into the set of clouds.
-                        clouds = Cloud.mergeClouds(clouds, new Cloud(macPort, connectedMacs));
-                    }
+                //If we removed everything then there is unknown infrastructure, and the port is a cloud on its own.
+                // If a trunk port connects only to workstations then, logically, the workstations are connected to a switch which connects to this port.
+                // If a non-trunk port connects only to switches then, logically, there is some other infrastructure which links them together.
+                //This is the optimistic approach--we assume that whatever connects to this will report that fact and we will merge the clouds.
+                //Otherwise, all remaining MACs that connect to this port are part of a single cloud.
+                clouds.find(macPort);
+                for(Mac mac : connectedMacs) {
+                    clouds.union(macPort, mac);
                 }
             }
         }
 
         // == PRE-PROCESS CLOUDS ==
-        //Find all workstations not associated with a port and add them to the relevant port clouds.
-        final List<Cloud> cloudsSearchable = clouds;
-        List<Mac> unmatchedWorkstations = macWorkstations.stream()
-                .filter(mac -> !cloudsSearchable.stream()
-                        .anyMatch(cloud -> cloud.contains(mac)))
+        //Find all workstations not associated with a port and add them to the clouds of every port that reports them.
+        final List<Mac> unmatchedWorkstations = macWorkstations.stream()
+                .filter(mac -> !clouds.contains(mac))
                 .collect(Collectors.toList());
-        for(Mac mac : unmatchedWorkstations) {
-            if (macWorkstations.contains(mac)) {
-                // Find the cloud containing a trunk port connected to this mac and add it.
-                for(PhysicalDevice.Port port : lookupPorts.values()) {
-                    //TODO: Filter to only trunk ports?
-                    if(port.getEndpoints().stream().anyMatch(endpoint -> endpoint.macProperty().get().equals(mac))) {
-                        // Find the cloud containing the port.
-                        for(Cloud cloud : clouds) {
-                            if(cloud.contains(port.macProperty().get())) {
-                                //Removal is probably unnecessary, but it shouldn't hurt, either.
-                                //Re-merge the cloud containing the old cloud fields and the previously unassociated workstation
-                                clouds.remove(cloud);
-                                clouds = Cloud.mergeClouds(clouds, new Cloud(mac, cloud));
-                                //Each port will belong to only one cloud, so we can stop searching clouds.  We still have to continue searching ports, however.
-                                break;
-                            }
-                        }
-                    }
+        if(!unmatchedWorkstations.isEmpty()) {
+            final HashMap<Mac, List<Mac>> portsByEndpoint = new HashMap<>();
+            for(PhysicalDevice.Port port : lookupPorts.values()) {
+                //TODO: Filter to only trunk ports?
+                for(PhysicalDevice.Endpoint endpoint : port.getEndpoints()) {
+                    portsByEndpoint.computeIfAbsent(endpoint.macProperty().get(), key -> new ArrayList<>()).add(port.macProperty().get());
+                }
+            }
+            for(Mac mac : unmatchedWorkstations) {
+                for(Mac macPort : portsByEndpoint.getOrDefault(mac, Collections.emptyList())) {
+                    clouds.union(macPort, mac);
                 }
             }
         }
@@ -229,9 +270,10 @@ public class PhysicalTopology {
         // Any cloud containing more than two MACs is a cloud
         // Any cloud containing a single MAC is in an undefinable state
         //TODO: Ensure cloud names don't conflict with switch names.  If there are any bugs that result from this missing "feature" you should really rethink your naming convention for switches.
+        final List<Cloud> cloudsAll = clouds.getClouds();
         List<DirectConnection> connections = new LinkedList<>();
         List<Cloud> cloudsFiltered = new LinkedList<>();
-        for(Cloud cloud : clouds) {
+        for(Cloud cloud : cloudsAll) {
             if(cloud.size() == 2) {
                 Mac[] macs = cloud.toArray(new Mac[2]);
                 connections.add(new DirectConnection(macs[0], macs[1]));
@@ -242,7 +284,7 @@ public class PhysicalTopology {
 
         // == Final Graph Construction ==
         //Lookups for when we need to connect edges.
-        HashMap<Mac, PhysicalNode> nodeFromMac = new HashMap<>();    //This works on ports and NICs
+        HashMap<Mac, PhysicalNode> nodeFromMac = new LinkedHashMap<>();    //This works on ports and NICs
         //Devices are not nodes, they are groups; we will implicitly create them as we add the nodes.
 
         //Add the workstations
@@ -270,7 +312,7 @@ public class PhysicalTopology {
         // Copy VLANs to all connected nodes.
         // For each cloud copy the VLAN settings from any Ports to all other (non-port) nodes in the cloud.
         // Port nodes to which it is connected have a separate field for tracking VLAN traffic they can receive.  If the two lists differ then we flag an inconsistency.
-        for(Cloud cloud : clouds) {
+        for(Cloud cloud : cloudsAll) {
             Set<Integer> vlans = new HashSet<>();
             for(Mac mac : cloud) {
                 PhysicalNode node = nodeFromMac.get(mac);
@@ -299,7 +341,8 @@ public class PhysicalTopology {
             edges.add(new PhysicalEdge(nodeFromMac.get(direct.start()), nodeFromMac.get(direct.end())));
         }
         // then build and link the clouds
-        int idxCloud = 0;
+        final HashMap<Mac, Integer> indexCloudByMacNew = new HashMap<>();
+        final Set<Integer> indicesUsed = new HashSet<>();
         for(Cloud cloud : cloudsFiltered) {
             if(cloud.size() == 1) {
                 Mac mac = cloud.iterator().next();
@@ -308,14 +351,24 @@ public class PhysicalTopology {
                     ((PhysicalPort)node).unknownConnectionProperty().set(true);
                 }
             } else {
-                int idxCurrent = ++idxCloud;
+                //A cloud keeps the lowest number any of its MACs had in the previous build, so that adding a device
+                // does not renumber (and therefore replace) every cloud in the graph.
+                final int idxCurrent = cloud.stream()
+                        .map(indexCloudByMac::get)
+                        .filter(idx -> idx != null && !indicesUsed.contains(idx))
+                        .min(Integer::compare)
+                        .orElseGet(() -> ++idxCloudLast);
+                indicesUsed.add(idxCurrent);
+                for(Mac mac : cloud) {
+                    indexCloudByMacNew.put(mac, idxCurrent);
+                }
 
                 final PhysicalCloud cloudWorkstations;
                 final PhysicalCloud cloudSwitches;
                 if (cloud.containsAny(macWorkstations)) {
                     cloudWorkstations = new PhysicalCloud(idxCurrent, "Workstations");
                     edges.addAll(cloud.stream()
-                                    .filter(mac -> macWorkstations.contains(mac))
+                                    .filter(macWorkstations::contains)
                                     .map(mac -> new PhysicalEdge(cloudWorkstations, nodeFromMac.get(mac)))
                                     .collect(Collectors.toList())
                     );
@@ -341,32 +394,80 @@ public class PhysicalTopology {
                 }
             }
         }
+        indexCloudByMac = indexCloudByMacNew;
+
+        applyTopology(nodes, edges);
+    }
+
+    /**
+     * Changes the graph to contain exactly the given nodes and edges, touching only what differs from its current
+     * contents.  An existing node is kept if it is equal to the new one and reports the same properties; otherwise the
+     * new node replaces it.  An existing edge is kept only if it is equal to the new one and still joins the nodes that
+     * were kept, so that no edge is left referring to a node which has been replaced.
+     */
+    private void applyTopology(final List<PhysicalNode> nodes, final List<PhysicalEdge> edges) {
+        final HashMap<PhysicalNode, PhysicalNode> nodesExisting = new HashMap<>();
+        for(PhysicalNode node : graphPhysical.getRawNodeList()) {
+            nodesExisting.put(node, node);
+        }
+        final HashMap<PhysicalEdge, PhysicalEdge> edgesExisting = new HashMap<>();
+        for(PhysicalEdge edge : graphPhysical.getRawEdgeList()) {
+            edgesExisting.put(edge, edge);
+        }
 
-        //No more pending updates; update the UI
-        if(Platform.isFxApplicationThread()) {
-            graphPhysical.clearTopology();
-            graphPhysical.addNodes(nodes);
-            graphPhysical.addEdges(edges);
-            graphPhysical.refresh();
-        } else {
-            Platform.runLater(() -> {
-                // It is far easier to destroy and rebuild the graph than it is to change it since the structure will vary
-                // wildly when previously-unknown infrastructure becomes known.
-                graphPhysical.clearTopology();
-
-                //Add the nodes first since bulk nodes don't check for duplicates, but edges will.
-                graphPhysical.addNodes(nodes);
-                graphPhysical.addEdges(edges);
-                graphPhysical.refresh();
-            });
+        //The node in the graph to use for each of the new nodes.
+        final IdentityHashMap<PhysicalNode, PhysicalNode> resolved = new IdentityHashMap<>();
+        final List<PhysicalNode> nodesAdded = new ArrayList<>();
+        final List<PhysicalNode> nodesRemoved = new ArrayList<>();
+        for(PhysicalNode node : nodes) {
+            final PhysicalNode existing = nodesExisting.remove(node);
+            if(existing != null && existing.getClass() == node.getClass() && existing.getGroups().equals(node.getGroups())) {
+                resolved.put(node, existing);
+            } else {
+                if(existing != null) {
+                    nodesRemoved.add(existing);
+                }
+                nodesAdded.add(node);
+                resolved.put(node, node);
+            }
+        }
+        nodesRemoved.addAll(nodesExisting.values());
+
+        final List<PhysicalEdge> edgesAdded = new ArrayList<>();
+        final List<PhysicalEdge> edgesRemoved = new ArrayList<>();
+        for(PhysicalEdge edge : edges) {
+            final PhysicalNode source = resolved.getOrDefault(edge.getSource(), edge.getSource());
+            final PhysicalNode destination = resolved.getOrDefault(edge.getDestination(), edge.getDestination());
+            final PhysicalEdge existing = edgesExisting.remove(edge);
+            if(existing != null &&
+                    ((existing.getSource() == source && existing.getDestination() == destination) || (existing.getSource() == destination && existing.getDestination() == source))) {
+                continue;
+            }
+            if(existing != null) {
+                edgesRemoved.add(existing);
+            }
+            if(source == edge.getSource() && destination == edge.getDestination()) {
+                edgesAdded.add(edge);
+            } else {
+                edgesAdded.add(new PhysicalEdge(source, destination));
+            }
         }
+        edgesRemoved.addAll(edgesExisting.values());
+
+        //Edges are removed before the nodes they join, and nodes are added before the edges that join them.
+        graphPhysical.removeEdges(edgesRemoved);
+        graphPhysical.removeNodes(nodesRemoved);
+        graphPhysical.addNodes(nodesAdded);
+        graphPhysical.addEdges(edgesAdded);
+        graphPhysical.refresh();
     }
 
-    public void toXml(ZipOutputStream zos) throws IOException {
-        zos.write("<physical_topology>".getBytes(StandardCharsets.UTF_8));
+    public void toXml(XmlStreamWriter writer) throws IOException {
+        writer.startElement("physical_topology");
+        writer.closeStartTag();
         for(PhysicalDevice device : devices) {
-            device.toXml(zos);
+            device.toXml(writer);
         }
-        zos.write("</physical_topology>".getBytes(StandardCharsets.UTF_8));
+        writer.endElement();
     }
 }
@@ -6,8 +6,11 @@
 package core.document;
 
 import com.sun.javafx.collections.ObservableListWrapper;
+import core.Configuration;
 import core.document.graph.*;
-import core.document.serialization.xml.XmlElement;
+import core.document.serialization.FrameArchive;
+import core.document.serialization.LogicalGraphBinary;
+import core.document.serialization.xml.XmlStreamWriter;
 import core.importmodule.ImportItem;
 import core.importmodule.LivePCAPImport;
 import core.importmodule.TaskDispatcher;
@@ -21,7 +24,6 @@ import util.Launcher;
 import util.Plugin;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -50,6 +52,8 @@ public class Session {
     // == Serialization Metadata ==============================================
     private final SimpleBooleanProperty isDirty = new SimpleBooleanProperty(false);
     private Path pathSave = null;
+    //The frames.bin that logical frames loaded from a session are read from, if any.
+    private FrameArchive archiveFrames = null;
 
     public boolean isDirty() {
         return isDirty.get();
@@ -64,6 +68,28 @@ public class Session {
         return isDirty;
     }
 
+    public synchronized FrameArchive getFrameArchive() {
+        return archiveFrames;
+    }
+    public synchronized void setFrameArchive(FrameArchive archive) {
+        closeFrameArchive();
+        this.archiveFrames = archive;
+    }
+
+    /**
+     * Releases the session file that stored frames are read from; the frames can no longer be read once it is closed.
+     */
+    public synchronized void closeFrameArchive() {
+        if(archiveFrames != null) {
+            try {
+                archiveFrames.close();
+            } catch(IOException ex) {
+                Logger.log(this, Severity.Warning, "Unable to close the frames of the previous session: " + ex.getMessage());
+            }
+            archiveFrames = null;
+        }
+    }
+
     public Path getSavePath() {
         return pathSave;
     }
@@ -189,6 +215,7 @@ public class Session {
         listImports.clear();
 
         graphLogical.clearTopology();
+        closeFrameArchive();
 
         //Clearing the device list will clear the physical graph.
         //graphPhysical.clear();
@@ -206,33 +233,40 @@ public class Session {
     public void toXml(ZipOutputStream zos) throws IOException {
         ZipEntry sessionEntry = new ZipEntry("session.xml");
         zos.putNextEntry(sessionEntry);
-        zos.write("<session>".getBytes(StandardCharsets.UTF_8));
+        XmlStreamWriter writer = new XmlStreamWriter(zos);
+        writer.startElement("session");
         //Imports
         ImportList imports = getImports();
-        zos.write("<imports>".getBytes(StandardCharsets.UTF_8));
+        writer.startElement("imports");
+        writer.closeStartTag();
         for(ImportItem item : imports) {
-            zos.write(item.toXml().toString().getBytes(StandardCharsets.UTF_8));
+            item.toXml(writer);
         }
-        zos.write("</imports>".getBytes(StandardCharsets.UTF_8));
-        zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+        writer.endElement();
+        writer.newline();
 
-        zos.write("<pending_imports>".getBytes(StandardCharsets.UTF_8));
+        writer.startElement("pending_imports");
+        writer.closeStartTag();
         for(ImportDialog.PreliminaryImportItem item : listPendingImports) {
-            XmlElement eleItem = new XmlElement("item");
-            eleItem.addAttribute("type").setValue(item.getType().toString());
-            eleItem.addAttribute("path").setValue(item.getPath());
-
-            zos.write(eleItem.toString().getBytes(StandardCharsets.UTF_8));
+            writer.startElement("item");
+            writer.attribute("type", item.getType().toString());
+            writer.attribute("path", item.getPath());
+            writer.endElement();
         }
-        zos.write("</pending_imports>".getBytes(StandardCharsets.UTF_8));
-        zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+        writer.endElement();
+        writer.newline();
 
-        topology.toXml(zos);
-        zos.write("</session>".getBytes(StandardCharsets.UTF_8));
+        topology.toXml(writer);
+        writer.endElement();
+        writer.flush();
         zos.closeEntry();
 
         // Logical
-        graphLogical.toXml(imports, zos);
+        if(Configuration.getPreferenceBoolean(Configuration.Fields.SESSION_SAVE_BINARY_LOGICAL)) {
+            LogicalGraphBinary.write(graphLogical, imports, zos);
+        } else {
+            graphLogical.toXml(imports, zos);
+        }
         // Physical
         graphPhysical.toXml(imports, zos);
         // Sniffles
@@ -1,11 +1,16 @@
 package core.document.fingerprint;
 
 import core.Preferences;
+import core.fingerprint.FProcessor;
 import core.fingerprint.FingerprintBuilder;
 import core.fingerprint.FingerprintState;
 import core.fingerprint3.Fingerprint;
 import core.fingerprint3.Header;
+import core.logging.Logger;
+import core.logging.Severity;
+import javafx.beans.value.ChangeListener;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.scene.control.Alert;
 
@@ -18,6 +23,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
@@ -27,12 +35,55 @@ public class FPDocument {
 
     private static FPDocument instance;
 
+    /**
+     * A value derived from the enabled fingerprints, numbered in the order the changes that produced it were made.
+     */
+    private static class Version<T> {
+        private final long version;
+        private final T value;
+
+        public Version(final long version, final T value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+
     private ObservableList<FingerprintState> listFingerprints;
     private List<FingerprintState> runningFingerprints;
+    /**
+     * The enabled fingerprints, compiled once and shared by every import thread.  A new processor is published whenever
+     * the enabled set changes; workers read this once per packet, so they switch over between packets without locking.
+     */
+    private final AtomicReference<Version<FProcessor>> compiled;
+    //The most recent enabled set that has yet to be compiled; changes made before the compiler gets to it replace it.
+    private final AtomicReference<Version<List<Fingerprint>>> pending;
+    private long versionLatest;
+    //The most recent version the compiler has finished with, whether or not it compiled; guarded by this.
+    private long versionHandled;
+    private final ExecutorService compiler;
+    private final ChangeListener<Boolean> handlerEnabledChanged;
 
     private FPDocument() {
         listFingerprints = FXCollections.observableArrayList();
         runningFingerprints = new ArrayList<>();
+        compiled = new AtomicReference<>(new Version<>(0, new FProcessor(new ArrayList<>())));
+        pending = new AtomicReference<>(null);
+        versionLatest = 0;
+        versionHandled = 0;
+        compiler = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "Fingerprint Compiler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        handlerEnabledChanged = (observable, oldValue, newValue) -> publish();
+
+        listFingerprints.addListener((ListChangeListener<FingerprintState>) change -> {
+            while(change.next()) {
+                change.getRemoved().forEach(state -> state.enabledProperty().removeListener(handlerEnabledChanged));
+                change.getAddedSubList().forEach(state -> state.enabledProperty().addListener(handlerEnabledChanged));
+            }
+            publish();
+        });
     }
 
     public static FPDocument getInstance() {
@@ -66,8 +117,8 @@ public class FPDocument {
                     FingerprintState state = new FingerprintState(fingerprint[0], fingerPrintPath);
                     FingerprintState runningState = new FingerprintState(fingerprint[1], fingerPrintPath);
                     state.enabledProperty().setValue(true);
-                    listFingerprints.add(state);
                     runningFingerprints.add(runningState);
+                    listFingerprints.add(state);
                     return state;
                 } else {
                     return null;
@@ -99,6 +150,7 @@ public class FPDocument {
                     runningFingerprints.remove(toReplace.get());
                 }
                 runningFingerprints.add(new FingerprintState(running, savePath));
+                publish();
                 if (loadPath != null && Preferences.FingerprintSaveAsLeavesOld.get() && !Files.isSameFile(loadPath, savePath)) {
                     this.load(loadPath);
                 }
@@ -110,6 +162,68 @@ public class FPDocument {
         return this.listFingerprints;
     }
 
+    /**
+     * @return The most recently published compilation of the enabled fingerprints.
+     */
+    public FProcessor getCompiledFingerprints() {
+        return compiled.get().value;
+    }
+
+    /**
+     * Waits for every change made to the enabled fingerprints before this call to be compiled (or to fail to compile).
+     * @return The compilation of the enabled fingerprints as of this call, or a newer one.
+     */
+    public FProcessor awaitCompiledFingerprints() {
+        synchronized(this) {
+            final long version = versionLatest;
+            while(versionHandled < version) {
+                try {
+                    wait();
+                } catch(InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        return getCompiledFingerprints();
+    }
+
+    /**
+     * Queues the enabled fingerprints to be compiled.  Compiling happens on a single background thread, so a burst of
+     * changes (such as loading every fingerprint at startup) results in one compilation of the final set.
+     */
+    private synchronized void publish() {
+        final Version<List<Fingerprint>> next = new Version<>(++versionLatest, getEnabledFingerprints());
+        if(pending.getAndSet(next) == null) {
+            compiler.execute(this::compile);
+        }
+    }
+
+    private void compile() {
+        final Version<List<Fingerprint>> next = pending.getAndSet(null);
+        if(next == null) {
+            return;
+        }
+        try {
+            final Version<FProcessor> result = new Version<>(next.version, new FProcessor(next.value));
+            //An older compilation never replaces a newer one.
+            Version<FProcessor> current;
+            do {
+                current = compiled.get();
+                if(current.version >= result.version) {
+                    break;
+                }
+            } while(!compiled.compareAndSet(current, result));
+        } catch(RuntimeException ex) {
+            Logger.log(this, Severity.Error, "Unable to compile the enabled fingerprints; the previously compiled set will remain in use: " + ex.getMessage());
+        } finally {
+            synchronized(this) {
+                versionHandled = Math.max(versionHandled, next.version);
+                notifyAll();
+            }
+        }
+    }
+
     public List<Fingerprint> getEnabledFingerprints() {
         List<FingerprintState> enabled = this.listFingerprints.stream()
                 .filter(state -> state.enabledProperty().get())
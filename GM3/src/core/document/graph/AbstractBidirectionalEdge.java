@@ -1,11 +1,10 @@
 package core.document.graph;
 
-import core.document.serialization.xml.XmlElement;
+import core.document.serialization.xml.XmlStreamWriter;
 import core.importmodule.ImportItem;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.zip.ZipOutputStream;
+import java.util.Map;
 
 public abstract class AbstractBidirectionalEdge<TNode> implements IEdge<TNode>, Comparable<AbstractBidirectionalEdge<TNode>> {
     private TNode source;
@@ -90,11 +89,17 @@ public abstract class AbstractBidirectionalEdge<TNode> implements IEdge<TNode>,
     }
 
     @Override
-    public XmlElement toXml(List<TNode> nodes, List<ImportItem> items, ZipOutputStream zos) throws IOException{
-        XmlElement xmlEdge = new XmlElement("edge");
-        xmlEdge.addAttribute("from").setValue(Integer.toString(nodes.indexOf(getSource())));
-        xmlEdge.addAttribute("to").setValue(Integer.toString(nodes.indexOf(getDestination())));
+    public void toXml(Map<TNode, Integer> indexNodes, Map<ImportItem, Integer> indexItems, XmlStreamWriter writer) throws IOException{
+        toXmlStart(indexNodes, writer);
+        writer.endElement();
+    }
 
-        return xmlEdge;
+    /**
+     * Starts the edge element and writes its attributes; the caller is responsible for ending the element.
+     */
+    protected void toXmlStart(Map<TNode, Integer> indexNodes, XmlStreamWriter writer) throws IOException {
+        writer.startElement("edge");
+        writer.attribute("from", indexNodes.getOrDefault(getSource(), -1));
+        writer.attribute("to", indexNodes.getOrDefault(getDestination(), -1));
     }
 }
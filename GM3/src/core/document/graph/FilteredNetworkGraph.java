@@ -4,19 +4,22 @@ import com.sun.javafx.collections.ObservableListWrapper;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 
-import java.util.LinkedList;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.*;
 
 public class FilteredNetworkGraph extends LogicalGraph {
     protected final NetworkGraph<LogicalNode, LogicalEdge> root;
     private final ObservableListWrapper<LogicalNode> nodesHidden;
+    //Hash-based mirrors of nodesHidden and of the edges committed to the root, for constant-time membership tests.
+    private final Set<LogicalNode> nodesHiddenSet;
+    private final Set<LogicalEdge> edgesCommittedRoot;
 
     public FilteredNetworkGraph(LogicalGraph root) {
         super(root.getCidrList());
         this.root = root;
 
         nodesHidden  = new ObservableListWrapper<>(new LinkedList<>());
+        nodesHiddenSet = new HashSet<>();
+        edgesCommittedRoot = new HashSet<>();
 
         root.nodesObservable.addListener(this::Handle_NodeListChanged);
         root.edgesObservable.addListener(this::Handle_EdgeListChanged);
@@ -24,7 +27,12 @@ public class FilteredNetworkGraph extends LogicalGraph {
     }
 
     public void initialize() {
-        addNodes(root.nodesObservable);
+        final List<LogicalNode> nodesVisible;
+        synchronized(root.lock) {
+            nodesVisible = new ArrayList<>(root.nodesObservable);
+        }
+        nodesVisible.removeIf(nodesHiddenSet::contains);
+        addNodes(nodesVisible);
         updateEdges();
 
         refresh();
@@ -36,51 +44,115 @@ public class FilteredNetworkGraph extends LogicalGraph {
     }
 
     private void Handle_NodeListChanged(ListChangeListener.Change<? extends LogicalNode> change) {
-        LinkedList<LogicalNode> nodesRemoved = new LinkedList<>();
-        LinkedList<LogicalNode> nodesAdded = new LinkedList<>();
-
         while(change.next()) {
-            nodesRemoved.addAll(change.getRemoved());
-            nodesAdded.addAll(change.getAddedSubList());
+            for(LogicalNode node : change.getRemoved()) {
+                hide(node);
+            }
+            for(LogicalNode node : change.getAddedSubList()) {
+                if(!nodesHiddenSet.contains(node)) {
+                    show(node);
+                }
+            }
         }
 
-        removeNodes(nodesRemoved);
-        addNodes(nodesAdded);
-        updateEdges();
-
         refresh();
     }
     private void Handle_HiddenListChanged(ListChangeListener.Change<? extends LogicalNode> change) {
-        LinkedList<LogicalNode> nodesRemoved = new LinkedList<>();
-        LinkedList<LogicalNode> nodesAdded = new LinkedList<>();
-
         while(change.next()) {
-            nodesAdded.addAll(change.getRemoved());
-            nodesRemoved.addAll(change.getAddedSubList());
+            for(LogicalNode node : change.getRemoved()) {
+                nodesHiddenSet.remove(node);
+            }
+            nodesHiddenSet.addAll(change.getAddedSubList());
+
+            for(LogicalNode node : change.getRemoved()) {
+                //Only nodes the root has committed are shown; pending nodes are shown when the root commits them.
+                if(!nodesHiddenSet.contains(node) && root.isCommitted(node)) {
+                    show(node);
+                }
+            }
+            for(LogicalNode node : change.getAddedSubList()) {
+                hide(node);
+            }
         }
 
-        removeNodes(nodesRemoved);
-        addNodes(nodesAdded);
-        updateEdges();
-
         refresh();
     }
     private void Handle_EdgeListChanged(ListChangeListener.Change<? extends LogicalEdge> change) {
-        updateEdges();
+        final List<LogicalEdge> edgesAdded = new ArrayList<>();
+        final List<LogicalEdge> edgesRemoved = new ArrayList<>();
+        while(change.next()) {
+            for(LogicalEdge edge : change.getRemoved()) {
+                edgesCommittedRoot.remove(edge);
+                edgesRemoved.add(edge);
+            }
+            for(LogicalEdge edge : change.getAddedSubList()) {
+                edgesCommittedRoot.add(edge);
+                if(isVisible(edge)) {
+                    edgesAdded.add(edge);
+                }
+            }
+        }
+        //Removals and additions of the same edge within one change are resolved in favor of the current root contents.
+        edgesRemoved.removeIf(edgesCommittedRoot::contains);
+
+        removeEdges(edgesRemoved);
+        addEdges(edgesAdded);
+
         refresh();
     }
 
+    private boolean isVisible(final LogicalEdge edge) {
+        return nodes.containsKey(edge.getSource()) && nodes.containsKey(edge.getDestination());
+    }
+
+    /**
+     * Adds node and the committed root edges that connect it to other visible nodes.
+     */
+    private void show(final LogicalNode node) {
+        addNodes(new ArrayList<>(Collections.singletonList(node)));
+        final List<LogicalEdge> edgesAdded = new ArrayList<>();
+        for(LogicalEdge edge : root.getEdgesInvolving(node)) {
+            if(edgesCommittedRoot.contains(edge) && isVisible(edge)) {
+                edgesAdded.add(edge);
+            }
+        }
+        addEdges(edgesAdded);
+    }
+
+    /**
+     * Removes node and every edge involving it.
+     */
+    private void hide(final LogicalNode node) {
+        removeEdges(getEdgesInvolving(node));
+        removeNodes(Collections.singletonList(node));
+    }
+
+    /**
+     * Resynchronizes the edges with the edges committed to the root, keeping those whose endpoints are both visible.
+     */
     protected void updateEdges() {
-        //Only use edges committed in the root, but check against uncommitted nodes.
-        List<LogicalEdge> edgesAll = new LinkedList<>(root.edgesObservable);
-        List<LogicalEdge> edgesFiltered = edgesAll.stream().filter(edge -> nodes.containsKey(edge.getSource()) && nodes.containsKey(edge.getDestination())).collect(Collectors.toList());
+        edgesCommittedRoot.clear();
+        final List<LogicalEdge> edgesRoot;
+        synchronized(root.lock) {
+            edgesRoot = new ArrayList<>(root.edgesObservable);
+        }
+        edgesCommittedRoot.addAll(edgesRoot);
+
+        final Set<LogicalEdge> edgesFiltered = new LinkedHashSet<>();
+        for(LogicalEdge edge : edgesRoot) {
+            if(isVisible(edge)) {
+                edgesFiltered.add(edge);
+            }
+        }
 
-        List<LogicalEdge> edgesRemoved = new LinkedList<>(edges.keySet());
-        edgesRemoved.removeAll(edgesFiltered);
-        List<LogicalEdge> edgesAdded = new LinkedList<>(edgesFiltered);
-        edgesAdded.removeAll(edges.keySet());
+        final List<LogicalEdge> edgesRemoved = new ArrayList<>();
+        for(LogicalEdge edge : getRawEdgeList()) {
+            if(!edgesFiltered.remove(edge)) {
+                edgesRemoved.add(edge);
+            }
+        }
 
-        addEdges(edgesAdded);
+        addEdges(new ArrayList<>(edgesFiltered));
         removeEdges(edgesRemoved);
     }
 
@@ -1,11 +1,10 @@
 package core.document.graph;
 
-import core.document.serialization.xml.XmlElement;
+import core.document.serialization.xml.XmlStreamWriter;
 import core.importmodule.ImportItem;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.zip.ZipOutputStream;
+import java.util.Map;
 
 /**
  * Interface to permit typed access to edges of a node without needing to resolve to a specific type.
@@ -18,5 +17,9 @@ public interface IEdge<TNode> {
     void setSource(TNode source);
     void setDestination(TNode destination);
 
-    XmlElement toXml(List<TNode> nodes, List<ImportItem> items, ZipOutputStream zos) throws IOException;
+    /**
+     * @param indexNodes The index of each node in the saved node list.
+     * @param indexItems The index of each ImportItem in the saved import list.
+     */
+    void toXml(Map<TNode, Integer> indexNodes, Map<ImportItem, Integer> indexItems, XmlStreamWriter writer) throws IOException;
 }
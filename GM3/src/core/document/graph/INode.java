@@ -1,10 +1,10 @@
 package core.document.graph;
 
-import core.document.serialization.xml.XmlElement;
-import core.document.serialization.xml.XmlText;
+import core.document.serialization.xml.XmlStreamWriter;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.StringProperty;
 
+import java.io.IOException;
 import java.util.Map;
 
 public interface INode<TSelf> extends Comparable<TSelf> {
@@ -13,18 +13,31 @@ public interface INode<TSelf> extends Comparable<TSelf> {
     BooleanProperty dirtyProperty();
     Map<String, String> getGroups();
 
-    default XmlElement toXml() {
-        XmlElement xmlNode = new XmlElement("node");
-        xmlNode.addAttribute("title").setValue(titleProperty().get());
+    default void toXml(XmlStreamWriter writer) throws IOException {
+        writer.startElement("node");
+        toXmlAttributes(writer);
+        toXmlChildren(writer);
+        writer.endElement();
+    }
 
-        for(Map.Entry<String, String> entry : getGroups().entrySet()) {
-            XmlElement xmlGroup = new XmlElement("group");
-            xmlNode.getChildren().add(xmlGroup);
+    /**
+     * Writes the attributes of the node element.  Implementations that add attributes should write the inherited ones
+     * first.
+     */
+    default void toXmlAttributes(XmlStreamWriter writer) throws IOException {
+        writer.attribute("title", titleProperty().get());
+    }
 
-            xmlGroup.addAttribute("name").setValue(entry.getKey());
-            xmlGroup.getChildren().add(new XmlText(entry.getValue()));
+    /**
+     * Writes the content of the node element.  Implementations that add content should write the inherited content
+     * first.
+     */
+    default void toXmlChildren(XmlStreamWriter writer) throws IOException {
+        for(Map.Entry<String, String> entry : getGroups().entrySet()) {
+            writer.startElement("group");
+            writer.attribute("name", entry.getKey());
+            writer.text(entry.getValue());
+            writer.endElement();
         }
-
-        return xmlNode;
     }
 }
@@ -1,7 +1,9 @@
 package core.document.graph;
 
-import core.document.serialization.xml.XmlElement;
+import core.document.serialization.xml.XmlStreamWriter;
 import core.importmodule.ImportItem;
+import core.logging.Logger;
+import core.logging.Severity;
 import javafx.beans.binding.When;
 import javafx.beans.property.LongProperty;
 import javafx.beans.property.SimpleLongProperty;
@@ -12,10 +14,8 @@ import ui.custom.fx.FxStringProperty;
 import util.Wireshark;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.zip.ZipOutputStream;
 
 public class LogicalEdge extends AbstractBidirectionalEdge<LogicalNode> {
     public static class ConnectionDetails {
@@ -54,60 +54,298 @@ public class LogicalEdge extends AbstractBidirectionalEdge<LogicalNode> {
             public int getDestinationPort() {
                 return portDestination;
             }
+        }
 
-            public XmlElement toXml() {
-                XmlElement xmlResult = new XmlElement("frame");
-                xmlResult.addAttribute("time").setValue(Long.toString(time));
-                xmlResult.addAttribute("bytes").setValue(Integer.toString(bytes));
-                xmlResult.addAttribute("frame").setValue(Long.toString(frame));
-                xmlResult.addAttribute("protocol").setValue(Integer.toString(protocol));
-                xmlResult.addAttribute("srcPort").setValue(Integer.toString(portSource));
-                xmlResult.addAttribute("dstPort").setValue(Integer.toString(portDestination));
+        /**
+         * The frames from a single ImportItem, stored as parallel primitive arrays rather than as a FrameRecord per frame.
+         * Arrays are only ever replaced by larger copies, so an array reference together with a count read under the
+         * lock of the owning ConnectionDetails describes a stable snapshot.
+         */
+        private static class FrameColumns {
+            //Ports are stored offset by one so that -1 (no port) is representable; each takes PORT_BITS bits of ports.
+            private static final int PORT_BITS = 17;
+            private static final long PORT_MASK = (1L << PORT_BITS) - 1;
+
+            private long[] frames;
+            private long[] times;
+            private int[] bytes;
+            //Source port, destination port and protocol packed as [protocol:16][destination:17][source:17].
+            private long[] ports;
+            private int size;
+
+            public FrameColumns(final int capacity) {
+                frames = new long[capacity];
+                times = new long[capacity];
+                bytes = new int[capacity];
+                ports = new long[capacity];
+                size = 0;
+            }
 
-                return xmlResult;
+            public void ensureCapacity(final int capacity) {
+                if(capacity > frames.length) {
+                    frames = Arrays.copyOf(frames, capacity);
+                    times = Arrays.copyOf(times, capacity);
+                    bytes = Arrays.copyOf(bytes, capacity);
+                    ports = Arrays.copyOf(ports, capacity);
+                }
+            }
+
+            public void add(final int portSource, final int portDestination, final int protocol, final long frame, final long time, final int cntBytes) {
+                if(size == frames.length) {
+                    final int capacity = size + (size >> 1) + 16;
+                    frames = Arrays.copyOf(frames, capacity);
+                    times = Arrays.copyOf(times, capacity);
+                    bytes = Arrays.copyOf(bytes, capacity);
+                    ports = Arrays.copyOf(ports, capacity);
+                }
+                frames[size] = frame;
+                times[size] = time;
+                bytes[size] = cntBytes;
+                ports[size] = ((long)(protocol & 0xFFFF) << (2 * PORT_BITS))
+                        | (((long)portDestination + 1) & PORT_MASK) << PORT_BITS
+                        | (((long)portSource + 1) & PORT_MASK);
+                size++;
+            }
+
+            public FrameList snapshot() {
+                return new FrameList(frames, times, bytes, ports, size);
+            }
+
+            public static FrameColumns of(final FrameList list) {
+                final FrameColumns result = new FrameColumns(list.size());
+                for(int idx = 0; idx < list.size(); idx++) {
+                    result.add(list.getSourcePort(idx), list.getDestinationPort(idx), list.getProtocol(idx), list.getFrame(idx), list.getTime(idx), list.getBytes(idx));
+                }
+                return result;
             }
         }
+
+        /**
+         * A read-only list of the frames in a FrameColumns at the time it was created.  Besides the List interface, which
+         * creates a FrameRecord for each element as it is read, the fields of each frame can be read directly.
+         */
+        public static class FrameList extends AbstractList<FrameRecord> {
+            private final long[] frames;
+            private final long[] times;
+            private final int[] bytes;
+            private final long[] ports;
+            private final int size;
+
+            private FrameList(final long[] frames, final long[] times, final int[] bytes, final long[] ports, final int size) {
+                this.frames = frames;
+                this.times = times;
+                this.bytes = bytes;
+                this.ports = ports;
+                this.size = size;
+            }
+
+            /**
+             * Creates a FrameList from the first count entries of the given columns, which are copied.
+             */
+            public static FrameList of(int count, int[] portsSource, int[] portsDestination, int[] protocols, long[] idxFrames, long[] times, int[] bytes) {
+                final FrameColumns columns = new FrameColumns(count);
+                for(int idx = 0; idx < count; idx++) {
+                    columns.add(portsSource[idx], portsDestination[idx], protocols[idx], idxFrames[idx], times[idx], bytes[idx]);
+                }
+                return columns.snapshot();
+            }
+
+            private void checkIndex(final int index) {
+                if(index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                }
+            }
+
+            @Override
+            public FrameRecord get(final int index) {
+                checkIndex(index);
+                return new FrameRecord(getSourcePort(index), getDestinationPort(index), getProtocol(index), frames[index], times[index], bytes[index]);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            public long getFrame(final int index) {
+                checkIndex(index);
+                return frames[index];
+            }
+            public long getTime(final int index) {
+                checkIndex(index);
+                return times[index];
+            }
+            public int getBytes(final int index) {
+                checkIndex(index);
+                return bytes[index];
+            }
+            public int getProtocol(final int index) {
+                checkIndex(index);
+                return (short)(ports[index] >>> (2 * FrameColumns.PORT_BITS));
+            }
+            public int getSourcePort(final int index) {
+                checkIndex(index);
+                return (int)(ports[index] & FrameColumns.PORT_MASK) - 1;
+            }
+            public int getDestinationPort(final int index) {
+                checkIndex(index);
+                return (int)((ports[index] >>> FrameColumns.PORT_BITS) & FrameColumns.PORT_MASK) - 1;
+            }
+        }
+
+        /**
+         * Frames that were left in a saved session instead of being loaded with it; they are read back when first needed.
+         */
+        public interface FrameSource {
+            int size();
+            /**
+             * @return The frames, which the source may cache for later reads.
+             */
+            FrameList read() throws IOException;
+        }
+
         private final SimpleLongProperty cntBytes;
-        private final Map<ImportItem, List<FrameRecord>> Frames;
+        private final Map<ImportItem, FrameColumns> Frames;
+        private final Map<ImportItem, FrameSource> FramesStored;
         private final FxObservableSet<Integer> Protocols;
 
         public ConnectionDetails() {
             cntBytes = new FxLongProperty(0);
             Frames = new HashMap<>();
+            FramesStored = new HashMap<>(2);
             Protocols = new FxObservableSet<>();
         }
 
+        /**
+         * Records a group of frames that stay in a saved session until they are read; only the totals are kept in memory.
+         */
+        public synchronized void AddStoredPackets(ImportItem source, FrameSource frames, long cntBytes, Collection<Integer> protocols) {
+            this.cntBytes.set(this.cntBytes.get() + cntBytes);
+            FramesStored.put(source, frames);
+            for(Integer protocol : protocols) {
+                Protocols.add(protocol);
+            }
+        }
+
+        /**
+         * Moves stored frames into memory, so that they no longer depend on the file they were stored in.  If they cannot
+         * be read they are left where they are and new frames for the source are kept in memory alongside them.
+         */
+        private FrameColumns loadStored(ImportItem source) {
+            final FrameSource stored = FramesStored.get(source);
+            if(stored == null) {
+                return null;
+            }
+            final FrameColumns frames;
+            try {
+                frames = FrameColumns.of(stored.read());
+            } catch(IOException ex) {
+                Logger.log(this, Severity.Error, "Unable to read frames from the saved session; they will be kept there and read again when needed: " + ex.getMessage());
+                return null;
+            }
+            FramesStored.remove(source);
+            Frames.put(source, frames);
+            return frames;
+        }
+
         public synchronized void AddPacket(ImportItem source, int portSource, int portDestination, long cntBytes, long idxFrame, int proto, long time) {
             this.cntBytes.set(this.cntBytes.get() + cntBytes);
             //The frames are partitioned by the ImportItem that was the source of the frame information.
-            List<FrameRecord> frames = Frames.get(source);
+            FrameColumns frames = Frames.get(source);
             if(frames == null) {
-                //Initial buffer for 1024 frames; completely arbitrary number, there is no science behind why it was chosen.
-                frames = new ArrayList<>(1024);
+                frames = loadStored(source);
+            }
+            if(frames == null) {
+                //Most connections carry only a few frames, and the columns grow by half as needed, so start small; at 28
+                //bytes per frame, room for 1024 frames on every edge outweighed the frames themselves.
+                frames = new FrameColumns(16);
                 Frames.put(source, frames);
             }
-            frames.add(new FrameRecord(portSource, portDestination, proto, idxFrame, time, (int) cntBytes)); //A single frame should not come anywhere near the size of an int, let alone a long.
+            frames.add(portSource, portDestination, proto, idxFrame, time, (int) cntBytes); //A single frame should not come anywhere near the size of an int, let alone a long.
             Protocols.add(proto);
         }
 
+        /**
+         * Equivalent to calling AddPacket for each of the first count entries of the arrays, but only takes the lock and
+         * updates the observable properties once.
+         */
+        public synchronized void AddPackets(ImportItem source, int count, int[] portsSource, int[] portsDestination, int[] protocols, long[] idxFrames, long[] times, int[] bytes) {
+            if(count <= 0) {
+                return;
+            }
+            FrameColumns frames = Frames.get(source);
+            if(frames == null) {
+                frames = loadStored(source);
+            }
+            if(frames == null) {
+                frames = new FrameColumns(count);
+                Frames.put(source, frames);
+            } else {
+                frames.ensureCapacity(frames.size + count);
+            }
+            long cntBytesAdded = 0;
+            final Set<Integer> protocolsAdded = new HashSet<>();
+            for(int idx = 0; idx < count; idx++) {
+                frames.add(portsSource[idx], portsDestination[idx], protocols[idx], idxFrames[idx], times[idx], bytes[idx]);
+                cntBytesAdded += bytes[idx];
+                protocolsAdded.add(protocols[idx]);
+            }
+            this.cntBytes.set(this.cntBytes.get() + cntBytesAdded);
+            for(Integer protocol : protocolsAdded) {
+                Protocols.add(protocol);
+            }
+        }
+
         public long getBytes() {
             return cntBytes.get();
         }
         public LongProperty bytesProperty() {
             return cntBytes;
         }
-        public int getFrameCount() {
+        public synchronized int getFrameCount() {
             int cntFrames = 0;
-            for(List<?> frames : Frames.values()) {
+            for(FrameColumns frames : Frames.values()) {
+                cntFrames += frames.size;
+            }
+            for(FrameSource frames : FramesStored.values()) {
                 cntFrames += frames.size();
             }
             return cntFrames;
         }
-        public Collection<ImportItem> getFrameGroups() {
-            return Frames.keySet();
+        public synchronized Collection<ImportItem> getFrameGroups() {
+            //A source can be in both maps if its stored frames could not be read when more frames were added.
+            final Set<ImportItem> result = new LinkedHashSet<>(Frames.keySet());
+            result.addAll(FramesStored.keySet());
+            return result;
         }
-        public List<FrameRecord> getFrames(ImportItem set) {
-            return Frames.get(set);
+
+        /**
+         * @return A read-only view of the frames recorded so far for the given source; frames added after this call are
+         * not visible through the returned list.  The FrameRecord objects are created as the list is read.  Stored frames
+         * are read from the saved session, or a recently read copy, without being kept by this ConnectionDetails.
+         * @throws IOException If the source has stored frames that could not be read.
+         */
+        public FrameList getFrames(ImportItem set) throws IOException {
+            final FrameSource stored;
+            final FrameList frames;
+            synchronized(this) {
+                final FrameColumns columns = Frames.get(set);
+                frames = columns == null ? null : columns.snapshot();
+                stored = FramesStored.get(set);
+            }
+            if(stored == null) {
+                return frames;
+            }
+            final FrameList framesStored = stored.read();
+            if(frames == null) {
+                return framesStored;
+            }
+            final FrameColumns merged = FrameColumns.of(framesStored);
+            merged.ensureCapacity(framesStored.size() + frames.size());
+            for(int idx = 0; idx < frames.size(); idx++) {
+                merged.add(frames.getSourcePort(idx), frames.getDestinationPort(idx), frames.getProtocol(idx), frames.getFrame(idx), frames.getTime(idx), frames.getBytes(idx));
+            }
+            return merged.snapshot();
         }
     }
 
@@ -156,67 +394,50 @@ public class LogicalEdge extends AbstractBidirectionalEdge<LogicalNode> {
     }
 
     @Override
-    public XmlElement toXml(List<LogicalNode> nodes, List<ImportItem> items, ZipOutputStream zos) throws IOException {
-        XmlElement xmlEdge = super.toXml(nodes, items, zos);
-
-        zos.write(xmlEdge.openTag().getBytes(StandardCharsets.UTF_8));
-        zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+    public void toXml(Map<LogicalNode, Integer> indexNodes, Map<ImportItem, Integer> indexItems, XmlStreamWriter writer) throws IOException {
+        toXmlStart(indexNodes, writer);
+        writer.newline();
 
-        //Details to Destination
-        XmlElement xmlDetailsTo = new XmlElement("details").appendedTo(xmlEdge);
-        xmlDetailsTo.addAttribute("direction").setValue("destination");
-        xmlDetailsTo.addAttribute("bytes").setValue(Long.toString(getDetailsToDestination().getBytes()));
+        toXml(getDetailsToDestination(), "destination", indexItems, writer);
+        toXml(getDetailsToSource(), "source", indexItems, writer);
 
-        zos.write(xmlDetailsTo.openTag().getBytes(StandardCharsets.UTF_8));
-        zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
-
-        for(ImportItem item : getDetailsToDestination().getFrameGroups()) {
-            XmlElement xmlSource = new XmlElement("source");
-            xmlSource.addAttribute("ref").setValue(Integer.toString(items.indexOf(item)));
+        writer.endElement();
+        writer.newline();
+    }
 
-            zos.write(xmlSource.openTag().getBytes(StandardCharsets.UTF_8));
+    private static void toXml(ConnectionDetails details, String direction, Map<ImportItem, Integer> indexItems, XmlStreamWriter writer) throws IOException {
+        writer.startElement("details");
+        writer.attribute("direction", direction);
+        writer.attribute("bytes", details.getBytes());
+        writer.newline();
 
-            for(LogicalEdge.ConnectionDetails.FrameRecord frame : getDetailsToDestination().getFrames(item)) {
-                zos.write(frame.toXml().toString().getBytes(StandardCharsets.UTF_8));
-                zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+        for(ImportItem item : details.getFrameGroups()) {
+            final ConnectionDetails.FrameList frames = details.getFrames(item);
+            if(frames == null) {
+                continue;
             }
 
-            zos.write(xmlSource.closeTag().getBytes(StandardCharsets.UTF_8));
-            zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
-        }
-
-        zos.write(xmlDetailsTo.closeTag().getBytes(StandardCharsets.UTF_8));
-        zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
-
-        //Details to Source
-        XmlElement xmlDetailsFrom = new XmlElement("details").appendedTo(xmlEdge);
-        xmlDetailsFrom.addAttribute("direction").setValue("source");
-        xmlDetailsFrom.addAttribute("bytes").setValue(Long.toString(getDetailsToSource().getBytes()));
-
-        zos.write(xmlDetailsFrom.openTag().getBytes(StandardCharsets.UTF_8));
-        zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
-
-        for(ImportItem item : getDetailsToSource().getFrameGroups()) {
-            XmlElement xmlSource = new XmlElement("source").appendedTo(xmlDetailsFrom);
-            xmlSource.addAttribute("ref").setValue(Integer.toString(items.indexOf(item)));
-
-            zos.write(xmlSource.openTag().getBytes(StandardCharsets.UTF_8));
-
-            for(LogicalEdge.ConnectionDetails.FrameRecord frame : getDetailsToDestination().getFrames(item)) {
-                zos.write(frame.toXml().toString().getBytes(StandardCharsets.UTF_8));
-                zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+            writer.startElement("source");
+            writer.attribute("ref", indexItems.getOrDefault(item, -1));
+            writer.closeStartTag();
+
+            for(int idx = 0; idx < frames.size(); idx++) {
+                writer.startElement("frame");
+                writer.attribute("time", frames.getTime(idx));
+                writer.attribute("bytes", frames.getBytes(idx));
+                writer.attribute("frame", frames.getFrame(idx));
+                writer.attribute("protocol", frames.getProtocol(idx));
+                writer.attribute("srcPort", frames.getSourcePort(idx));
+                writer.attribute("dstPort", frames.getDestinationPort(idx));
+                writer.endElement();
+                writer.newline();
             }
 
-            zos.write(xmlSource.closeTag().getBytes(StandardCharsets.UTF_8));
-            zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+            writer.endElement();
+            writer.newline();
         }
 
-        zos.write(xmlDetailsFrom.closeTag().getBytes(StandardCharsets.UTF_8));
-        zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
-
-        zos.write(xmlEdge.closeTag().getBytes(StandardCharsets.UTF_8));
-        zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
-
-        return null;
+        writer.endElement();
+        writer.newline();
     }
 }
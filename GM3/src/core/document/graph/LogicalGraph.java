@@ -3,7 +3,7 @@ package core.document.graph;
 import core.Configuration;
 import core.document.CidrList;
 import core.document.ImportList;
-import core.document.serialization.xml.XmlElement;
+import core.document.serialization.xml.XmlStreamWriter;
 import javafx.application.Platform;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
@@ -11,18 +11,18 @@ import ui.dialog.ManageLogicalNetworksDialogFx;
 import util.Cidr;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import java.util.zip.ZipOutputStream;
 
 public class LogicalGraph extends NetworkGraph<LogicalNode, LogicalEdge> {
 
     private final ObservableList<Cidr> cidrsLogical;
 
     protected LogicalGraph(ObservableList<Cidr> cidrs) {
+        super(Configuration.getPreferenceBoolean(Configuration.Fields.LOGICAL_CONCURRENT_GRAPH));
         this.cidrsLogical = cidrs;
         cidrsLogical.addListener(this::Handle_NetworksChanged);
         ManageLogicalNetworksDialogFx.getInstance().itemsProperty().setValue(this.cidrsLogical);
@@ -36,10 +36,14 @@ public class LogicalGraph extends NetworkGraph<LogicalNode, LogicalEdge> {
         //Find all removed groups and invalidate any node with an IP in the given range.
         //If any groups were added then invalidate any cached null values.
         final List<LogicalNode> nodesToEvaluate = new LinkedList<>();
+        final List<LogicalNode> nodesCurrent;
+        synchronized(lock) {
+            nodesCurrent = new ArrayList<>(nodesObservable);
+        }
 
         while(c.next()) {
             if(!c.getRemoved().isEmpty()) {
-                for (LogicalNode node : nodesObservable) {
+                for (LogicalNode node : nodesCurrent) {
                     for (Cidr cidrRemoved : c.getRemoved()) {
                         Cidr ip = node.getIp();
                         if (cidrRemoved.contains(ip)) {
@@ -51,7 +55,7 @@ public class LogicalGraph extends NetworkGraph<LogicalNode, LogicalEdge> {
                 }
             }
             if(!c.getAddedSubList().isEmpty()) {
-                for(LogicalNode node : nodesObservable) {
+                for(LogicalNode node : nodesCurrent) {
                     if(node.networkProperty().get() == null) {
                         node.networkProperty().clear();
                         nodesToEvaluate.add(node);
@@ -69,18 +73,19 @@ public class LogicalGraph extends NetworkGraph<LogicalNode, LogicalEdge> {
 
     @Override
     protected void Process_commitUI() {
+        final long timeStart = System.nanoTime();
+        final PendingChanges changes;
         synchronized(lock) {
-            //Find all new nodes and identify which, if any, networks need to be created.
+            changes = drainPending();
+            //Identify which, if any, networks need to be created for the new nodes.
             if (Configuration.getPreferenceBoolean(Configuration.Fields.LOGICAL_CREATE_DYNAMIC_SUBNETS)) {
-                final List<LogicalNode> nodesNew = new LinkedList<>(nodes.keySet());
-                nodesNew.removeAll(nodesObservable);
-
-                createSubnets(nodesNew);
+                createSubnets(changes.nodesAdded);
             }
 
             //Commit the nodes/edges now.  We will look at the committed entities to determine what networks need to be built
-            super.Process_commitUI();
+            commit(changes);
         }
+        reportCommit(changes, timeStart);
     }
 
     protected void createSubnets(final List<LogicalNode> nodesNew) {
@@ -125,20 +130,17 @@ public class LogicalGraph extends NetworkGraph<LogicalNode, LogicalEdge> {
     }
 
     @Override
-    public void toXml(ImportList imports, ZipOutputStream zos) throws IOException {
-        super.toXmlStart(zos);
-        super.toXmlContents(imports, zos);
-        zos.write("<cidrs>".getBytes(StandardCharsets.UTF_8));
-        zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+    protected void toXmlContents(ImportList imports, XmlStreamWriter writer) throws IOException {
+        super.toXmlContents(imports, writer);
+        writer.startElement("cidrs");
+        writer.newline();
         for(Cidr cidr : cidrsLogical) {
-            XmlElement xmlCidr = new XmlElement("cidr");
-            xmlCidr.addAttribute("t").setValue(cidr.toString());
-            zos.write(xmlCidr.toString().getBytes(StandardCharsets.UTF_8));
-            zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+            writer.startElement("cidr");
+            writer.attribute("t", cidr.toString());
+            writer.endElement();
+            writer.newline();
         }
-        zos.write("</cidrs>".getBytes(StandardCharsets.UTF_8));
-        zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
-
-        super.toXmlEnd(zos);
+        writer.endElement();
+        writer.newline();
     }
 }
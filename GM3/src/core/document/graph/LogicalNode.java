@@ -1,7 +1,7 @@
 package core.document.graph;
 
 import com.sun.javafx.binding.ExpressionHelper;
-import core.document.serialization.xml.XmlElement;
+import core.document.serialization.xml.XmlStreamWriter;
 import core.knowledgebase.GeoIp;
 import core.knowledgebase.Manufacturer;
 import javafx.beans.InvalidationListener;
@@ -14,6 +14,7 @@ import ui.custom.fx.LazyProperty;
 import util.Cidr;
 import util.Mac;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -28,66 +29,78 @@ public class LogicalNode implements INode<LogicalNode>, ObservableValue<LogicalN
 
     private final Cidr cidr;
     private final byte[] mac;
-
-    private final LazyProperty<String> country;
+    private final ObservableList<Cidr> networks;
 
     private final HashMap<Object, HashMap<String, Set<ComputedProperty>>> fingerprintPayloadResults;
     private final HashMap<String, Set<ComputedProperty>> annotations;
 
-    private final SimpleStringProperty title;
-    private final SimpleStringProperty subtitle;
-    private final SimpleBooleanProperty dirty;
-
-    //private final ObservableList<Cidr> networks;
-    private final LazyProperty<Cidr> network;
+    //The properties are created on first use; many nodes are never displayed, and some are discarded as duplicates.
+    private LazyProperty<String> country;
+    private SimpleStringProperty title;
+    private SimpleStringProperty subtitle;
+    private SimpleBooleanProperty dirty;
+    private LazyProperty<Cidr> network;
 
     public LogicalNode(final Cidr ip, final byte[] mac, final ObservableList<Cidr> networks) {
-        //NOTE: 2 LogicalNode objects are constructed for every incoming packet.  the execution time of this constructor method is very relevant to the performance of the import process.
+        //NOTE: A LogicalNode is constructed for every new endpoint during import.  the execution time of this constructor method is very relevant to the performance of the import process.
 
         this.cidr = ip;
         this.mac = mac;
+        this.networks = networks;
 
         this.fingerprintPayloadResults = new HashMap<>();
         this.annotations = new HashMap<>();
-        this.country = new LazyProperty<>(() -> GeoIp.getCountryName(LogicalNode.this.cidr) );
-        this.network = new LazyProperty<>(() -> {
-            final ArrayList<Cidr> nets = new ArrayList<>(networks);
-            for (Cidr network : nets) {
-                if (network.contains(cidr)) {
-                    return network;
-                }
-            }
-            return null;
-        });
-
-        title = new SimpleStringProperty(ip.toString());
-        subtitle = new SimpleStringProperty(null);
-        dirty = new SimpleBooleanProperty(false);
     }
 
     public Cidr getIp() {
         return cidr;
     }
+    public byte[] getMac() {
+        return mac;
+    }
     public String getCountry() {
-        return country.get();
+        return countryProperty().get();
     }
 
     @Override
-    public StringProperty titleProperty() {
+    public synchronized StringProperty titleProperty() {
+        if(title == null) {
+            title = new SimpleStringProperty(cidr.toString());
+        }
         return title;
     }
     @Override
-    public StringProperty subtitleProperty() {
+    public synchronized StringProperty subtitleProperty() {
+        if(subtitle == null) {
+            subtitle = new SimpleStringProperty(null);
+        }
         return subtitle;
     }
-    public ObjectProperty<String> countryProperty() {
+    public synchronized ObjectProperty<String> countryProperty() {
+        if(country == null) {
+            country = new LazyProperty<>(() -> GeoIp.getCountryName(LogicalNode.this.cidr));
+        }
         return country;
     }
-    public LazyProperty<Cidr> networkProperty() {
+    public synchronized LazyProperty<Cidr> networkProperty() {
+        if(network == null) {
+            network = new LazyProperty<>(() -> {
+                final ArrayList<Cidr> nets = new ArrayList<>(networks);
+                for (Cidr network : nets) {
+                    if (network.contains(cidr)) {
+                        return network;
+                    }
+                }
+                return null;
+            });
+        }
         return network;
     }
     @Override
-    public BooleanProperty dirtyProperty() {
+    public synchronized BooleanProperty dirtyProperty() {
+        if(dirty == null) {
+            dirty = new SimpleBooleanProperty(false);
+        }
         return dirty;
     }
 
@@ -95,11 +108,11 @@ public class LogicalNode implements INode<LogicalNode>, ObservableValue<LogicalN
     public synchronized Map<String, String> getGroups() {
         HashMap<String, String> mapNew = new LinkedHashMap<>();
 
-        Cidr net = network.get();
+        Cidr net = networkProperty().get();
         if(net != null) {
             mapNew.put(GROUP_SUBNET, net.toString());
         }
-        mapNew.put(GROUP_COUNTRY, country.get());
+        mapNew.put(GROUP_COUNTRY, getCountry());
 
         for(Map.Entry<String, Set<ComputedProperty>> entry: annotations.entrySet()) {
             mapNew.put(entry.getKey(), entry.getValue().stream().map(property -> property.getValue() + " (" + property.getConfidence() + ")").collect(Collectors.joining("\n")));
@@ -152,6 +165,22 @@ public class LogicalNode implements INode<LogicalNode>, ObservableValue<LogicalN
         container.clear();
         container.add(value);
     }
+    /**
+     * @return A copy of the fingerprint results that are saved with a session (the same ones toXmlChildren writes), keyed
+     * by the name of the fingerprint that produced them.  Empty groups and annotations that did not come from a
+     * fingerprint are left out.
+     */
+    public synchronized Map<String, Map<String, Set<ComputedProperty>>> getAnnotationsByFingerprint() {
+        final Map<String, Map<String, Set<ComputedProperty>>> result = new LinkedHashMap<>();
+        for(Map.Entry<Object, HashMap<String, Set<ComputedProperty>>> entry : fingerprintPayloadResults.entrySet()) {
+            entry.getValue().forEach((key, values) -> {
+                if(!values.isEmpty()) {
+                    result.computeIfAbsent(entry.getKey().toString(), k -> new LinkedHashMap<>()).computeIfAbsent(key, k -> new LinkedHashSet<>()).addAll(values);
+                }
+            });
+        }
+        return result;
+    }
     private Set<ComputedProperty> getContainerForPath(Object fingerprint, String field) {
         HashMap<String, Set<ComputedProperty>> container;
         if(fingerprint == null) {
@@ -210,24 +239,25 @@ public class LogicalNode implements INode<LogicalNode>, ObservableValue<LogicalN
     }
 
     @Override
-    public XmlElement toXml() {
-        XmlElement xmlNode = INode.super.toXml();
+    public void toXmlAttributes(XmlStreamWriter writer) throws IOException {
+        INode.super.toXmlAttributes(writer);
         if (mac != null) {
-            xmlNode.addAttribute("mac").setValue(formatMac(mac));
+            writer.attribute("mac", formatMac(mac));
         }
 
         String country = getCountry();
         if(country != null) {
-            xmlNode.addAttribute("country").setValue(country);
+            writer.attribute("country", country);
         }
         Cidr network = networkProperty().get();
         if(network != null) {
-            xmlNode.addAttribute("network").setValue(network.toString());
+            writer.attribute("network", network.toString());
         }
+    }
 
-        //Replace the default groups with higher-accuracy versions, based on the fingerprinting data.
-        xmlNode.getChildren().clear();
-
+    @Override
+    public synchronized void toXmlChildren(XmlStreamWriter writer) throws IOException {
+        //The default groups are replaced with higher-accuracy versions, based on the fingerprinting data.
         for(Map.Entry<Object, HashMap<String, Set<ComputedProperty>>> entryOuter : fingerprintPayloadResults.entrySet()) {
             String fingerprint = entryOuter.getKey().toString();
             for(Map.Entry<String, Set<ComputedProperty>> entry : entryOuter.getValue().entrySet()) {
@@ -236,31 +266,20 @@ public class LogicalNode implements INode<LogicalNode>, ObservableValue<LogicalN
                     continue;
                 }
 
-                XmlElement xmlGroup = new XmlElement("group").appendedTo(xmlNode);
-                xmlGroup.addAttribute("fingerprint").setValue(fingerprint);
-                xmlGroup.addAttribute("key").setValue(entry.getKey());
+                writer.startElement("group");
+                writer.attribute("fingerprint", fingerprint);
+                writer.attribute("key", entry.getKey());
 
                 for(ComputedProperty value : entry.getValue()) {
-                    new XmlElement("v").appendedTo(xmlGroup).setTextContent(value.getValue()).addAttribute("confidence").setValue(Integer.toString(value.getConfidence()));
+                    writer.startElement("v");
+                    writer.attribute("confidence", value.getConfidence());
+                    writer.text(value.getValue());
+                    writer.endElement();
                 }
+                writer.endElement();
             }
         }
-        for(Map.Entry<String, Set<ComputedProperty>> entry : annotations.entrySet()) {
-            if(entry.getValue().isEmpty()) {
-                //If the value is null, don't write the key, either.
-                continue;
-            }
-
-            XmlElement xmlGroup = new XmlElement("group");
-            xmlGroup.addAttribute("fingerprint").setValue("");
-            xmlGroup.addAttribute("key").setValue(entry.getKey());
-
-            for(ComputedProperty value : entry.getValue()) {
-                new XmlElement("v").appendedTo(xmlGroup).setTextContent(value.getValue()).addAttribute("confidence").setValue(Integer.toString(value.getConfidence()));
-            }
-        }
-
-        return xmlNode;
+        //Annotations that did not come from a fingerprint (the "annotations" map) have never been saved; the loader has no way to tell them apart from fingerprint results.
     }
 
     @Override
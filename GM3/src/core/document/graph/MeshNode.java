@@ -4,9 +4,10 @@
  */
 package core.document.graph;
 
-import core.document.serialization.xml.XmlElement;
+import core.document.serialization.xml.XmlStreamWriter;
 import javafx.beans.property.*;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -91,12 +92,13 @@ public class MeshNode implements INode<MeshNode> {
     }
 
     @Override
-    public XmlElement toXml() {
-        XmlElement node = new XmlElement("node");
-
-        node.addAttribute("title").setValue(this.title.get());
-        node.addAttribute("pan").setValue(getGroups().get(GROUP_PAN));
+    public void toXmlAttributes(XmlStreamWriter writer) throws IOException {
+        writer.attribute("title", this.title.get());
+        writer.attribute("pan", getGroups().get(GROUP_PAN));
+    }
 
-        return node;
+    @Override
+    public void toXmlChildren(XmlStreamWriter writer) throws IOException {
+        //Mesh nodes are restored from their attributes alone.
     }
 }
@@ -7,15 +7,21 @@ package core.document.graph;
 import com.sun.javafx.collections.ObservableListWrapper;
 import core.document.Event;
 import core.document.ImportList;
+import core.document.serialization.xml.XmlStreamWriter;
+import core.importmodule.ImportItem;
+import core.logging.Logger;
+import core.logging.Severity;
 import javafx.application.Platform;
 import javafx.beans.property.ReadOnlyListWrapper;
 import javafx.collections.ObservableList;
+import util.InsertionOrderedConcurrentMap;
 import util.RateLimitedTask;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -32,28 +38,71 @@ public class NetworkGraph<TNode extends INode<TNode>, TEdge extends IEdge<TNode>
     public Event<UpdateGraphArgs> OnNodeDirtied = new Event<>();
     public Event<UpdateGraphArgs> OnGroupingInvalidated = new Event<>();
 
-    // The ConcurrentSkipLists are the authoritative data store for nodes and edges.
-    protected final HashMap<TEdge, TEdge> edges;
-    protected final HashMap<TNode, TNode> nodes;
+    // The maps are the authoritative data store for nodes and edges.
+    protected final Map<TEdge, TEdge> edges;
+    protected final Map<TNode, TNode> nodes;
+    //Edges incident to each node, in the order they were added.  Structural changes are made inside the map's compute
+    // functions; readers synchronize on the individual sets.
+    private final ConcurrentHashMap<TNode, Set<TEdge>> adjacency;
     // The ObservableLists are used to integrate with the JavaFX UI components.
     //Processing threads should update nodes, edges, etc., and then call commitUi() to migrate the data to the UI objects.
     protected final ObservableList<TEdge> edgesObservable;
     protected final ObservableList<TNode> nodesObservable;
+    //Every addition to and removal from the maps is logged here until the next commit applies it to the ObservableLists.
+    private final Queue<TNode> nodesPendingAdd;
+    private final Queue<TNode> nodesPendingRemove;
+    private final Queue<TEdge> edgesPendingAdd;
+    private final Queue<TEdge> edgesPendingRemove;
+    //Contents of the ObservableLists, for constant-time membership tests during a commit.  Guarded by lock.
+    private final HashMap<TNode, TNode> nodesCommitted;
+    private final HashMap<TEdge, TEdge> edgesCommitted;
+    private volatile long durationLastCommit;
 
     // Rate Limiter for Refresh
     RateLimitedTask taskRefreshUi;
+    //Commits taking at least this long are logged.
+    private static final long SLOW_COMMIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
 
     /**
      * Lock to handle synchronization when accessing node and edge collections together.
      */
     protected final Object lock = new Object();
+    /**
+     * When set, nodes and edges are stored in concurrent maps and addNode, addEdge, findNode and findMatchingEdge do
+     * not take the lock, so many import threads can add to the graph at once.
+     */
+    protected final boolean concurrent;
+    /**
+     * Incremented each time the graph is cleared, so that anything caching nodes or edges of this graph can tell when
+     * its cache is stale.
+     */
+    private volatile int generation = 0;
 
     public NetworkGraph() {
-        edges = new LinkedHashMap<>();
-        nodes = new LinkedHashMap<>();
+        this(false);
+    }
 
-        edgesObservable = new ObservableListWrapper<>(new CopyOnWriteArrayList<>());
-        nodesObservable = new ObservableListWrapper<>(new CopyOnWriteArrayList<>());
+    protected NetworkGraph(final boolean concurrent) {
+        this.concurrent = concurrent;
+        if(concurrent) {
+            edges = new InsertionOrderedConcurrentMap<>();
+            nodes = new InsertionOrderedConcurrentMap<>();
+        } else {
+            edges = new LinkedHashMap<>();
+            nodes = new LinkedHashMap<>();
+        }
+        adjacency = new ConcurrentHashMap<>();
+
+        //The lists are only modified by commits and only read elsewhere while holding lock, so they do not need to copy
+        //themselves on every write.
+        edgesObservable = new ObservableListWrapper<>(new ArrayList<>());
+        nodesObservable = new ObservableListWrapper<>(new ArrayList<>());
+        nodesPendingAdd = new ConcurrentLinkedQueue<>();
+        nodesPendingRemove = new ConcurrentLinkedQueue<>();
+        edgesPendingAdd = new ConcurrentLinkedQueue<>();
+        edgesPendingRemove = new ConcurrentLinkedQueue<>();
+        nodesCommitted = new HashMap<>();
+        edgesCommitted = new HashMap<>();
 
         taskRefreshUi = new RateLimitedTask(1000, () -> {  //Allow refresh at up to ~1
             this.commitUi();
@@ -77,11 +126,15 @@ public class NetworkGraph<TNode extends INode<TNode>, TEdge extends IEdge<TNode>
     }
 
     public int indexOf(TNode node) {
-        return nodesObservable.indexOf(node);
+        synchronized(lock) {
+            return nodesObservable.indexOf(node);
+        }
     }
 
     public int indexOf(TEdge edge) {
-        return edgesObservable.indexOf(edge);
+        synchronized(lock) {
+            return edgesObservable.indexOf(edge);
+        }
     }
     /**
      * Add the nodes and edges of the graph to the provided lists.  This is performed in a manner synchronized with other NetworkGraph operations.
@@ -107,27 +160,38 @@ public class NetworkGraph<TNode extends INode<TNode>, TEdge extends IEdge<TNode>
         synchronized(lock) {
             nodes.removeAll(this.nodes.keySet());
             for(TNode node : nodes) {
-                this.nodes.put(node, node);
+                intern(this.nodes, node, nodesPendingAdd);
             }
         }
     }
     public TNode addNode(final TNode nodeNew) {
-        final TNode nodeEffective;
+        if(concurrent) {
+            return intern(nodes, nodeNew, nodesPendingAdd);
+        }
         synchronized(lock) {
-            if(nodes.containsKey(nodeNew)) {
-                nodeEffective = nodes.get(nodeNew);
-            } else {
-                nodes.put(nodeNew, nodeNew);
-                nodeEffective = nodeNew;
-            }
+            return intern(nodes, nodeNew, nodesPendingAdd);
         }
-        return nodeEffective;
+    }
+
+    /**
+     * Adds value to map, if an equal value is not already present, and logs the addition for the next commit.
+     * @return The value in the map after the call.
+     */
+    private static <T> T intern(final Map<T, T> map, final T value, final Queue<T> pendingAdd) {
+        final T existing = map.putIfAbsent(value, value);
+        if(existing == null) {
+            pendingAdd.add(value);
+            return value;
+        }
+        return existing;
     }
     public int removeNodes(Collection<TNode> nodesToRemove) {
         int cnt = 0;
         synchronized(lock) {
             for(TNode node : nodesToRemove) {
-                if(nodes.remove(node) != null) {
+                final TNode removed = nodes.remove(node);
+                if(removed != null) {
+                    nodesPendingRemove.add(removed);
                     cnt++;
                 }
             }
@@ -149,17 +213,42 @@ public class NetworkGraph<TNode extends INode<TNode>, TEdge extends IEdge<TNode>
             addNodes(nodesToAdd);
             edges.removeAll(this.edges.keySet());
             for(TEdge edge : edges) {
-                this.edges.put(edge, edge);
+                if(intern(this.edges, edge, edgesPendingAdd) == edge) {
+                    link(edge, edge.getSource(), edge.getDestination());
+                }
             }
         }
     }
     public void removeEdges(Collection<TEdge> edgesToRemove) {
         synchronized(lock) {
             for(TEdge edge : edgesToRemove) {
-                edges.remove(edge);
+                final TEdge removed = edges.remove(edge);
+                if(removed != null) {
+                    edgesPendingRemove.add(removed);
+                    unlink(removed, removed.getSource());
+                    unlink(removed, removed.getDestination());
+                }
             }
         }
     }
+
+    private void link(final TEdge edge, final TNode source, final TNode destination) {
+        adjacency.compute(source, (node, incident) -> linkTo(incident, edge));
+        adjacency.compute(destination, (node, incident) -> linkTo(incident, edge));
+    }
+    private static <TEdge> Set<TEdge> linkTo(Set<TEdge> incident, final TEdge edge) {
+        if(incident == null) {
+            incident = Collections.synchronizedSet(new LinkedHashSet<>());
+        }
+        incident.add(edge);
+        return incident;
+    }
+    private void unlink(final TEdge edge, final TNode endpoint) {
+        adjacency.computeIfPresent(endpoint, (node, incident) -> {
+            incident.remove(edge);
+            return incident.isEmpty() ? null : incident;
+        });
+    }
     /**
      * Adds an edge to the graph, if it doesn't already exist.
      * @param edgeNew The edge to add.
@@ -171,23 +260,22 @@ public class NetworkGraph<TNode extends INode<TNode>, TEdge extends IEdge<TNode>
         TNode nodeSource;
         TNode nodeDestination;
         TEdge edgeResult;
-        synchronized(lock) {
-            nodeSource = nodes.get(edgeNew.getSource());
-            if(nodeSource == null) {
-                nodeSource = edgeNew.getSource();
-                nodes.put(nodeSource, nodeSource);
-            }
-
-            nodeDestination = nodes.get(edgeNew.getDestination());
-            if(nodeDestination == null) {
-                nodeDestination = edgeNew.getDestination();
-                nodes.put(nodeDestination, nodeDestination);
+        if(concurrent) {
+            //Each map is individually atomic; an edge can only be added after both of its endpoints.
+            nodeSource = intern(nodes, edgeNew.getSource(), nodesPendingAdd);
+            nodeDestination = intern(nodes, edgeNew.getDestination(), nodesPendingAdd);
+            edgeResult = intern(edges, edgeNew, edgesPendingAdd);
+            if(edgeResult == edgeNew) {
+                link(edgeNew, nodeSource, nodeDestination);
             }
-
-            edgeResult = edges.get(edgeNew);
-            if(edgeResult == null) {
-                edgeResult = edgeNew;
-                edges.put(edgeNew, edgeNew);
+        } else {
+            synchronized(lock) {
+                nodeSource = intern(nodes, edgeNew.getSource(), nodesPendingAdd);
+                nodeDestination = intern(nodes, edgeNew.getDestination(), nodesPendingAdd);
+                edgeResult = intern(edges, edgeNew, edgesPendingAdd);
+                if(edgeResult == edgeNew) {
+                    link(edgeNew, nodeSource, nodeDestination);
+                }
             }
         }
 
@@ -207,7 +295,44 @@ public class NetworkGraph<TNode extends INode<TNode>, TEdge extends IEdge<TNode>
      * @return All edges in this graph that contain node as a source or destination.
      */
     public List<TEdge> getEdgesInvolving(TNode node) {
-        return this.edges.keySet().stream().filter(edge -> edge.getSource().equals(node) || edge.getDestination().equals(node)).collect(Collectors.toList());
+        final Set<TEdge> incident = adjacency.get(node);
+        if(incident == null) {
+            return new ArrayList<>();
+        }
+        synchronized(incident) {
+            return new ArrayList<>(incident);
+        }
+    }
+
+    /**
+     * @param node A node in this graph.
+     * @return The node at the other end of each edge involving node, without duplicates.  A node with an edge to
+     * itself is its own neighbor.
+     */
+    public List<TNode> neighbors(TNode node) {
+        final Set<TEdge> incident = adjacency.get(node);
+        if(incident == null) {
+            return new ArrayList<>();
+        }
+        final Set<TNode> result = new LinkedHashSet<>();
+        synchronized(incident) {
+            for(TEdge edge : incident) {
+                result.add(edge.getSource().equals(node) ? edge.getDestination() : edge.getSource());
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * @return The number of edges involving node.
+     */
+    public int degree(TNode node) {
+        final Set<TEdge> incident = adjacency.get(node);
+        return incident == null ? 0 : incident.size();
+    }
+
+    public int getGeneration() {
+        return generation;
     }
 
     public TNode findNode(TNode node) {
@@ -218,32 +343,74 @@ public class NetworkGraph<TNode extends INode<TNode>, TEdge extends IEdge<TNode>
         return edges.get(edge);
     }
 
+    /**
+     * @return true if node has been committed to the ObservableLists; findNode also returns nodes still pending commit.
+     */
+    public boolean isCommitted(TNode node) {
+        synchronized(lock) {
+            return nodesCommitted.containsKey(node);
+        }
+    }
+
     public void clean() {
-        for(TNode node : nodesObservable) {
+        //Clearing the dirty flag fires events, so it is done on a copy rather than while holding lock.
+        final List<TNode> nodesCurrent;
+        synchronized(lock) {
+            nodesCurrent = new ArrayList<>(nodesObservable);
+        }
+        for(TNode node : nodesCurrent) {
             node.dirtyProperty().set(false);
         }
     }
 
-    protected void Process_commitUI() {
-        final List<TNode> nodesNew;
-        final List<TEdge> edgesNew;
-        final List<TNode> nodesRemoved;
-        final List<TEdge> edgesRemoved;
-
-        synchronized(lock) {
-            edgesNew = new LinkedList<>(edges.keySet());
-            nodesNew = new LinkedList<>(nodes.keySet());
+    /**
+     * The net changes logged since the previous commit.
+     */
+    protected class PendingChanges {
+        public final List<TNode> nodesAdded = new ArrayList<>();
+        public final Set<TNode> nodesRemoved = new HashSet<>();
+        public final List<TEdge> edgesAdded = new ArrayList<>();
+        public final Set<TEdge> edgesRemoved = new HashSet<>();
+
+        public boolean isEmpty() {
+            return nodesAdded.isEmpty() && nodesRemoved.isEmpty() && edgesAdded.isEmpty() && edgesRemoved.isEmpty();
         }
-        nodesRemoved = new LinkedList<>(nodesObservable);
-        nodesRemoved.removeAll(nodesNew);
-        edgesRemoved = new LinkedList<>(edgesObservable);
-        edgesRemoved.removeAll(edgesNew);
-        edgesNew.removeAll(edgesObservable);
-        nodesNew.removeAll(nodesObservable);
+    }
 
+    /**
+     * Empties the pending-change log, reducing it to the changes that still hold against the maps.  An entry that was
+     * added and removed again since the last commit cancels out.  Must be called while holding lock.
+     */
+    protected PendingChanges drainPending() {
+        final PendingChanges changes = new PendingChanges();
+        drain(nodes, nodesCommitted, nodesPendingRemove, nodesPendingAdd, changes.nodesRemoved, changes.nodesAdded);
+        drain(edges, edgesCommitted, edgesPendingRemove, edgesPendingAdd, changes.edgesRemoved, changes.edgesAdded);
+        return changes;
+    }
 
+    private static <T> void drain(final Map<T, T> store, final Map<T, T> committed, final Queue<T> pendingRemove, final Queue<T> pendingAdd, final Set<T> removed, final List<T> added) {
+        //Removals first, so that an entry replaced by an equal object is removed and then added again.
+        for(T item = pendingRemove.poll(); item != null; item = pendingRemove.poll()) {
+            final T itemCommitted = committed.get(item);
+            if(itemCommitted != null && store.get(item) != itemCommitted) {
+                committed.remove(item);
+                removed.add(itemCommitted);
+            }
+        }
+        for(T item = pendingAdd.poll(); item != null; item = pendingAdd.poll()) {
+            if(store.get(item) == item && !committed.containsKey(item)) {
+                committed.put(item, item);
+                added.add(item);
+            }
+        }
+    }
+
+    /**
+     * Applies changes to the ObservableLists, each as a single batched change.  Must be called while holding lock.
+     */
+    protected void commit(final PendingChanges changes) {
         //As they are just being added to the graph, the nodes are dirty.
-        nodesNew.stream().forEach(node -> {
+        changes.nodesAdded.stream().forEach(node -> {
             node.dirtyProperty().set(true);
 
             node.dirtyProperty().addListener((observable, oldValue, newValue) -> {
@@ -253,10 +420,48 @@ public class NetworkGraph<TNode extends INode<TNode>, TEdge extends IEdge<TNode>
             });
         });
 
-        edgesObservable.removeAll(edgesRemoved);
-        nodesObservable.removeAll(nodesRemoved);
-        nodesObservable.addAll(nodesNew);
-        edgesObservable.addAll(edgesNew);
+        if(!changes.edgesRemoved.isEmpty()) {
+            edgesObservable.removeAll(changes.edgesRemoved);
+        }
+        if(!changes.nodesRemoved.isEmpty()) {
+            nodesObservable.removeAll(changes.nodesRemoved);
+        }
+        if(!changes.nodesAdded.isEmpty()) {
+            nodesObservable.addAll(changes.nodesAdded);
+        }
+        if(!changes.edgesAdded.isEmpty()) {
+            edgesObservable.addAll(changes.edgesAdded);
+        }
+    }
+
+    protected void Process_commitUI() {
+        final long timeStart = System.nanoTime();
+        final PendingChanges changes;
+        synchronized(lock) {
+            changes = drainPending();
+            commit(changes);
+        }
+        reportCommit(changes, timeStart);
+    }
+
+    /**
+     * Records how long a commit took, for the status bar, and logs it if it was slow enough to be noticeable in the UI.
+     */
+    protected void reportCommit(final PendingChanges changes, final long timeStart) {
+        durationLastCommit = System.nanoTime() - timeStart;
+        if(!changes.isEmpty() && durationLastCommit >= SLOW_COMMIT_NANOS) {
+            Logger.log(this, Severity.Warning, String.format("UI commit of %d nodes (+%d/-%d) and %d edges (+%d/-%d) took %d ms.",
+                    nodesObservable.size(), changes.nodesAdded.size(), changes.nodesRemoved.size(),
+                    edgesObservable.size(), changes.edgesAdded.size(), changes.edgesRemoved.size(),
+                    TimeUnit.NANOSECONDS.toMillis(durationLastCommit)));
+        }
+    }
+
+    /**
+     * @return The time, in nanoseconds, taken by the most recent commit to the ObservableLists.
+     */
+    public long getLastCommitDuration() {
+        return durationLastCommit;
     }
 
     public final void refresh() {
@@ -283,56 +488,72 @@ public class NetworkGraph<TNode extends INode<TNode>, TEdge extends IEdge<TNode>
      */
     public void clearTopology() {
         synchronized(lock) {
+            generation++;
             edges.clear();
             nodes.clear();
+            adjacency.clear();
+            nodesPendingAdd.clear();
+            nodesPendingRemove.clear();
+            edgesPendingAdd.clear();
+            edgesPendingRemove.clear();
+            nodesCommitted.clear();
+            edgesCommitted.clear();
         }
 
         OnGraphCleared.call(new UpdateGraphArgs(this));
-        edgesObservable.clear();
-        nodesObservable.clear();
+        synchronized(lock) {
+            edgesObservable.clear();
+            nodesObservable.clear();
+        }
     }
 
     protected String getEntryName() {
         return UUID.randomUUID().toString() + "_ngraph.xml";
     }
 
-    protected void toXmlStart(ZipOutputStream zos) throws IOException {
+    public void toXml(ImportList imports, ZipOutputStream zos) throws IOException {
         ZipEntry graphEntry = new ZipEntry(getEntryName());
         zos.putNextEntry(graphEntry);
-        zos.write("<graph>".getBytes(StandardCharsets.UTF_8));
-        zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
-    }
+        XmlStreamWriter writer = new XmlStreamWriter(zos);
 
-    protected void toXmlEnd(ZipOutputStream zos) throws IOException {
-        zos.write("</graph>".getBytes(StandardCharsets.UTF_8));
-        zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+        writer.startElement("graph");
+        writer.newline();
+        toXmlContents(imports, writer);
+        writer.endElement();
+        writer.newline();
+
+        writer.flush();
         zos.closeEntry();
     }
 
-    protected void toXmlContents(ImportList imports, ZipOutputStream zos) throws IOException {
+    protected void toXmlContents(ImportList imports, XmlStreamWriter writer) throws IOException {
         List<TNode> nodes = new ArrayList<>();
         List<TEdge> edges = new ArrayList<>();
         GetGraphContents(nodes, edges);
 
-        zos.write("<nodes>".getBytes(StandardCharsets.UTF_8));
-        zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+        writer.startElement("nodes");
+        writer.newline();
         for(TNode node : nodes) {
-            zos.write(node.toXml().toString().getBytes(StandardCharsets.UTF_8));
-            zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+            node.toXml(writer);
+            writer.newline();
+        }
+        writer.endElement();
+        writer.newline();
+        writer.startElement("edges");
+        writer.closeStartTag();
+        //Edges refer to nodes and frames to imports by index; the indices are looked up once rather than searched per edge.
+        final Map<TNode, Integer> indexNodes = new HashMap<>(nodes.size() * 2);
+        for(int idx = 0; idx < nodes.size(); idx++) {
+            indexNodes.putIfAbsent(nodes.get(idx), idx);
+        }
+        final Map<ImportItem, Integer> indexImports = new HashMap<>();
+        for(int idx = 0; idx < imports.size(); idx++) {
+            indexImports.putIfAbsent(imports.get(idx), idx);
         }
-        zos.write("</nodes>".getBytes(StandardCharsets.UTF_8));
-        zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
-        zos.write("<edges>".getBytes(StandardCharsets.UTF_8));
         for(TEdge edge : edges) {
-            edge.toXml(nodes, imports, zos);
+            edge.toXml(indexNodes, indexImports, writer);
         }
-        zos.write("</edges>".getBytes(StandardCharsets.UTF_8));
-        zos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
-    }
-
-    public void toXml(ImportList imports, ZipOutputStream zos) throws IOException {
-        toXmlStart(zos);
-        toXmlContents(imports, zos);
-        toXmlEnd(zos);
+        writer.endElement();
+        writer.newline();
     }
 }
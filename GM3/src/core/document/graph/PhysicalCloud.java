@@ -1,9 +1,10 @@
 package core.document.graph;
 
-import core.document.serialization.xml.XmlElement;
+import core.document.serialization.xml.XmlStreamWriter;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -49,13 +50,11 @@ public class PhysicalCloud  extends PhysicalNode {
     }
 
     @Override
-    public XmlElement toXml() {
-        XmlElement cloud = super.toXml();
+    public void toXmlAttributes(XmlStreamWriter writer) throws IOException {
+        super.toXmlAttributes(writer);
 
-        cloud.addAttribute("type").setValue("cloud");
-        cloud.addAttribute("subtype").setValue(this.subtype);
-        cloud.addAttribute("index").setValue(Integer.toString(this.idxCloud));
-
-        return cloud;
+        writer.attribute("type", "cloud");
+        writer.attribute("subtype", this.subtype);
+        writer.attribute("index", this.idxCloud);
     }
 }
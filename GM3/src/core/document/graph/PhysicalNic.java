@@ -1,7 +1,7 @@
 package core.document.graph;
 
 import core.document.PhysicalTopology;
-import core.document.serialization.xml.XmlElement;
+import core.document.serialization.xml.XmlStreamWriter;
 import core.knowledgebase.Manufacturer;
 import core.knowledgebase.Reference;
 import javafx.beans.property.ObjectProperty;
@@ -11,6 +11,7 @@ import javafx.beans.property.StringProperty;
 import util.Cidr;
 import util.Mac;
 
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -66,14 +67,12 @@ public class PhysicalNic extends PhysicalNode {
 
     // == Serialization =======================================================
     @Override
-    public XmlElement toXml() {
-        XmlElement xmlNic = super.toXml();
-        xmlNic.addAttribute("type").setValue("nic");
+    public void toXmlAttributes(XmlStreamWriter writer) throws IOException {
+        super.toXmlAttributes(writer);
+        writer.attribute("type", "nic");
         if(vendor.get() != null) {
-            xmlNic.addAttribute("vendor").setValue(vendor.get());
+            writer.attribute("vendor", vendor.get());
         }
-        xmlNic.addAttribute("device").setValue(device.get());
-
-        return xmlNic;
+        writer.attribute("device", device.get());
     }
 }
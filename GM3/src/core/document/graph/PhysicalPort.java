@@ -1,12 +1,14 @@
 package core.document.graph;
 
 import core.document.PhysicalDevice;
-import core.document.serialization.xml.XmlElement;
+import core.document.serialization.xml.XmlStreamWriter;
 import javafx.beans.property.*;
 import util.Mac;
 
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -174,34 +176,46 @@ public class PhysicalPort extends PhysicalNode {
         return super.equals(other);
     }
 
+    @Override
+    public int hashCode() {
+        //Every switch has ports with the same names, so the owner is hashed as well; otherwise maps of ports, and of
+        // the edges between them, collide once there are many devices.
+        return 31 * Objects.hashCode(owner.get()) + super.hashCode();
+    }
+
     // == Serialization =======================================================
 
     @Override
-    public XmlElement toXml() {
-        XmlElement xmlPort = super.toXml();
-
-        xmlPort.addAttribute("type").setValue("port");
-        xmlPort.addAttribute("mac").setValue(mac.toString());
-        xmlPort.addAttribute("owner").setValue(owner.get().nameProperty().get());
-        xmlPort.addAttribute("connected").setValue(Boolean.toString(connected.get()));
-        xmlPort.addAttribute("enabled").setValue(Boolean.toString(enabled.get()));
-        xmlPort.addAttribute("trunk").setValue(Boolean.toString(trunk.get()));
-        xmlPort.addAttribute("group").setValue(group.get());
-        xmlPort.addAttribute("index").setValue(Integer.toString(index.get()));
+    public void toXmlAttributes(XmlStreamWriter writer) throws IOException {
+        super.toXmlAttributes(writer);
+
+        writer.attribute("type", "port");
+        writer.attribute("mac", mac.toString());
+        writer.attribute("owner", owner.get().nameProperty().get());
+        writer.attribute("connected", Boolean.toString(connected.get()));
+        writer.attribute("enabled", Boolean.toString(enabled.get()));
+        writer.attribute("trunk", Boolean.toString(trunk.get()));
+        writer.attribute("group", group.get());
+        writer.attribute("index", index.get());
         if(description.get() != null) {
-            xmlPort.addAttribute("description").setValue(description.get());
+            writer.attribute("description", description.get());
         }
-        xmlPort.addAttribute("unknownConnections").setValue(Boolean.toString(unknownConnection.get()));
+        writer.attribute("unknownConnections", Boolean.toString(unknownConnection.get()));
+    }
+
+    @Override
+    public void toXmlChildren(XmlStreamWriter writer) throws IOException {
+        super.toXmlChildren(writer);
 
         for(Mac mac : connectedMacs) {
-            XmlElement xmlMac = new XmlElement("mac").appendedTo(xmlPort);
-            xmlMac.addAttribute("m").setValue(mac.toString());
+            writer.startElement("mac");
+            writer.attribute("m", mac.toString());
+            writer.endElement();
         }
         for(Integer vlan : connectedVlans) {
-            XmlElement xmlVlan = new XmlElement("vlan").appendedTo(xmlPort);
-            xmlVlan.addAttribute("id").setValue(vlan.toString());
+            writer.startElement("vlan");
+            writer.attribute("id", vlan);
+            writer.endElement();
         }
-
-        return xmlPort;
     }
 }
@@ -1,12 +1,11 @@
 package core.document.graph;
 
-import javafx.beans.Observable;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.value.ObservableValue;
+import javafx.collections.ListChangeListener;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
 
 /**
  * Network Graph that filters the contents of another NetworkGraph; used for watch functionality.
@@ -16,6 +15,9 @@ public class WatchNetworkGraph<TNode extends INode<TNode>, TEdge extends IEdge<T
     protected final IntegerProperty degrees;
     protected final NetworkGraph<TNode, TEdge> graphParent;
 
+    //Hop distance from root of every node in this graph.  Only nodes closer than degrees are expanded.
+    private final HashMap<TNode, Integer> distances;
+
     public WatchNetworkGraph(NetworkGraph<TNode, TEdge> parent, TNode root, int degrees) {
         super();
 
@@ -26,16 +28,16 @@ public class WatchNetworkGraph<TNode extends INode<TNode>, TEdge extends IEdge<T
         this.graphParent = parent;
         this.root = root;
         this.degrees = new SimpleIntegerProperty(degrees);
+        this.distances = new HashMap<>();
 
         //It would be great if we could just use filteredLists, but they only evaluate the predicate when the predicate
         // is changed or the list is modified (and then only against hte modified elements).
-        //Since nodes are added before edges, we would have to reevaluate the node list manually in response to edge
-        // invalidations, but we have to reevaluate all edges if degrees > 1 whenever an edge is added, so the
-        // FilteredList model doesn't work, at least not without building a lot of dirty hacks.
-        //Instead, we will add an invalidation handler on the edge graph of the parent and rebuild our node/edge lists.
+        //Instead, we track the hop distance of every node we contain and examine each edge committed to the parent as
+        // it arrives; an edge only matters if one of its endpoints is within degrees - 1 hops, and it can only shorten
+        // the paths through its endpoints.
         //This depends on the inability to remove nodes and edges from the parent--a situation that only happens when
-        // cleared, which should close any watch tabs
-        parent.edgesObservable.addListener(this::Handle_Invalidation);
+        // cleared, which should close any watch tabs.  Should it happen anyway, the tree is rebuilt from scratch.
+        parent.edgesObservable.addListener(this::Handle_EdgesChanged);
         this.degrees.addListener(this::Handle_DegreesChanged);
     }
 
@@ -44,47 +46,124 @@ public class WatchNetworkGraph<TNode extends INode<TNode>, TEdge extends IEdge<T
     }
 
     protected void Handle_DegreesChanged(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
-        if(newValue.intValue() < oldValue.intValue()) {
-            this.clearTopology();
+        final int degreesOld = oldValue.intValue();
+        final int degreesNew = newValue.intValue();
+
+        if(degreesNew < degreesOld) {
+            //Drop the outer shells: nodes beyond the new limit and edges with no endpoint inside it.
+            final List<TEdge> edgesRemoved = new ArrayList<>();
+            for(TEdge edge : getRawEdgeList()) {
+                if(!isExpanded(edge.getSource(), degreesNew) && !isExpanded(edge.getDestination(), degreesNew)) {
+                    edgesRemoved.add(edge);
+                }
+            }
+            final List<TNode> nodesRemoved = new ArrayList<>();
+            for(Map.Entry<TNode, Integer> entry : distances.entrySet()) {
+                if(entry.getValue() > degreesNew) {
+                    nodesRemoved.add(entry.getKey());
+                }
+            }
+            removeEdges(edgesRemoved);
+            removeNodes(nodesRemoved);
+            distances.keySet().removeAll(nodesRemoved);
+        } else {
+            //The nodes on the old boundary were never expanded; everything inside it is unchanged.
+            final Deque<TNode> pending = new ArrayDeque<>();
+            for(Map.Entry<TNode, Integer> entry : distances.entrySet()) {
+                if(entry.getValue() == degreesOld) {
+                    pending.add(entry.getKey());
+                }
+            }
+            expand(pending);
+        }
+
+        this.refresh();
+    }
+
+    protected void Handle_EdgesChanged(ListChangeListener.Change<? extends TEdge> change) {
+        final Deque<TNode> pending = new ArrayDeque<>();
+        while(change.next()) {
+            if(change.wasRemoved()) {
+                clearTopology();
+                reparseTree();
+                return;
+            }
+            for(TEdge edge : change.getAddedSubList()) {
+                include(edge, pending);
+            }
+        }
+        expand(pending);
+
+        this.refresh();
+    }
+
+    private boolean isExpanded(final TNode node, final int degrees) {
+        final Integer distance = distances.get(node);
+        return distance != null && distance < degrees;
+    }
+
+    /**
+     * Adds edge if either endpoint is close enough to the root to be expanded, and records any shorter path it creates
+     * to the other endpoint.  Nodes whose distance shrinks are added to pending so their own edges can be examined.
+     */
+    private void include(final TEdge edge, final Deque<TNode> pending) {
+        final Integer distanceSource = distances.get(edge.getSource());
+        final Integer distanceDestination = distances.get(edge.getDestination());
+        final int limit = degrees.get();
+        final boolean fromSource = distanceSource != null && distanceSource < limit;
+        final boolean fromDestination = distanceDestination != null && distanceDestination < limit;
+        if(!fromSource && !fromDestination) {
+            return;
+        }
+
+        if(fromSource) {
+            offer(edge.getDestination(), distanceSource + 1, pending);
+        }
+        if(fromDestination) {
+            offer(edge.getSource(), distanceDestination + 1, pending);
+        }
+        //Always add the nodes before the edge.
+        addNode(edge.getSource());
+        addNode(edge.getDestination());
+        addEdge(edge);
+    }
+
+    private void offer(final TNode node, final int distance, final Deque<TNode> pending) {
+        final Integer distanceCurrent = distances.get(node);
+        if(distanceCurrent == null || distanceCurrent > distance) {
+            distances.put(node, distance);
+            pending.add(node);
         }
-        reparseTree();
     }
-    protected void Handle_Invalidation(Observable source) {
-        reparseTree();
+
+    /**
+     * Breadth-first expansion from the pending nodes, out to degrees hops from the root.
+     */
+    private void expand(final Deque<TNode> pending) {
+        while(!pending.isEmpty()) {
+            final TNode node = pending.poll();
+            if(!isExpanded(node, degrees.get())) {
+                continue;
+            }
+            for(TEdge edge : graphParent.getEdgesInvolving(node)) {
+                include(edge, pending);
+            }
+        }
     }
 
+    /**
+     * Rebuilds the hop distances from the root and adds every node and edge within range.
+     */
     public void reparseTree() {
-        List<TNode> nodesVisited = new LinkedList<>();
-        List<TNode> nodesCurrent = new LinkedList<>();
+        distances.clear();
 
         //Degree 0
-        nodesCurrent.add(root);
+        distances.put(root, 0);
         addNode(root);
 
-        for(int idxIteration = degrees.get(); idxIteration > 0; idxIteration--) {
-            List<TNode> nextNodes = new LinkedList<>();
-            for(TNode node : nodesCurrent) {
-                if(nodesVisited.contains(node)) {
-                    continue;
-                }
-                nodesVisited.add(node);
-
-                //Add connected nodes; we'll handle duplicates next iteration.
-                for(TEdge edge : graphParent.getEdgesInvolving(node)) {
-                    TNode other;
-                    if(edge.getSource().equals(node)) {
-                        other = edge.getDestination();
-                    } else {
-                        other = edge.getSource();
-                    }
-                    nextNodes.add(other);
-                    //Always add the node before the edge.
-                    addNode(other);
-                    addEdge(edge);
-                }
-            }
-            nodesCurrent = nextNodes;
-        }
+        final Deque<TNode> pending = new ArrayDeque<>();
+        pending.add(root);
+        expand(pending);
 
         this.refresh();
     }
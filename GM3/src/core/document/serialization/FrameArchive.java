@@ -0,0 +1,277 @@
+package core.document.serialization;
+
+import core.Configuration;
+import core.document.graph.LogicalEdge;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * The frames.bin entry of a session, which holds the frames of every logical edge for logical.bin.
+ *
+ * Each group of frames is a block of { count, columns } in the same encoding logical.bin used for inline frames, and
+ * logical.bin records the offset of each block.  The entry is stored rather than deflated so that a block can be read
+ * by skipping straight to its offset.
+ *
+ * An instance is the frames.bin of one opened session.  It keeps the session file open while groups are read from it,
+ * and caches the groups read most recently, until it is closed with the session.
+ */
+public class FrameArchive implements Closeable {
+    public static final String ENTRY_NAME = "frames.bin";
+
+    private final ReentrantReadWriteLock lock;
+    private Path path;
+    //Set once the session file has been overwritten and the original moved aside; the copy is deleted on close.
+    private boolean isSetAside;
+    private ZipFile file;
+    private ZipEntry entry;
+
+    //Groups that have been read back, least recently used first.  The bound is on frames rather than groups, since a
+    //single group can hold anywhere from one frame to millions.
+    private final LinkedHashMap<Source, LogicalEdge.ConnectionDetails.FrameList> cache;
+    private long cntFramesCached;
+
+    public FrameArchive(final Path path) {
+        this.lock = new ReentrantReadWriteLock();
+        this.path = path;
+        this.isSetAside = false;
+        this.file = null;
+        this.entry = null;
+
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+        this.cntFramesCached = 0;
+    }
+
+    private LogicalEdge.ConnectionDetails.FrameList read(final Source source) throws IOException {
+        synchronized(cache) {
+            final LogicalEdge.ConnectionDetails.FrameList cached = cache.get(source);
+            if(cached != null) {
+                return cached;
+            }
+        }
+
+        final LogicalEdge.ConnectionDetails.FrameList frames;
+        lock.readLock().lock();
+        try {
+            final ZipFile zip;
+            final ZipEntry entryFrames;
+            synchronized(this) {
+                if(file == null) {
+                    file = new ZipFile(path.toFile());
+                    entry = file.getEntry(ENTRY_NAME);
+                    if(entry == null) {
+                        closeFile();
+                        throw new IOException(path.getFileName() + " does not contain " + ENTRY_NAME);
+                    }
+                }
+                zip = file;
+                entryFrames = entry;
+            }
+            //A ZipFile can have several entries open at once, so groups are read in parallel.
+            try(InputStream in = zip.getInputStream(entryFrames)) {
+                skipFully(in, source.offset);
+                //Most blocks are a few bytes per frame, so the buffer is sized to the block rather than to a whole graph.
+                final LogicalGraphBinary.Input input = new LogicalGraphBinary.Input(in, (int)Math.min(1 << 16, 16L + 8L * source.size));
+                if(input.readCount() != source.size) {
+                    throw new IOException("The frame index of " + path.getFileName() + " does not match " + ENTRY_NAME);
+                }
+                final LogicalGraphBinary.FrameBuffer buffer = new LogicalGraphBinary.FrameBuffer();
+                LogicalGraphBinary.readFrames(input, source.size, buffer);
+                frames = LogicalEdge.ConnectionDetails.FrameList.of(source.size, buffer.portsSource, buffer.portsDestination, buffer.protocols, buffer.frames, buffer.times, buffer.bytes);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        synchronized(cache) {
+            final long limit = Configuration.getPreferenceLong(Configuration.Fields.SESSION_FRAME_CACHE_SIZE);
+            final LogicalEdge.ConnectionDetails.FrameList previous = cache.put(source, frames);
+            cntFramesCached += frames.size() - (previous == null ? 0 : previous.size());
+            //The entry that was just read is the most recently used, so it is only evicted if it is the only entry.
+            final Iterator<LogicalEdge.ConnectionDetails.FrameList> iterator = cache.values().iterator();
+            while(cntFramesCached > limit && cache.size() > 1) {
+                cntFramesCached -= iterator.next().size();
+                iterator.remove();
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * Moves a newly written session file to target, replacing it.  If target is the file the frames are read from, the
+     * original is first moved aside, within the same directory, so the frames stay where they are without being loaded.
+     */
+    public void replace(final Path pathNew, final Path pathTarget) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if(!isStoredIn(pathTarget)) {
+                moveAtomically(pathNew, pathTarget);
+                return;
+            }
+
+            //The file has to be closed before it can be moved on some platforms.
+            closeFile();
+            final Path pathAside = Files.createTempFile(pathTarget.toAbsolutePath().getParent(), "." + pathTarget.getFileName(), ".frames");
+            moveAtomically(pathTarget, pathAside);
+            try {
+                moveAtomically(pathNew, pathTarget);
+            } catch(IOException ex) {
+                moveAtomically(pathAside, pathTarget);
+                throw ex;
+            }
+            path = pathAside;
+            isSetAside = true;
+            pathAside.toFile().deleteOnExit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean isStoredIn(final Path path) {
+        try {
+            return Files.isSameFile(this.path, path);
+        } catch(IOException ex) {
+            //One of the files does not exist (yet), in which case only an identical path can refer to the same file.
+            return this.path.toAbsolutePath().normalize().equals(path.toAbsolutePath().normalize());
+        }
+    }
+
+    static void moveAtomically(final Path from, final Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch(AtomicMoveNotSupportedException ex) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private synchronized void closeFile() throws IOException {
+        final ZipFile zip = file;
+        file = null;
+        entry = null;
+        if(zip != null) {
+            zip.close();
+        }
+    }
+
+    /**
+     * Releases the session file and the cached frames; called when the session the frames belong to is cleared.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            synchronized(cache) {
+                cache.clear();
+                cntFramesCached = 0;
+            }
+            closeFile();
+            if(isSetAside) {
+                Files.deleteIfExists(path);
+                isSetAside = false;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Collects the blocks in a temporary file, since the size and checksum of a stored entry have to be known before it
+     * is written.
+     */
+    public static class Writer implements Closeable {
+        private final Path pathTemp;
+        private final CheckedOutputStream stream;
+        private final LogicalGraphBinary.Output out;
+
+        public Writer() throws IOException {
+            this.pathTemp = Files.createTempFile("grassmarlin", ".frames");
+            this.stream = new CheckedOutputStream(Files.newOutputStream(pathTemp), new CRC32());
+            this.out = new LogicalGraphBinary.Output(stream);
+        }
+
+        /**
+         * @return The offset of the block within the entry.
+         */
+        public long write(final LogicalEdge.ConnectionDetails.FrameList frames) throws IOException {
+            final long offset = out.position();
+            out.writeVarLong(frames.size());
+            LogicalGraphBinary.writeFrames(out, frames);
+            return offset;
+        }
+
+        public void writeTo(final ZipOutputStream zos) throws IOException {
+            out.flush();
+            stream.close();
+
+            final ZipEntry entry = new ZipEntry(ENTRY_NAME);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(out.position());
+            entry.setCompressedSize(out.position());
+            entry.setCrc(stream.getChecksum().getValue());
+            zos.putNextEntry(entry);
+            Files.copy(pathTemp, zos);
+            zos.closeEntry();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                stream.close();
+            } finally {
+                Files.deleteIfExists(pathTemp);
+            }
+        }
+    }
+
+    /**
+     * A single block of the archive.
+     */
+    public static class Source implements LogicalEdge.ConnectionDetails.FrameSource {
+        private final FrameArchive archive;
+        private final long offset;
+        private final int size;
+
+        public Source(final FrameArchive archive, final long offset, final int size) {
+            this.archive = archive;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public LogicalEdge.ConnectionDetails.FrameList read() throws IOException {
+            return archive.read(this);
+        }
+    }
+
+    private static void skipFully(final InputStream in, long cntBytes) throws IOException {
+        while(cntBytes > 0) {
+            final long skipped = in.skip(cntBytes);
+            if(skipped > 0) {
+                cntBytes -= skipped;
+            } else if(in.read() < 0) {
+                throw new EOFException("Unexpected end of " + ENTRY_NAME);
+            } else {
+                cntBytes--;
+            }
+        }
+    }
+}
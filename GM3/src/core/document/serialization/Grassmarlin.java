@@ -13,6 +13,8 @@ import javax.xml.xpath.*;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -70,6 +72,18 @@ public abstract class Grassmarlin {
 
     // == LOAD ================================================================
     public static boolean LoadState(Path source, Session doc, TabController tabs) throws IOException {
+        return LoadState(source, doc, tabs, null);
+    }
+
+    public static boolean LoadState(Path source, Session doc, TabController tabs, DoubleConsumer progress) throws IOException {
+        return LoadState(source, doc, tabs, progress, () -> false);
+    }
+
+    /**
+     * @param progress If not null, receives the fraction of the load that has completed, from 0.0 to 1.0.
+     * @param isCancelled Checked as the session is read; once it returns true the load stops and returns false.
+     */
+    public static boolean LoadState(Path source, Session doc, TabController tabs, DoubleConsumer progress, BooleanSupplier isCancelled) throws IOException {
         try {
             doc.setSavePath(source);
             ZipFile inFile = new ZipFile(source.toFile());
@@ -84,7 +98,7 @@ public abstract class Grassmarlin {
                 tabs.getGraphs().forEach(graph -> graph.suspendLayout());
 
                 if (version.equals("3.2")) {
-                    return Grassmarlin_3_2.getInstance().loadDocumentSax(inFile, doc, tabs);
+                    return Grassmarlin_3_2.getInstance().loadDocumentSax(inFile, doc, tabs, progress, isCancelled);
                 } else {
                     Logger.log(Grassmarlin.class, Severity.Error, "Unable to load version " + version + " session file.");
                     return false;
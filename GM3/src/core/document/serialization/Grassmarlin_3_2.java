@@ -33,13 +33,18 @@ import util.Launcher;
 import util.Mac;
 
 import javax.xml.parsers.*;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -58,10 +63,31 @@ public class Grassmarlin_3_2 {
 
 
     public boolean loadDocumentSax(ZipFile inFile, Session session, TabController tabs) {
+        return loadDocumentSax(inFile, session, tabs, null);
+    }
+
+    /**
+     * Loads the session in two phases.  First, every entry is parsed concurrently into a self-contained representation
+     * (SessionContents, LogicalContents, PhysicalContents, MeshContents); references that cross entries, such as the
+     * import that a frame came from or the device that owns a port, are recorded but not resolved.  Then the join phase
+     * resolves those references and adds everything to the session in bulk, in the same order a serial load would.
+     * @param progress If not null, receives the fraction of the load that has completed, from 0.0 to 1.0.
+     */
+    public boolean loadDocumentSax(ZipFile inFile, Session session, TabController tabs, DoubleConsumer progress) {
+        return loadDocumentSax(inFile, session, tabs, progress, () -> false);
+    }
+
+    /**
+     * @param isCancelled Checked by the parsers and between the steps of the join; once it returns true, the parsers stop
+     * at the next element they read and nothing more is added to the session.  The parsing threads have all finished by
+     * the time this returns.
+     */
+    public boolean loadDocumentSax(ZipFile inFile, Session session, TabController tabs, DoubleConsumer progress, BooleanSupplier isCancelled) {
 
         ZipEntry manifestEntry = inFile.getEntry("manifest.xml");
         ZipEntry sessionEntry = inFile.getEntry("session.xml");
         ZipEntry logicalEntry = inFile.getEntry("logical.xml");
+        ZipEntry logicalBinaryEntry = inFile.getEntry(LogicalGraphBinary.ENTRY_NAME);
         ZipEntry physicalEntry = inFile.getEntry("physical.xml");
         ZipEntry meshEntry = inFile.getEntry("mesh.xml");
 
@@ -69,44 +95,74 @@ public class Grassmarlin_3_2 {
             return false;
         }
 
+        final LoadProgress tracker = new LoadProgress(progress, isCancelled, sessionEntry, logicalBinaryEntry != null ? logicalBinaryEntry : logicalEntry, physicalEntry, meshEntry);
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())), runnable -> {
+            final Thread thread = new Thread(runnable, "Session Loader");
+            thread.setDaemon(true);
+            return thread;
+        });
         try {
             session.getPhysicalTopologyMapper().startLoading();
 
-            Reader sessionReader = new InputStreamReader(inFile.getInputStream(sessionEntry), StandardCharsets.UTF_8);
-            InputSource sessionSource = new InputSource(sessionReader);
-            sessionSource.setEncoding("UTF-8");
-            loadSession(sessionSource, session);
-
-            sessionReader.close();
-            sessionReader = null;
-            sessionSource = null;
-
-            Reader logicalReader = new InputStreamReader(inFile.getInputStream(logicalEntry), StandardCharsets.UTF_8);
-            InputSource logicalSource = new InputSource(logicalReader);
-            logicalSource.setEncoding("UTF-8");
-            loadLogical(logicalSource, session);
-
-            logicalReader.close();
-            logicalReader = null;
-            logicalSource = null;
-
-            Reader physicalReader = new InputStreamReader(inFile.getInputStream(physicalEntry), StandardCharsets.UTF_8);
-            InputSource physicalSource = new InputSource(physicalReader);
-            physicalSource.setEncoding("UTF-8");
-            loadPhysical(physicalSource, session);
-
-            physicalReader.close();
-            physicalReader = null;
-            physicalSource = null;
+            final Future<SessionContents> futureSession = executor.submit(() -> {
+                final SessionContents contents = new SessionContents();
+                parse(tracker.open(inFile, sessionEntry), new SessionLoadHandler(contents, isCancelled));
+                return contents;
+            });
+            //The binary logical graph resolves imports as it reads frames, so it is started once session.xml has been parsed.
+            final Future<LogicalContents> futureLogical = logicalBinaryEntry != null ? null : executor.submit(() -> {
+                final LogicalContents contents = new LogicalContents();
+                parse(tracker.open(inFile, logicalEntry), new LogicalLoadHandler(contents, session.getLogicalGraph().getCidrList(), isCancelled));
+                return contents;
+            });
+            final Future<PhysicalContents> futurePhysical = executor.submit(() -> {
+                final PhysicalContents contents = new PhysicalContents();
+                parse(tracker.open(inFile, physicalEntry), new PhysicalLoadHandler(contents, isCancelled));
+                return contents;
+            });
+            final Future<MeshContents> futureMesh = executor.submit(() -> {
+                final MeshContents contents = new MeshContents();
+                parse(tracker.open(inFile, meshEntry), new MeshLoadHandler(contents, isCancelled));
+                return contents;
+            });
 
-            Reader meshReader = new InputStreamReader(inFile.getInputStream(meshEntry), StandardCharsets.UTF_8);
-            InputSource meshSource = new InputSource(meshReader);
-            meshSource.setEncoding("UTF-8");
-            loadMesh(meshSource, session);
+            final SessionContents contentsSession = join(futureSession);
+            final Future<?> futureLogicalBinary = logicalBinaryEntry == null ? null : executor.submit(() -> {
+                try(InputStream logicalStream = tracker.open(inFile, logicalBinaryEntry)) {
+                    final FrameArchive archive = new FrameArchive(Paths.get(inFile.getName()));
+                    session.setFrameArchive(archive);
+                    LogicalGraphBinary.read(logicalStream, session.getLogicalGraph(), contentsSession.imports, archive);
+                }
+                return null;
+            });
 
-            meshReader.close();
-            meshReader = null;
-            meshSource = null;
+            // Join: resolve references between entries and add the contents to the session.
+            if(isCancelled.getAsBoolean()) {
+                return cancelled(inFile);
+            }
+            contentsSession.applyTo(session);
+            if(futureLogicalBinary != null) {
+                join(futureLogicalBinary);
+            } else {
+                final LogicalContents contentsLogical = join(futureLogical);
+                if(isCancelled.getAsBoolean()) {
+                    return cancelled(inFile);
+                }
+                contentsLogical.applyTo(session.getLogicalGraph(), contentsSession.imports);
+            }
+            tracker.joined(1);
+            final PhysicalContents contentsPhysical = join(futurePhysical);
+            if(isCancelled.getAsBoolean()) {
+                return cancelled(inFile);
+            }
+            applyPhysical(contentsPhysical, session);
+            tracker.joined(2);
+            final MeshContents contentsMesh = join(futureMesh);
+            if(isCancelled.getAsBoolean()) {
+                return cancelled(inFile);
+            }
+            contentsMesh.applyTo(session.getMeshGraph());
+            tracker.joined(3);
 
             session.getPhysicalTopologyMapper().endLoading();
 
@@ -143,26 +199,197 @@ public class Grassmarlin_3_2 {
             });
 
         } catch (IOException e) {
+            if(isCancelled.getAsBoolean()) {
+                return cancelled(inFile);
+            }
             Logger.log(this, Severity.Error, "Error loading file " + inFile.getName());
             return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Logger.log(this, Severity.Error, "Loading " + inFile.getName() + " was interrupted.");
+            return false;
+        } finally {
+            executor.shutdownNow();
+            //The parsers do not respond to interrupts, but they do stop once cancelled; none may outlive the load.
+            try {
+                while(!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    Logger.log(this, Severity.Warning, "Waiting for the session loader threads to finish.");
+                }
+            } catch(InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
         }
         Logger.log(this, Severity.Information, "Loaded " + inFile.getName());
         return true;
     }
 
-    //<editor-fold defaultstate="collapsed" desc="Load Session">
-    private void loadSession(InputSource source, Session session) throws IOException {
-        try {
+    private boolean cancelled(ZipFile inFile) {
+        Logger.log(this, Severity.Information, "Loading " + inFile.getName() + " was cancelled.");
+        return false;
+    }
+
+    /**
+     * Parses an entry, logging (rather than propagating) XML errors, as each of the entry loaders always has.
+     */
+    private void parse(InputStream stream, DefaultHandler handler) throws IOException {
+        try(Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+            InputSource source = new InputSource(reader);
+            source.setEncoding("UTF-8");
             SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
 
-            parser.parse(source, new SessionLoadHandler(session));
+            parser.parse(source, handler);
+        } catch (LoadCancelledException e) {
+            throw new InterruptedIOException(e.getMessage());
         } catch (SAXException | ParserConfigurationException e) {
             Logger.log(this, Severity.Error, "Error parsing session information");
         }
     }
 
-    private class SessionLoadHandler extends DefaultHandler {
-        private final Session session;
+    /**
+     * Waits for a parsing task, rethrowing whatever it threw.
+     */
+    private static <T> T join(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch(ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if(cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if(cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if(cause instanceof Error) {
+                throw (Error)cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * Reports progress as the fraction of the uncompressed entries that has been read by the parsers (the first 90%),
+     * followed by the join phase.
+     */
+    private static class LoadProgress {
+        private static final double FRACTION_PARSE = 0.9;
+        private static final int CNT_JOIN_STEPS = 3;
+
+        private final DoubleConsumer progress;
+        private final BooleanSupplier isCancelled;
+        private final long cntBytesTotal;
+        private final AtomicLong cntBytesRead;
+        private double fractionReported;
+
+        public LoadProgress(DoubleConsumer progress, BooleanSupplier isCancelled, ZipEntry... entries) {
+            this.progress = progress;
+            this.isCancelled = isCancelled;
+            long total = 0;
+            for(ZipEntry entry : entries) {
+                if(entry != null && entry.getSize() > 0) {
+                    total += entry.getSize();
+                }
+            }
+            this.cntBytesTotal = total;
+            this.cntBytesRead = new AtomicLong(0);
+            this.fractionReported = 0.0;
+        }
+
+        /**
+         * Opens an entry through a stream that reports progress and fails with an InterruptedIOException once the load is
+         * cancelled, which also stops readers, such as the binary logical graph, that are not SAX handlers.
+         */
+        public InputStream open(ZipFile file, ZipEntry entry) throws IOException {
+            final InputStream stream = file.getInputStream(entry);
+            return new FilterInputStream(stream) {
+                @Override
+                public int read() throws IOException {
+                    checkCancelled();
+                    final int result = super.read();
+                    if(result >= 0) {
+                        advance(1);
+                    }
+                    return result;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    checkCancelled();
+                    final int result = super.read(b, off, len);
+                    if(result > 0) {
+                        advance(result);
+                    }
+                    return result;
+                }
+            };
+        }
+
+        private void checkCancelled() throws InterruptedIOException {
+            if(isCancelled.getAsBoolean()) {
+                throw new InterruptedIOException("Loading was cancelled.");
+            }
+        }
+
+        private void advance(long cntBytes) {
+            if(progress == null || cntBytesTotal == 0) {
+                return;
+            }
+            report(FRACTION_PARSE * Math.min(1.0, (double)cntBytesRead.addAndGet(cntBytes) / (double)cntBytesTotal));
+        }
+
+        public void joined(int cntSteps) {
+            if(progress != null) {
+                report(FRACTION_PARSE + (1.0 - FRACTION_PARSE) * cntSteps / CNT_JOIN_STEPS);
+            }
+        }
+
+        private synchronized void report(double fraction) {
+            //Only whole percentages are reported, so the UI is not flooded with updates.
+            if(fraction - fractionReported >= 0.01 || (fraction == 1.0 && fractionReported != 1.0)) {
+                fractionReported = fraction;
+                progress.accept(fraction);
+            }
+        }
+    }
+
+    private static class LoadCancelledException extends SAXException {
+        public LoadCancelledException() {
+            super("Loading was cancelled.");
+        }
+    }
+
+    /**
+     * A handler for one of the entries of a session, which stops the parse at the next element once the load is cancelled.
+     */
+    private abstract static class CancellableLoadHandler extends DefaultHandler {
+        private final BooleanSupplier isCancelled;
+
+        protected CancellableLoadHandler(BooleanSupplier isCancelled) {
+            this.isCancelled = isCancelled;
+        }
+
+        protected void checkCancelled() throws SAXException {
+            if(isCancelled.getAsBoolean()) {
+                throw new LoadCancelledException();
+            }
+        }
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Load Session">
+    private static class SessionContents {
+        private final List<ImportItem> imports = new ArrayList<>();
+        private final List<ImportDialog.PreliminaryImportItem> importsPending = new ArrayList<>();
+        private final List<PhysicalDevice> devices = new ArrayList<>();
+
+        public void applyTo(Session session) {
+            session.getImports().addAll(imports);
+            session.getPendingImports().addAll(importsPending);
+            if (!devices.isEmpty()) {
+                session.getPhysicalTopologyMapper().getDevices().addAll(devices);
+            }
+        }
+    }
+
+    private class SessionLoadHandler extends CancellableLoadHandler {
+        private final SessionContents contents;
 
         private List<PhysicalDevice> devices = new ArrayList<>();
 
@@ -190,12 +417,14 @@ public class Grassmarlin_3_2 {
 
         private Attributes endpointAttributes;
 
-        public SessionLoadHandler(Session session) {
-            this.session = session;
+        public SessionLoadHandler(SessionContents contents, BooleanSupplier isCancelled) {
+            super(isCancelled);
+            this.contents = contents;
         }
 
         @Override
         public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            checkCancelled();
             switch (qName.toLowerCase()) {
                 case "session":
                     inSession = true;
@@ -260,7 +489,7 @@ public class Grassmarlin_3_2 {
                     break;
                 case "import":
                     if (inSession && inImports && inImport && importAttributes != null) {
-                        addImport(importAttributes, session.getImports());
+                        addImport(importAttributes, contents.imports);
 
                         importAttributes = null;
                     }
@@ -271,13 +500,13 @@ public class Grassmarlin_3_2 {
                     break;
                 case "item":
                     if(inSession && inPendingImports && pendingImportAttributes != null) {
-                        addPendingImport(pendingImportAttributes, session.getPendingImports());
+                        addPendingImport(pendingImportAttributes, contents.importsPending);
                         pendingImportAttributes = null;
                     }
                     break;
                 case "physical_topology":
                     if (inPhysical && devices.size() > 0) {
-                        session.getPhysicalTopologyMapper().getDevices().addAll(devices);
+                        contents.devices.addAll(devices);
                     }
                     devices.clear();
                     inPhysical = false;
@@ -314,7 +543,7 @@ public class Grassmarlin_3_2 {
     }
 
     @SuppressWarnings("unchecked")
-    protected void addImport(Attributes attributes, ImportList listImports) {
+    protected void addImport(Attributes attributes, List<ImportItem> listImports) {
         //TODO: If/when serialization of fingerprint lists is supported, deserialization of fingerprint list goes here
         try {
             ImportItem item = ImportProcessors.newItem((Class<? extends ImportItem>)Launcher.loaderFor(attributes.getValue("plugin")).loadClass(attributes.getValue("type")), Paths.get(attributes.getValue("src")), null);
@@ -383,18 +612,81 @@ public class Grassmarlin_3_2 {
     //</editor-fold>
 
     //<editor-fold defaultstate="collapsed" desc="Load Logical">
-    private void loadLogical(InputSource source, Session session) throws IOException {
-        try {
-            SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+    private static class LogicalContents {
+        private final List<LogicalNode> nodes = new ArrayList<>();
+        private final List<LogicalEdge> edges = new ArrayList<>();
+        private final List<PendingFrames> frames = new ArrayList<>();
+        //Null unless the entry contained a cidrs element.
+        private List<Cidr> cidrs = null;
+
+        public void applyTo(LogicalGraph graph, List<ImportItem> imports) {
+            graph.addNodes(new ArrayList<>(nodes));
+            for(PendingFrames pending : frames) {
+                pending.applyTo(imports);
+            }
+            graph.addEdges(new ArrayList<>(edges));
+            if(cidrs != null) {
+                graph.getCidrList().setAll(cidrs);
+            }
+        }
+    }
 
-            parser.parse(source, new LogicalLoadHandler(session));
-        } catch (SAXException | ParserConfigurationException e) {
-            Logger.log(this, Severity.Error, "Error parsing session information");
+    /**
+     * The frames read for one direction of an edge from a single source element.  The ImportItem is only known by its
+     * index until session.xml has been loaded, so the frames are held in columns until the join.
+     */
+    private static class PendingFrames {
+        private final LogicalEdge.ConnectionDetails details;
+        private final int ref;
+
+        private int size;
+        private int[] portsSource;
+        private int[] portsDestination;
+        private int[] protocols;
+        private long[] frames;
+        private long[] times;
+        private int[] bytes;
+
+        public PendingFrames(LogicalEdge.ConnectionDetails details, int ref) {
+            this.details = details;
+            this.ref = ref;
+
+            this.size = 0;
+            this.portsSource = new int[16];
+            this.portsDestination = new int[16];
+            this.protocols = new int[16];
+            this.frames = new long[16];
+            this.times = new long[16];
+            this.bytes = new int[16];
+        }
+
+        public void add(int srcPort, int dstPort, int proto, long frame, long time, int cntBytes) {
+            if(size == frames.length) {
+                final int capacity = size * 2;
+                portsSource = Arrays.copyOf(portsSource, capacity);
+                portsDestination = Arrays.copyOf(portsDestination, capacity);
+                protocols = Arrays.copyOf(protocols, capacity);
+                frames = Arrays.copyOf(frames, capacity);
+                times = Arrays.copyOf(times, capacity);
+                bytes = Arrays.copyOf(bytes, capacity);
+            }
+            portsSource[size] = srcPort;
+            portsDestination[size] = dstPort;
+            protocols[size] = proto;
+            frames[size] = frame;
+            times[size] = time;
+            bytes[size] = cntBytes;
+            size++;
+        }
+
+        public void applyTo(List<ImportItem> imports) {
+            details.AddPackets(imports.get(ref), size, portsSource, portsDestination, protocols, frames, times, bytes);
         }
     }
 
-    private class LogicalLoadHandler extends DefaultHandler {
-        private final Session session;
+    private class LogicalLoadHandler extends CancellableLoadHandler {
+        private final LogicalContents contents;
+        private final ObservableList<Cidr> cidrs;
 
         boolean inGraph;
         boolean inNodes;
@@ -428,6 +720,7 @@ public class Grassmarlin_3_2 {
 
         private Attributes sourceAttributes;
         private String sourceChars;
+        private PendingFrames currentFrames;
 
         private Attributes frameAttributes;
         private String frameChars;
@@ -436,12 +729,15 @@ public class Grassmarlin_3_2 {
         private String cidrChars;
 
 
-        public LogicalLoadHandler(Session session) {
-            this.session = session;
+        public LogicalLoadHandler(LogicalContents contents, ObservableList<Cidr> cidrs, BooleanSupplier isCancelled) {
+            super(isCancelled);
+            this.contents = contents;
+            this.cidrs = cidrs;
         }
 
         @Override
         public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            checkCancelled();
             switch (qName.toLowerCase()) {
                 case "graph":
                     inGraph = true;
@@ -452,7 +748,7 @@ public class Grassmarlin_3_2 {
                 case "node":
                     inNode = true;
                     nodeAttributes = new AttributesImpl(attributes);
-                    currentNode = buildLogicalNode(nodeAttributes, session.getLogicalGraph().getCidrList());
+                    currentNode = buildLogicalNode(nodeAttributes, cidrs);
                     break;
                 case "group":
                     inGroup = true;
@@ -467,7 +763,7 @@ public class Grassmarlin_3_2 {
                 case "edge":
                     inEdge = true;
                     edgeAttributes = new AttributesImpl(attributes);
-                    currentEdge = buildLogicalEdge(edgeAttributes, session.getLogicalGraph());
+                    currentEdge = buildLogicalEdge(edgeAttributes, contents.nodes);
                     break;
                 case "details":
                     inDetails = true;
@@ -476,13 +772,19 @@ public class Grassmarlin_3_2 {
                 case "source":
                     inSource = true;
                     sourceAttributes = new AttributesImpl(attributes);
+                    if (inEdges && inEdge && inDetails && currentEdge != null && detailsAttributes != null) {
+                        currentFrames = newPendingFrames(currentEdge, detailsAttributes, sourceAttributes);
+                        if (currentFrames != null) {
+                            contents.frames.add(currentFrames);
+                        }
+                    }
                     break;
                 case "frame":
                     inFrame = true;
                     frameAttributes = new AttributesImpl(attributes);
                     break;
                 case "cidrs":
-                    session.getLogicalGraph().getCidrList().clear();
+                    contents.cidrs = new ArrayList<>();
                     inCidrs = true;
                     break;
                 case "cidr":
@@ -510,7 +812,7 @@ public class Grassmarlin_3_2 {
                     break;
                 case "node":
                     if (inGraph && inNodes && inNode) {
-                        session.getLogicalGraph().addNode(currentNode);
+                        contents.nodes.add(currentNode);
                         currentNode = null;
                     }
                     inNode = false;
@@ -536,7 +838,7 @@ public class Grassmarlin_3_2 {
                     break;
                 case "edge":
                     if (inEdges && inEdge && currentEdge != null) {
-                        session.getLogicalGraph().addEdge(currentEdge);
+                        contents.edges.add(currentEdge);
                         currentEdge = null;
                     }
                     inEdge = false;
@@ -545,11 +847,12 @@ public class Grassmarlin_3_2 {
                     inDetails = false;
                     break;
                 case "source":
+                    currentFrames = null;
                     inSource = false;
                     break;
                 case "frame":
-                    if (inEdges && inEdge && inDetails && inSource && inFrame && edgeAttributes != null && detailsAttributes != null && sourceAttributes != null && frameAttributes != null) {
-                        addFrame(currentEdge, detailsAttributes, sourceAttributes, frameAttributes, session.getImports());
+                    if (inEdges && inEdge && inDetails && inSource && inFrame && edgeAttributes != null && detailsAttributes != null && sourceAttributes != null && frameAttributes != null && currentFrames != null) {
+                        addFrame(currentFrames, frameAttributes);
                     }
                     inFrame = false;
                     break;
@@ -557,7 +860,7 @@ public class Grassmarlin_3_2 {
                     inCidrs = false;
                     break;
                 case "cidr":
-                    addCidr(cidrAttributes, session.getLogicalGraph().getCidrList());
+                    addCidr(cidrAttributes, contents.cidrs);
                     inCidr = false;
                     break;
             }
@@ -593,8 +896,7 @@ public class Grassmarlin_3_2 {
         node.addAnnotation(fingerprint, key, new ComputedProperty(valueText, confidence));
     }
 
-    protected LogicalEdge buildLogicalEdge(Attributes edgeAttributes, LogicalGraph graph) {
-        List<LogicalNode> logicalNodes = graph.getRawNodeList();
+    protected LogicalEdge buildLogicalEdge(Attributes edgeAttributes, List<LogicalNode> logicalNodes) {
 
         LogicalNode source = logicalNodes.get(Integer.parseInt(edgeAttributes.getValue("from")));
         LogicalNode dest = logicalNodes.get(Integer.parseInt(edgeAttributes.getValue("to")));
@@ -602,9 +904,20 @@ public class Grassmarlin_3_2 {
         return new LogicalEdge(source, dest);
     }
 
-    protected void addFrame(LogicalEdge edge, Attributes details, Attributes source, Attributes frame, ImportList importItems) {
-        ImportItem item = importItems.get(Integer.parseInt(source.getValue("ref")));
+    protected PendingFrames newPendingFrames(LogicalEdge edge, Attributes details, Attributes source) {
+        int ref = Integer.parseInt(source.getValue("ref"));
 
+        switch (details.getValue("direction")) {
+            case "destination":
+                return new PendingFrames(edge.getDetailsToDestination(), ref);
+            case "source":
+                return new PendingFrames(edge.getDetailsToSource(), ref);
+            default:
+                return null;
+        }
+    }
+
+    protected void addFrame(PendingFrames frames, Attributes frame) {
         int srcPort = Integer.parseInt(frame.getValue("srcPort"));
         int dstPort = Integer.parseInt(frame.getValue("dstPort"));
         int proto = Integer.parseInt(frame.getValue("protocol"));
@@ -612,14 +925,7 @@ public class Grassmarlin_3_2 {
         int bytes = Integer.parseInt(frame.getValue("bytes"));
         long time = Long.parseLong(frame.getValue("time"));
 
-        switch (details.getValue("direction")) {
-            case "destination":
-                edge.getDetailsToDestination().AddPacket(item, srcPort, dstPort, bytes, fNum, proto, time);
-                break;
-            case "source":
-                edge.getDetailsToSource().AddPacket(item, srcPort, dstPort, bytes, fNum, proto, time);
-                break;
-        }
+        frames.add(srcPort, dstPort, proto, fNum, time, bytes);
     }
 
 
@@ -631,20 +937,39 @@ public class Grassmarlin_3_2 {
 
     //<editor-fold defaultstate="collapsed" desc="Load Physical">
 
-    private void loadPhysical(InputSource source, Session session) throws IOException{
-        try {
-            SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+    private static class PhysicalContents {
+        //Nodes are built at the join, since ports belong to devices that are read from session.xml.
+        private final List<Attributes> nodes = new ArrayList<>();
+        private final List<Map<String, String>> groups = new ArrayList<>();
+        private final List<int[]> edges = new ArrayList<>();
+    }
 
-            parser.parse(source, new PhysicalLoadHandler(session));
-        } catch (SAXException | ParserConfigurationException e) {
-            Logger.log(this, Severity.Error, "Error parsing session information");
+    private void applyPhysical(PhysicalContents contents, Session session) {
+        HashMap<String, PhysicalDevice> devices = new HashMap<>();
+        session.getPhysicalTopologyMapper().getDevices().forEach(device -> devices.put(device.nameProperty().get(), device));
+
+        //Edges refer to nodes by their position in the file, so the positions are kept even for nodes that could not be built.
+        List<PhysicalNode> nodes = new ArrayList<>(contents.nodes.size());
+        for(int idx = 0; idx < contents.nodes.size(); idx++) {
+            nodes.add(buildPhysicalNode(contents.nodes.get(idx), devices, contents.groups.get(idx)));
         }
+        session.getPhysicalGraph().addNodes(nodes.stream().filter(node -> node != null).collect(Collectors.toList()));
+
+        List<PhysicalEdge> edges = new ArrayList<>(contents.edges.size());
+        for(int[] endpoints : contents.edges) {
+            final PhysicalNode source = endpoints[0] >= 0 && endpoints[0] < nodes.size() ? nodes.get(endpoints[0]) : null;
+            final PhysicalNode destination = endpoints[1] >= 0 && endpoints[1] < nodes.size() ? nodes.get(endpoints[1]) : null;
+            if(source == null || destination == null) {
+                Logger.log(this, Severity.Warning, "Skipping a physical edge between nodes " + endpoints[0] + " and " + endpoints[1] + ", at least one of which could not be loaded.");
+                continue;
+            }
+            edges.add(new PhysicalEdge(source, destination));
+        }
+        session.getPhysicalGraph().addEdges(edges);
     }
 
-    private class PhysicalLoadHandler extends DefaultHandler {
-        private Session session;
-
-        private HashMap<String, PhysicalDevice> devices;
+    private class PhysicalLoadHandler extends CancellableLoadHandler {
+        private final PhysicalContents contents;
 
         private boolean inGraph;
 
@@ -652,7 +977,6 @@ public class Grassmarlin_3_2 {
 
         private boolean inNode;
         private Attributes nodeAttributes;
-        private PhysicalNode currentNode;
         private HashMap<String, String> groups;
 
         private boolean inGroup;
@@ -665,16 +989,14 @@ public class Grassmarlin_3_2 {
         private Attributes edgeAttributes;
 
 
-        public PhysicalLoadHandler(Session session) {
-            this.session = session;
-
-            this.devices = new HashMap<>();
-
-            session.getPhysicalTopologyMapper().getDevices().forEach(device -> devices.put(device.nameProperty().get(), device));
+        public PhysicalLoadHandler(PhysicalContents contents, BooleanSupplier isCancelled) {
+            super(isCancelled);
+            this.contents = contents;
         }
 
         @Override
         public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            checkCancelled();
             switch (qName.toLowerCase()) {
                 case "graph":
                     inGraph = true;
@@ -722,13 +1044,10 @@ public class Grassmarlin_3_2 {
                     inNodes = false;
                     break;
                 case "node":
-                    if (inGraph && inNodes && inNode) {
-                        if (nodeAttributes != null) {
-                            currentNode = buildPhysicalNode(nodeAttributes, devices, groups);
-                        }
-                        session.getPhysicalGraph().addNode(currentNode);
+                    if (inGraph && inNodes && inNode && nodeAttributes != null) {
+                        contents.nodes.add(nodeAttributes);
+                        contents.groups.add(groups);
                     }
-                    currentNode = null;
                     nodeAttributes = null;
                     groups = null;
                     inNode = false;
@@ -749,12 +1068,7 @@ public class Grassmarlin_3_2 {
                         int from = Integer.parseInt(edgeAttributes.getValue("from"));
                         int to = Integer.parseInt(edgeAttributes.getValue("to"));
 
-                        PhysicalNode fromNode = session.getPhysicalGraph().getRawNodeList().get(from);
-                        PhysicalNode toNode = session.getPhysicalGraph().getRawNodeList().get(to);
-
-                        PhysicalEdge edge = new PhysicalEdge(fromNode, toNode);
-
-                        session.getPhysicalGraph().addEdge(edge);
+                        contents.edges.add(new int[] {from, to});
                     }
             }
         }
@@ -806,18 +1120,18 @@ public class Grassmarlin_3_2 {
     //</editor-fold>
 
     //<editor-fold defaultstate="collapsed" desc="Load Mesh">
-    private void loadMesh(InputSource source, Session session) throws IOException {
-        try {
-            SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+    private static class MeshContents {
+        private final List<MeshNode> nodes = new ArrayList<>();
+        private final List<MeshEdge> edges = new ArrayList<>();
 
-            parser.parse(source, new MeshLoadHandler(session));
-        } catch (SAXException | ParserConfigurationException e) {
-            Logger.log(this, Severity.Error, "Error parsing session information");
+        public void applyTo(core.document.graph.MeshGraph graph) {
+            graph.addNodes(new ArrayList<>(nodes));
+            graph.addEdges(new ArrayList<>(edges));
         }
     }
 
-    private class MeshLoadHandler extends DefaultHandler {
-        private final Session session;
+    private class MeshLoadHandler extends CancellableLoadHandler {
+        private final MeshContents contents;
 
         boolean inGraph;
         boolean inNodes;
@@ -831,12 +1145,14 @@ public class Grassmarlin_3_2 {
         Attributes edgeAttributes;
         MeshEdge currentEdge;
 
-        public MeshLoadHandler(Session session) {
-            this.session = session;
+        public MeshLoadHandler(MeshContents contents, BooleanSupplier isCancelled) {
+            super(isCancelled);
+            this.contents = contents;
         }
 
         @Override
         public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            checkCancelled();
             switch (qName.toLowerCase()) {
                 case "graph":
                     inGraph = true;
@@ -857,7 +1173,7 @@ public class Grassmarlin_3_2 {
                 case "edge":
                     edgeAttributes = new AttributesImpl(attributes);
                     if (inGraph && inEdges && edgeAttributes != null) {
-                        currentEdge = buildMeshEdge(edgeAttributes, session.getMeshGraph().getRawNodeList());
+                        currentEdge = buildMeshEdge(edgeAttributes, contents.nodes);
                     }
                     inEdge = true;
 
@@ -879,7 +1195,7 @@ public class Grassmarlin_3_2 {
                     break;
                 case "node":
                     if (inGraph && inNodes && inNode && currentNode != null) {
-                        session.getMeshGraph().addNode(currentNode);
+                        contents.nodes.add(currentNode);
                     }
                     currentNode = null;
                     nodeAttributes = null;
@@ -890,7 +1206,7 @@ public class Grassmarlin_3_2 {
                     break;
                 case "edge":
                     if (inGraph && inEdges && inEdge && currentEdge != null) {
-                        session.getMeshGraph().addEdge(currentEdge);
+                        contents.edges.add(currentEdge);
                     }
                     currentEdge = null;
                     edgeAttributes = null;
@@ -11,6 +11,7 @@ import util.Launcher;
 import util.Plugin;
 
 import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
 
 public class LoadTask extends ProgressTask{
 
@@ -19,6 +20,7 @@ public class LoadTask extends ProgressTask{
     private TabController tabController;
     private Runnable success;
     private Runnable failure;
+    private volatile boolean cancelled;
 
 
     public LoadTask(Path from, Session session, TabController tabController, Runnable success, Runnable failure) {
@@ -29,11 +31,15 @@ public class LoadTask extends ProgressTask{
         this.tabController = tabController;
         this.success = success;
         this.failure = failure;
+        this.cancelled = false;
     }
 
     @Override
     protected void runTask() throws Exception {
-            core.document.serialization.Grassmarlin.LoadState(from, session, tabController);
+            core.document.serialization.Grassmarlin.LoadState(from, session, tabController, progress -> Platform.runLater(() -> updateProgress(progress)), () -> cancelled);
+            if(cancelled) {
+                throw new CancellationException("Loading " + from.getFileName() + " was cancelled.");
+            }
     }
 
     @Override
@@ -46,15 +52,16 @@ public class LoadTask extends ProgressTask{
 
     @Override
     protected void onFailure() {
-        Logger.log(this, Severity.Warning, "There was an error loading from " + this.from.getFileName().toString());
+        if(!cancelled) {
+            Logger.log(this, Severity.Warning, "There was an error loading from " + this.from.getFileName().toString());
+        }
         failure.run();
     }
 
     @Override
     protected void onCancel() {
-        // no other thread depends on monitors held by this thread and we need it to just stop immediately
-        this.taskThread.stop();
-        failure.run();
-        Platform.runLater(this::close);
+        //The load stops at its next check and waits for its parsing threads before the task fails, so nothing is added
+        // to the session after failure has run.
+        this.cancelled = true;
     }
 }
@@ -0,0 +1,564 @@
+package core.document.serialization;
+
+import core.document.ImportList;
+import core.document.graph.ComputedProperty;
+import core.document.graph.LogicalEdge;
+import core.document.graph.LogicalGraph;
+import core.document.graph.LogicalNode;
+import core.importmodule.ImportItem;
+import core.logging.Logger;
+import core.logging.Severity;
+import util.Cidr;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Binary encoding of the logical graph, written to the logical.bin entry of a session in place of logical.xml.
+ *
+ * The encoding carries the same information as the XML form and is read and written in a single streaming pass.
+ * Integers are variable-length, strings are written once and referenced by index afterwards, and the frames of each
+ * source are written column by column (frame numbers and times as deltas from the previous frame), which keeps the
+ * per-frame cost to a few bytes.
+ *
+ * Since version 2 the frames are written to a separate entry (see FrameArchive) and each source only records where its
+ * frames are, how many there are and their totals, so a session can be opened without reading any frames.  Version 1
+ * files, which contain the frames inline, can still be read.
+ *
+ * Layout (version 2):
+ *   magic, version
+ *   nodes:  count, { title, mac, country, network, annotations }
+ *   edges:  count, { from, to, sources to destination, sources to source }
+ *           where each source is { ref, frame count, bytes, protocols, offset in frames.bin }
+ *   cidrs:  count, { cidr }
+ *   magic
+ */
+public class LogicalGraphBinary {
+    public static final String ENTRY_NAME = "logical.bin";
+
+    private static final int MAGIC = 0x474D4C47; //"GMLG"
+    private static final int VERSION = 2;
+    private static final int VERSION_INLINE_FRAMES = 1;
+
+    //String references: 0 is null, 1 is a new string that follows inline, n >= 2 is the (n - 2)th string seen.
+    private static final int STRING_NULL = 0;
+    private static final int STRING_INLINE = 1;
+    private static final int STRING_REFERENCE = 2;
+
+    private LogicalGraphBinary() {
+    }
+
+    // == SAVE ================================================================
+
+    public static void write(final LogicalGraph graph, final ImportList imports, final ZipOutputStream zos) throws IOException {
+        final List<LogicalNode> nodes = new ArrayList<>();
+        final List<LogicalEdge> edges = new ArrayList<>();
+        graph.GetGraphContents(nodes, edges);
+
+        final Map<LogicalNode, Integer> indexNodes = new HashMap<>(nodes.size() * 2);
+        for(int idx = 0; idx < nodes.size(); idx++) {
+            indexNodes.putIfAbsent(nodes.get(idx), idx);
+        }
+        final Map<ImportItem, Integer> indexImports = new HashMap<>();
+        for(int idx = 0; idx < imports.size(); idx++) {
+            indexImports.putIfAbsent(imports.get(idx), idx);
+        }
+
+        try(FrameArchive.Writer archive = new FrameArchive.Writer()) {
+            write(graph, nodes, edges, indexNodes, indexImports, archive, zos);
+            archive.writeTo(zos);
+        }
+    }
+
+    private static void write(final LogicalGraph graph, final List<LogicalNode> nodes, final List<LogicalEdge> edges, final Map<LogicalNode, Integer> indexNodes, final Map<ImportItem, Integer> indexImports, final FrameArchive.Writer archive, final ZipOutputStream zos) throws IOException {
+        zos.putNextEntry(new ZipEntry(ENTRY_NAME));
+        final Output out = new Output(zos);
+        out.writeInt(MAGIC);
+        out.writeVarLong(VERSION);
+
+        out.writeVarLong(nodes.size());
+        for(LogicalNode node : nodes) {
+            writeNode(out, node);
+        }
+
+        //Edges whose endpoints are not in the node list could not be reconstructed, so they are not written.
+        final List<LogicalEdge> edgesValid = new ArrayList<>(edges.size());
+        for(LogicalEdge edge : edges) {
+            if(indexNodes.containsKey(edge.getSource()) && indexNodes.containsKey(edge.getDestination())) {
+                edgesValid.add(edge);
+            }
+        }
+        if(edgesValid.size() != edges.size()) {
+            Logger.log(LogicalGraphBinary.class, Severity.Warning, (edges.size() - edgesValid.size()) + " logical edges reference nodes that are not in the graph and were not saved.");
+        }
+        out.writeVarLong(edgesValid.size());
+        for(LogicalEdge edge : edgesValid) {
+            out.writeVarLong(indexNodes.get(edge.getSource()));
+            out.writeVarLong(indexNodes.get(edge.getDestination()));
+            writeDetails(out, edge.getDetailsToDestination(), indexImports, archive);
+            writeDetails(out, edge.getDetailsToSource(), indexImports, archive);
+        }
+
+        final List<Cidr> cidrs = new ArrayList<>(graph.getCidrList());
+        out.writeVarLong(cidrs.size());
+        for(Cidr cidr : cidrs) {
+            out.writeString(cidr.toString());
+        }
+
+        out.writeInt(MAGIC);
+        out.flush();
+        zos.closeEntry();
+    }
+
+    private static void writeNode(final Output out, final LogicalNode node) throws IOException {
+        //As in logical.xml, the node is identified by its title, which the loader reads back as its address.
+        out.writeString(node.titleProperty().get());
+        final byte[] mac = node.getMac();
+        if(mac == null) {
+            out.writeVarLong(0);
+        } else {
+            out.writeVarLong(mac.length + 1);
+            out.writeBytes(mac, 0, mac.length);
+        }
+        out.writeString(node.getCountry());
+        final Cidr network = node.networkProperty().get();
+        out.writeString(network == null ? null : network.toString());
+
+        final Map<String, Map<String, Set<ComputedProperty>>> annotations = node.getAnnotationsByFingerprint();
+        out.writeVarLong(annotations.size());
+        for(Map.Entry<String, Map<String, Set<ComputedProperty>>> entryFingerprint : annotations.entrySet()) {
+            out.writeString(entryFingerprint.getKey());
+            out.writeVarLong(entryFingerprint.getValue().size());
+            for(Map.Entry<String, Set<ComputedProperty>> entryGroup : entryFingerprint.getValue().entrySet()) {
+                out.writeString(entryGroup.getKey());
+                out.writeVarLong(entryGroup.getValue().size());
+                for(ComputedProperty value : entryGroup.getValue()) {
+                    out.writeString(value.getValue());
+                    out.writeSignedVarLong(value.getConfidence());
+                }
+            }
+        }
+    }
+
+    private static void writeDetails(final Output out, final LogicalEdge.ConnectionDetails details, final Map<ImportItem, Integer> indexImports, final FrameArchive.Writer archive) throws IOException {
+        final List<LogicalEdge.ConnectionDetails.FrameList> lists = new ArrayList<>();
+        final List<Integer> refs = new ArrayList<>();
+        for(ImportItem item : details.getFrameGroups()) {
+            final Integer ref = indexImports.get(item);
+            final LogicalEdge.ConnectionDetails.FrameList frames = details.getFrames(item);
+            if(ref != null && frames != null) {
+                refs.add(ref);
+                lists.add(frames);
+            }
+        }
+
+        out.writeVarLong(lists.size());
+        for(int idxList = 0; idxList < lists.size(); idxList++) {
+            final LogicalEdge.ConnectionDetails.FrameList frames = lists.get(idxList);
+            final int size = frames.size();
+            long cntBytes = 0;
+            final Set<Integer> protocols = new LinkedHashSet<>();
+            for(int idx = 0; idx < size; idx++) {
+                cntBytes += frames.getBytes(idx);
+                protocols.add(frames.getProtocol(idx));
+            }
+
+            out.writeVarLong(refs.get(idxList));
+            out.writeVarLong(size);
+            out.writeVarLong(cntBytes);
+            out.writeVarLong(protocols.size());
+            for(Integer protocol : protocols) {
+                out.writeSignedVarLong(protocol);
+            }
+            out.writeVarLong(archive.write(frames));
+        }
+    }
+
+    static void writeFrames(final Output out, final LogicalEdge.ConnectionDetails.FrameList frames) throws IOException {
+        final int size = frames.size();
+        long previous = 0;
+        for(int idx = 0; idx < size; idx++) {
+            final long frame = frames.getFrame(idx);
+            out.writeSignedVarLong(frame - previous);
+            previous = frame;
+        }
+        previous = 0;
+        for(int idx = 0; idx < size; idx++) {
+            final long time = frames.getTime(idx);
+            out.writeSignedVarLong(time - previous);
+            previous = time;
+        }
+        for(int idx = 0; idx < size; idx++) {
+            out.writeVarLong(frames.getBytes(idx));
+        }
+        for(int idx = 0; idx < size; idx++) {
+            out.writeSignedVarLong(frames.getProtocol(idx));
+        }
+        for(int idx = 0; idx < size; idx++) {
+            out.writeSignedVarLong(frames.getSourcePort(idx));
+        }
+        for(int idx = 0; idx < size; idx++) {
+            out.writeSignedVarLong(frames.getDestinationPort(idx));
+        }
+    }
+
+    // == LOAD ================================================================
+
+    /**
+     * @param archive The frames.bin of the session file, from which the frames will be read when they are needed.
+     */
+    public static void read(final InputStream in, final LogicalGraph graph, final List<ImportItem> imports, final FrameArchive archive) throws IOException {
+        final Input input = new Input(in);
+        if(input.readInt() != MAGIC) {
+            throw new IOException("The logical graph is not in the binary session format.");
+        }
+        final long version = input.readVarLong();
+        if(version != VERSION && version != VERSION_INLINE_FRAMES) {
+            throw new IOException("Unsupported binary logical graph version (" + version + ")");
+        }
+
+        final int cntNodes = input.readCount();
+        final List<LogicalNode> nodes = new ArrayList<>(cntNodes);
+        for(int idx = 0; idx < cntNodes; idx++) {
+            nodes.add(graph.addNode(readNode(input, graph)));
+        }
+
+        final int cntEdges = input.readCount();
+        final FrameBuffer buffer = new FrameBuffer();
+        for(int idx = 0; idx < cntEdges; idx++) {
+            final LogicalNode source = nodes.get(input.readCount());
+            final LogicalNode destination = nodes.get(input.readCount());
+            final LogicalEdge edge = new LogicalEdge(source, destination);
+            if(version == VERSION_INLINE_FRAMES) {
+                readDetails(input, edge.getDetailsToDestination(), imports, buffer);
+                readDetails(input, edge.getDetailsToSource(), imports, buffer);
+            } else {
+                readStoredDetails(input, edge.getDetailsToDestination(), imports, archive);
+                readStoredDetails(input, edge.getDetailsToSource(), imports, archive);
+            }
+            graph.addEdge(edge);
+        }
+
+        final int cntCidrs = input.readCount();
+        final List<Cidr> cidrs = new ArrayList<>(cntCidrs);
+        for(int idx = 0; idx < cntCidrs; idx++) {
+            cidrs.add(new Cidr(input.readString()));
+        }
+        graph.getCidrList().setAll(cidrs);
+
+        if(input.readInt() != MAGIC) {
+            throw new IOException("The binary logical graph is corrupt.");
+        }
+    }
+
+    private static LogicalNode readNode(final Input input, final LogicalGraph graph) throws IOException {
+        final Cidr ip = new Cidr(input.readString());
+        final int lengthMac = input.readCount();
+        final byte[] mac;
+        if(lengthMac == 0) {
+            mac = null;
+        } else {
+            mac = new byte[lengthMac - 1];
+            input.readBytes(mac);
+        }
+
+        final LogicalNode node = new LogicalNode(ip, mac, graph.getCidrList());
+        //As with the XML loader, country and network are set even when null so they are not recomputed on demand.
+        node.countryProperty().set(input.readString());
+        final String network = input.readString();
+        node.networkProperty().set(network == null ? null : new Cidr(network));
+
+        final int cntFingerprints = input.readCount();
+        for(int idxFingerprint = 0; idxFingerprint < cntFingerprints; idxFingerprint++) {
+            final String fingerprint = input.readString();
+            final int cntGroups = input.readCount();
+            for(int idxGroup = 0; idxGroup < cntGroups; idxGroup++) {
+                final String key = input.readString();
+                final int cntValues = input.readCount();
+                for(int idxValue = 0; idxValue < cntValues; idxValue++) {
+                    final String value = input.readString();
+                    final int confidence = (int)input.readSignedVarLong();
+                    node.addAnnotation(fingerprint, key, new ComputedProperty(value, confidence));
+                }
+            }
+        }
+
+        return node;
+    }
+
+    private static void readDetails(final Input input, final LogicalEdge.ConnectionDetails details, final List<ImportItem> imports, final FrameBuffer buffer) throws IOException {
+        final int cntGroups = input.readCount();
+        for(int idxGroup = 0; idxGroup < cntGroups; idxGroup++) {
+            final ImportItem item = imports.get(input.readCount());
+            final int size = input.readCount();
+            readFrames(input, size, buffer);
+
+            details.AddPackets(item, size, buffer.portsSource, buffer.portsDestination, buffer.protocols, buffer.frames, buffer.times, buffer.bytes);
+        }
+    }
+
+    private static void readStoredDetails(final Input input, final LogicalEdge.ConnectionDetails details, final List<ImportItem> imports, final FrameArchive archive) throws IOException {
+        final int cntGroups = input.readCount();
+        for(int idxGroup = 0; idxGroup < cntGroups; idxGroup++) {
+            final ImportItem item = imports.get(input.readCount());
+            final int size = input.readCount();
+            final long cntBytes = input.readVarLong();
+            final int cntProtocols = input.readCount();
+            final List<Integer> protocols = new ArrayList<>(cntProtocols);
+            for(int idx = 0; idx < cntProtocols; idx++) {
+                protocols.add((int)input.readSignedVarLong());
+            }
+            final long offset = input.readVarLong();
+
+            details.AddStoredPackets(item, new FrameArchive.Source(archive, offset, size), cntBytes, protocols);
+        }
+    }
+
+    static void readFrames(final Input input, final int size, final FrameBuffer buffer) throws IOException {
+        buffer.ensureCapacity(size);
+
+        long previous = 0;
+        for(int idx = 0; idx < size; idx++) {
+            previous += input.readSignedVarLong();
+            buffer.frames[idx] = previous;
+        }
+        previous = 0;
+        for(int idx = 0; idx < size; idx++) {
+            previous += input.readSignedVarLong();
+            buffer.times[idx] = previous;
+        }
+        for(int idx = 0; idx < size; idx++) {
+            buffer.bytes[idx] = (int)input.readVarLong();
+        }
+        for(int idx = 0; idx < size; idx++) {
+            buffer.protocols[idx] = (int)input.readSignedVarLong();
+        }
+        for(int idx = 0; idx < size; idx++) {
+            buffer.portsSource[idx] = (int)input.readSignedVarLong();
+        }
+        for(int idx = 0; idx < size; idx++) {
+            buffer.portsDestination[idx] = (int)input.readSignedVarLong();
+        }
+    }
+
+    /**
+     * Column arrays reused for every frame list read from a stream.
+     */
+    static class FrameBuffer {
+        long[] frames = new long[0];
+        long[] times = new long[0];
+        int[] bytes = new int[0];
+        int[] protocols = new int[0];
+        int[] portsSource = new int[0];
+        int[] portsDestination = new int[0];
+
+        public void ensureCapacity(final int capacity) {
+            if(capacity > frames.length) {
+                frames = new long[capacity];
+                times = new long[capacity];
+                bytes = new int[capacity];
+                protocols = new int[capacity];
+                portsSource = new int[capacity];
+                portsDestination = new int[capacity];
+            }
+        }
+    }
+
+    // == Encoding ============================================================
+
+    static class Output {
+        private final OutputStream out;
+        private final byte[] buffer;
+        private int pos;
+        private long cntFlushed;
+        private final Map<String, Integer> strings;
+
+        public Output(final OutputStream out) {
+            this.out = out;
+            this.buffer = new byte[1 << 16];
+            this.pos = 0;
+            this.cntFlushed = 0;
+            this.strings = new HashMap<>();
+        }
+
+        /**
+         * @return The number of bytes written so far, including those still in the buffer.
+         */
+        public long position() {
+            return cntFlushed + pos;
+        }
+
+        private void require(final int cntBytes) throws IOException {
+            if(buffer.length - pos < cntBytes) {
+                flush();
+            }
+        }
+
+        public void flush() throws IOException {
+            out.write(buffer, 0, pos);
+            cntFlushed += pos;
+            pos = 0;
+        }
+
+        public void writeInt(final int value) throws IOException {
+            require(4);
+            buffer[pos++] = (byte)(value >>> 24);
+            buffer[pos++] = (byte)(value >>> 16);
+            buffer[pos++] = (byte)(value >>> 8);
+            buffer[pos++] = (byte)value;
+        }
+
+        public void writeVarLong(long value) throws IOException {
+            require(10);
+            while((value & ~0x7FL) != 0) {
+                buffer[pos++] = (byte)((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[pos++] = (byte)value;
+        }
+
+        public void writeSignedVarLong(final long value) throws IOException {
+            //ZigZag encoding keeps small negative values (such as the -1 used for a missing port) to a single byte.
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        public void writeBytes(final byte[] bytes, final int offset, final int length) throws IOException {
+            if(length > buffer.length - pos) {
+                flush();
+                if(length > buffer.length) {
+                    out.write(bytes, offset, length);
+                    cntFlushed += length;
+                    return;
+                }
+            }
+            System.arraycopy(bytes, offset, buffer, pos, length);
+            pos += length;
+        }
+
+        public void writeString(final String value) throws IOException {
+            if(value == null) {
+                writeVarLong(STRING_NULL);
+                return;
+            }
+            final Integer ref = strings.get(value);
+            if(ref != null) {
+                writeVarLong(STRING_REFERENCE + ref);
+            } else {
+                strings.put(value, strings.size());
+                final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(STRING_INLINE);
+                writeVarLong(bytes.length);
+                writeBytes(bytes, 0, bytes.length);
+            }
+        }
+    }
+
+    static class Input {
+        private final InputStream in;
+        private final byte[] buffer;
+        private int pos;
+        private int limit;
+        private final List<String> strings;
+
+        public Input(final InputStream in) {
+            this(in, 1 << 16);
+        }
+
+        /**
+         * @param cbBuffer The most that is read from in at once; a block of frames is usually far smaller than a graph.
+         */
+        public Input(final InputStream in, final int cbBuffer) {
+            this.in = in;
+            this.buffer = new byte[cbBuffer];
+            this.pos = 0;
+            this.limit = 0;
+            this.strings = new ArrayList<>();
+        }
+
+        private void fill() throws IOException {
+            limit = in.read(buffer, 0, buffer.length);
+            pos = 0;
+            if(limit <= 0) {
+                limit = 0;
+                throw new EOFException("Unexpected end of the binary logical graph.");
+            }
+        }
+
+        private int readByte() throws IOException {
+            if(pos == limit) {
+                fill();
+            }
+            return buffer[pos++] & 0xFF;
+        }
+
+        public void readBytes(final byte[] bytes) throws IOException {
+            int offset = 0;
+            while(offset < bytes.length) {
+                if(pos == limit) {
+                    fill();
+                }
+                final int length = Math.min(bytes.length - offset, limit - pos);
+                System.arraycopy(buffer, pos, bytes, offset, length);
+                pos += length;
+                offset += length;
+            }
+        }
+
+        public int readInt() throws IOException {
+            return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+        }
+
+        public long readVarLong() throws IOException {
+            long result = 0;
+            for(int shift = 0; shift < 64; shift += 7) {
+                final int b = readByte();
+                result |= (long)(b & 0x7F) << shift;
+                if((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Malformed variable-length integer in the binary logical graph.");
+        }
+
+        public long readSignedVarLong() throws IOException {
+            final long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        /**
+         * Reads a non-negative variable-length integer that is used as a count or index.
+         */
+        public int readCount() throws IOException {
+            final long value = readVarLong();
+            if(value < 0 || value > Integer.MAX_VALUE) {
+                throw new IOException("Invalid count in the binary logical graph (" + value + ")");
+            }
+            return (int)value;
+        }
+
+        public String readString() throws IOException {
+            final int ref = readCount();
+            if(ref == STRING_NULL) {
+                return null;
+            } else if(ref == STRING_INLINE) {
+                final byte[] bytes = new byte[readCount()];
+                readBytes(bytes);
+                final String value = new String(bytes, StandardCharsets.UTF_8);
+                strings.add(value);
+                return value;
+            } else {
+                final int idx = ref - STRING_REFERENCE;
+                if(idx >= strings.size()) {
+                    throw new IOException("Invalid string reference in the binary logical graph.");
+                }
+                return strings.get(idx);
+            }
+        }
+    }
+}
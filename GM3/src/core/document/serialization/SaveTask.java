@@ -19,6 +19,7 @@ public class SaveTask extends ProgressTask {
     private Session session;
     private TabController tabs;
     private Path savePath;
+    private Path tempPath;
     private Runnable success;
 
 
@@ -36,11 +37,24 @@ public class SaveTask extends ProgressTask {
 
     @Override
     protected void runTask() throws Exception{
-        try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(savePath)))) {
-            this.zos = zos;
-            core.document.serialization.Grassmarlin.SaveState(zos, session, tabs);
-            Platform.runLater(() -> session.dirtyProperty().set(false));
+        //The session is written beside savePath and then moved over it, since frames of a session opened from savePath
+        //are still read from it on demand.  This also leaves the previous file intact if the save fails.
+        tempPath = Files.createTempFile(savePath.toAbsolutePath().getParent(), "." + savePath.getFileName(), ".tmp");
+        try {
+            try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+                this.zos = zos;
+                core.document.serialization.Grassmarlin.SaveState(zos, session, tabs);
+            }
+            final FrameArchive archive = session.getFrameArchive();
+            if(archive == null) {
+                FrameArchive.moveAtomically(tempPath, savePath);
+            } else {
+                archive.replace(tempPath, savePath);
+            }
+        } finally {
+            Files.deleteIfExists(tempPath);
         }
+        Platform.runLater(() -> session.dirtyProperty().set(false));
     }
 
     @Override
@@ -65,11 +79,16 @@ public class SaveTask extends ProgressTask {
                 this.taskThread.join();
             } catch (InterruptedException ie) {}
             try {
-                zos.close();
+                if(zos != null) {
+                    zos.close();
+                }
             } catch (ClosedChannelException cce) {
                 // this is what we were trying to do anyway
             }
-            Files.deleteIfExists(savePath);
+            //savePath is only replaced once the session has been written in full, so only the partial copy is removed.
+            if(tempPath != null) {
+                Files.deleteIfExists(tempPath);
+            }
             Platform.runLater(this::close);
         } catch (IOException ioe) {
             Logger.log(this, Severity.Error, "Error stopping save task");
@@ -0,0 +1,235 @@
+package core.document.serialization.xml;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+
+/**
+ * Writes XML directly to a stream as UTF-8, without building an XmlElement tree first.
+ *
+ * The output matches what XmlElement produces: attributes are single-quoted, text and attribute values are escaped as
+ * by Escaping.XmlString, and an element with no content is closed as "<name ... />".  Escaping and encoding are done
+ * in place in a reusable buffer, so writing an element does not allocate.
+ *
+ * The underlying stream is never closed by the writer; flush() must be called before the stream (or zip entry) is
+ * closed.
+ */
+public class XmlStreamWriter {
+    private static final int SIZE_BUFFER = 1 << 16;
+    //The longest encoding of a single char (a surrogate pair encodes to 4 bytes, but spans 2 chars) or escape sequence.
+    private static final int MAX_BYTES_PER_CHAR = 6;
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int pos;
+
+    private final ArrayDeque<String> elements;
+    private boolean isStartTagOpen;
+
+    public XmlStreamWriter(final OutputStream out) {
+        this.out = out;
+        this.buffer = new byte[SIZE_BUFFER];
+        this.pos = 0;
+        this.elements = new ArrayDeque<>();
+        this.isStartTagOpen = false;
+    }
+
+    /**
+     * Begins a new element; attributes may be written until any content is written to it.
+     */
+    public XmlStreamWriter startElement(final String name) throws IOException {
+        closeStartTag();
+        writeByte('<');
+        writeRaw(name);
+        elements.push(name);
+        isStartTagOpen = true;
+        return this;
+    }
+
+    public XmlStreamWriter attribute(final String name, final String value) throws IOException {
+        if(!isStartTagOpen) {
+            throw new IllegalStateException("Attributes must be written immediately after startElement.");
+        }
+        writeByte(' ');
+        writeRaw(name);
+        writeByte('=');
+        writeByte('\'');
+        writeEscaped(value);
+        writeByte('\'');
+        return this;
+    }
+
+    public XmlStreamWriter attribute(final String name, final long value) throws IOException {
+        if(!isStartTagOpen) {
+            throw new IllegalStateException("Attributes must be written immediately after startElement.");
+        }
+        writeByte(' ');
+        writeRaw(name);
+        writeByte('=');
+        writeByte('\'');
+        writeNumber(value);
+        writeByte('\'');
+        return this;
+    }
+
+    /**
+     * Ends the start tag of the current element, so that it will be closed with an end tag even if it has no content.
+     */
+    public XmlStreamWriter closeStartTag() throws IOException {
+        if(isStartTagOpen) {
+            writeByte('>');
+            isStartTagOpen = false;
+        }
+        return this;
+    }
+
+    /**
+     * Writes escaped text content; a null value is treated as empty.
+     */
+    public XmlStreamWriter text(final String value) throws IOException {
+        closeStartTag();
+        writeEscaped(value);
+        return this;
+    }
+
+    public XmlStreamWriter newline() throws IOException {
+        closeStartTag();
+        writeRaw(System.lineSeparator());
+        return this;
+    }
+
+    public XmlStreamWriter endElement() throws IOException {
+        final String name = elements.pop();
+        if(isStartTagOpen) {
+            writeByte(' ');
+            writeByte('/');
+            writeByte('>');
+            isStartTagOpen = false;
+        } else {
+            writeByte('<');
+            writeByte('/');
+            writeRaw(name);
+            writeByte('>');
+        }
+        return this;
+    }
+
+    public void flush() throws IOException {
+        if(pos > 0) {
+            out.write(buffer, 0, pos);
+            pos = 0;
+        }
+        out.flush();
+    }
+
+    // == Encoding ============================================================
+
+    private void require(final int cntBytes) throws IOException {
+        if(SIZE_BUFFER - pos < cntBytes) {
+            out.write(buffer, 0, pos);
+            pos = 0;
+        }
+    }
+
+    private void writeByte(final int b) throws IOException {
+        require(1);
+        buffer[pos++] = (byte)b;
+    }
+
+    private void writeNumber(long value) throws IOException {
+        if(value == Long.MIN_VALUE) {
+            writeRaw(Long.toString(value));
+            return;
+        }
+        require(20);
+        if(value < 0) {
+            buffer[pos++] = '-';
+            value = -value;
+        }
+        //Write the digits in reverse, then reverse them in place.
+        final int start = pos;
+        do {
+            buffer[pos++] = (byte)('0' + (value % 10));
+            value /= 10;
+        } while(value != 0);
+        for(int lo = start, hi = pos - 1; lo < hi; lo++, hi--) {
+            final byte temp = buffer[lo];
+            buffer[lo] = buffer[hi];
+            buffer[hi] = temp;
+        }
+    }
+
+    private void writeRaw(final String value) throws IOException {
+        final int length = value.length();
+        for(int idx = 0; idx < length; idx++) {
+            idx = writeChar(value, idx);
+        }
+    }
+
+    private void writeEscaped(final String value) throws IOException {
+        if(value == null) {
+            return;
+        }
+        final int length = value.length();
+        for(int idx = 0; idx < length; idx++) {
+            final char c = value.charAt(idx);
+            switch(c) {
+                case '&':
+                    writeAscii("&amp;");
+                    break;
+                case '<':
+                    writeAscii("&lt;");
+                    break;
+                case '>':
+                    writeAscii("&gt;");
+                    break;
+                case '"':
+                    writeAscii("&quot;");
+                    break;
+                case '\'':
+                    writeAscii("&apos;");
+                    break;
+                default:
+                    idx = writeChar(value, idx);
+                    break;
+            }
+        }
+    }
+
+    private void writeAscii(final String value) throws IOException {
+        final int length = value.length();
+        require(length);
+        for(int idx = 0; idx < length; idx++) {
+            buffer[pos++] = (byte)value.charAt(idx);
+        }
+    }
+
+    /**
+     * Encodes the char at idx as UTF-8, the same way String.getBytes does (an unpaired surrogate becomes '?').
+     * @return The index of the last char consumed; idx + 1 if a surrogate pair was encoded, otherwise idx.
+     */
+    private int writeChar(final String value, final int idx) throws IOException {
+        require(MAX_BYTES_PER_CHAR);
+        final char c = value.charAt(idx);
+        if(c < 0x80) {
+            buffer[pos++] = (byte)c;
+        } else if(c < 0x800) {
+            buffer[pos++] = (byte)(0xC0 | (c >> 6));
+            buffer[pos++] = (byte)(0x80 | (c & 0x3F));
+        } else if(Character.isHighSurrogate(c) && idx + 1 < value.length() && Character.isLowSurrogate(value.charAt(idx + 1))) {
+            final int codePoint = Character.toCodePoint(c, value.charAt(idx + 1));
+            buffer[pos++] = (byte)(0xF0 | (codePoint >> 18));
+            buffer[pos++] = (byte)(0x80 | ((codePoint >> 12) & 0x3F));
+            buffer[pos++] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+            buffer[pos++] = (byte)(0x80 | (codePoint & 0x3F));
+            return idx + 1;
+        } else if(Character.isSurrogate(c)) {
+            buffer[pos++] = '?';
+        } else {
+            buffer[pos++] = (byte)(0xE0 | (c >> 12));
+            buffer[pos++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+            buffer[pos++] = (byte)(0x80 | (c & 0x3F));
+        }
+        return idx;
+    }
+}
@@ -0,0 +1,208 @@
+package core.fingerprint;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A ByteJump Calc expression, parsed once into an evaluation tree over the jump value, x.
+ *
+ * The accepted language is the one described by resource/grammar/Calc.g4, plus the variable x: integer literals,
+ * parentheses and the operators mod/%, times/*, div//, plus/+ and minus/-.  Following the grammar, each operator binds
+ * more tightly than the ones after it in that list and all of them are left-associative.  A '-' immediately followed by
+ * a digit is part of a literal only where an operand is expected, so "x-4" is a subtraction, as the fingerprint schema
+ * intends.
+ *
+ * Evaluation uses int arithmetic and does not allocate.
+ */
+public abstract class CalcExpression {
+    private static final ConcurrentHashMap<String, CalcExpression> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @return The compiled form of the expression, parsing it only the first time the text is seen.
+     * @throws IllegalArgumentException if the expression is not valid.
+     */
+    public static CalcExpression forText(final String expression) {
+        return cache.computeIfAbsent(expression, CalcExpression::compile);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expression is not valid.
+     */
+    public static CalcExpression compile(final String expression) {
+        final Parser parser = new Parser(expression);
+        final CalcExpression result = parser.parseExpression(0);
+        parser.skipWhitespace();
+        if(parser.idx != expression.length()) {
+            throw new IllegalArgumentException("Unexpected '" + expression.substring(parser.idx) + "' in calc expression '" + expression + "'");
+        }
+        return result;
+    }
+
+    public abstract int evaluate(final int x);
+
+    // == Evaluation tree =====================================================
+
+    private static class Constant extends CalcExpression {
+        private final int value;
+
+        public Constant(final int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int evaluate(final int x) {
+            return value;
+        }
+    }
+
+    private static class Variable extends CalcExpression {
+        @Override
+        public int evaluate(final int x) {
+            return x;
+        }
+    }
+
+    private enum Operator {
+        //Declared from the tightest-binding to the loosest, matching the order of the alternatives in Calc.g4
+        MOD("mod", '%'),
+        TIMES("times", '*'),
+        DIV("div", '/'),
+        PLUS("plus", '+'),
+        MINUS("minus", '-');
+
+        private final String word;
+        private final char symbol;
+
+        Operator(final String word, final char symbol) {
+            this.word = word;
+            this.symbol = symbol;
+        }
+
+        public int precedence() {
+            return values().length - ordinal();
+        }
+
+        public int apply(final int left, final int right) {
+            switch(this) {
+                case MOD:
+                    return left % right;
+                case TIMES:
+                    return left * right;
+                case DIV:
+                    return left / right;
+                case PLUS:
+                    return left + right;
+                case MINUS:
+                    return left - right;
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+    }
+
+    private static class Binary extends CalcExpression {
+        private final Operator operator;
+        private final CalcExpression left;
+        private final CalcExpression right;
+
+        public Binary(final Operator operator, final CalcExpression left, final CalcExpression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public int evaluate(final int x) {
+            return operator.apply(left.evaluate(x), right.evaluate(x));
+        }
+    }
+
+    // == Parsing =============================================================
+
+    private static class Parser {
+        private final String text;
+        private int idx;
+
+        public Parser(final String text) {
+            this.text = text;
+            this.idx = 0;
+        }
+
+        /**
+         * Precedence climbing: parses an operand followed by every operator that binds at least as tightly as
+         * precedenceMin.
+         */
+        public CalcExpression parseExpression(final int precedenceMin) {
+            CalcExpression left = parseOperand();
+            while(true) {
+                final int idxOperator = idx;
+                final Operator operator = parseOperator();
+                if(operator == null || operator.precedence() < precedenceMin) {
+                    idx = idxOperator;
+                    return left;
+                }
+                left = new Binary(operator, left, parseExpression(operator.precedence() + 1));
+            }
+        }
+
+        private CalcExpression parseOperand() {
+            skipWhitespace();
+            if(idx >= text.length()) {
+                throw error("Expected an operand");
+            }
+            final char c = text.charAt(idx);
+            if(c == '(') {
+                idx++;
+                final CalcExpression inner = parseExpression(0);
+                skipWhitespace();
+                if(idx >= text.length() || text.charAt(idx) != ')') {
+                    throw error("Expected ')'");
+                }
+                idx++;
+                return inner;
+            } else if(c == 'x') {
+                idx++;
+                return new Variable();
+            } else if(Character.isDigit(c) || (c == '-' && idx + 1 < text.length() && Character.isDigit(text.charAt(idx + 1)))) {
+                final int idxStart = idx;
+                idx++;
+                while(idx < text.length() && Character.isDigit(text.charAt(idx))) {
+                    idx++;
+                }
+                try {
+                    return new Constant(Integer.parseInt(text.substring(idxStart, idx)));
+                } catch(NumberFormatException ex) {
+                    throw error("Invalid number");
+                }
+            } else {
+                throw error("Expected an operand");
+            }
+        }
+
+        private Operator parseOperator() {
+            skipWhitespace();
+            if(idx >= text.length()) {
+                return null;
+            }
+            for(Operator operator : Operator.values()) {
+                if(text.charAt(idx) == operator.symbol) {
+                    idx++;
+                    return operator;
+                } else if(text.startsWith(operator.word, idx)) {
+                    idx += operator.word.length();
+                    return operator;
+                }
+            }
+            return null;
+        }
+
+        public void skipWhitespace() {
+            while(idx < text.length() && Character.isWhitespace(text.charAt(idx))) {
+                idx++;
+            }
+        }
+
+        private IllegalArgumentException error(final String message) {
+            return new IllegalArgumentException(message + " at position " + idx + " in calc expression '" + text + "'");
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package core.fingerprint;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick automaton over the literal Content of every Match operation in a set of fingerprints.
+ *
+ * Instead of each Match searching the payload for its own content, the first content Match run against a packet scans
+ * the payload once for every registered pattern and records where each one occurs.  Every later content Match against
+ * the same packet is answered from those offsets.
+ */
+public class ContentMatcher {
+    private static final int ALPHABET = 256;
+
+    /**
+     * Collects the patterns while fingerprints are being compiled; identical contents share an id.
+     */
+    public static class Builder {
+        private final List<byte[]> patterns = new ArrayList<>();
+        private final Map<String, Integer> idByContent = new HashMap<>();
+
+        /**
+         * @return The id of the pattern, or -1 if the content is empty and can never be matched.
+         */
+        public int register(final byte[] content) {
+            if(content == null || content.length == 0) {
+                return -1;
+            }
+            //ISO-8859-1 maps every byte to a distinct char, which makes the String a convenient key for the bytes.
+            final String key = new String(content, java.nio.charset.StandardCharsets.ISO_8859_1);
+            Integer id = idByContent.get(key);
+            if(id == null) {
+                id = patterns.size();
+                patterns.add(content.clone());
+                idByContent.put(key, id);
+            }
+            return id;
+        }
+
+        public ContentMatcher build() {
+            return new ContentMatcher(patterns);
+        }
+    }
+
+    /**
+     * Per-thread record of where each pattern occurs in the current packet.  The payload is only scanned when the first
+     * lookup is made.
+     */
+    public class Scan {
+        private PacketData data;
+        private boolean scanned;
+        //Raw hits in the order they are found: the start offset and pattern of each.
+        private int[] hitStarts;
+        private int[] hitPatterns;
+        private int cntHits;
+        //Hits grouped by pattern: the starts for pattern p are sortedStarts[firstHit[p]..firstHit[p + 1]), ascending.
+        private final int[] firstHit;
+        private int[] sortedStarts;
+
+        private Scan() {
+            this.hitStarts = new int[64];
+            this.hitPatterns = new int[64];
+            this.sortedStarts = new int[64];
+            this.firstHit = new int[lengths.length + 1];
+        }
+
+        public int lengthOf(final int patternId) {
+            return lengths[patternId];
+        }
+
+        public void reset(final PacketData data) {
+            this.data = data;
+            this.scanned = false;
+        }
+
+        /**
+         * Equivalent to PacketData.match(content, offset, length) for the content registered as patternId.
+         */
+        public int find(final int patternId, int offset, final int length) {
+            if(offset < 0) {
+                offset = 0;
+            }
+            final int searchLength = lengths[patternId];
+            if(searchLength > length) {
+                return -1;
+            }
+            final int limit = Math.min(offset + length, data.size()) - searchLength - offset;
+            if(limit < offset) {
+                return -1;
+            }
+
+            if(!scanned) {
+                scan();
+            }
+
+            //Lower bound of offset among this pattern's (ascending) start offsets.
+            int lo = firstHit[patternId];
+            int hi = firstHit[patternId + 1];
+            while(lo < hi) {
+                final int mid = (lo + hi) >>> 1;
+                if(sortedStarts[mid] < offset) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            if(lo < firstHit[patternId + 1] && sortedStarts[lo] <= limit) {
+                return sortedStarts[lo];
+            }
+            return -1;
+        }
+
+        private void scan() {
+            cntHits = 0;
+            int state = 0;
+            final int size = data.size();
+            for(int idx = 0; idx < size; idx++) {
+                state = transitions[state * ALPHABET + (data.getByte(idx) & 0xFF)];
+                for(int patternId : outputs[state]) {
+                    addHit(idx - lengths[patternId] + 1, patternId);
+                }
+            }
+
+            //Counting sort by pattern; hits for a single pattern are already in ascending order of start.
+            Arrays.fill(firstHit, 0);
+            for(int idx = 0; idx < cntHits; idx++) {
+                firstHit[hitPatterns[idx] + 1]++;
+            }
+            for(int idx = 1; idx < firstHit.length; idx++) {
+                firstHit[idx] += firstHit[idx - 1];
+            }
+            if(sortedStarts.length < cntHits) {
+                sortedStarts = new int[hitStarts.length];
+            }
+            //firstHit[p] is advanced while filling, so afterwards it holds the end of p's range (the start of p + 1).
+            for(int idx = 0; idx < cntHits; idx++) {
+                sortedStarts[firstHit[hitPatterns[idx]]++] = hitStarts[idx];
+            }
+            System.arraycopy(firstHit, 0, firstHit, 1, firstHit.length - 1);
+            firstHit[0] = 0;
+
+            scanned = true;
+        }
+
+        private void addHit(final int start, final int patternId) {
+            if(cntHits == hitStarts.length) {
+                hitStarts = Arrays.copyOf(hitStarts, cntHits * 2);
+                hitPatterns = Arrays.copyOf(hitPatterns, cntHits * 2);
+            }
+            hitStarts[cntHits] = start;
+            hitPatterns[cntHits] = patternId;
+            cntHits++;
+        }
+    }
+
+    private final int[] lengths;
+    private final int[] transitions;
+    private final int[][] outputs;
+
+    private ContentMatcher(final List<byte[]> patterns) {
+        this.lengths = new int[patterns.size()];
+
+        //Build the trie.
+        final List<int[]> gotos = new ArrayList<>();
+        final List<List<Integer>> outputsBuilding = new ArrayList<>();
+        gotos.add(newRow());
+        outputsBuilding.add(new ArrayList<>());
+        for(int id = 0; id < patterns.size(); id++) {
+            final byte[] pattern = patterns.get(id);
+            lengths[id] = pattern.length;
+            int state = 0;
+            for(byte b : pattern) {
+                final int symbol = b & 0xFF;
+                if(gotos.get(state)[symbol] == -1) {
+                    gotos.get(state)[symbol] = gotos.size();
+                    gotos.add(newRow());
+                    outputsBuilding.add(new ArrayList<>());
+                }
+                state = gotos.get(state)[symbol];
+            }
+            outputsBuilding.get(state).add(id);
+        }
+
+        //Breadth-first pass to compute failure links and turn the trie into a complete transition table.
+        final int cntStates = gotos.size();
+        this.transitions = new int[cntStates * ALPHABET];
+        final int[] failure = new int[cntStates];
+        final ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for(int symbol = 0; symbol < ALPHABET; symbol++) {
+            final int next = gotos.get(0)[symbol];
+            if(next == -1) {
+                transitions[symbol] = 0;
+            } else {
+                transitions[symbol] = next;
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        while(!queue.isEmpty()) {
+            final int state = queue.poll();
+            outputsBuilding.get(state).addAll(outputsBuilding.get(failure[state]));
+            for(int symbol = 0; symbol < ALPHABET; symbol++) {
+                final int next = gotos.get(state)[symbol];
+                if(next == -1) {
+                    transitions[state * ALPHABET + symbol] = transitions[failure[state] * ALPHABET + symbol];
+                } else {
+                    transitions[state * ALPHABET + symbol] = next;
+                    failure[next] = transitions[failure[state] * ALPHABET + symbol];
+                    queue.add(next);
+                }
+            }
+        }
+
+        this.outputs = new int[cntStates][];
+        for(int state = 0; state < cntStates; state++) {
+            outputs[state] = outputsBuilding.get(state).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private static int[] newRow() {
+        final int[] row = new int[ALPHABET];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    public int getPatternCount() {
+        return lengths.length;
+    }
+
+    public Scan newScan() {
+        return new Scan();
+    }
+}
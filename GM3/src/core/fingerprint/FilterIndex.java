@@ -0,0 +1,439 @@
+package core.fingerprint;
+
+import core.fingerprint3.Fingerprint;
+import org.jnetpcap.protocol.tcpip.Tcp;
+import ui.fingerprint.filters.Filter;
+
+import javax.xml.bind.JAXBElement;
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * Compiled form of the Filter groups of a list of fingerprints.
+ *
+ * Every Filter group is lowered to a list of primitive checks and placed in exactly one bucket, chosen from the most
+ * selective value in the group: destination port, then source port, then ethertype, then transport protocol.  Groups
+ * with none of those are checked for every packet.  A packet therefore only evaluates the groups that could match it.
+ *
+ * Each (fingerprint, Filter "For" name) pair is assigned a slot; slots are numbered in fingerprint order.  The result
+ * of a match is the set of slots for which at least one group passed, which is exactly the set of payload names the
+ * original per-fingerprint filter loop would have produced.
+ */
+class FilterIndex {
+    private static final int CHECK_ACK = 0;
+    private static final int CHECK_DSIZE = 1;
+    private static final int CHECK_DSIZE_WITHIN = 2;
+    private static final int CHECK_DST_PORT = 3;
+    private static final int CHECK_ETHERTYPE = 4;
+    private static final int CHECK_FLAGS = 5;
+    private static final int CHECK_MSS = 6;
+    private static final int CHECK_SEQ = 7;
+    private static final int CHECK_SRC_PORT = 8;
+    private static final int CHECK_TRANSPORT_PROTOCOL = 9;
+    private static final int CHECK_TTL = 10;
+    private static final int CHECK_TTL_WITHIN = 11;
+    private static final int CHECK_WINDOW = 12;
+
+    /**
+     * Set in a flags mask for a token that does not name a TCP flag; no packet can have this bit set.
+     */
+    private static final int FLAG_UNKNOWN = 1 << 31;
+    private static final int PORT_COUNT = 1 << 16;
+    private static final int PROTOCOL_COUNT = 1 << 8;
+
+    private static class Group {
+        private final int fingerprint;
+        private final int slot;
+        private final int[] checks;
+        private final long[] lower;
+        private final long[] upper;
+
+        public Group(final int fingerprint, final int slot, final int[] checks, final long[] lower, final long[] upper) {
+            this.fingerprint = fingerprint;
+            this.slot = slot;
+            this.checks = checks;
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        public boolean matches(final PacketData data) {
+            for(int idx = 0; idx < checks.length; idx++) {
+                switch(checks[idx]) {
+                    case CHECK_ACK:
+                        if(data.getAck() != lower[idx]) {
+                            return false;
+                        }
+                        break;
+                    case CHECK_DSIZE:
+                        if(data.getdSize() != lower[idx]) {
+                            return false;
+                        }
+                        break;
+                    case CHECK_DSIZE_WITHIN:
+                        if(data.getdSize() < lower[idx] || data.getdSize() > upper[idx]) {
+                            return false;
+                        }
+                        break;
+                    case CHECK_DST_PORT:
+                        if(data.getDestPort() != lower[idx]) {
+                            return false;
+                        }
+                        break;
+                    case CHECK_ETHERTYPE:
+                        if(data.getEthertype() != lower[idx]) {
+                            return false;
+                        }
+                        break;
+                    case CHECK_FLAGS:
+                        //Packets without TCP flags are not rejected by a flags check.
+                        if(data.getFlags() != null && (maskOf(data.getFlags()) & lower[idx]) != lower[idx]) {
+                            return false;
+                        }
+                        break;
+                    case CHECK_MSS:
+                        if(data.getMss() != lower[idx]) {
+                            return false;
+                        }
+                        break;
+                    case CHECK_SEQ:
+                        if(data.getSeqNum() != lower[idx]) {
+                            return false;
+                        }
+                        break;
+                    case CHECK_SRC_PORT:
+                        if(data.getSourcePort() != lower[idx]) {
+                            return false;
+                        }
+                        break;
+                    case CHECK_TRANSPORT_PROTOCOL:
+                        if(data.getTransportProtocol() != lower[idx]) {
+                            return false;
+                        }
+                        break;
+                    case CHECK_TTL:
+                        if(data.getTtl() != lower[idx]) {
+                            return false;
+                        }
+                        break;
+                    case CHECK_TTL_WITHIN:
+                        if(data.getTtl() < lower[idx] || data.getTtl() > upper[idx]) {
+                            return false;
+                        }
+                        break;
+                    case CHECK_WINDOW:
+                        if(data.getWindowNum() != lower[idx]) {
+                            return false;
+                        }
+                        break;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Per-thread working storage for match; slots are deduplicated, and fingerprints marked as failed, by stamping them
+     * with the current generation.
+     */
+    static class Scratch {
+        private final int[] generationBySlot;
+        private final int[] generationFailedByFingerprint;
+        private final int[] slots;
+        private int generation;
+        private boolean hasFailures;
+
+        private Scratch(final int cntSlots, final int cntFingerprints) {
+            this.generationBySlot = new int[cntSlots];
+            this.generationFailedByFingerprint = new int[cntFingerprints];
+            this.slots = new int[cntSlots];
+            this.generation = 0;
+        }
+
+        public int getSlot(final int idx) {
+            return slots[idx];
+        }
+    }
+
+    private final List<Map<String, Integer>> slotsByFingerprint;
+    private final int[] fingerprintBySlot;
+    private final int cntSlots;
+
+    private final Group[][] byDstPort;
+    private final Group[][] bySrcPort;
+    private final int[] ethertypes;
+    private final Group[][] byEthertype;
+    private final Group[][] byTransportProtocol;
+    private final Group[] unindexed;
+
+    public FilterIndex(final List<Fingerprint> fingerprints) {
+        this.slotsByFingerprint = new ArrayList<>(fingerprints.size());
+
+        final Map<Integer, List<Group>> dstPort = new HashMap<>();
+        final Map<Integer, List<Group>> srcPort = new HashMap<>();
+        final TreeMap<Integer, List<Group>> ethertype = new TreeMap<>();
+        final Map<Integer, List<Group>> transportProtocol = new HashMap<>();
+        final List<Group> other = new ArrayList<>();
+
+        final List<Integer> fingerprintForSlot = new ArrayList<>();
+        int slotNext = 0;
+        for(int idxFingerprint = 0; idxFingerprint < fingerprints.size(); idxFingerprint++) {
+            final Fingerprint fp = fingerprints.get(idxFingerprint);
+            final Map<String, Integer> slots = new HashMap<>();
+            for(Fingerprint.Filter filter : fp.getFilter()) {
+                Integer slot = slots.get(filter.getFor());
+                if(slot == null) {
+                    slot = slotNext++;
+                    slots.put(filter.getFor(), slot);
+                    fingerprintForSlot.add(idxFingerprint);
+                }
+
+                final int cntElements = filter.getAckAndMSSAndDsize().size();
+                final int[] checks = new int[cntElements];
+                final long[] lower = new long[cntElements];
+                final long[] upper = new long[cntElements];
+                int cntChecks = 0;
+                Integer keyDstPort = null;
+                Integer keySrcPort = null;
+                Integer keyEthertype = null;
+                Integer keyTransportProtocol = null;
+
+                for(JAXBElement<?> element : filter.getAckAndMSSAndDsize()) {
+                    final Object value = element.getValue();
+                    switch(Filter.FilterType.valueOf(element.getName().toString().replaceAll(" ", "").toUpperCase())) {
+                        case ACK:
+                            checks[cntChecks] = CHECK_ACK;
+                            lower[cntChecks] = ((Number)value).longValue();
+                            break;
+                        case DSIZE:
+                            checks[cntChecks] = CHECK_DSIZE;
+                            lower[cntChecks] = ((Number)value).longValue();
+                            break;
+                        case DSIZEWITHIN:
+                            final Fingerprint.Filter.DsizeWithin dsizeWithin = (Fingerprint.Filter.DsizeWithin)value;
+                            checks[cntChecks] = CHECK_DSIZE_WITHIN;
+                            lower[cntChecks] = boundOf(dsizeWithin.getMin(), Long.MIN_VALUE);
+                            upper[cntChecks] = boundOf(dsizeWithin.getMax(), Long.MAX_VALUE);
+                            break;
+                        case DSTPORT:
+                            checks[cntChecks] = CHECK_DST_PORT;
+                            lower[cntChecks] = ((Number)value).longValue();
+                            if(keyDstPort == null) {
+                                keyDstPort = ((Number)value).intValue();
+                            }
+                            break;
+                        case ETHERTYPE:
+                            checks[cntChecks] = CHECK_ETHERTYPE;
+                            lower[cntChecks] = ((Number)value).longValue();
+                            if(keyEthertype == null) {
+                                keyEthertype = ((Number)value).intValue();
+                            }
+                            break;
+                        case FLAGS:
+                            checks[cntChecks] = CHECK_FLAGS;
+                            lower[cntChecks] = parseFlags((String)value) & 0xFFFFFFFFL;
+                            break;
+                        case MSS:
+                            checks[cntChecks] = CHECK_MSS;
+                            lower[cntChecks] = ((Number)value).longValue();
+                            break;
+                        case SEQ:
+                            checks[cntChecks] = CHECK_SEQ;
+                            lower[cntChecks] = ((Number)value).longValue();
+                            break;
+                        case SRCPORT:
+                            checks[cntChecks] = CHECK_SRC_PORT;
+                            lower[cntChecks] = ((Number)value).longValue();
+                            if(keySrcPort == null) {
+                                keySrcPort = ((Number)value).intValue();
+                            }
+                            break;
+                        case TRANSPORTPROTOCOL:
+                            checks[cntChecks] = CHECK_TRANSPORT_PROTOCOL;
+                            lower[cntChecks] = ((Number)value).shortValue();
+                            if(keyTransportProtocol == null) {
+                                keyTransportProtocol = ((Number)value).intValue();
+                            }
+                            break;
+                        case TTL:
+                            checks[cntChecks] = CHECK_TTL;
+                            lower[cntChecks] = ((Number)value).longValue();
+                            break;
+                        case TTLWITHIN:
+                            final Fingerprint.Filter.TTLWithin ttlWithin = (Fingerprint.Filter.TTLWithin)value;
+                            checks[cntChecks] = CHECK_TTL_WITHIN;
+                            lower[cntChecks] = boundOf(ttlWithin.getMin(), Long.MIN_VALUE);
+                            upper[cntChecks] = boundOf(ttlWithin.getMax(), Long.MAX_VALUE);
+                            break;
+                        case WINDOW:
+                            checks[cntChecks] = CHECK_WINDOW;
+                            lower[cntChecks] = ((Number)value).longValue();
+                            break;
+                        default:
+                            continue;
+                    }
+                    cntChecks++;
+                }
+
+                final Group group = new Group(idxFingerprint, slot, Arrays.copyOf(checks, cntChecks), Arrays.copyOf(lower, cntChecks), Arrays.copyOf(upper, cntChecks));
+                if(keyDstPort != null && keyDstPort >= 0 && keyDstPort < PORT_COUNT) {
+                    dstPort.computeIfAbsent(keyDstPort, key -> new ArrayList<>()).add(group);
+                } else if(keySrcPort != null && keySrcPort >= 0 && keySrcPort < PORT_COUNT) {
+                    srcPort.computeIfAbsent(keySrcPort, key -> new ArrayList<>()).add(group);
+                } else if(keyEthertype != null) {
+                    ethertype.computeIfAbsent(keyEthertype, key -> new ArrayList<>()).add(group);
+                } else if(keyTransportProtocol != null && keyTransportProtocol >= 0 && keyTransportProtocol < PROTOCOL_COUNT) {
+                    transportProtocol.computeIfAbsent(keyTransportProtocol, key -> new ArrayList<>()).add(group);
+                } else {
+                    other.add(group);
+                }
+            }
+            slotsByFingerprint.add(slots);
+        }
+        this.cntSlots = slotNext;
+        this.fingerprintBySlot = fingerprintForSlot.stream().mapToInt(Integer::intValue).toArray();
+
+        this.byDstPort = new Group[PORT_COUNT][];
+        dstPort.forEach((key, groups) -> byDstPort[key] = groups.toArray(new Group[groups.size()]));
+        this.bySrcPort = new Group[PORT_COUNT][];
+        srcPort.forEach((key, groups) -> bySrcPort[key] = groups.toArray(new Group[groups.size()]));
+        this.byTransportProtocol = new Group[PROTOCOL_COUNT][];
+        transportProtocol.forEach((key, groups) -> byTransportProtocol[key] = groups.toArray(new Group[groups.size()]));
+
+        this.ethertypes = new int[ethertype.size()];
+        this.byEthertype = new Group[ethertype.size()][];
+        int idxEthertype = 0;
+        for(Map.Entry<Integer, List<Group>> entry : ethertype.entrySet()) {
+            ethertypes[idxEthertype] = entry.getKey();
+            byEthertype[idxEthertype] = entry.getValue().toArray(new Group[entry.getValue().size()]);
+            idxEthertype++;
+        }
+
+        this.unindexed = other.toArray(new Group[other.size()]);
+    }
+
+    /**
+     * @return The slot assigned to the given payload name of the fingerprint at the given index, or -1 if no Filter
+     * group names that payload.
+     */
+    public int slotFor(final int idxFingerprint, final String payloadName) {
+        final Integer slot = slotsByFingerprint.get(idxFingerprint).get(payloadName);
+        return slot == null ? -1 : slot;
+    }
+
+    public int getSlotCount() {
+        return cntSlots;
+    }
+
+    public Scratch newScratch() {
+        return new Scratch(cntSlots, slotsByFingerprint.size());
+    }
+
+    /**
+     * Evaluates the candidate groups for a packet.  As with the per-fingerprint filter loop, an exception while
+     * evaluating a group is reported and discards every slot of that fingerprint for this packet; other fingerprints are
+     * unaffected.
+     * @return The number of matched slots, which can be read back through scratch.getSlot(0..n-1), in no particular
+     * order.
+     */
+    public int match(final PacketData data, final Scratch scratch) {
+        scratch.generation++;
+        if(scratch.generation == 0) {
+            //The counter wrapped; clear the stamps so that stale entries cannot collide with the new generation.
+            Arrays.fill(scratch.generationBySlot, 0);
+            Arrays.fill(scratch.generationFailedByFingerprint, 0);
+            scratch.generation = 1;
+        }
+        scratch.hasFailures = false;
+
+        int cntMatched = 0;
+        final int dstPort = data.getDestPort();
+        if(dstPort >= 0 && dstPort < PORT_COUNT) {
+            cntMatched = matchGroups(byDstPort[dstPort], data, scratch, cntMatched);
+        }
+        final int srcPort = data.getSourcePort();
+        if(srcPort >= 0 && srcPort < PORT_COUNT) {
+            cntMatched = matchGroups(bySrcPort[srcPort], data, scratch, cntMatched);
+        }
+        if(ethertypes.length != 0) {
+            final int idxEthertype = Arrays.binarySearch(ethertypes, data.getEthertype());
+            if(idxEthertype >= 0) {
+                cntMatched = matchGroups(byEthertype[idxEthertype], data, scratch, cntMatched);
+            }
+        }
+        final int transportProtocol = data.getTransportProtocol();
+        if(transportProtocol >= 0 && transportProtocol < PROTOCOL_COUNT) {
+            cntMatched = matchGroups(byTransportProtocol[transportProtocol], data, scratch, cntMatched);
+        }
+        cntMatched = matchGroups(unindexed, data, scratch, cntMatched);
+
+        if(scratch.hasFailures) {
+            //Slots of a fingerprint may have matched before one of its later groups failed.
+            int cntKept = 0;
+            for(int idx = 0; idx < cntMatched; idx++) {
+                final int slot = scratch.slots[idx];
+                if(scratch.generationFailedByFingerprint[fingerprintBySlot[slot]] != scratch.generation) {
+                    scratch.slots[cntKept++] = slot;
+                }
+            }
+            cntMatched = cntKept;
+        }
+
+        return cntMatched;
+    }
+
+    private static int matchGroups(final Group[] groups, final PacketData data, final Scratch scratch, int cntMatched) {
+        if(groups == null) {
+            return cntMatched;
+        }
+        for(Group group : groups) {
+            //Once any group for a slot has passed, the remaining groups for that slot don't need to be checked.
+            if(scratch.generationBySlot[group.slot] == scratch.generation || scratch.generationFailedByFingerprint[group.fingerprint] == scratch.generation) {
+                continue;
+            }
+            try {
+                if(group.matches(data)) {
+                    scratch.generationBySlot[group.slot] = scratch.generation;
+                    scratch.slots[cntMatched++] = group.slot;
+                }
+            } catch(Exception ex) {
+                ex.printStackTrace();
+                scratch.generationFailedByFingerprint[group.fingerprint] = scratch.generation;
+                scratch.hasFailures = true;
+            }
+        }
+        return cntMatched;
+    }
+
+    private static long boundOf(final BigInteger value, final long valueDefault) {
+        return value == null ? valueDefault : value.longValue();
+    }
+
+    private static int maskOf(final Set<Tcp.Flag> flags) {
+        int mask = 0;
+        for(Tcp.Flag flag : flags) {
+            mask |= 1 << flag.ordinal();
+        }
+        return mask;
+    }
+
+    /**
+     * Flags are written either space-separated or run together (e.g. "SYNACK"), per the schema.
+     */
+    private static int parseFlags(final String text) {
+        final String flags = text.replaceAll("\\s+", "").toUpperCase();
+        int mask = 0;
+        int idx = 0;
+        tokenLoop:
+        while(idx < flags.length()) {
+            for(Tcp.Flag flag : Tcp.Flag.values()) {
+                if(flags.startsWith(flag.name(), idx)) {
+                    mask |= 1 << flag.ordinal();
+                    idx += flag.name().length();
+                    continue tokenLoop;
+                }
+            }
+            return mask | FLAG_UNKNOWN;
+        }
+        return mask;
+    }
+}
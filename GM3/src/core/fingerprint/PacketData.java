@@ -7,7 +7,8 @@ import org.jnetpcap.nio.JBuffer;
 import org.jnetpcap.protocol.tcpip.Tcp;
 import util.Cidr;
 
-import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Set;
 
 /**
@@ -22,16 +23,39 @@ public class PacketData {
 
     private final PMetaData meta;
 
-    private final JBuffer payload;
+    /**
+     * Read-only, big-endian view of the payload; only absolute reads are used, so the view is never repositioned.
+     */
+    private final ByteBuffer payload;
+    /**
+     * The array behind the payload, when it has one, so that searches can scan it directly; it is never written.
+     */
+    private final byte[] payloadArray;
+    private final int payloadArrayOffset;
 
     public PacketData(int completionUnits, PMetaData meta, JBuffer payload) {
+        this(completionUnits, meta, payload == null ? null : ByteBuffer.wrap(payload.getByteArray(0, payload.size())));
+    }
+
+    /**
+     * @param payload The payload, from its position to its limit.  The buffer is not copied, so it must not be
+     * modified after it is handed to the PacketData.
+     */
+    public PacketData(int completionUnits, PMetaData meta, ByteBuffer payload) {
         this.completionUnits = completionUnits;
         this.meta = meta;
-        this.payload = payload;
+        this.payload = payload == null ? null : payload.slice().asReadOnlyBuffer().order(ByteOrder.BIG_ENDIAN);
+        if (payload != null && payload.hasArray()) {
+            this.payloadArray = payload.array();
+            this.payloadArrayOffset = payload.arrayOffset() + payload.position();
+        } else {
+            this.payloadArray = null;
+            this.payloadArrayOffset = 0;
+        }
     }
 
     public PacketData(int completionUnits, PMetaData meta) {
-        this(completionUnits, meta, null);
+        this(completionUnits, meta, (ByteBuffer)null);
     }
 
     public int getCompletionUnits() {
@@ -59,7 +83,7 @@ public class PacketData {
 
     public byte getByte(int i) {
         if (payload != null) {
-            return payload.getByte(i);
+            return payload.get(i);
         } else {
             return 0;
         }
@@ -68,7 +92,10 @@ public class PacketData {
     public byte[] getByteArray(int index, byte[] bytes, int offset, int length, boolean bigEndian) {
         byte[] ret = new byte[0];
         if (payload != null) {
-            ret = payload.getByteArray(index, bytes, offset, length);
+            for (int i = 0; i < length; i++) {
+                bytes[offset + i] = payload.get(index + i);
+            }
+            ret = bytes;
 
             if (!bigEndian) {
                 ArrayUtils.reverse(ret);
@@ -85,38 +112,92 @@ public class PacketData {
 
     public byte[] getByteArray(int offset, int length) {
         byte[] ret = new byte[0];
-        if (payload != null && payload.size() > offset + length) {
-            ret = payload.getByteArray(offset, length);
+        if (payload != null && payload.limit() > offset + length) {
+            ret = new byte[length];
+            for (int i = 0; i < length; i++) {
+                ret[i] = payload.get(offset + i);
+            }
         }
 
         return ret;
     }
 
-    public int getInt(int offset, boolean bigEndian) {
-        int ret = 0;
-        if (payload != null && payload.size() > offset + Integer.BYTES) {
-            byte[] bytes = this.getByteArray(offset, Integer.BYTES);
-            if (!bigEndian) {
-                ArrayUtils.reverse(bytes);
-            }
-            ret = new BigInteger(1, bytes).intValue();
+    /**
+     * Reads an unsigned value without copying.  For lengths over 8 bytes only the low-order 64 bits are kept.
+     * @param offset Offset of the first byte; the caller is responsible for ensuring offset + length is in bounds.
+     * @param length Number of bytes to read.
+     * @param bigEndian Whether the most significant byte comes first.
+     */
+    public long getUnsigned(int offset, int length, boolean bigEndian) {
+        switch (length) {
+            case 1:
+                return payload.get(offset) & 0xFFL;
+            case 2:
+                short valueShort = payload.getShort(offset);
+                return (bigEndian ? valueShort : Short.reverseBytes(valueShort)) & 0xFFFFL;
+            case 4:
+                int valueInt = payload.getInt(offset);
+                return (bigEndian ? valueInt : Integer.reverseBytes(valueInt)) & 0xFFFFFFFFL;
+            case 8:
+                long valueLong = payload.getLong(offset);
+                return bigEndian ? valueLong : Long.reverseBytes(valueLong);
+            default:
+                long value = 0;
+                if (bigEndian) {
+                    for (int i = 0; i < length; i++) {
+                        value = (value << 8) | (payload.get(offset + i) & 0xFFL);
+                    }
+                } else {
+                    for (int i = length - 1; i >= 0; i--) {
+                        value = (value << 8) | (payload.get(offset + i) & 0xFFL);
+                    }
+                }
+                return value;
         }
-        return ret;
     }
 
+    public int getInt(int offset, boolean bigEndian) {
+        return getInt(offset, Integer.BYTES, bigEndian);
+    }
+
+    /**
+     * @return The low-order 32 bits of the unsigned value of length bytes at offset, or 0 if those bytes are not
+     * followed by at least one more byte of payload.
+     */
     public int getInt(int offset, int length, boolean bigEndian) {
         int ret = 0;
-        if (payload != null && payload.size() > offset + length) {
-            byte[] bytes = this.getByteArray(offset, length);
-            if (!bigEndian) {
-                ArrayUtils.reverse(bytes);
-            }
-            ret = new BigInteger(1, bytes).intValue();
+        if (payload != null && payload.limit() > offset + length) {
+            ret = (int)getUnsigned(offset, length, bigEndian);
         }
 
         return ret;
     }
 
+    /**
+     * Compares a region of the payload against a sequence of bytes without copying.
+     * @return true if the payload contains every byte of search starting at offset.
+     */
+    public boolean regionMatches(int offset, byte[] search) {
+        if (payload == null || offset < 0 || offset + search.length > payload.limit()) {
+            return false;
+        }
+        if (payloadArray != null) {
+            final int start = payloadArrayOffset + offset;
+            for (int i = 0; i < search.length; i++) {
+                if (payloadArray[start + i] != search[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (int i = 0; i < search.length; i++) {
+            if (payload.get(offset + i) != search[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Locates the bytes within given length from the offset in the buffer.
      * @param search Bytes to search for.
@@ -133,21 +214,34 @@ public class PacketData {
         if (payload != null && search.length <= length) {
             int searchLength = search.length;
             if (searchLength > 0) {
-                int limit = Math.min(offset + length, payload.size()) - searchLength - offset;
+                int limit = Math.min(offset + length, payload.limit()) - searchLength - offset;
                 byte byte0 = search[0];
-                for (int start = offset; start <= limit; ++start) {
-                    if (payload.getByte(start) == byte0) {
-                        int i = 0;
-                        for (; i < searchLength; ++i) {
-                            if (search[i] != payload.getByte(start + i)) {
-                                break;
+                if (payloadArray != null) {
+                    //Same scan as below, over the backing array; a ByteBuffer read per byte is several times slower.
+                    //Bounding the scan by the array length as well lets the JIT drop the per-byte range checks.
+                    final byte[] bytes = payloadArray;
+                    final int base = payloadArrayOffset;
+                    final int last = Math.min(base + limit + searchLength, bytes.length) - searchLength;
+                    for (int position = base + offset; position <= last; ++position) {
+                        if (bytes[position] == byte0) {
+                            int i = 1;
+                            for (; i < searchLength; ++i) {
+                                if (search[i] != bytes[position + i]) {
+                                    break;
+                                }
+                            }
+                            if (i == searchLength) {
+                                return position - base;
                             }
-                        }
-                        if (i == searchLength) {
-                            ret = start;
-                            break;
                         }
                     }
+                    return ret;
+                }
+                for (int start = offset; start <= limit; ++start) {
+                    if (payload.get(start) == byte0 && regionMatches(start, search)) {
+                        ret = start;
+                        break;
+                    }
                 }
             }
         }
@@ -157,11 +251,14 @@ public class PacketData {
     public byte[] extract(int from, int to, int length) {
         byte[] ret = new byte[0];
 
-        if (from >= 0 && from < payload.size() && to >= 0 && to < payload.size()) {
+        if (from >= 0 && from < payload.limit() && to >= 0 && to < payload.limit()) {
             int start = Math.min(from, to);
             int end = Math.min(start + length, Math.max(to, from));
 
-            ret = payload.getByteArray(start, end - start);
+            ret = new byte[end - start];
+            for (int i = 0; i < ret.length; i++) {
+                ret[i] = payload.get(start + i);
+            }
         }
 
         return ret;
@@ -175,7 +272,7 @@ public class PacketData {
 
     public int size() {
         if (this.payload != null) {
-            return payload.size();
+            return payload.limit();
         } else {
             return 0;
         }
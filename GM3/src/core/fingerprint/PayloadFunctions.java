@@ -4,12 +4,8 @@ import core.fingerprint3.ContentType;
 import core.fingerprint3.Cursor;
 import core.fingerprint3.Position;
 import core.knowledgebase.Reference;
-import org.antlr.v4.runtime.ANTLRInputStream;
-import org.antlr.v4.runtime.CommonTokenStream;
 import ui.fingerprint.payload.Endian;
 import ui.fingerprint.payload.Test;
-import util.parser.CalcLexer;
-import util.parser.CalcParser;
 
 import javax.xml.bind.DatatypeConverter;
 import java.io.UnsupportedEncodingException;
@@ -71,6 +67,15 @@ public class PayloadFunctions {
     }
 
     public static void byteJumpFunction(PacketData payload, CursorImpl cursor, int offset, boolean relative, int bytes, Endian endian, int postOffset, String calc) {
+        CalcExpression expression = null;
+        if (null != calc && !calc.isEmpty()) {
+            expression = CalcExpression.forText(calc);
+        }
+
+        byteJumpFunction(payload, cursor, offset, relative, bytes, endian, postOffset, expression);
+    }
+
+    public static void byteJumpFunction(PacketData payload, CursorImpl cursor, int offset, boolean relative, int bytes, Endian endian, int postOffset, CalcExpression calc) {
         int location;
         if (payload.size() > offset) {
             if (bytes > 0) {
@@ -79,8 +84,8 @@ public class PayloadFunctions {
                 location = payload.getInt(offset, endian == Endian.getDefault());
             }
 
-            if (null != calc && !calc.isEmpty()) {
-                location = calculate(location, calc);
+            if (null != calc) {
+                location = calc.evaluate(location);
             }
 
             location += postOffset;
@@ -95,35 +100,6 @@ public class PayloadFunctions {
         }
     }
 
-    private static int calculate(int input, String expression) {
-        CalcLexer lexer = new CalcLexer(new ANTLRInputStream(expression));
-        CalcParser parser = new CalcParser(new CommonTokenStream(lexer));
-
-        expression.replace("x", Integer.toString(input));
-
-        return eval(parser.expr());
-    }
-
-    private static int eval(CalcParser.ExprContext context) {
-        if (context.number() != null) {
-            return Integer.parseInt(context.number().getText());
-        } else if (context.BR_CLOSE() != null) {
-            return eval(context.expr(0));
-        } else if (context.MOD() != null) {
-            return eval(context.expr(0)) % eval(context.expr(1));
-        } else if (context.TIMES() != null) {
-            return eval(context.expr(0)) * eval(context.expr(1));
-        } else if (context.DIV() != null) {
-            return eval(context.expr(0)) / eval(context.expr(1));
-        } else if (context.PLUS() != null) {
-            return eval(context.expr(0)) + eval(context.expr(1));
-        } else if (context.MINUS() != null) {
-            return eval(context.expr(0)) - eval(context.expr(1));
-        } else {
-            throw new IllegalStateException();
-        }
-    }
-
     public static boolean byteTestFunction(PacketData payload, CursorImpl cursor, Test operator, int testVal, boolean relative, int offset, int postOffset, int bytes, Endian endian) {
         if (relative) {
             offset = cursor.getMain() + offset;
@@ -162,40 +138,45 @@ public class PayloadFunctions {
 
 
     public static Map.Entry<String, String> extractFunction(PacketData payload, CursorImpl cursor, String name, String fromString, String toString, int maxLength, Endian endian, ContentType convert, Lookup lookup) {
+        Position fromPos = positionOf(fromString);
+        Integer from = fromPos == null ? indexOf(fromString) : Integer.valueOf(0);
+        Position toPos = positionOf(toString);
+        Integer to = toPos == null ? indexOf(toString) : Integer.valueOf(0);
+        if (from == null || to == null) {
+            return null;
+        }
+
+        return extractFunction(payload, cursor, name, fromPos, from, toPos, to, maxLength, endian, convert, lookup);
+    }
 
-        Position fromPos;
+    /**
+     * @return The Position named by an Extract index, or null if the index is not a Position.
+     */
+    static Position positionOf(String index) {
         try {
-            fromPos = fromString != null ? Position.valueOf(fromString) : null;
+            return index != null ? Position.valueOf(index) : null;
         } catch (IllegalArgumentException e) {
-            fromPos = null;
-        }
-        int from;
-        if (fromPos != null) {
-           from = getIntegerPosition(payload, fromPos, cursor);
-        } else {
-            try {
-                from = Integer.parseInt(fromString);
-            } catch (NumberFormatException e) {
-                return null;
-            }
+            return null;
         }
+    }
 
-        Position toPos;
+    /**
+     * @return The numeric value of an Extract index, or null if the index is not an integer.
+     */
+    static Integer indexOf(String index) {
         try {
-         toPos = toString != null ? Position.valueOf(toString) : null;
-        } catch (IllegalArgumentException e) {
-            toPos = null;
-        }
-        int to;
-        if (toPos != null) {
-            to = getIntegerPosition(payload, toPos, cursor);
-        } else {
-            try {
-                to = Integer.parseInt(toString);
-            } catch (NumberFormatException e) {
-                return null;
-            }
+            return Integer.parseInt(index);
+        } catch (NumberFormatException e) {
+            return null;
         }
+    }
+
+    /**
+     * Extract with pre-parsed indices; a non-null Position takes precedence over the corresponding numeric index.
+     */
+    public static Map.Entry<String, String> extractFunction(PacketData payload, CursorImpl cursor, String name, Position fromPos, int fromIndex, Position toPos, int toIndex, int maxLength, Endian endian, ContentType convert, Lookup lookup) {
+        int from = fromPos != null ? getIntegerPosition(payload, fromPos, cursor) : fromIndex;
+        int to = toPos != null ? getIntegerPosition(payload, toPos, cursor) : toIndex;
 
         byte[] ext;
         if (endian == Endian.BIG) {
@@ -285,6 +266,20 @@ public class PayloadFunctions {
 
     public static boolean matchFunction(PacketData payload, CursorImpl cursor, int depth, int offset, boolean relative,
                                  int within, boolean noCase, String patternString, byte[] content, boolean move, Charset charset) {
+        Pattern pattern = null;
+        if (patternString != null) {
+            if (noCase) {
+                pattern = Pattern.compile(patternString, Pattern.CASE_INSENSITIVE);
+            } else {
+                pattern = Pattern.compile(patternString);
+            }
+        }
+
+        return matchFunction(payload, cursor, depth, offset, relative, within, pattern, content, move, charset);
+    }
+
+    public static boolean matchFunction(PacketData payload, CursorImpl cursor, int depth, int offset, boolean relative,
+                                 int within, Pattern pattern, byte[] content, boolean move, Charset charset) {
 
         boolean matched = false;
 
@@ -301,14 +296,8 @@ public class PayloadFunctions {
             length = payload.size() - offset;
         }
 
-        if (patternString != null) {
+        if (pattern != null) {
             String string = new String(payload.getByteArray(offset, length), charset);
-            Pattern pattern;
-            if (noCase) {
-                pattern = Pattern.compile(patternString, Pattern.CASE_INSENSITIVE);
-            } else {
-                pattern = Pattern.compile(patternString);
-            }
             Matcher matcher;
             if (string != null && !string.isEmpty() && (matcher = pattern.matcher(string)).matches()) {
                 if (move) {
@@ -333,4 +322,35 @@ public class PayloadFunctions {
 
         return matched;
     }
+
+    /**
+     * Content match against a pattern registered with the ContentMatcher the scan belongs to.  Equivalent to
+     * matchFunction with that pattern's content, but answered from the scan rather than by searching the payload.
+     */
+    public static boolean matchFunction(PacketData payload, CursorImpl cursor, int depth, int offset, boolean relative,
+                                        int within, ContentMatcher.Scan contents, int contentId, boolean move) {
+        if (relative) {
+            offset += cursor.getMain();
+        }
+
+        int length;
+        if (depth > 0) {
+            length = Math.min(depth, payload.size() - offset);
+        } else {
+            length = payload.size() - offset;
+        }
+
+        int location = contents.find(contentId, offset, length);
+        if (location != -1) {
+            if (move) {
+                cursor.setStart(location);
+                cursor.setEnd(location + contents.lengthOf(contentId));
+            }
+
+            cursor.setMain(location);
+            return true;
+        }
+
+        return false;
+    }
 }
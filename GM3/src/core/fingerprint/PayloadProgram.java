@@ -0,0 +1,465 @@
+package core.fingerprint;
+
+import core.document.graph.ComputedProperty;
+import core.fingerprint3.*;
+import ui.fingerprint.payload.Endian;
+import ui.fingerprint.payload.Test;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A Fingerprint.Payload lowered into a tree of operations.
+ *
+ * Everything that can be derived from the fingerprint alone (content bytes, regular expressions, endianness, test
+ * operators and values, constant Return details) is resolved once, when the program is compiled, rather than for every
+ * packet.  A program is immutable and may be run from any number of threads.
+ */
+public class PayloadProgram {
+    private interface Op {
+        void execute(PacketData data, CursorImpl cursor, ContentMatcher.Scan contents);
+    }
+
+    private final String fingerprintName;
+    private final ReturnOp[] always;
+    private final Op[] operations;
+
+    private PayloadProgram(final String fingerprintName, final ReturnOp[] always, final Op[] operations) {
+        this.fingerprintName = fingerprintName;
+        this.always = always;
+        this.operations = operations;
+    }
+
+    /**
+     * @param contents Receives the literal content of every Match operation in the payload.  The ContentMatcher it
+     * builds must be the one whose Scan is passed to run.
+     */
+    public static PayloadProgram compile(final Fingerprint fp, final Fingerprint.Payload payload, final ContentMatcher.Builder contents) {
+        final String fpName = fp.getHeader().getName();
+
+        final ReturnOp[] always;
+        if(payload.getAlways() != null) {
+            always = payload.getAlways().getReturn().stream()
+                    .map(ret -> new ReturnOp(fpName, ret))
+                    .toArray(ReturnOp[]::new);
+        } else {
+            always = new ReturnOp[0];
+        }
+
+        return new PayloadProgram(fpName, always, compileOps(fpName, payload.getOperation(), contents));
+    }
+
+    public String getFingerprintName() {
+        return fingerprintName;
+    }
+
+    /**
+     * Runs the program against a packet.
+     * @param cursor The cursor to use; it is reset before the program runs.
+     * @param contents The content scan for the packet, shared by every program run against it.
+     */
+    public void run(final PacketData data, final CursorImpl cursor, final ContentMatcher.Scan contents) {
+        cursor.reset();
+        for(ReturnOp ret : always) {
+            ret.execute(data, cursor, contents);
+        }
+        execute(operations, data, cursor, contents);
+    }
+
+    private static void execute(final Op[] ops, final PacketData data, final CursorImpl cursor, final ContentMatcher.Scan contents) {
+        for(Op op : ops) {
+            op.execute(data, cursor, contents);
+        }
+    }
+
+    private static Op[] compileOps(final String fpName, final List<Object> opList, final ContentMatcher.Builder contents) {
+        final List<Op> result = new ArrayList<>(opList.size());
+        for(Object op : opList) {
+            if(op instanceof Return) {
+                result.add(new ReturnOp(fpName, (Return)op));
+            } else if(op instanceof MatchFunction) {
+                result.add(new MatchOp(fpName, (MatchFunction)op, contents));
+            } else if(op instanceof ByteTestFunction) {
+                result.add(new ByteTestOp(fpName, (ByteTestFunction)op, contents));
+            } else if(op instanceof ByteJumpFunction) {
+                result.add(new ByteJumpOp(fpName, (ByteJumpFunction)op, contents));
+            } else if(op instanceof IsDataAtFunction) {
+                result.add(new IsDataAtOp(fpName, (IsDataAtFunction)op, contents));
+            } else if(op instanceof Anchor) {
+                result.add(new AnchorOp((Anchor)op));
+            }
+        }
+        return result.toArray(new Op[result.size()]);
+    }
+
+    private static Op[] compileAndThen(final String fpName, final AndThen andThen, final ContentMatcher.Builder contents) {
+        if(andThen == null) {
+            return null;
+        } else {
+            return compileOps(fpName, andThen.getMatchOrByteTestOrIsDataAt(), contents);
+        }
+    }
+
+    private static int intOf(final Integer value, final int valueDefault) {
+        return value == null ? valueDefault : value;
+    }
+
+    // == Operations ==========================================================
+
+    private static class ReturnOp implements Op {
+        private static class ExtractOp {
+            private final String name;
+            private final Position positionFrom;
+            private final int from;
+            private final Position positionTo;
+            private final int to;
+            private final boolean valid;
+            private final int maxLength;
+            private final Endian endian;
+            private final ContentType convert;
+            private final Lookup lookup;
+
+            public ExtractOp(final Extract extract) {
+                this.name = extract.getName();
+                this.maxLength = extract.getMaxLength();
+                this.endian = extract.getEndian() != null ? Endian.valueOf(extract.getEndian()) : Endian.getDefault();
+
+                final Post post = extract.getPost();
+                if(post != null) {
+                    this.convert = post.getConvert();
+                    this.lookup = post.getLookup() != null ? Lookup.valueOf(post.getLookup()) : null;
+                } else {
+                    this.convert = null;
+                    this.lookup = null;
+                }
+
+                this.positionFrom = PayloadFunctions.positionOf(extract.getFrom());
+                this.positionTo = PayloadFunctions.positionOf(extract.getTo());
+                Integer from = positionFrom == null ? PayloadFunctions.indexOf(extract.getFrom()) : Integer.valueOf(0);
+                Integer to = positionTo == null ? PayloadFunctions.indexOf(extract.getTo()) : Integer.valueOf(0);
+                //An index that is neither a Position nor an integer never extracts anything.
+                this.valid = from != null && to != null;
+                this.from = from == null ? 0 : from;
+                this.to = to == null ? 0 : to;
+            }
+
+            public Map.Entry<String, String> extract(final PacketData data, final CursorImpl cursor) {
+                if(!valid) {
+                    return null;
+                }
+                return PayloadFunctions.extractFunction(data, cursor, name, positionFrom, from, positionTo, to, maxLength, endian, convert, lookup);
+            }
+        }
+
+        private final String fpName;
+        private final int confidence;
+        private final boolean isSource;
+        private final boolean isDestination;
+        /**
+         * The Role, Category and Detail values do not depend on the packet, so they are built once.
+         */
+        private final Map<String, ComputedProperty> details;
+        private final ExtractOp[] extracts;
+
+        public ReturnOp(final String fpName, final Return ret) {
+            this.fpName = fpName;
+            this.confidence = ret.getConfidence();
+            this.isSource = "SOURCE".equals(ret.getDirection());
+            this.isDestination = "DESTINATION".equals(ret.getDirection());
+
+            final Map<String, ComputedProperty> values = new HashMap<>();
+            final DetailGroup details = ret.getDetails();
+            if(details != null) {
+                if(details.getRole() != null && !details.getRole().isEmpty()) {
+                    values.put("Role", new ComputedProperty(details.getRole(), confidence));
+                }
+                if(details.getCategory() != null && !details.getCategory().isEmpty()) {
+                    values.put("Category", new ComputedProperty(details.getCategory(), confidence));
+                }
+                for(DetailGroup.Detail detail : details.getDetail()) {
+                    values.put(detail.getName(), new ComputedProperty(detail.getValue(), confidence));
+                }
+            }
+            this.details = Collections.unmodifiableMap(values);
+            this.extracts = ret.getExtract().stream()
+                    .map(ExtractOp::new)
+                    .toArray(ExtractOp[]::new);
+        }
+
+        @Override
+        public void execute(final PacketData data, final CursorImpl cursor, final ContentMatcher.Scan contents) {
+            Map<String, ComputedProperty> values = details;
+            if(data.hasPayload() && extracts.length > 0) {
+                values = new HashMap<>(details);
+                for(ExtractOp extract : extracts) {
+                    final Map.Entry<String, String> entry = extract.extract(data, cursor);
+                    if(entry != null) {
+                        values.put(entry.getKey(), new ComputedProperty(entry.getValue(), confidence));
+                    }
+                }
+            }
+
+            if(isSource) {
+                data.getSourceNode().addAnnotations(fpName, values);
+            } else if(isDestination) {
+                data.getDestNode().addAnnotations(fpName, values);
+            }
+        }
+    }
+
+    private static class MatchOp implements Op {
+        private final int depth;
+        private final int offset;
+        private final boolean relative;
+        private final int within;
+        private final boolean move;
+        private final Pattern pattern;
+        private final PatternSyntaxException patternError;
+        private final int contentId;
+        private final Op[] andThen;
+
+        public MatchOp(final String fpName, final MatchFunction match, final ContentMatcher.Builder contents) {
+            this.depth = match.getDepth();
+            this.offset = match.getOffset();
+            this.relative = match.isRelative();
+            this.within = match.getWithin();
+            this.move = match.isMoveCursors();
+
+            Pattern pattern = null;
+            PatternSyntaxException patternError = null;
+            if(match.getPattern() != null) {
+                try {
+                    pattern = Pattern.compile(match.getPattern(), match.isNoCase() ? Pattern.CASE_INSENSITIVE : 0);
+                } catch(PatternSyntaxException ex) {
+                    //Reported when the operation runs, which is when it used to be compiled.
+                    patternError = ex;
+                }
+            }
+            this.pattern = pattern;
+            this.patternError = patternError;
+
+            if(match.getContent() != null) {
+                this.contentId = contents.register(getContent(match.getContent().getType(), match.getContent().getValue()));
+            } else {
+                this.contentId = -1;
+            }
+
+            this.andThen = compileAndThen(fpName, match.getAndThen(), contents);
+        }
+
+        @Override
+        public void execute(final PacketData data, final CursorImpl cursor, final ContentMatcher.Scan contents) {
+            if(!data.hasPayload()) {
+                return;
+            }
+            if(patternError != null) {
+                throw patternError;
+            }
+            final boolean matched;
+            if(pattern != null) {
+                matched = PayloadFunctions.matchFunction(data, cursor, depth, offset, relative, within, pattern, null, move, StandardCharsets.UTF_8);
+            } else {
+                matched = contentId != -1 && PayloadFunctions.matchFunction(data, cursor, depth, offset, relative, within, contents, contentId, move);
+            }
+            if(matched && andThen != null) {
+                PayloadProgram.execute(andThen, data, cursor, contents);
+            }
+        }
+    }
+
+    private static class ByteTestOp implements Op {
+        private final Test test;
+        private final int value;
+        private final boolean relative;
+        private final int offset;
+        private final int postOffset;
+        private final int bytes;
+        private final Endian endian;
+        private final Op[] andThen;
+
+        public ByteTestOp(final String fpName, final ByteTestFunction testFunc, final ContentMatcher.Builder contents) {
+            this.test = getTest(testFunc);
+            this.value = test == null ? 0 : getTestValue(testFunc, test).intValue();
+            this.relative = testFunc.isRelative();
+            this.offset = testFunc.getOffset();
+            this.postOffset = testFunc.getPostOffset();
+            this.bytes = testFunc.getBytes();
+            this.endian = testFunc.getEndian() != null ? Endian.valueOf(testFunc.getEndian()) : Endian.getDefault();
+            this.andThen = compileAndThen(fpName, testFunc.getAndThen(), contents);
+        }
+
+        @Override
+        public void execute(final PacketData data, final CursorImpl cursor, final ContentMatcher.Scan contents) {
+            if(!data.hasPayload() || test == null) {
+                return;
+            }
+            final boolean passed = PayloadFunctions.byteTestFunction(data, cursor, test, value, relative, offset, postOffset, bytes, endian);
+            if(passed && andThen != null) {
+                PayloadProgram.execute(andThen, data, cursor, contents);
+            }
+        }
+
+        private static Test getTest(final ByteTestFunction func) {
+            if (func.getAND() != null) {
+                return Test.AND;
+            } else if (func.getOR() != null) {
+                return Test.OR;
+            } else if (func.getGT() != null) {
+                return Test.GT;
+            } else if (func.getGTE() != null) {
+                return Test.GTE;
+            } else if (func.getLT() != null) {
+                return Test.LT;
+            } else if (func.getLTE() != null) {
+                return Test.LTE;
+            } else if (func.getEQ() != null) {
+                return Test.EQ;
+            } else {
+                return null;
+            }
+        }
+
+        private static BigInteger getTestValue(final ByteTestFunction func, final Test test) {
+            switch (test) {
+                case GT:
+                    return func.getGT();
+                case GTE:
+                    return func.getGTE();
+                case LT:
+                    return func.getLT();
+                case LTE:
+                    return func.getLTE();
+                case AND:
+                    return func.getAND();
+                case OR:
+                    return func.getOR();
+                case EQ:
+                    return func.getEQ();
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static class ByteJumpOp implements Op {
+        private final int offset;
+        private final boolean relative;
+        private final int bytes;
+        private final Endian endian;
+        private final int postOffset;
+        private final CalcExpression calc;
+        private final IllegalArgumentException calcError;
+        private final Op[] andThen;
+
+        public ByteJumpOp(final String fpName, final ByteJumpFunction jump, final ContentMatcher.Builder contents) {
+            this.offset = intOf(jump.getOffset(), 0);
+            this.relative = jump.isRelative();
+            this.bytes = intOf(jump.getBytes(), 0);
+            this.endian = jump.getEndian() != null ? Endian.valueOf(jump.getEndian()) : Endian.getDefault();
+            this.postOffset = intOf(jump.getPostOffset(), 0);
+
+            CalcExpression calc = null;
+            IllegalArgumentException calcError = null;
+            if(jump.getCalc() != null && !jump.getCalc().isEmpty()) {
+                try {
+                    calc = CalcExpression.forText(jump.getCalc());
+                } catch(IllegalArgumentException ex) {
+                    calcError = ex;
+                }
+            }
+            this.calc = calc;
+            this.calcError = calcError;
+            this.andThen = compileAndThen(fpName, jump.getAndThen(), contents);
+        }
+
+        @Override
+        public void execute(final PacketData data, final CursorImpl cursor, final ContentMatcher.Scan contents) {
+            if(!data.hasPayload()) {
+                return;
+            }
+            if(calcError != null) {
+                throw calcError;
+            }
+            PayloadFunctions.byteJumpFunction(data, cursor, offset, relative, bytes, endian, postOffset, calc);
+            if(andThen != null) {
+                PayloadProgram.execute(andThen, data, cursor, contents);
+            }
+        }
+    }
+
+    private static class IsDataAtOp implements Op {
+        private final int offset;
+        private final boolean relative;
+        private final Op[] andThen;
+
+        public IsDataAtOp(final String fpName, final IsDataAtFunction at, final ContentMatcher.Builder contents) {
+            this.offset = intOf(at.getOffset(), 0);
+            this.relative = at.isRelative();
+            this.andThen = compileAndThen(fpName, at.getAndThen(), contents);
+        }
+
+        @Override
+        public void execute(final PacketData data, final CursorImpl cursor, final ContentMatcher.Scan contents) {
+            if(!data.hasPayload()) {
+                return;
+            }
+            if(PayloadFunctions.isDataAtFunction(data, cursor, offset, relative) && andThen != null) {
+                PayloadProgram.execute(andThen, data, cursor, contents);
+            }
+        }
+    }
+
+    private static class AnchorOp implements Op {
+        private final Cursor cursorType;
+        private final Position position;
+        private final boolean relative;
+        private final int offset;
+
+        public AnchorOp(final Anchor anchor) {
+            this.cursorType = anchor.getCursor();
+            this.position = anchor.getPosition();
+            this.relative = anchor.isRelative();
+            this.offset = intOf(anchor.getOffset(), 0);
+        }
+
+        @Override
+        public void execute(final PacketData data, final CursorImpl cursor, final ContentMatcher.Scan contents) {
+            if(!data.hasPayload()) {
+                return;
+            }
+            PayloadFunctions.anchorFunction(data, cursor, cursorType, position, relative, offset);
+        }
+    }
+
+    private static byte[] getContent(ContentType type, String value) {
+        byte[] ret = new byte[0];
+
+        try {
+            switch (type) {
+                case HEX:
+                    ret = new BigInteger(value, 16).toByteArray();
+                    break;
+                case STRING:
+                    ret = value.getBytes(StandardCharsets.UTF_8);
+                    break;
+                case RAW_BYTES:
+                    value = value.replaceAll("\\s+", "");
+                    ret = new byte[value.length() / 2];
+                    for (int i = 0; i < value.length(); i += 2) {
+                        int parsed = Integer.parseInt(value.substring(i, i + 2), 16);
+                        ret[i / 2] = (byte) parsed;
+                    }
+                    break;
+                case INTEGER:
+                    ret = new BigInteger(value).toByteArray();
+            }
+        } catch (NumberFormatException e) {
+            // returning empty array
+        }
+
+        return ret;
+    }
+}
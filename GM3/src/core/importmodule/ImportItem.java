@@ -5,7 +5,7 @@
 package core.importmodule;
 
 import core.document.Event;
-import core.document.serialization.xml.XmlElement;
+import core.document.serialization.xml.XmlStreamWriter;
 import core.fingerprint3.Fingerprint;
 import core.logging.Logger;
 import core.logging.Severity;
@@ -14,6 +14,7 @@ import javafx.beans.property.SimpleObjectProperty;
 import ui.custom.fx.FxThresholdDoubleProperty;
 import util.Launcher;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
@@ -193,16 +194,15 @@ public abstract class ImportItem {
         }
     }
 
-    public XmlElement toXml() {
-        XmlElement xmlImport = new XmlElement("import");
-        xmlImport.addAttribute("src").setValue(path.toAbsolutePath().toString());
-        xmlImport.addAttribute("type").setValue(this.getClass().getName());
+    public void toXml(XmlStreamWriter writer) throws IOException {
+        writer.startElement("import");
+        writer.attribute("src", path.toAbsolutePath().toString());
+        writer.attribute("type", this.getClass().getName());
 
         final String namePlugin = Launcher.pluginFor(this.getClass());
         if(namePlugin != null) {
-            xmlImport.addAttribute("plugin").setValue(namePlugin);
+            writer.attribute("plugin", namePlugin);
         }
-
-        return xmlImport;
+        writer.endElement();
     }
 }
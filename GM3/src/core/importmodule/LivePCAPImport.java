@@ -1,6 +1,7 @@
 package core.importmodule;
 
 import core.fingerprint3.Fingerprint;
+import core.importmodule.inputIterators.pcap.LiveCaptureStatistics;
 import core.importmodule.inputIterators.pcap.PcapLiveParser;
 import core.logging.Logger;
 import core.logging.Severity;
@@ -34,6 +35,10 @@ public class LivePCAPImport extends ImportItem {
         return source;
     }
 
+    public LiveCaptureStatistics getStatistics() {
+        return parser.getStatistics();
+    }
+
     @Override
     protected long getTotalUnits() {
         return 1;
@@ -63,6 +68,6 @@ public class LivePCAPImport extends ImportItem {
     public void stop() {
         recordTaskCompletion();
         parser.stop();
-        Logger.log(this, Severity.Information, "Live PCAP terminated.");
+        Logger.log(this, Severity.Information, "Live PCAP terminated. " + parser.getStatistics());
     }
 }
\ No newline at end of file
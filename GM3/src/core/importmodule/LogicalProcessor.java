@@ -6,7 +6,6 @@ import core.document.graph.IEdge;
 import core.document.graph.LogicalNode;
 import core.fingerprint.FProcessor;
 import core.fingerprint.PacketData;
-import core.fingerprint3.Fingerprint;
 import util.Cidr;
 
 import java.util.Arrays;
@@ -43,19 +42,18 @@ public class LogicalProcessor {
     }
 
     private PacketData data;
-    private final Supplier<List<Fingerprint>> fingerprints;
+    //The compiled fingerprints are shared between threads and may be replaced at any time; they are read once per packet.
+    private final Supplier<FProcessor> fingerprints;
     private final Function<PacketData, IEdge<LogicalNode>> graph;
     private final List<Consumer<PacketData>> plugins;
-    private final FProcessor processor;
     private final Session session;
 
-    public LogicalProcessor(Session session, Supplier<List<Fingerprint>> fingerprints,
+    public LogicalProcessor(Session session, Supplier<FProcessor> fingerprints,
                             Function<PacketData, IEdge<LogicalNode>> graphFunction, Consumer<PacketData>... plugins) {
         this.session = session;
         this.fingerprints = fingerprints;
         this.graph = graphFunction;
         this.plugins = Arrays.asList(plugins);
-        this.processor = new FProcessor(this.fingerprints.get());
     }
 
     // Process a packet
@@ -91,7 +89,7 @@ public class LogicalProcessor {
         this.data.setDestNode(dataDestination);
 
         start = System.currentTimeMillis();
-        this.processor.process(data);
+        this.fingerprints.get().process(data);
         end = System.currentTimeMillis();
 
         data.getSource().fpTime.addAndGet(end - start);
@@ -1,22 +1,27 @@
 package core.importmodule;
 
+import core.Configuration;
 import core.document.PhysicalDevice;
 import core.document.Session;
 import core.document.graph.*;
-import core.document.serialization.xml.XmlElement;
+import core.document.serialization.xml.XmlStreamWriter;
 import core.exec.IEEE802154Data;
+import core.fingerprint.FProcessor;
 import core.fingerprint.PacketData;
-import core.fingerprint3.Fingerprint;
+import core.logging.Logger;
+import core.logging.Severity;
 import ui.GrassMarlinFx;
 import util.Cidr;
+import util.LongHashMap;
 
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
-import java.util.zip.ZipOutputStream;
 
 /**
  * We use this as an opportunity to add the session to a task.
@@ -25,6 +30,46 @@ import java.util.zip.ZipOutputStream;
  * fingerprinting framework.
  */
 public class TaskDispatcher {
+    /**
+     * Polling is the original dispatch loop, which hands every logical item to a ThreadPoolExecutor and retries when
+     * the executor rejects it.  Batched hands batches of items to a bounded queue that is drained by a fixed set of
+     * workers, blocking the reader when the workers fall behind.  Batched also parses physical imports in parallel and
+     * adds their devices to the topology in one call.
+     */
+    public enum DispatchMode {
+        Polling,
+        Batched;
+
+        public static DispatchMode fromConfiguration() {
+            final String value = Configuration.getPreferenceString(Configuration.Fields.IMPORT_DISPATCH_MODE);
+            for(DispatchMode mode : values()) {
+                if(mode.name().equalsIgnoreCase(value)) {
+                    return mode;
+                }
+            }
+            return Batched;
+        }
+    }
+
+    /**
+     * Maximum number of logical items read from a single iterator before the batch is handed off.
+     */
+    private static final int BATCH_SIZE = 256;
+    /**
+     * Number of batches that may be waiting on the workers; once full, the reader blocks until a worker catches up.
+     */
+    private static final int BATCH_QUEUE_CAPACITY = 64;
+    /**
+     * Number of batches a worker will take from the queue on a single wakeup.
+     */
+    private static final int BATCHES_PER_WAKEUP = 8;
+    private static final long PARK_IDLE_MIN_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+    private static final long PARK_IDLE_MAX_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long PARK_REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private final DispatchMode mode;
+    private final int cntThreads;
     private final ExecutorService wexec;
     private final ExecutorService lexec;
     private final BlockingQueue<Runnable> logicalQueue;
@@ -38,7 +83,15 @@ public class TaskDispatcher {
     private final ThreadLocal<LogicalProcessor> proc;
     private final ThreadLocal<MeshProcessor> meshProc;
 
-    private boolean shutdown;
+    private final BlockingQueue<List<Object>> batchQueue;
+    private final AtomicInteger pendingBatchItems;
+    private final Statistics statistics;
+    private ExecutorService bexec;
+    private ExecutorService pexec;
+    private volatile Thread threadLogicalReader;
+    private volatile Thread threadPhysicalReader;
+
+    private volatile boolean shutdown;
     private boolean running;
 
     /**
@@ -46,6 +99,12 @@ public class TaskDispatcher {
      * that will run through this TaskDispatcher.
      */
     public TaskDispatcher(final int cntThreads, final Session session) {
+        this(cntThreads, session, DispatchMode.fromConfiguration());
+    }
+
+    public TaskDispatcher(final int cntThreads, final Session session, final DispatchMode mode) {
+        this.mode = mode;
+        this.cntThreads = cntThreads;
         wexec = Executors.newCachedThreadPool();
         logicalQueue = new ArrayBlockingQueue<>(1000);
         lexec = new ThreadPoolExecutor(1, cntThreads, 30, TimeUnit.SECONDS, logicalQueue, new ThreadPoolExecutor.AbortPolicy());
@@ -61,8 +120,12 @@ public class TaskDispatcher {
         shutdown = false;
         running = false;
 
-        proc = new ThreadLocalLogicalProcessor(session, GrassMarlinFx::getRunningFingerprints, factoryLogicalEdges);
+        proc = new ThreadLocalLogicalProcessor(session, GrassMarlinFx::getCompiledFingerprints, factoryLogicalEdges);
         meshProc = new ThreadLocalMeshProcessor(session, factoryMeshEdges);
+
+        batchQueue = new ArrayBlockingQueue<>(BATCH_QUEUE_CAPACITY);
+        pendingBatchItems = new AtomicInteger(0);
+        statistics = new Statistics();
     }
 
     public boolean isRunning() {
@@ -73,27 +136,76 @@ public class TaskDispatcher {
         return this.shutdown;
     }
 
+    public DispatchMode getMode() {
+        return this.mode;
+    }
+
+    /**
+     * @return The number of units of work waiting on the logical workers; batches in Batched mode, tasks in Polling mode.
+     */
+    public int getQueueDepth() {
+        return mode == DispatchMode.Batched ? batchQueue.size() : logicalQueue.size();
+    }
+
+    public long getLogicalItemsProcessed() {
+        return statistics.itemsProcessed.sum();
+    }
+
     @SuppressWarnings("unchecked")
     public void accept(final ImportItem item) {
+        //An import is fingerprinted with every change made before it started, not whatever the compiler has finished.
+        GrassMarlinFx.awaitCompiledFingerprints();
         Iterator<?> iterLogical = item.getIterator(Pipeline.LOGICAL);
         if(iterLogical != null) {
             logicalIterators.add(iterLogical);
             sourceFromIter.put(iterLogical, item);
+            final Thread reader = threadLogicalReader;
+            if(reader != null) {
+                LockSupport.unpark(reader);
+            }
         }
         Iterator<?> iterPhysical = item.getIterator(Pipeline.PHYSICAL);
         if(iterPhysical != null) {
             physicalIterators.add((Iterator<PhysicalDevice>)iterPhysical);
+            final Thread reader = threadPhysicalReader;
+            if(reader != null) {
+                LockSupport.unpark(reader);
+            }
         }
     }
 
     public void run() {
-        wexec.execute(this::startLogical);
-        wexec.execute(this::startPhysical);
+        if(mode == DispatchMode.Batched) {
+            bexec = Executors.newFixedThreadPool(cntThreads);
+            for(int idxWorker = 0; idxWorker < cntThreads; idxWorker++) {
+                bexec.execute(this::runBatchWorker);
+            }
+            wexec.execute(this::startLogicalBatched);
+            pexec = Executors.newFixedThreadPool(cntThreads);
+            wexec.execute(this::startPhysicalBatched);
+        } else {
+            wexec.execute(this::startLogical);
+            wexec.execute(this::startPhysical);
+        }
         running = true;
     }
 
     public void shutdown() {
         this.shutdown = true;
+        final Thread reader = threadLogicalReader;
+        if(reader != null) {
+            LockSupport.unpark(reader);
+        }
+        final Thread readerPhysical = threadPhysicalReader;
+        if(readerPhysical != null) {
+            LockSupport.unpark(readerPhysical);
+        }
+        if(bexec != null) {
+            bexec.shutdownNow();
+        }
+        if(pexec != null) {
+            pexec.shutdownNow();
+        }
     }
 
     //<editor-fold defaultstate="collapsed" desc="Logical Graph">
@@ -114,6 +226,7 @@ public class TaskDispatcher {
                     this.session.getLogicalGraph().refresh();
                     this.session.getMeshGraph().refresh();
                     needsRefresh = false;
+                    statistics.report(this, logicalQueue.remainingCapacity() + logicalQueue.size(), "tasks");
                 }
 
                 try {
@@ -136,6 +249,7 @@ public class TaskDispatcher {
                             while (!run) {
                                 try {
                                     lexec.execute(proc);
+                                    statistics.sampleQueueDepth(logicalQueue.size());
                                     run = true;
                                 } catch (RejectedExecutionException e) {
                                     run = false;
@@ -158,6 +272,7 @@ public class TaskDispatcher {
                             while (!run) {
                                 try {
                                     lexec.execute(proc);
+                                    statistics.sampleQueueDepth(logicalQueue.size());
                                     run = true;
                                 } catch (RejectedExecutionException e) {
                                     run = false;
@@ -186,6 +301,7 @@ public class TaskDispatcher {
                             while(!run) {
                                 try {
                                     lexec.execute(proc);
+                                    statistics.sampleQueueDepth(logicalQueue.size());
                                     run = true;
                                 } catch(RejectedExecutionException e) {
                                     run = false;
@@ -228,7 +344,189 @@ public class TaskDispatcher {
                     Thread.sleep(1);
                 } catch (InterruptedException e) {
                 }
+            } else {
+                statistics.markActive();
+            }
+        }
+    }
+
+    /**
+     * Reader for DispatchMode.Batched.  Each pass pulls up to BATCH_SIZE items from every iterator and hands each
+     * non-empty batch to the work queue, blocking while the queue is full.  When the iterators have nothing to offer
+     * the thread parks, backing off to PARK_IDLE_MAX_NANOS; when there are no iterators at all it parks until accept
+     * or shutdown wakes it.
+     */
+    private void startLogicalBatched() {
+        threadLogicalReader = Thread.currentThread();
+
+        final List<Iterator<?>> doneList = new LinkedList<>();
+        boolean needsRefresh = false;
+        long nsPark = PARK_IDLE_MIN_NANOS;
+
+        while(!shutdown) {
+            if(logicalIterators.isEmpty()) {
+                if(needsRefresh && pendingBatchItems.get() == 0) {
+                    this.session.getLogicalGraph().refresh();
+                    this.session.getMeshGraph().refresh();
+                    needsRefresh = false;
+                    statistics.report(this, BATCH_QUEUE_CAPACITY, "batches");
+                }
+                if(needsRefresh) {
+                    LockSupport.parkNanos(this, PARK_REFRESH_NANOS);
+                } else {
+                    LockSupport.park(this);
+                }
+                continue;
+            }
+
+            boolean anyItems = false;
+            for(Iterator<?> iterator : logicalIterators) {
+                List<Object> batch = null;
+                boolean exhausted = false;
+                while(batch == null || batch.size() < BATCH_SIZE) {
+                    if(!iterator.hasNext()) {
+                        exhausted = true;
+                        break;
+                    }
+                    final Object next = iterator.next();
+                    if(next == null) {
+                        break;
+                    }
+                    if(batch == null) {
+                        batch = new ArrayList<>(BATCH_SIZE + 1);
+                    }
+                    batch.add(next);
+                }
+                if(exhausted) {
+                    if(batch == null) {
+                        batch = new ArrayList<>(1);
+                    }
+                    //The completion is processed by the workers, after every item the iterator produced has been queued.
+                    final ImportItem source = sourceFromIter.get(iterator);
+                    batch.add((Runnable)source::recordTaskCompletion);
+                    doneList.add(iterator);
+                }
+                if(batch != null) {
+                    anyItems = true;
+                    needsRefresh = true;
+                    statistics.markActive();
+                    pendingBatchItems.addAndGet(batch.size());
+                    if(!enqueueBatch(batch)) {
+                        return;
+                    }
+                }
+            }
+
+            this.logicalIterators.removeAll(doneList);
+            doneList.clear();
+
+            if(anyItems) {
+                nsPark = PARK_IDLE_MIN_NANOS;
+            } else {
+                LockSupport.parkNanos(this, nsPark);
+                nsPark = Math.min(nsPark * 2, PARK_IDLE_MAX_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Blocks until the batch is accepted by the work queue.
+     * @return false if the dispatcher was shut down before the batch could be queued.
+     */
+    private boolean enqueueBatch(final List<Object> batch) {
+        while(!shutdown) {
+            try {
+                if(batchQueue.offer(batch, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    statistics.sampleQueueDepth(batchQueue.size());
+                    return true;
+                }
+            } catch(InterruptedException ex) {
+                //Loop to check the shutdown flag.
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Worker for DispatchMode.Batched.  Each wakeup takes up to BATCHES_PER_WAKEUP batches from the work queue.
+     */
+    private void runBatchWorker() {
+        final List<List<Object>> batches = new ArrayList<>(BATCHES_PER_WAKEUP);
+        while(!shutdown) {
+            try {
+                batches.add(batchQueue.take());
+            } catch(InterruptedException ex) {
+                continue;
+            }
+            batchQueue.drainTo(batches, BATCHES_PER_WAKEUP - 1);
+
+            for(List<Object> batch : batches) {
+                for(Object item : batch) {
+                    try {
+                        processLogicalItem(item);
+                    } catch(Exception ex) {
+                        ex.printStackTrace();
+                    }
+                }
+                statistics.itemsProcessed.add(batch.size());
+                if(pendingBatchItems.addAndGet(-batch.size()) == 0) {
+                    //The reader is responsible for the refresh once everything queued has been processed.
+                    final Thread reader = threadLogicalReader;
+                    if(reader != null) {
+                        LockSupport.unpark(reader);
+                    }
+                }
+            }
+            batches.clear();
+        }
+    }
+
+    private void processLogicalItem(final Object item) {
+        if(item instanceof PacketData) {
+            proc.get().process((PacketData)item);
+        } else if(item instanceof IEEE802154Data) {
+            meshProc.get().process((IEEE802154Data)item);
+        } else if(item instanceof LogicalProcessor.Host) {
+            proc.get().process((LogicalProcessor.Host)item);
+        } else if(item instanceof Runnable) {
+            ((Runnable)item).run();
+        }
+    }
+
+    /**
+     * Throughput counters for the logical pipeline.  A summary is logged every time the pipeline drains so that the
+     * dispatch modes can be compared against each other on the same import.
+     */
+    private static class Statistics {
+        private final LongAdder itemsProcessed = new LongAdder();
+        private final AtomicInteger peakQueueDepth = new AtomicInteger(0);
+        //Written by the reader thread and readable from any other; itemsAtActive is always written before nsActiveSince,
+        //so a thread that sees the dispatcher as active also sees the count it became active at.
+        private volatile long nsActiveSince = -1;
+        private volatile long itemsAtActive = 0;
+
+        public void markActive() {
+            if(nsActiveSince < 0) {
+                itemsAtActive = itemsProcessed.sum();
+                nsActiveSince = System.nanoTime();
+            }
+        }
+
+        public void sampleQueueDepth(final int depth) {
+            peakQueueDepth.accumulateAndGet(depth, Math::max);
+        }
+
+        public void report(final TaskDispatcher dispatcher, final int capacity, final String units) {
+            final long nsStart = nsActiveSince;
+            if(nsStart < 0) {
+                return;
             }
+            final long nsElapsed = System.nanoTime() - nsStart;
+            final long items = itemsProcessed.sum() - itemsAtActive;
+            final long itemsPerSecond = nsElapsed == 0 ? 0 : (long)(items * 1_000_000_000.0 / nsElapsed);
+            Logger.log(dispatcher, Severity.Information, String.format("%s dispatch processed %d logical items in %d ms (%d items/sec); peak queue depth %d/%d %s.",
+                    dispatcher.mode, items, TimeUnit.NANOSECONDS.toMillis(nsElapsed), itemsPerSecond, peakQueueDepth.getAndSet(0), capacity, units));
+            nsActiveSince = -1;
         }
     }
 
@@ -246,6 +544,7 @@ public class TaskDispatcher {
         public void run() {
             try {
                 proc.get().process(data);
+                statistics.itemsProcessed.increment();
             } catch (Exception ex) {
                 ex.printStackTrace();
             } finally {
@@ -265,6 +564,7 @@ public class TaskDispatcher {
         public void run() {
             try {
                 proc.get().process(data);
+                statistics.itemsProcessed.increment();
             } catch(Exception ex) {
                 ex.printStackTrace();
             }
@@ -286,6 +586,7 @@ public class TaskDispatcher {
         public void run() {
             try {
                 meshProc.get().process(data);
+                statistics.itemsProcessed.increment();
             } catch(Exception ex) {
                 ex.printStackTrace();
             } finally {
@@ -296,11 +597,11 @@ public class TaskDispatcher {
 
     private static class ThreadLocalLogicalProcessor extends ThreadLocal<LogicalProcessor>{
         private final Session session;
-        private final Supplier<List<Fingerprint>> fingerprints;
+        private final Supplier<FProcessor> fingerprints;
         private final Function<PacketData, IEdge<LogicalNode>> graphFunction;
         private final Consumer<PacketData>[] plugins;
 
-        public ThreadLocalLogicalProcessor(Session session, Supplier<List<Fingerprint>> fingerprints,
+        public ThreadLocalLogicalProcessor(Session session, Supplier<FProcessor> fingerprints,
                                            Function<PacketData, IEdge<LogicalNode>> graphFunction, Consumer<PacketData>... plugins) {
             super();
 
@@ -380,8 +681,8 @@ public class TaskDispatcher {
             public void setDestination(LogicalNode destination) { }
 
             @Override
-            public XmlElement toXml(List<LogicalNode> nodes, List<ImportItem> items,  ZipOutputStream zos) {
-                return null;
+            public void toXml(Map<LogicalNode, Integer> indexNodes, Map<ImportItem, Integer> indexItems, XmlStreamWriter writer) {
+                //Placeholder edges are only used for lookups and are never saved.
             }
 
             // == Object
@@ -403,8 +704,73 @@ public class TaskDispatcher {
             }
         }
 
+        /**
+         * Primitive index from a packed key to the graph object it identifies, split into independently locked stripes
+         * so that worker threads rarely wait on each other.  Each stripe remembers the graph generation it was filled
+         * from and empties itself when the graph has since been cleared.
+         */
+        private static class StripedIndex<T> {
+            private static final int STRIPES = 64;
+
+            private static class Stripe<T> {
+                private final LongHashMap<T> map = new LongHashMap<>();
+                private int generation = 0;
+            }
+
+            private final Stripe<T>[] stripes;
+
+            @SuppressWarnings("unchecked")
+            public StripedIndex() {
+                stripes = new Stripe[STRIPES];
+                for(int idx = 0; idx < STRIPES; idx++) {
+                    stripes[idx] = new Stripe<>();
+                }
+            }
+
+            private Stripe<T> stripeFor(final long key) {
+                return stripes[(int)((key ^ (key >>> 29)) & (STRIPES - 1))];
+            }
+
+            /**
+             * Must be called while holding the lock on stripe.
+             */
+            private static <T> LongHashMap<T> mapFor(final Stripe<T> stripe, final int generation) {
+                if(stripe.generation != generation) {
+                    stripe.map.clear();
+                    stripe.generation = generation;
+                }
+                return stripe.map;
+            }
+
+            public T get(final long key, final int generation) {
+                final Stripe<T> stripe = stripeFor(key);
+                synchronized(stripe) {
+                    return mapFor(stripe, generation).get(key);
+                }
+            }
+
+            /**
+             * Records value unless the key is already present.  Nothing is recorded if the graph has been cleared since
+             * generation was read, since value may no longer belong to it.
+             * @return The value recorded for the key.
+             */
+            public T putIfAbsent(final long key, final T value, final int generation, final int generationCurrent) {
+                final Stripe<T> stripe = stripeFor(key);
+                synchronized(stripe) {
+                    if(generation != generationCurrent) {
+                        return value;
+                    }
+                    final T existing = mapFor(stripe, generation).putIfAbsent(key, value);
+                    return existing == null ? value : existing;
+                }
+            }
+        }
+
         private final Session session;
         private final ThreadLocal<LogicalEdgePlaceholder> edgePlaceholder;
+        //Keyed by the packed pair of endpoint IPs, lowest first, since edges are bidirectional.
+        private final StripedIndex<LogicalEdge> edgesByIps;
+        private final StripedIndex<LogicalNode> nodesByIp;
 
         public LogicalEdgeFactory(final Session session) {
             this.session = session;
@@ -414,9 +780,65 @@ public class TaskDispatcher {
                     return new LogicalEdgePlaceholder();
                 }
             };
+            this.edgesByIps = new StripedIndex<>();
+            this.nodesByIp = new StripedIndex<>();
+        }
+
+        private static boolean isHost(final Cidr ip) {
+            return ip.getFirstIp() == ip.getLastIp();
         }
 
         public IEdge<LogicalNode> apply(PacketData packet) {
+            final Cidr ipSource = packet.getSourceIp();
+            final Cidr ipDestination = packet.getDestIp();
+            if(!isHost(ipSource) || !isHost(ipDestination)) {
+                //The index only covers single addresses, which is all that packets should ever carry.
+                return applyUnindexed(packet);
+            }
+
+            final LogicalGraph graph = session.getLogicalGraph();
+            final int generation = graph.getGeneration();
+            final long source = ipSource.getFirstIp();
+            final long destination = ipDestination.getFirstIp();
+            final long key = source < destination ? (source << 32) | destination : (destination << 32) | source;
+
+            LogicalEdge edge = edgesByIps.get(key, generation);
+            if(edge == null) {
+                //The edge may predate the index (e.g. loaded from a session) or have been added by another thread.
+                final LogicalEdgePlaceholder placeholder = edgePlaceholder.get();
+                placeholder.setEndpoints(ipSource, ipDestination);
+                edge = graph.findMatchingEdge(placeholder);
+                if(edge == null) {
+                    placeholder.setEndpoints(ipDestination, ipSource);
+                    edge = graph.findMatchingEdge(placeholder);
+                }
+                if(edge == null) {
+                    //addEdge will return either the edge passed to it or the edge representing the same connection, if one already exists.
+                    edge = graph.addEdge(new LogicalEdge(
+                            nodeFor(graph, ipSource, packet.getSourceMac(), generation),
+                            nodeFor(graph, ipDestination, packet.getDestMac(), generation)));
+                }
+                edge = edgesByIps.putIfAbsent(key, edge, generation, graph.getGeneration());
+            }
+
+            //Edges are bidirectional, so the direction needs to be checked for the first parameter.
+            edge.AddPacket(edge.getSource().getIp().getFirstIp() == source, packet.getSourcePort(), packet.getDestPort(), packet.getTransportProtocol(), packet.getTime(), packet.getSource(), packet.getdSize(), packet.getFrame());
+            return edge;
+        }
+
+        /**
+         * @return The graph's node for ip, constructing one only if no node exists for that address yet.
+         */
+        private LogicalNode nodeFor(final LogicalGraph graph, final Cidr ip, final byte[] mac, final int generation) {
+            LogicalNode node = nodesByIp.get(ip.getFirstIp(), generation);
+            if(node == null) {
+                node = graph.addNode(new LogicalNode(ip, mac, graph.getCidrList()));
+                node = nodesByIp.putIfAbsent(ip.getFirstIp(), node, generation, graph.getGeneration());
+            }
+            return node;
+        }
+
+        private IEdge<LogicalNode> applyUnindexed(PacketData packet) {
             final LogicalEdgePlaceholder edge = edgePlaceholder.get();
             edge.setEndpoints(packet.getSourceIp(), packet.getDestIp());
             LogicalEdge edgeExisting = session.getLogicalGraph().findMatchingEdge(edge);
@@ -471,5 +893,55 @@ public class TaskDispatcher {
             doneList.clear();
         }
     }
+
+    /**
+     * Physical reader for DispatchMode.Batched.  Every iterator is drained by a task on its own pool thread, so files
+     * (e.g. Cisco show output, where each iterator is one file) are parsed in parallel.  The devices are held until every
+     * task has finished and no iterators remain, then added in a single call so the topology is rebuilt once.
+     */
+    private void startPhysicalBatched() {
+        threadPhysicalReader = Thread.currentThread();
+
+        final Queue<PhysicalDevice> devicesPending = new ConcurrentLinkedQueue<>();
+        final AtomicInteger pendingTasks = new AtomicInteger(0);
+
+        while(!shutdown) {
+            if(physicalIterators.isEmpty()) {
+                if(pendingTasks.get() == 0 && !devicesPending.isEmpty()) {
+                    final List<PhysicalDevice> devices = new ArrayList<>(devicesPending);
+                    devicesPending.clear();
+                    session.getPhysicalTopologyMapper().getDevices().addAll(devices);
+                }
+                LockSupport.park(this);
+                continue;
+            }
+
+            for(Iterator<PhysicalDevice> iterator : physicalIterators) {
+                physicalIterators.remove(iterator);
+                pendingTasks.incrementAndGet();
+                try {
+                    pexec.execute(() -> {
+                        try {
+                            //hasNext records the completion of the import once the iterator is exhausted.
+                            while(!shutdown && iterator.hasNext()) {
+                                final PhysicalDevice dev = iterator.next();
+                                if(dev != null) {
+                                    devicesPending.add(dev);
+                                }
+                            }
+                        } catch(RuntimeException ex) {
+                            Logger.log(this, Severity.Error, "Physical import failed: " + ex.getMessage());
+                        } finally {
+                            pendingTasks.decrementAndGet();
+                            LockSupport.unpark(threadPhysicalReader);
+                        }
+                    });
+                } catch(RejectedExecutionException ex) {
+                    //The pool is only shut down along with the dispatcher.
+                    return;
+                }
+            }
+        }
+    }
     //</editor-fold>
 }
@@ -7,25 +7,60 @@ import java.util.regex.Pattern;
 
 public class CiscoCommandSplitter {
     /**
-     * Enum containing command types and the matching regular expressions for finding them within the output file
+     * Enum containing command types and the matching regular expressions for finding them within the output file.
+     *
+     * Each command also lists the prefixes a matching line can start with, so that most lines are classified by their
+     * first character without running any regular expression.
      */
     public enum Command {
-        VERSION(Pattern.compile("Cisco IOS Software, [a-zA-Z\\d]+? Software \\([a-zA-Z\\d\\-]+\\), Version [\\d\\.()a-zA-Z]+, .*"), "version"),
-        RUNNING_CONFIG(Pattern.compile("version [0-9]+(?:\\.[0-9]+)*"), "running config"),
-        INTERFACES(Pattern.compile("(?:(?:V[Ll][Aa][Nn][0-9])|(?:Fast|Gigabit|TenGigabit)Ethernet[0-9](?:/[0-9]+)*?)[\\s\\w]*,?[\\s\\w()]*"), "interfaces"),
-        MAC(Pattern.compile("(?:\\s*Mac Address Table\\s*)|(?:Non-static Address Table:\\s*)"), "mac"),
-        ARP(Pattern.compile("\\s*Protocol\\s*Address\\s*Age[\\s\\w()]*?\\s*Hardware Addr\\s*Type\\s*Interface\\s*"), "arp");
+        VERSION(Pattern.compile("Cisco IOS Software, [a-zA-Z\\d]+? Software \\([a-zA-Z\\d\\-]+\\), Version [\\d\\.()a-zA-Z]+, .*"), "version", false, "Cisco IOS Software, "),
+        RUNNING_CONFIG(Pattern.compile("version [0-9]+(?:\\.[0-9]+)*"), "running config", false, "version "),
+        INTERFACES(Pattern.compile("(?:(?:V[Ll][Aa][Nn][0-9])|(?:Fast|Gigabit|TenGigabit)Ethernet[0-9](?:/[0-9]+)*?)[\\s\\w]*,?[\\s\\w()]*"), "interfaces", false, "V", "FastEthernet", "GigabitEthernet", "TenGigabitEthernet"),
+        MAC(Pattern.compile("(?:\\s*Mac Address Table\\s*)|(?:Non-static Address Table:\\s*)"), "mac", true, "Mac Address Table", "Non-static Address Table:"),
+        ARP(Pattern.compile("\\s*Protocol\\s*Address\\s*Age[\\s\\w()]*?\\s*Hardware Addr\\s*Type\\s*Interface\\s*"), "arp", true, "Protocol");
 
         private final Pattern pattern;
         private final String displayName;
+        //Whether the pattern allows leading whitespace; the prefixes are checked after skipping it.
+        private final boolean isIndentable;
+        private final String[] prefixes;
+
+        //The commands that may start with each ASCII character.
+        private static final Command[][] BY_FIRST_CHARACTER = new Command[128][];
+
+        static {
+            for(Command command : Command.values()) {
+                for(String prefix : command.prefixes) {
+                    final char first = prefix.charAt(0);
+                    final Command[] existing = BY_FIRST_CHARACTER[first];
+                    if(existing == null) {
+                        BY_FIRST_CHARACTER[first] = new Command[] {command};
+                    } else if(!Arrays.asList(existing).contains(command)) {
+                        final Command[] expanded = Arrays.copyOf(existing, existing.length + 1);
+                        expanded[existing.length] = command;
+                        BY_FIRST_CHARACTER[first] = expanded;
+                    }
+                }
+            }
+        }
 
-        Command(Pattern pattern, String displayName) {
+        Command(Pattern pattern, String displayName, boolean isIndentable, String... prefixes) {
             this.pattern = pattern;
             this.displayName = displayName;
+            this.isIndentable = isIndentable;
+            this.prefixes = prefixes;
         }
 
-        private boolean matches(String line) {
-            return this.pattern.matcher(line).matches();
+        private boolean matches(String line, int idxFirst) {
+            if(idxFirst > 0 && !isIndentable) {
+                return false;
+            }
+            for(String prefix : prefixes) {
+                if(line.startsWith(prefix, idxFirst)) {
+                    return this.pattern.matcher(line).matches();
+                }
+            }
+            return false;
         }
 
         public String getDisplayName() {
@@ -33,8 +68,20 @@ public class CiscoCommandSplitter {
         }
 
         public static Command findNextCommand(String line, Command currentCommand) {
-            for (Command  c: Command.values()) {
-                if (c != currentCommand && c.matches(line)) {
+            int idxFirst = 0;
+            while(idxFirst < line.length() && Character.isWhitespace(line.charAt(idxFirst))) {
+                idxFirst++;
+            }
+            if(idxFirst == line.length()) {
+                return null;
+            }
+            final char first = line.charAt(idxFirst);
+            if(first >= BY_FIRST_CHARACTER.length || BY_FIRST_CHARACTER[first] == null) {
+                return null;
+            }
+
+            for (Command c : BY_FIRST_CHARACTER[first]) {
+                if (c != currentCommand && c.matches(line, idxFirst)) {
                     return c;
                 }
             }
@@ -0,0 +1,99 @@
+package core.importmodule.inputIterators.pcap;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loss and latency counters for a live capture.  Every counter may be updated from any thread and read at any time;
+ * a reading is not an atomic snapshot of all of them, which is acceptable for display.
+ */
+public class LiveCaptureStatistics {
+    /**
+     * The time packets spend in one stage of the pipeline.
+     */
+    public static class Stage {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanosTotal = new LongAdder();
+        private final AtomicLong nanosMax = new AtomicLong(0);
+
+        public void record(final long nanos) {
+            count.increment();
+            nanosTotal.add(nanos);
+            long max = nanosMax.get();
+            while(nanos > max && !nanosMax.compareAndSet(max, nanos)) {
+                max = nanosMax.get();
+            }
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+        public long getMeanMicros() {
+            final long cnt = count.sum();
+            return cnt == 0 ? 0 : nanosTotal.sum() / cnt / 1000;
+        }
+        public long getMaxMicros() {
+            return nanosMax.get() / 1000;
+        }
+    }
+
+    //Reported by pcap_stats; these are -1 until the first reading (and stay that way when replaying a file).
+    private volatile long kernelReceived = -1;
+    private volatile long kernelDropped = -1;
+    private volatile long interfaceDropped = -1;
+
+    private final LongAdder captured = new LongAdder();
+    private final LongAdder ringDropped = new LongAdder();
+
+    //From the capture callback to a decoder taking the packet from the ring.
+    private final Stage stageRing = new Stage();
+    //Decoding, including waiting for room in the queue that feeds the import.
+    private final Stage stageDecode = new Stage();
+
+    public void setKernelCounters(final long received, final long dropped, final long droppedInterface) {
+        this.kernelReceived = received;
+        this.kernelDropped = dropped;
+        this.interfaceDropped = droppedInterface;
+    }
+
+    public void recordCaptured() {
+        captured.increment();
+    }
+    public void recordRingDrop() {
+        ringDropped.increment();
+    }
+
+    public long getKernelReceived() {
+        return kernelReceived;
+    }
+    public long getKernelDropped() {
+        return kernelDropped;
+    }
+    public long getInterfaceDropped() {
+        return interfaceDropped;
+    }
+    public long getCaptured() {
+        return captured.sum();
+    }
+    public long getRingDropped() {
+        return ringDropped.sum();
+    }
+    public Stage getRingStage() {
+        return stageRing;
+    }
+    public Stage getDecodeStage() {
+        return stageDecode;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder result = new StringBuilder();
+        if(kernelReceived >= 0) {
+            result.append("Kernel: ").append(kernelReceived).append(" received, ").append(kernelDropped).append(" dropped, ").append(interfaceDropped).append(" dropped by interface; ");
+        }
+        result.append("Ring: ").append(getCaptured()).append(" captured, ").append(getRingDropped()).append(" dropped; ");
+        result.append("Latency (mean/max): ring ").append(stageRing.getMeanMicros()).append("/").append(stageRing.getMaxMicros()).append(" us, ");
+        result.append("decode ").append(stageDecode.getMeanMicros()).append("/").append(stageDecode.getMaxMicros()).append(" us");
+        return result.toString();
+    }
+}
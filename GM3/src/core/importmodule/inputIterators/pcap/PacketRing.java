@@ -0,0 +1,195 @@
+package core.importmodule.inputIterators.pcap;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded ring of reusable packet slots between a single producer (the capture callback) and any number of consumers
+ * (the decoder threads).
+ *
+ * Slots are allocated once, as direct buffers so that jNetPcap can peer a packet to them, and are only reallocated when a
+ * packet is larger than the slot.  Each slot carries a sequence number that says whose turn it is: a slot at position p
+ * may be written when its sequence is p, read when it is p + 1, and is handed back to the producer by setting it to
+ * p + capacity.  The producer never blocks; when the ring is full the drop policy decides which packet is lost.
+ */
+public class PacketRing {
+    public enum DropPolicy {
+        /** The packet that does not fit is dropped. */
+        DROP_NEWEST,
+        /**
+         * The oldest packet in the ring is dropped to make room, so the ring holds the most recent traffic.  If a decoder
+         * is still working on the oldest slot the packet that does not fit is dropped instead.
+         */
+        DROP_OLDEST,
+        /** Once the ring is half full only every sampleRate-th packet is kept; packets that still do not fit are dropped. */
+        SAMPLE
+    }
+
+    private static final int SIZE_SLOT_INITIAL = 2048;
+    private static final long NANOS_IDLE = 50_000;
+
+    public static class Slot {
+        private final AtomicLong sequence;
+        private long position;
+        private ByteBuffer buffer;
+
+        private long idxFrame;
+        private long seconds;
+        private long nanos;
+        private int lengthOriginal;
+        private long timeQueued;
+
+        private Slot(final long sequence) {
+            this.sequence = new AtomicLong(sequence);
+            this.buffer = ByteBuffer.allocateDirect(SIZE_SLOT_INITIAL);
+        }
+
+        /**
+         * @return The captured bytes, from position 0 to the limit; only valid until the slot is released.
+         */
+        public ByteBuffer getPacket() {
+            return buffer;
+        }
+        public long getFrame() {
+            return idxFrame;
+        }
+        public long getSeconds() {
+            return seconds;
+        }
+        public long getNanos() {
+            return nanos;
+        }
+        public int getLengthOriginal() {
+            return lengthOriginal;
+        }
+        /**
+         * @return The System.nanoTime() at which the packet was added to the ring.
+         */
+        public long getTimeQueued() {
+            return timeQueued;
+        }
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final DropPolicy policy;
+    private final int sampleRate;
+    private final LiveCaptureStatistics statistics;
+
+    //Only the producer reads or writes head.
+    private long head;
+    private final AtomicLong tail;
+    private volatile boolean closed;
+
+    /**
+     * @param cntSlots The capacity, which is rounded up to a power of 2.
+     */
+    public PacketRing(final int cntSlots, final DropPolicy policy, final int sampleRate, final LiveCaptureStatistics statistics) {
+        final int capacity = Integer.highestOneBit(Math.max(2, cntSlots - 1)) << 1;
+        this.slots = new Slot[capacity];
+        for(int idx = 0; idx < capacity; idx++) {
+            slots[idx] = new Slot(idx);
+        }
+        this.mask = capacity - 1;
+        this.policy = policy;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.statistics = statistics;
+
+        this.head = 0;
+        this.tail = new AtomicLong(0);
+        this.closed = false;
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Copies a packet into the ring; this must only be called from the producer thread.  The contents are read from
+     * their position to their limit and the position is left unchanged.
+     * @return false if the packet was dropped.
+     */
+    public boolean offer(final ByteBuffer contents, final long idxFrame, final long seconds, final long nanos, final int lengthOriginal) {
+        statistics.recordCaptured();
+        final long pos = head;
+        if(policy == DropPolicy.SAMPLE && pos - tail.get() >= slots.length / 2 && idxFrame % sampleRate != 0) {
+            statistics.recordRingDrop();
+            return false;
+        }
+
+        final Slot slot = slots[(int)(pos & mask)];
+        final long sequence = slot.sequence.get();
+        if(sequence != pos) {
+            //The slot still holds the packet from the previous lap, or a consumer has yet to release it.
+            if(policy != DropPolicy.DROP_OLDEST) {
+                statistics.recordRingDrop();
+                return false;
+            }
+            //Claim the oldest packet the same way a consumer would, then discard it.  If a consumer has claimed it, the
+            //slot is not free until it has been decoded, and waiting for that would stall the capture.
+            final long posOldest = pos - slots.length;
+            statistics.recordRingDrop();
+            if(sequence != posOldest + 1 || !tail.compareAndSet(posOldest, posOldest + 1)) {
+                return false;
+            }
+        }
+
+        final int length = contents.remaining();
+        if(slot.buffer.capacity() < length) {
+            slot.buffer = ByteBuffer.allocateDirect(length);
+        }
+        slot.buffer.clear();
+        slot.buffer.put(contents.duplicate());
+        slot.buffer.flip();
+        slot.idxFrame = idxFrame;
+        slot.seconds = seconds;
+        slot.nanos = nanos;
+        slot.lengthOriginal = lengthOriginal;
+        slot.timeQueued = System.nanoTime();
+
+        slot.sequence.set(pos + 1);
+        head = pos + 1;
+        return true;
+    }
+
+    /**
+     * Waits for the next packet; the slot must be passed to release() once it has been processed.
+     * @return The next packet, or null once the ring has been closed and every packet in it taken.
+     */
+    public Slot take() throws InterruptedException {
+        while(true) {
+            //Closed has to be read first: if the ring was closed before it was found empty, nothing more will be added.
+            final boolean wasClosed = closed;
+            final long pos = tail.get();
+            final Slot slot = slots[(int)(pos & mask)];
+            final long sequence = slot.sequence.get();
+            if(sequence == pos + 1) {
+                if(tail.compareAndSet(pos, pos + 1)) {
+                    slot.position = pos;
+                    return slot;
+                }
+            } else if(sequence < pos + 1) {
+                if(wasClosed) {
+                    return null;
+                }
+                LockSupport.parkNanos(NANOS_IDLE);
+                if(Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            //Otherwise another consumer took this position first; try the next one.
+        }
+    }
+
+    public void release(final Slot slot) {
+        slot.sequence.set(slot.position + slots.length);
+    }
+
+    /**
+     * Called by the producer after its last offer; consumers finish the packets already in the ring and then stop.
+     */
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,295 @@
+package core.importmodule.inputIterators.pcap;
+
+import core.logging.Logger;
+import core.logging.Severity;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Reads a classic (libpcap format) capture file as a series of packet-aligned chunks that can be decoded in parallel.
+ *
+ * A pre-scan walks the record headers to find chunk boundaries; it only has to read the 16-byte header of each record,
+ * since the captured length gives the offset of the next one.  Each chunk is then memory-mapped and its records are
+ * handed to a RecordHandler as slices of the mapping, without copying.  Because the pre-scan counts records, every
+ * chunk knows the frame number of its first record, so frame numbers match a sequential read of the file.
+ */
+public class PcapChunkReader implements Closeable {
+    public static final int MAGIC_MICROSECONDS = 0xA1B2C3D4;
+    public static final int MAGIC_NANOSECONDS = 0xA1B23C4D;
+    public static final int LINKTYPE_ETHERNET = 1;
+
+    private static final int SIZE_FILE_HEADER = 24;
+    private static final int SIZE_RECORD_HEADER = 16;
+    private static final int SIZE_SCAN_BUFFER = 1 << 20;
+    //Anything larger is taken to be corruption rather than a packet.
+    private static final int MAX_CAPTURED_LENGTH = 1 << 28;
+
+    /**
+     * A packet-aligned range of the file.
+     */
+    public static class Chunk {
+        private final long offset;
+        private final long length;
+        private final long idxFirstFrame;
+        private final int cntFrames;
+
+        private Chunk(final long offset, final long length, final long idxFirstFrame, final int cntFrames) {
+            this.offset = offset;
+            this.length = length;
+            this.idxFirstFrame = idxFirstFrame;
+            this.cntFrames = cntFrames;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+        public long getLength() {
+            return length;
+        }
+        public long getFirstFrame() {
+            return idxFirstFrame;
+        }
+        public int getFrameCount() {
+            return cntFrames;
+        }
+    }
+
+    @FunctionalInterface
+    public interface RecordHandler {
+        /**
+         * @param packet The captured bytes of the record, from position 0 to the limit, in network (big-endian) order.
+         * @param nanos The fraction of the second, in nanoseconds, regardless of the precision of the file.
+         */
+        void handle(ByteBuffer packet, long idxFrame, long seconds, long nanos, int lengthOriginal);
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long size;
+    private final ByteOrder order;
+    private final boolean isNanosecond;
+    private final int snapLength;
+    private final int linkType;
+
+    private PcapChunkReader(final Path path, final FileChannel channel, final long size, final ByteOrder order, final boolean isNanosecond, final int snapLength, final int linkType) {
+        this.path = path;
+        this.channel = channel;
+        this.size = size;
+        this.order = order;
+        this.isNanosecond = isNanosecond;
+        this.snapLength = snapLength;
+        this.linkType = linkType;
+    }
+
+    /**
+     * @return A reader for the file, or null if it is not a classic pcap file (e.g. it is PcapNg, or empty).
+     */
+    public static PcapChunkReader open(final Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            final long size = channel.size();
+            if(size < SIZE_FILE_HEADER) {
+                channel.close();
+                return null;
+            }
+            final ByteBuffer header = ByteBuffer.allocate(SIZE_FILE_HEADER);
+            readFully(channel, header, 0);
+
+            //The magic number is written in the byte order of the file.
+            final ByteOrder order;
+            final boolean isNanosecond;
+            final int magic = header.order(ByteOrder.BIG_ENDIAN).getInt(0);
+            if(magic == MAGIC_MICROSECONDS || magic == MAGIC_NANOSECONDS) {
+                order = ByteOrder.BIG_ENDIAN;
+                isNanosecond = magic == MAGIC_NANOSECONDS;
+            } else if(Integer.reverseBytes(magic) == MAGIC_MICROSECONDS || Integer.reverseBytes(magic) == MAGIC_NANOSECONDS) {
+                order = ByteOrder.LITTLE_ENDIAN;
+                isNanosecond = Integer.reverseBytes(magic) == MAGIC_NANOSECONDS;
+            } else {
+                channel.close();
+                return null;
+            }
+            header.order(order);
+
+            return new PcapChunkReader(path, channel, size, order, isNanosecond, header.getInt(16), header.getInt(20));
+        } catch(IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    public int getLinkType() {
+        return linkType;
+    }
+    public int getSnapLength() {
+        return snapLength;
+    }
+    public boolean isNanosecond() {
+        return isNanosecond;
+    }
+
+    /**
+     * Walks the record headers, passing each chunk to the queue as soon as it is complete.  Chunks hold whole records
+     * and are at most cbChunk bytes, unless a single record is larger.  A truncated final record is ignored.
+     * @param idxFirstFrame The frame number of the first record in the file.
+     * @return The number of records found.
+     */
+    public long scan(final long cbChunk, final long idxFirstFrame, final BlockingQueue<Chunk> chunks) throws IOException, InterruptedException {
+        final ByteBuffer buffer = ByteBuffer.allocate(SIZE_SCAN_BUFFER).order(order);
+        //The buffer holds the bytes of the file from posBuffer to posBuffer + buffer.limit().
+        long posBuffer = 0;
+        buffer.limit(0);
+
+        long pos = SIZE_FILE_HEADER;
+        long startChunk = pos;
+        long idxFrameChunk = idxFirstFrame;
+        int cntFramesChunk = 0;
+        while(pos + SIZE_RECORD_HEADER <= size) {
+            if(pos + SIZE_RECORD_HEADER > posBuffer + buffer.limit()) {
+                buffer.clear();
+                buffer.limit((int)Math.min(buffer.capacity(), size - pos));
+                readFully(channel, buffer, pos);
+                posBuffer = pos;
+            }
+            final int lengthCaptured = buffer.getInt((int)(pos - posBuffer) + 8);
+            if(lengthCaptured < 0 || lengthCaptured > MAX_CAPTURED_LENGTH) {
+                Logger.log(this, Severity.Warning, "Invalid record at offset " + pos + " of " + path.getFileName() + "; the rest of the file was not imported.");
+                break;
+            }
+            final long posNext = pos + SIZE_RECORD_HEADER + lengthCaptured;
+            if(posNext > size) {
+                //Insufficient bytes in file to read packet
+                break;
+            }
+
+            if(cntFramesChunk > 0 && posNext - startChunk > cbChunk) {
+                chunks.put(new Chunk(startChunk, pos - startChunk, idxFrameChunk, cntFramesChunk));
+                startChunk = pos;
+                idxFrameChunk += cntFramesChunk;
+                cntFramesChunk = 0;
+            }
+            cntFramesChunk++;
+            pos = posNext;
+        }
+        if(cntFramesChunk > 0) {
+            chunks.put(new Chunk(startChunk, pos - startChunk, idxFrameChunk, cntFramesChunk));
+        }
+        return idxFrameChunk + cntFramesChunk - idxFirstFrame;
+    }
+
+    /**
+     * Maps the chunk and passes each of its records to the handler, in order, on the calling thread.  A RuntimeException
+     * from the handler is logged and the next record is read.
+     */
+    public void read(final Chunk chunk, final RecordHandler handler) throws IOException {
+        final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, chunk.offset, chunk.length);
+        mapped.order(order);
+
+        int pos = 0;
+        long idxFrame = chunk.idxFirstFrame;
+        for(int idx = 0; idx < chunk.cntFrames; idx++) {
+            final long seconds = mapped.getInt(pos) & 0xFFFFFFFFL;
+            final long fraction = mapped.getInt(pos + 4) & 0xFFFFFFFFL;
+            final int lengthCaptured = mapped.getInt(pos + 8);
+            final int lengthOriginal = mapped.getInt(pos + 12);
+
+            final ByteBuffer packet = mapped.duplicate();
+            packet.position(pos + SIZE_RECORD_HEADER);
+            packet.limit(pos + SIZE_RECORD_HEADER + lengthCaptured);
+            //slice() resets the byte order to big-endian, which is what the packet contents use.
+            try {
+                handler.handle(packet.slice(), idxFrame, seconds, isNanosecond ? fraction : fraction * 1000L, lengthOriginal);
+            } catch(RuntimeException ex) {
+                //A packet the handler cannot decode should not cost the rest of the chunk.
+                Logger.log(this, Severity.Warning, "Unable to process frame " + idxFrame + " of " + path.getFileName() + ": " + ex);
+            }
+            idxFrame++;
+
+            pos += SIZE_RECORD_HEADER + lengthCaptured;
+        }
+    }
+
+    /**
+     * Scans the file on one daemon thread while cntThreads daemon threads decode the chunks as they are found.  Each
+     * decoding thread gets its own handler from the factory, so handlers need not be thread-safe.  The reader is closed,
+     * and then onComplete is run, once every chunk has been read or the scan has failed.
+     */
+    public void readParallel(final String nameThreads, final int cntThreads, final long cbChunk, final long idxFirstFrame, final Supplier<RecordHandler> factory, final Runnable onComplete) {
+        //The chunks are followed by one empty chunk per decoder to tell it to stop.
+        final BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<>();
+        final AtomicInteger cntRunning = new AtomicInteger(cntThreads);
+
+        final Thread threadScan = new Thread(() -> {
+            try {
+                scan(cbChunk, idxFirstFrame, chunks);
+            } catch(IOException ex) {
+                Logger.log(this, Severity.Error, "Unable to read " + path.getFileName() + ": " + ex.getMessage());
+            } catch(InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                for(int idx = 0; idx < cntThreads; idx++) {
+                    chunks.add(new Chunk(0, 0, 0, 0));
+                }
+            }
+        }, nameThreads + " scan");
+        threadScan.setDaemon(true);
+
+        for(int idxThread = 0; idxThread < cntThreads; idxThread++) {
+            final Thread threadDecode = new Thread(() -> {
+                try {
+                    final RecordHandler handler = factory.get();
+                    while(true) {
+                        final Chunk chunk = chunks.take();
+                        if(chunk.cntFrames == 0) {
+                            break;
+                        }
+                        read(chunk, handler);
+                    }
+                } catch(IOException ex) {
+                    Logger.log(this, Severity.Error, "Unable to read " + path.getFileName() + ": " + ex.getMessage());
+                } catch(InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if(cntRunning.decrementAndGet() == 0) {
+                        try {
+                            close();
+                        } catch(IOException ex) {
+                            //Ignore; the file was only being read.
+                        }
+                        onComplete.run();
+                    }
+                }
+            }, nameThreads + " " + idxThread);
+            threadDecode.setDaemon(true);
+            threadDecode.start();
+        }
+        threadScan.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            final int cbRead = channel.read(buffer, position);
+            if(cbRead < 0) {
+                throw new IOException("Unexpected end of file.");
+            }
+            position += cbRead;
+        }
+        buffer.flip();
+    }
+}
@@ -13,10 +13,12 @@ import javafx.application.Platform;
 import org.jnetpcap.Pcap;
 import org.jnetpcap.PcapBpfProgram;
 import org.jnetpcap.PcapDumper;
-import org.jnetpcap.nio.JBuffer;
+import org.jnetpcap.PcapHeader;
+import org.jnetpcap.nio.JMemory;
 import org.jnetpcap.packet.JPacket;
 import org.jnetpcap.packet.JPacketHandler;
 import org.jnetpcap.packet.PcapPacket;
+import org.jnetpcap.packet.PeeringException;
 import org.jnetpcap.protocol.lan.Ethernet;
 import org.jnetpcap.protocol.network.Ip4;
 import org.jnetpcap.protocol.tcpip.Tcp;
@@ -24,7 +26,9 @@ import org.jnetpcap.protocol.tcpip.Udp;
 import util.Cidr;
 import util.RateLimitedTask;
 
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Iterator;
@@ -39,8 +43,6 @@ public class PcapFileParser {
     private static final int PACKET_INTERVAL_MILLIS = 232;
     private static final int PACKET_INTERVAL_PACKETS = 4000;
 
-    private long lastCheckTime;
-    private int numPackets;
     protected PcapDumper dumper = null;
 
     protected Runnable fnOnNewPacket = null;
@@ -62,7 +64,7 @@ public class PcapFileParser {
 
     protected final Path inPath;
 
-    private boolean done;
+    protected volatile boolean done;
 
     private BlockingQueue<Object> packetQueue;
 
@@ -72,9 +74,6 @@ public class PcapFileParser {
         this.source = source;
         this.inPath = inPath;
         this.packetQueue = new ArrayBlockingQueue<>(100);
-
-        this.lastCheckTime = System.currentTimeMillis();
-        numPackets = 0;
     }
 
     public static Iterator<Object> getPcapFileIterator(ImportItem source, Path inPath) throws IllegalStateException{
@@ -87,8 +86,30 @@ public class PcapFileParser {
 
     protected void parseSource() throws IllegalStateException{
         done = false;
+        if(parseChunked()) {
+            return;
+        }
         Pcap pcap = getHandle();
 
+        if (pcap == null) {
+            throw new IllegalStateException("Unable load pcap from " + this.inPath);
+        }
+
+        applyFilter(pcap);
+
+        Runnable loop = () -> {
+            pcap.loop(Pcap.LOOP_INFINITE, new PcapPacketHandler(), this.packetQueue);
+            done = true;
+        };
+        Thread loopThread = new Thread(loop, "pcap loop");
+        loopThread.setDaemon(true);
+        loopThread.start();
+    }
+
+    /**
+     * Sets the configured capture filter, if there is one, on the handle.
+     */
+    protected void applyFilter(Pcap pcap) {
         String txtFilter = Configuration.getPreferenceString(Configuration.Fields.PCAP_FILTER_STRING);
         if(txtFilter != null && !txtFilter.trim().equals("")) {
             final PcapBpfProgram filter = new PcapBpfProgram();
@@ -101,18 +122,52 @@ public class PcapFileParser {
                 pcap.setFilter(filter);
             }
         }
+    }
 
-        if (pcap == null) {
-            throw new IllegalStateException("Unable load pcap from " + this.inPath);
+    /**
+     * Decodes the file on several threads, each working through its own packet-aligned chunks of the file.  This is only
+     * done where it produces the same packets as the libpcap loop: the file has to be a classic, microsecond pcap file of
+     * Ethernet frames, and no capture filter can be set, since filters are applied by libpcap.  IP fragments that fall
+     * in different chunks are not reassembled, which is why this is only used when more than one thread is configured.
+     * @return true if the file is being read in chunks, false if it has to be read by libpcap.
+     */
+    protected boolean parseChunked() {
+        final int cntThreads = (int)Configuration.getPreferenceLong(Configuration.Fields.PCAP_DECODER_THREADS);
+        final String txtFilter = Configuration.getPreferenceString(Configuration.Fields.PCAP_FILTER_STRING);
+        if(cntThreads <= 1 || (txtFilter != null && !txtFilter.trim().equals(""))) {
+            return false;
         }
 
-        Runnable loop = () -> {
-            pcap.loop(Pcap.LOOP_INFINITE, new PcapPacketHandler(), this.packetQueue);
-            done = true;
-        };
-        Thread loopThread = new Thread(loop, "pcap loop");
-        loopThread.setDaemon(true);
-        loopThread.start();
+        final PcapChunkReader reader;
+        try {
+            reader = PcapChunkReader.open(this.inPath);
+        } catch(IOException ex) {
+            return false;
+        }
+        if(reader == null) {
+            return false;
+        }
+        try {
+            //Nanosecond files are left to libpcap, so that they are read, or rejected, exactly as they were before.
+            if(reader.getLinkType() != PcapChunkReader.LINKTYPE_ETHERNET || reader.isNanosecond()) {
+                reader.close();
+                return false;
+            }
+            //Fail here, rather than on every decoder thread, if jNetPcap is not available.
+            new PcapHeader(0, 0);
+        } catch(IOException | UnsatisfiedLinkError err) {
+            try {
+                reader.close();
+            } catch(IOException ex) {
+                //Ignore; the libpcap loop will report any problem with the file.
+            }
+            return false;
+        }
+
+        final long cbChunk = Configuration.getPreferenceLong(Configuration.Fields.PCAP_DECODER_CHUNK_SIZE);
+        //libpcap numbers frames from 0.
+        reader.readParallel("pcap decoder", cntThreads, cbChunk, 0, RecordDecoder::new, () -> done = true);
+        return true;
     }
 
     /**
@@ -141,6 +196,34 @@ public class PcapFileParser {
         return handle;
     }
 
+    /**
+     * Decodes records with jNetPcap by peering a packet to the record in place, which has to be a direct buffer: a chunk
+     * of the mapped file, or a slot of the live capture ring.  Each decoding thread needs its own instance.
+     */
+    protected class RecordDecoder implements PcapChunkReader.RecordHandler {
+        private final PcapPacketHandler handler = new PcapPacketHandler();
+        private final PcapHeader header = new PcapHeader(0, 0);
+        private final PcapPacket packet = new PcapPacket(JMemory.Type.POINTER);
+
+        @Override
+        public void handle(ByteBuffer contents, long idxFrame, long seconds, long nanos, int lengthOriginal) {
+            header.caplen(contents.limit());
+            header.wirelen(lengthOriginal);
+            header.seconds(seconds);
+            header.nanos(nanos);
+            try {
+                packet.peerHeaderAndData(header, contents);
+            } catch(PeeringException ex) {
+                //The contents are always a direct buffer, so they can always be peered.
+                source.recordTaskProgress(contents.limit() + 16);
+                return;
+            }
+            packet.scan(Ethernet.ID);
+            //The packet refers to the record rather than a libpcap buffer that will be reused, so it is not copied.
+            handler.process(packet, idxFrame, packetQueue);
+        }
+    }
+
     private class PcapPacketHandler implements JPacketHandler<BlockingQueue<Object>> {
         protected final Ethernet eth = new Ethernet();
         protected final Ip4 ip4 = new Ip4();
@@ -151,13 +234,26 @@ public class PcapFileParser {
 
         protected final Tcp.MSS mssHeader = new Tcp.MSS();
 
+        private long lastCheckTime = System.currentTimeMillis();
+        private int numPackets = 0;
+
         @Override
         public void nextPacket(JPacket packet, BlockingQueue<Object> queue) {
             if(dumper != null) {
                 dumper.dump(packet);
             }
+            final PcapPacket copy;
+            try {
+                copy = new PcapPacket(packet);
+            } catch(Exception ex) {
+                ex.printStackTrace();
+                return;
+            }
+            process(copy, copy.getFrameNumber(), queue);
+        }
+
+        public void process(JPacket packet, long idxFrame, BlockingQueue<Object> queue) {
             try {
-                packet = new PcapPacket(packet);
                 if (numPackets++ == PACKET_INTERVAL_PACKETS) {
                     long sleepTime = lastCheckTime + PACKET_INTERVAL_MILLIS - System.currentTimeMillis();
                     if (sleepTime >= 0) {
@@ -192,18 +288,19 @@ public class PcapFileParser {
 
                 PacketData data = null;
                 if (packet.hasHeader(tcp)) {
-                    JBuffer temp = new JBuffer(tcp.getPayloadLength() + 1);
-                    packet.transferTo(temp, tcp.getPayloadOffset(), tcp.getPayloadLength(), 0);
+                    //The payload is copied straight into a heap buffer; the trailing zero byte is retained from the JBuffer this replaced.
+                    final byte[] temp = new byte[tcp.getPayloadLength() + 1];
+                    packet.getByteArray(tcp.getPayloadOffset(), temp, 0, tcp.getPayloadLength());
 
                     int mss = -1;
                     if (tcp.hasSubHeader(mssHeader)) {
                         mss = mssHeader.mss();
                     }
 
-                    PMetaData meta = new PMetaData(source, packet.getCaptureHeader().timestampInMillis(), packet.getFrameNumber(), tcp.source(), tcp.destination(), TCP_ID,
+                    PMetaData meta = new PMetaData(source, packet.getCaptureHeader().timestampInMillis(), idxFrame, tcp.source(), tcp.destination(), TCP_ID,
                             new Cidr(srcIp), Arrays.copyOf(eth.source(), eth.source().length), new Cidr(destIp), Arrays.copyOf(eth.destination(), eth.destination().length), tcp.ack(), packet.getPacketWirelen(), 2048,
                             mss, tcp.seq(), ip4.ttl(), tcp.windowScaled(), tcp.flagsEnum());
-                    data = new PacketData(packet.getCaptureHeader().caplen() + 16, meta, temp);
+                    data = new PacketData(packet.getCaptureHeader().caplen() + 16, meta, ByteBuffer.wrap(temp));
                 } else if (packet.hasHeader(udp)) {
 
                     if (zep.hasProtocol(udp)) {
@@ -223,15 +320,15 @@ public class PcapFileParser {
                         }
                     }
 
-                    JBuffer temp = new JBuffer(udp.getPayloadLength() + 1);
-                    packet.transferTo(temp, udp.getPayloadOffset(), udp.getPayloadLength(), 0);
+                    final byte[] temp = new byte[udp.getPayloadLength() + 1];
+                    packet.getByteArray(udp.getPayloadOffset(), temp, 0, udp.getPayloadLength());
 
-                    PMetaData meta = new PMetaData(source, packet.getCaptureHeader().timestampInMillis(), packet.getFrameNumber(), udp.source(), udp.destination(), UDP_ID,
+                    PMetaData meta = new PMetaData(source, packet.getCaptureHeader().timestampInMillis(), idxFrame, udp.source(), udp.destination(), UDP_ID,
                             new Cidr(srcIp), Arrays.copyOf(eth.source(), eth.source().length), new Cidr(destIp), Arrays.copyOf(eth.destination(), eth.destination().length), -1, packet.getCaptureHeader().caplen() + 16, 2048,
                             -1, -1, ip4.ttl(), -1, null);
-                    data = new PacketData(packet.getCaptureHeader().caplen() + 16, meta, temp);
+                    data = new PacketData(packet.getCaptureHeader().caplen() + 16, meta, ByteBuffer.wrap(temp));
                 } else {
-                    PMetaData meta = new PMetaData(source, packet.getCaptureHeader().timestampInMillis(), packet.getFrameNumber(), -1, -1, UNKNOWN_ID, new Cidr(srcIp),
+                    PMetaData meta = new PMetaData(source, packet.getCaptureHeader().timestampInMillis(), idxFrame, -1, -1, UNKNOWN_ID, new Cidr(srcIp),
                             Arrays.copyOf(eth.source(), eth.source().length), new Cidr(destIp), Arrays.copyOf(eth.destination(), eth.destination().length), -1,
                             packet.getPacketWirelen(), 2048, -1, -1, ip4.ttl(), -1, null);
                     data = new PacketData(packet.getCaptureHeader().caplen() + 16, meta);
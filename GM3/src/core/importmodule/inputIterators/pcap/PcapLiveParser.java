@@ -4,23 +4,44 @@ import core.Configuration;
 import core.importmodule.ImportItem;
 import core.logging.Logger;
 import core.logging.Severity;
+import org.jnetpcap.ByteBufferHandler;
 import org.jnetpcap.Pcap;
+import org.jnetpcap.PcapHeader;
 import org.jnetpcap.PcapIf;
+import org.jnetpcap.PcapStat;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Iterator;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Class to iterate through live pcap
+ *
+ * The capture callback only copies each packet into a PacketRing, so that it never waits on decoding; a burst that
+ * outruns the decoders is absorbed by the ring, and anything beyond that is dropped by the ring's policy and counted,
+ * rather than lost silently in the kernel.  Decoder threads take packets from the ring and decode them as a pcap file
+ * would be.
  */
 public class PcapLiveParser extends PcapFileParser {
 
     private final PcapIf device;
     private Pcap handle;
+    private final LiveCaptureStatistics statistics;
+    private volatile boolean stopped;
+    private Timer timerStatistics;
 
     private PcapLiveParser(ImportItem source, Path dumpPath, PcapIf device, Runnable fnOnNewPacket) {
         super(source, dumpPath);
         this.device = device;
+        this.statistics = new LiveCaptureStatistics();
+        this.stopped = false;
 
         this.fnOnNewPacket = fnOnNewPacket;
     }
@@ -35,14 +56,165 @@ public class PcapLiveParser extends PcapFileParser {
         return this.new LogicalIterator();
     }
 
+    public LiveCaptureStatistics getStatistics() {
+        return statistics;
+    }
+
     public void stop() {
-        if (handle != null) {
-            handle.breakloop();
-            handle.close();
-            handle = null;
+        stopped = true;
+        synchronized(this) {
+            if(timerStatistics != null) {
+                timerStatistics.cancel();
+                timerStatistics = null;
+            }
+            if (handle != null) {
+                handle.breakloop();
+                handle.close();
+                handle = null;
+            }
+        }
+    }
+
+    @Override
+    protected void parseSource() throws IllegalStateException {
+        done = false;
+
+        PacketRing.DropPolicy policy;
+        try {
+            policy = PacketRing.DropPolicy.valueOf(Configuration.getPreferenceString(Configuration.Fields.PCAP_LIVE_DROP_POLICY).trim().toUpperCase());
+        } catch(IllegalArgumentException | NullPointerException ex) {
+            Logger.log(this, Severity.Warning, "Unknown live capture drop policy; packets will be dropped when the capture buffer is full.");
+            policy = PacketRing.DropPolicy.DROP_NEWEST;
+        }
+        final PacketRing ring = new PacketRing(
+                (int)Configuration.getPreferenceLong(Configuration.Fields.PCAP_LIVE_RING_SLOTS),
+                policy,
+                (int)Configuration.getPreferenceLong(Configuration.Fields.PCAP_LIVE_SAMPLE_RATE),
+                statistics);
+
+        final String pathReplay = Configuration.getPreferenceString(Configuration.Fields.PCAP_LIVE_REPLAY_FILE);
+        final Thread threadProducer;
+        if(pathReplay != null && !pathReplay.trim().isEmpty()) {
+            threadProducer = replay(Paths.get(pathReplay.trim()), ring);
+        } else {
+            threadProducer = capture(ring);
         }
+
+        startDecoders(ring);
+        threadProducer.start();
     }
 
+    /**
+     * @return A thread that will run the capture loop, copying every packet into the ring and the dump file.
+     */
+    private Thread capture(final PacketRing ring) {
+        final Pcap pcap = getHandle();
+        if (pcap == null) {
+            throw new IllegalStateException("Unable to start live capture on " + device.getName());
+        }
+
+        applyFilter(pcap);
+
+        //pcap_stats reports what the kernel received and dropped since the handle was opened.
+        final PcapStat stat = new PcapStat();
+        timerStatistics = new Timer("pcap stats", true);
+        timerStatistics.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                synchronized(PcapLiveParser.this) {
+                    if(handle != null && handle.stats(stat) == Pcap.OK) {
+                        statistics.setKernelCounters(stat.getRecv(), stat.getDrop(), stat.getIfDrop());
+                    }
+                }
+            }
+        }, 1000, 1000);
+
+        final ByteBufferHandler<PacketRing> handler = new ByteBufferHandler<PacketRing>() {
+            //libpcap numbers frames from 0; packets dropped by the ring keep their numbers, so numbers match the dump file.
+            private long idxFrame = 0;
+
+            @Override
+            public void nextPacket(PcapHeader header, ByteBuffer buffer, PacketRing ring) {
+                if(dumper != null) {
+                    dumper.dump(header, buffer);
+                }
+                ring.offer(buffer, idxFrame++, header.seconds(), header.nanos(), header.wirelen());
+            }
+        };
+
+        final Thread thread = new Thread(() -> {
+            pcap.loop(Pcap.LOOP_INFINITE, handler, ring);
+            ring.close();
+        }, "pcap loop");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * @return A thread that will read a classic pcap file into the ring as fast as it can, in place of the device.
+     */
+    private Thread replay(final Path path, final PacketRing ring) {
+        Logger.log(this, Severity.Information, "Live PCAP is replaying " + path);
+        final Thread thread = new Thread(() -> {
+            try(PcapChunkReader reader = PcapChunkReader.open(path)) {
+                if(reader == null) {
+                    Logger.log(this, Severity.Error, "Unable to replay " + path.getFileName() + "; it is not a classic pcap file.");
+                    return;
+                }
+                final BlockingQueue<PcapChunkReader.Chunk> chunks = new LinkedBlockingQueue<>();
+                reader.scan(Configuration.getPreferenceLong(Configuration.Fields.PCAP_DECODER_CHUNK_SIZE), 0, chunks);
+                PcapChunkReader.Chunk chunk;
+                while(!stopped && (chunk = chunks.poll()) != null) {
+                    reader.read(chunk, ring::offer);
+                }
+            } catch(IOException ex) {
+                Logger.log(this, Severity.Error, "Unable to replay " + path.getFileName() + ": " + ex.getMessage());
+            } catch(InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                ring.close();
+            }
+        }, "pcap replay");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private void startDecoders(final PacketRing ring) {
+        final int cntThreads = Math.max(1, (int)Configuration.getPreferenceLong(Configuration.Fields.PCAP_DECODER_THREADS));
+        final AtomicInteger cntRunning = new AtomicInteger(cntThreads);
+        for(int idxThread = 0; idxThread < cntThreads; idxThread++) {
+            final Thread thread = new Thread(() -> {
+                try {
+                    final RecordDecoder decoder = this.new RecordDecoder();
+                    PacketRing.Slot slot;
+                    while((slot = ring.take()) != null) {
+                        final long start = System.nanoTime();
+                        statistics.getRingStage().record(start - slot.getTimeQueued());
+                        try {
+                            decoder.handle(slot.getPacket(), slot.getFrame(), slot.getSeconds(), slot.getNanos(), slot.getLengthOriginal());
+                        } finally {
+                            ring.release(slot);
+                        }
+                        statistics.getDecodeStage().record(System.nanoTime() - start);
+                    }
+                } catch(InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if(cntRunning.decrementAndGet() == 0) {
+                        done = true;
+                    }
+                }
+            }, "pcap live decoder " + idxThread);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @Override
+    protected boolean parseChunked() {
+        //The dump file is still being written, so it can only be read through the live handle.
+        return false;
+    }
 
     @Override
     protected Pcap getHandle() {
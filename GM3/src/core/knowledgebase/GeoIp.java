@@ -6,20 +6,109 @@ import ui.LocalIcon;
 import util.Cidr;
 import util.Launcher;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
-import java.util.Optional;
+import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * GeoIp is used to identify the country associated with a given IP or CIDR.
  */
 public abstract class GeoIp {
-    private final static HashMap<Cidr, Integer> idFromCidr = new HashMap<>();
-    private final static HashMap<Integer, String> nameFromId = new HashMap<>();
+    private static final int NO_ID = Integer.MIN_VALUE;
+
+    /**
+     * The Cidr -> GeoId mapping as address ranges sorted by first address, searched with a binary search.
+     */
+    private static class RangeTable {
+        private final long[] firsts;
+        private final long[] lasts;
+        //The largest last address of any range at or before each index; this lets overlapping ranges still be found.
+        private final long[] lastsThrough;
+        private final int[] ids;
+
+        public RangeTable(final long[] firsts, final long[] lasts, final int[] ids, final int size) {
+            final Integer[] order = new Integer[size];
+            for(int idx = 0; idx < size; idx++) {
+                order[idx] = idx;
+            }
+            Arrays.sort(order, (lhs, rhs) -> Long.compare(firsts[lhs], firsts[rhs]));
+
+            this.firsts = new long[size];
+            this.lasts = new long[size];
+            this.lastsThrough = new long[size];
+            this.ids = new int[size];
+            long lastMax = -1;
+            for(int idx = 0; idx < size; idx++) {
+                this.firsts[idx] = firsts[order[idx]];
+                this.lasts[idx] = lasts[order[idx]];
+                this.ids[idx] = ids[order[idx]];
+                lastMax = Math.max(lastMax, this.lasts[idx]);
+                this.lastsThrough[idx] = lastMax;
+            }
+        }
+
+        /**
+         * @return The id of a range that contains all of [first, last], or NO_ID.
+         */
+        public int find(final long first, final long last) {
+            //Find the last range that starts at or before first.
+            int lo = 0;
+            int hi = firsts.length;
+            while(lo < hi) {
+                final int mid = (lo + hi) >>> 1;
+                if(firsts[mid] <= first) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            //Every range from there back is a candidate until none of the earlier ones reaches last.
+            for(int idx = lo - 1; idx >= 0 && lastsThrough[idx] >= last; idx--) {
+                if(lasts[idx] >= last) {
+                    return ids[idx];
+                }
+            }
+            return NO_ID;
+        }
+
+        public int size() {
+            return ids.length;
+        }
+    }
+
+    /**
+     * The GeoId -> Name mapping, sorted by id.
+     */
+    private static class NameTable {
+        private final int[] ids;
+        private final String[] names;
+
+        public NameTable(final Map<Integer, String> names) {
+            final TreeMap<Integer, String> sorted = new TreeMap<>(names);
+            this.ids = new int[sorted.size()];
+            this.names = new String[sorted.size()];
+            int idx = 0;
+            for(Map.Entry<Integer, String> entry : sorted.entrySet()) {
+                this.ids[idx] = entry.getKey();
+                this.names[idx] = entry.getValue();
+                idx++;
+            }
+        }
+
+        public String get(final int id) {
+            final int idx = Arrays.binarySearch(ids, id);
+            return idx < 0 ? null : names[idx];
+        }
+    }
+
+    private static volatile RangeTable idFromCidr = new RangeTable(new long[0], new long[0], new int[0], 0);
+    private static volatile NameTable nameFromId = new NameTable(Collections.emptyMap());
 
     public static void Initialize(String pathToCidrIdMapping, String pathToIdNameMapping) {
         final Path pathCidrId = Paths.get(pathToCidrIdMapping);
@@ -38,16 +127,21 @@ public abstract class GeoIp {
 
         // Test the contents to ensure that every Id maps to a name and every name has an icon.
         // If we ever manage to get this to be error-free out-of-the-box, we can transition to using the logger to report the errors instead of hitting the console.
-        idFromCidr.values().stream().distinct().forEach(id -> {
-            if(!nameFromId.containsKey(id)) {
-                String source = idFromCidr.entrySet().stream().filter(entry -> entry.getValue().equals(id)).map(entry -> entry.getKey().toString()).collect(Collectors.joining(", "));
+        final RangeTable ranges = idFromCidr;
+        final NameTable names = nameFromId;
+        Arrays.stream(ranges.ids).distinct().forEach(id -> {
+            if(names.get(id) == null) {
+                String source = IntStream.range(0, ranges.size())
+                        .filter(idx -> ranges.ids[idx] == id)
+                        .mapToObj(idx -> Cidr.toCidrs(ranges.firsts[idx], ranges.lasts[idx]).stream().map(Cidr::toString).collect(Collectors.joining(", ")))
+                        .collect(Collectors.joining(", "));
                 if(source.length() > 80) {
                     source = source.substring(0, 77) + "...";
                 }
                 Launcher.RecordLogMessage("GeoIp lookup for country Id " + id + " failed: " + source);
             }
         });
-        nameFromId.values().stream().forEach(country -> {
+        Arrays.stream(names.names).forEach(country -> {
             File pathImage = new File(("images|logical|country|" + country.replace(" ", "_").replaceAll("[^a-zA-Z_]", "") + ".png").replace("|", File.separator));
             if(!pathImage.exists()) {
                 Launcher.RecordLogMessage("Unable to locate flag file for " + country + "(expected '" + pathImage.getAbsolutePath() + "')");
@@ -59,28 +153,95 @@ public abstract class GeoIp {
         try {
             Logger.log(GeoIp.class, Severity.Information, "Loading Cidr -> GeoId Mapping from: " + src.toAbsolutePath().toString());
 
-            idFromCidr.clear();
-            Files.lines(src)
-                    .filter(line -> !line.isEmpty())
-                    .map(line -> line.split(","))
-                    .filter(tokens -> tokens.length >= 2 && !tokens[1].isEmpty())
-                    .forEach(tokens -> idFromCidr.put(new Cidr(tokens[0]), Integer.parseInt(tokens[1])));
+            long[] firsts = new long[1 << 16];
+            long[] lasts = new long[firsts.length];
+            int[] ids = new int[firsts.length];
+            int size = 0;
+            try(BufferedReader reader = Files.newBufferedReader(src, StandardCharsets.UTF_8)) {
+                String line;
+                while((line = reader.readLine()) != null) {
+                    //Same filtering as splitting on ',': lines without a non-empty second token are skipped.
+                    final int idxComma = line.indexOf(',');
+                    if(idxComma < 0) {
+                        continue;
+                    }
+                    int idxEnd = line.indexOf(',', idxComma + 1);
+                    if(idxEnd < 0) {
+                        idxEnd = line.length();
+                    }
+                    if(idxEnd == idxComma + 1) {
+                        continue;
+                    }
+
+                    if(size == firsts.length) {
+                        firsts = Arrays.copyOf(firsts, size * 2);
+                        lasts = Arrays.copyOf(lasts, size * 2);
+                        ids = Arrays.copyOf(ids, size * 2);
+                    }
+                    parseCidr(line, idxComma, firsts, lasts, size);
+                    ids[size] = Integer.parseInt(line.substring(idxComma + 1, idxEnd));
+                    size++;
+                }
+            }
+            idFromCidr = new RangeTable(firsts, lasts, ids, size);
 
             Logger.log(GeoIp.class, Severity.Information, "Cidr -> GeoId Mapping load complete.");
         } catch(Exception ex) {
             Logger.log(GeoIp.class, Severity.Warning, "Cidr -> GeoId Mapping load failed; GeoIp components may not function correctly: " + ex.getMessage());
         }
     }
+
+    /**
+     * Parses the "a.b.c.d" or "a.b.c.d/bits" at the start of line, up to end, without the intermediate Strings of
+     * split() or a Cidr object, and stores its first and last addresses at idx.
+     */
+    private static void parseCidr(final String line, final int end, final long[] firsts, final long[] lasts, final int idx) {
+        int idxSlash = line.indexOf('/');
+        if(idxSlash < 0 || idxSlash > end) {
+            idxSlash = end;
+        }
+
+        long ip = 0;
+        int pos = 0;
+        for(int cntOctets = 0; cntOctets < 4; cntOctets++) {
+            final int idxStart = pos;
+            int octet = 0;
+            while(pos < idxSlash && pos - idxStart < 3 && line.charAt(pos) >= '0' && line.charAt(pos) <= '9') {
+                octet = octet * 10 + (line.charAt(pos) - '0');
+                pos++;
+            }
+            if(pos == idxStart || octet > 255) {
+                throw new IllegalArgumentException(line.substring(0, end) + " does not represent an IP address or CIDR");
+            }
+            ip = (ip << 8) | octet;
+            if(cntOctets < 3) {
+                if(pos >= idxSlash || line.charAt(pos) != '.') {
+                    throw new IllegalArgumentException(line.substring(0, end) + " does not represent an IP address or CIDR");
+                }
+                pos++;
+            }
+        }
+        if(pos != idxSlash) {
+            throw new IllegalArgumentException(line.substring(0, end) + " does not represent an IP address or CIDR");
+        }
+        final int bits = idxSlash == end ? 32 : Integer.parseInt(line.substring(idxSlash + 1, end));
+
+        //Same arithmetic as Cidr.getFirstIp() and Cidr.getLastIp()
+        firsts[idx] = ip & (0xFFFFFFFFL << (32 - bits));
+        lasts[idx] = ip | (0xFFFFFFFFL >>> bits);
+    }
+
     protected static void initNameIdMap(Path src) {
         try {
             Logger.log(GeoIp.class, Severity.Information, "Loading GeoId -> Name Mapping from: " + src.toAbsolutePath().toString());
 
-            nameFromId.clear();
+            final HashMap<Integer, String> names = new HashMap<>();
             Files.lines(src)
                     .filter(line -> !line.isEmpty())
                     .map(line -> line.split(","))
                     .filter(tokens -> tokens.length >= 2)
-                    .forEach(tokens -> nameFromId.put(Integer.parseInt(tokens[0]), tokens[1]));
+                    .forEach(tokens -> names.put(Integer.parseInt(tokens[0]), tokens[1]));
+            nameFromId = new NameTable(names);
 
             Logger.log(GeoIp.class, Severity.Information, "GeoId -> Name Mapping load complete.");
         } catch(Exception ex) {
@@ -89,15 +250,11 @@ public abstract class GeoIp {
     }
 
     public static String getCountryName(Cidr ip) {
-        Optional<Integer> result = idFromCidr.entrySet().stream()
-                .filter(set -> set.getKey().contains(ip))
-                .map(set -> set.getValue())
-                .findFirst();
-
-        if(!result.isPresent()) {
+        final int id = idFromCidr.find(ip.getFirstIp(), ip.getLastIp());
+        if(id == NO_ID) {
             return null;
         }
-        return nameFromId.get(result.get());
+        return nameFromId.get(id);
     }
 
     public static LocalIcon getFlagIcon(Cidr ip) {
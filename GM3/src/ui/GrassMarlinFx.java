@@ -10,6 +10,7 @@ import core.document.graph.LogicalNode;
 import core.document.serialization.LoadTask;
 import core.document.serialization.ProgressTask;
 import core.document.serialization.SaveTask;
+import core.fingerprint.FProcessor;
 import core.fingerprint3.Fingerprint;
 import core.importmodule.ImportProcessors;
 import core.importmodule.LivePCAPImport;
@@ -39,6 +40,8 @@ import javafx.stage.WindowEvent;
 import ui.custom.fx.ActiveButton;
 import ui.custom.fx.ActiveMenuItem;
 import ui.custom.fx.DynamicSubMenu;
+import ui.custom.fx.CommitLatencyTracker;
+import ui.custom.fx.LiveCaptureTracker;
 import ui.custom.fx.MemoryUsageTracker;
 import ui.dialog.*;
 import ui.dialog.importmanager.ImportDialog;
@@ -197,7 +200,13 @@ public class GrassMarlinFx extends Application{
 
     protected void newDocument() {
         tabController.clear();
+        final Session docPrevious = document.get();
+        if(docPrevious != null) {
+            //Nothing will read the frames of the previous session again.
+            docPrevious.closeFrameArchive();
+        }
         Session docNew = new Session();
+        trackerCommitLatency.graphProperty().set(docNew.getLogicalGraph());
 
         final LogicalGraph graphLogical = new LogicalGraph(docNew.getLogicalGraph(), this::WatchLogicalConnections, docNew.getLogicalGraph().getCidrList());
         final PhysicalGraph graphPhysical = new PhysicalGraph(docNew.getPhysicalGraph(), docNew.getPhysicalTopologyMapper());
@@ -474,7 +483,9 @@ public class GrassMarlinFx extends Application{
 
         // Status bar (bottom)
         ToolBar statusbar = new ToolBar(
-                new MemoryUsageTracker(20)
+                new MemoryUsageTracker(20),
+                trackerCommitLatency,
+                trackerLiveCapture
         );
         fields.setBottom(statusbar);
 
@@ -482,6 +493,8 @@ public class GrassMarlinFx extends Application{
     }
 
     private LivePCAPImport pcapCurrent = null;
+    private final CommitLatencyTracker trackerCommitLatency = new CommitLatencyTracker();
+    private final LiveCaptureTracker trackerLiveCapture = new LiveCaptureTracker();
     public void StartLiveCapture() {
         try {
             //Get Device
@@ -499,6 +512,7 @@ public class GrassMarlinFx extends Application{
             final String nameDumpFile = Configuration.getPreferenceString(Configuration.Fields.DIR_LIVE_CAPTURE) + File.separator + Instant.now().atZone(ZoneId.of("Z")).format(DateTimeFormatter.ISO_INSTANT).replaceAll("\\D", "_") + ".pcap";
             pcapCurrent = new LivePCAPImport(Paths.get(nameDumpFile), entry.getDevice(), GrassMarlinFx.getRunningFingerprints(), () -> document.get().getLogicalGraph().refresh());
             document.get().ProcessImport(pcapCurrent);
+            trackerLiveCapture.statisticsProperty().set(pcapCurrent.getStatistics());
         } catch(Exception ex) {
             Logger.log(this, Severity.Error, "Unable to start live pcap: " + ex.getMessage());
             isPcapRunning.set(false);
@@ -509,6 +523,7 @@ public class GrassMarlinFx extends Application{
     public void StopLiveCapture() {
         if(pcapCurrent != null) {
             pcapCurrent.stop();
+            trackerLiveCapture.statisticsProperty().set(null);
             isPcapRunning.set(false);
             pcapCurrent = null;
             document.get().getLogicalGraph().refresh();
@@ -648,6 +663,13 @@ public class GrassMarlinFx extends Application{
         return Collections.unmodifiableList(FPDocument.getInstance().getEnabledFingerprints());
     }
 
+    public static FProcessor getCompiledFingerprints() {
+        return FPDocument.getInstance().getCompiledFingerprints();
+    }
+    public static FProcessor awaitCompiledFingerprints() {
+        return FPDocument.getInstance().awaitCompiledFingerprints();
+    }
+
     private void Handle_ShowImportDialog(Object event) {
         if(dlgImport.isShowing()) {
             dlgImport.close();
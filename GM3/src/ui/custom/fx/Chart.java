@@ -29,14 +29,30 @@ public abstract class Chart<T, TX extends Comparable<TX>, TY extends Comparable<
     private static int idx = 0;
 
     public static class Series<T> {
+        /**
+         * An ArrayList that counts every modification, so that the chart can tell when its index of the data is stale.
+         */
+        private static class DataList<T> extends ArrayList<T> {
+            public int getVersion() {
+                return modCount;
+            }
+
+            @Override
+            public T set(int index, T element) {
+                final T result = super.set(index, element);
+                modCount++;
+                return result;
+            }
+        }
+
         private String name;
-        private final List<T> data;
+        private final DataList<T> data;
         private Color color;
         private final SimpleBooleanProperty visible;
 
         public Series() {
             this.name = null;
-            this.data = new ArrayList<>();
+            this.data = new DataList<>();
             this.color = colors[Chart.idx++ % Chart.colors.length];
             this.visible = new SimpleBooleanProperty(true);
         }
@@ -104,6 +120,15 @@ public abstract class Chart<T, TX extends Comparable<TX>, TY extends Comparable<
     public interface GenerateTicks<T extends Comparable<T>> {
         List<T> generateTicks(Range<T> base, double low, double high);
     }
+    /**
+     * How a series is drawn when its visible part has more points than there are pixels to draw them in.
+     */
+    public enum Downsampling {
+        /** For each pixel column, the first, last, lowest and highest points; the drawn envelope is exact. */
+        MIN_MAX,
+        /** Largest-Triangle-Three-Buckets over the per-column points, leaving about one point per column. */
+        LTTB
+    }
     protected static class Point<T, TX, TY> {
         private Point2D location;
         private TX x;
@@ -146,6 +171,9 @@ public abstract class Chart<T, TX extends Comparable<TX>, TY extends Comparable<
     protected double interactRadius = 15.0;
     protected final List<Point<T, TX, TY>> renderedPoints = new ArrayList<>();
 
+    private final Map<Series<T>, SeriesIndex> indices = new IdentityHashMap<>();
+    private Downsampling downsampling = Downsampling.MIN_MAX;
+
     protected Chart(Function<T, TX> fnX, Function<T, TY> fnY,
                  Normalizer<TX> fnNormalizerX, Normalizer<TY> fnNormalizerY,
                  GenerateTicks<TX> fnTicksX, GenerateTicks<TY> fnTicksY,
@@ -243,6 +271,13 @@ public abstract class Chart<T, TX extends Comparable<TX>, TY extends Comparable<
         this.viewport = viewport;
         redraw();
     }
+    public void setDownsampling(Downsampling downsampling) {
+        this.downsampling = downsampling;
+        redraw();
+    }
+    public Downsampling getDownsampling() {
+        return downsampling;
+    }
 
 
     public double viewportXForControlX(final double pxX) {
@@ -290,48 +325,50 @@ public abstract class Chart<T, TX extends Comparable<TX>, TY extends Comparable<
     }
 
     protected void paint(GraphicsContext gc) {
-        // Get a sorted copy of the series data.  Once we have this we can release locks.
-        Rectangle2D rectViewport = viewport;
-        HashMap<Series, LinkedList<T>> data = new HashMap<>();
+        // Get the sorted index of each series; an index is only rebuilt when its series has changed since the last paint.
+        final List<SeriesIndex> data = new ArrayList<>(this.series.size());
         for(Series<T> series : this.series) {
-            LinkedList<T> seriesData = new LinkedList<>(series.getData());
-            seriesData.sort((o1, o2) -> fnXValue.apply(o1).compareTo(fnXValue.apply(o2)));
-            data.put(series, seriesData);
+            SeriesIndex index = indices.get(series);
+            if(index == null || index.version != series.data.getVersion()) {
+                index = new SeriesIndex(series);
+                indices.put(series, index);
+            }
+            data.add(index);
         }
+        indices.keySet().retainAll(this.series);
 
         //Make sure we have data before continuing.
-        if(data.size() == 0) {
-            return;
-        }
-        if(data.values().stream().flatMap(LinkedList::stream).count() == 0) {
+        final List<SeriesIndex> dataNonEmpty = data.stream().filter(index -> index.size() > 0).collect(Collectors.toList());
+        if(dataNonEmpty.isEmpty()) {
             return;
         }
 
-        // Calculate the range on each axis.
-        Range<TX> axisX;
-        Range<TY> axisY;
-        //TODO: Since we just sorted by X, we can optimize this a bit.
+        // Calculate the range on each axis from the bounds cached in each index.
+        TX minX = null;
+        TX maxX = null;
+        TY minY = null;
+        TY maxY = null;
+        for(SeriesIndex index : dataNonEmpty) {
+            final TX lowX = index.x(0);
+            final TX highX = index.x(index.size() - 1);
+            final TY lowY = index.y(index.argMinY(0, index.size()));
+            final TY highY = index.y(index.argMaxY(0, index.size()));
+            minX = (minX == null || lowX.compareTo(minX) < 0) ? lowX : minX;
+            maxX = (maxX == null || highX.compareTo(maxX) > 0) ? highX : maxX;
+            minY = (minY == null || lowY.compareTo(minY) < 0) ? lowY : minY;
+            maxY = (maxY == null || highY.compareTo(maxY) > 0) ? highY : maxY;
+        }
+        final Range<TX> axisX;
+        final Range<TY> axisY;
         if(rangeX != null) {
-            axisX = new Range<>(
-                    rangeX.min == null ? data.values().stream().flatMap(LinkedList::stream).map(fnXValue).min(TX::compareTo).get() : rangeX.min,
-                    rangeX.max == null ? data.values().stream().flatMap(LinkedList::stream).map(fnXValue).max(TX::compareTo).get() : rangeX.max
-            );
+            axisX = new Range<>(rangeX.min == null ? minX : rangeX.min, rangeX.max == null ? maxX : rangeX.max);
         } else {
-            axisX = new Range<>(
-                    data.values().stream().flatMap(LinkedList::stream).map(fnXValue).min(TX::compareTo).get(),
-                    data.values().stream().flatMap(LinkedList::stream).map(fnXValue).max(TX::compareTo).get()
-            );
+            axisX = new Range<>(minX, maxX);
         }
         if(rangeY != null) {
-            axisY = new Range<>(
-                    rangeY.min == null ? data.values().stream().flatMap(LinkedList::stream).map(fnYValue).min(TY::compareTo).get() : rangeY.min,
-                    rangeY.max == null ? data.values().stream().flatMap(LinkedList::stream).map(fnYValue).max(TY::compareTo).get() : rangeY.max
-            );
+            axisY = new Range<>(rangeY.min == null ? minY : rangeY.min, rangeY.max == null ? maxY : rangeY.max);
         } else {
-            axisY = new Range<>(
-                    data.values().stream().flatMap(LinkedList::stream).map(fnYValue).min(TY::compareTo).get(),
-                    data.values().stream().flatMap(LinkedList::stream).map(fnYValue).max(TY::compareTo).get()
-            );
+            axisY = new Range<>(minY, maxY);
         }
         final List<TX> ticksX = fnTicksX.generateTicks(axisX, viewport.getMinX(), viewport.getMaxX());
         //axisX = new Range<>(ticksX.get(0), ticksX.get(ticksX.size() - 1));
@@ -367,35 +404,20 @@ public abstract class Chart<T, TX extends Comparable<TX>, TY extends Comparable<
 
         // Render series data, build tooltip cache
         renderedPoints.clear();
-        for(Map.Entry<Series, LinkedList<T>> entry : data.entrySet()) {
-            Point2D ptPrev = null;
-
-            gc.setStroke(entry.getKey().getColor());
+        for(SeriesIndex index : dataNonEmpty) {
+            gc.setStroke(index.series.getColor());
             //TODO: Make this customizable
             gc.setLineWidth(2.0);
 
-            for(T value : entry.getValue()) {
-                TX x = fnXValue.apply(value);
-                TY y = fnYValue.apply(value);
-
-                // Add rectViewport.getMinY() instead of subtracting because we're mirroring the Y coordinate around the X-axis.
-                Point2D ptNew = new Point2D(
-                        chartXFromDataX(axisX, x),
-                        chartYFromDataY(axisY, y));
-                Point<T, TX, TY> pt = new Point<>(
-                        value,
-                        x,
-                        y,
-                        ptNew,
-                        entry.getKey().getColor()
-                );
-                renderedPoints.add(pt);
-
-                if(ptPrev != null) {
-                    gc.strokeLine(ptPrev.getX(), ptPrev.getY(), ptNew.getX(), ptNew.getY());
-                }
-                gc.strokeOval(ptNew.getX() - pointRadius, ptNew.getY() - pointRadius, pointRadius * 2, pointRadius * 2);
-                ptPrev = ptNew;
+            //Only the visible points, and the nearest point on either side so the lines leading off the chart are drawn.
+            final int idxFirst = Math.max(0, index.firstAtOrAfter(axisX, rectChart.getMinX()) - 1);
+            final int idxLast = Math.min(index.size(), index.firstAtOrAfter(axisX, rectChart.getMaxX()) + 1);
+            final int cntColumns = (int)Math.ceil(rectChart.getWidth());
+
+            if(idxLast - idxFirst <= 2 * cntColumns) {
+                paintPoints(gc, index, axisX, axisY, idxFirst, idxLast);
+            } else {
+                paintDownsampled(gc, index, axisX, axisY, idxFirst, idxLast, cntColumns);
             }
         }
 
@@ -444,6 +466,241 @@ public abstract class Chart<T, TX extends Comparable<TX>, TY extends Comparable<
         }
     }
 
+    /**
+     * Draws every point in [idxFirst, idxLast) of the series.
+     */
+    private void paintPoints(GraphicsContext gc, SeriesIndex index, Range<TX> axisX, Range<TY> axisY, int idxFirst, int idxLast) {
+        Point2D ptPrev = null;
+        for(int idx = idxFirst; idx < idxLast; idx++) {
+            final Point<T, TX, TY> pt = pointFor(index, axisX, axisY, idx);
+            renderedPoints.add(pt);
+
+            if(ptPrev != null) {
+                gc.strokeLine(ptPrev.getX(), ptPrev.getY(), pt.location.getX(), pt.location.getY());
+            }
+            gc.strokeOval(pt.location.getX() - pointRadius, pt.location.getY() - pointRadius, pointRadius * 2, pointRadius * 2);
+            ptPrev = pt.location;
+        }
+    }
+
+    /**
+     * Draws [idxFirst, idxLast) of the series through a few points per pixel column.  Each column is located by binary
+     * search and its extremes are read from the index, so the cost depends on the width of the chart rather than on the
+     * number of points.
+     */
+    private void paintDownsampled(GraphicsContext gc, SeriesIndex index, Range<TX> axisX, Range<TY> axisY, int idxFirst, int idxLast, int cntColumns) {
+        //Points before the first column and after the last are kept individually so that the lines off the chart match.
+        final List<Integer> selected = new ArrayList<>(cntColumns * 4 + 2);
+        final int idxStart = Math.max(idxFirst, index.firstAtOrAfter(axisX, rectChart.getMinX()));
+        final int idxEnd = Math.min(idxLast, index.firstAtOrAfter(axisX, rectChart.getMaxX()));
+        for(int idx = idxFirst; idx < idxStart; idx++) {
+            selected.add(idx);
+        }
+        int idxColumnStart = idxStart;
+        for(int column = 1; column <= cntColumns && idxColumnStart < idxEnd; column++) {
+            final int idxColumnEnd = column == cntColumns ? idxEnd : Math.min(idxEnd, index.firstAtOrAfter(axisX, rectChart.getMinX() + column));
+            if(idxColumnEnd > idxColumnStart) {
+                final int idxMin = index.argMinY(idxColumnStart, idxColumnEnd);
+                final int idxMax = index.argMaxY(idxColumnStart, idxColumnEnd);
+                //In the order they occur, so that the line through them follows the data.
+                final int[] column4 = new int[] {idxColumnStart, Math.min(idxMin, idxMax), Math.max(idxMin, idxMax), idxColumnEnd - 1};
+                for(int idx : column4) {
+                    if(selected.isEmpty() || selected.get(selected.size() - 1) != idx) {
+                        selected.add(idx);
+                    }
+                }
+            }
+            idxColumnStart = idxColumnEnd;
+        }
+        for(int idx = Math.max(idxEnd, idxStart); idx < idxLast; idx++) {
+            selected.add(idx);
+        }
+
+        final List<Point<T, TX, TY>> points = new ArrayList<>(selected.size());
+        for(int idx : selected) {
+            points.add(pointFor(index, axisX, axisY, idx));
+        }
+        final List<Point<T, TX, TY>> drawn = downsampling == Downsampling.LTTB ? largestTriangleThreeBuckets(points, cntColumns) : points;
+
+        Point2D ptPrev = null;
+        for(Point<T, TX, TY> pt : drawn) {
+            renderedPoints.add(pt);
+            if(ptPrev != null) {
+                gc.strokeLine(ptPrev.getX(), ptPrev.getY(), pt.location.getX(), pt.location.getY());
+            }
+            ptPrev = pt.location;
+        }
+    }
+
+    private Point<T, TX, TY> pointFor(SeriesIndex index, Range<TX> axisX, Range<TY> axisY, int idx) {
+        final TX x = index.x(idx);
+        final TY y = index.y(idx);
+        // Add rectViewport.getMinY() instead of subtracting because we're mirroring the Y coordinate around the X-axis.
+        final Point2D location = new Point2D(
+                chartXFromDataX(axisX, x),
+                chartYFromDataY(axisY, y));
+        return new Point<>(index.get(idx), x, y, location, index.series.getColor());
+    }
+
+    /**
+     * Reduces points (ordered by X) to about cntBuckets points, keeping the first and last, by choosing from each bucket
+     * the point that forms the largest triangle with the point chosen before it and the average of the next bucket.
+     */
+    private static <T, TX, TY> List<Point<T, TX, TY>> largestTriangleThreeBuckets(List<Point<T, TX, TY>> points, int cntBuckets) {
+        if(cntBuckets < 3 || points.size() <= cntBuckets) {
+            return points;
+        }
+        final List<Point<T, TX, TY>> result = new ArrayList<>(cntBuckets);
+        final double sizeBucket = (double)(points.size() - 2) / (double)(cntBuckets - 2);
+
+        Point2D ptPrev = points.get(0).location;
+        result.add(points.get(0));
+        for(int bucket = 0; bucket < cntBuckets - 2; bucket++) {
+            final int idxStart = (int)(bucket * sizeBucket) + 1;
+            final int idxEnd = (int)((bucket + 1) * sizeBucket) + 1;
+            final int idxNextEnd = Math.min(points.size(), (int)((bucket + 2) * sizeBucket) + 1);
+
+            double avgX = 0.0;
+            double avgY = 0.0;
+            for(int idx = idxEnd; idx < idxNextEnd; idx++) {
+                avgX += points.get(idx).location.getX();
+                avgY += points.get(idx).location.getY();
+            }
+            final int cntNext = idxNextEnd - idxEnd;
+            avgX /= cntNext;
+            avgY /= cntNext;
+
+            Point<T, TX, TY> best = null;
+            double areaBest = -1.0;
+            for(int idx = idxStart; idx < idxEnd; idx++) {
+                final Point2D pt = points.get(idx).location;
+                final double area = Math.abs((ptPrev.getX() - avgX) * (pt.getY() - ptPrev.getY()) - (ptPrev.getX() - pt.getX()) * (avgY - ptPrev.getY()));
+                if(area > areaBest) {
+                    areaBest = area;
+                    best = points.get(idx);
+                }
+            }
+            if(best != null) {
+                result.add(best);
+                ptPrev = best.location;
+            }
+        }
+        result.add(points.get(points.size() - 1));
+        return result;
+    }
+
+    /**
+     * The data of a series, sorted by X, with a pyramid of buckets for finding the lowest and highest Y in any range of
+     * it.  Level k of the pyramid holds, for every aligned run of 2^k points, the index of its lowest and highest point;
+     * a range is covered by at most two buckets per level, so each query takes logarithmic time.
+     */
+    private class SeriesIndex {
+        private final Series<T> series;
+        private final int version;
+        private final Object[] sorted;
+        private final List<int[]> levelsMin;
+        private final List<int[]> levelsMax;
+
+        public SeriesIndex(Series<T> series) {
+            this.series = series;
+            this.version = series.data.getVersion();
+            this.sorted = series.getData().toArray();
+            //Arrays.sort is stable for objects, so points with equal X keep the order of the series, as they did before.
+            Arrays.sort(this.sorted, (o1, o2) -> fnXValue.apply(get(o1)).compareTo(fnXValue.apply(get(o2))));
+
+            this.levelsMin = new ArrayList<>();
+            this.levelsMax = new ArrayList<>();
+            //Level 0 is the points themselves and is not stored.
+            final int[] identity = new int[sorted.length];
+            for(int idx = 0; idx < identity.length; idx++) {
+                identity[idx] = idx;
+            }
+            levelsMin.add(null);
+            levelsMax.add(null);
+            int[] prevMin = identity;
+            int[] prevMax = identity;
+            while(prevMin.length > 1) {
+                final int[] nextMin = new int[(prevMin.length + 1) / 2];
+                final int[] nextMax = new int[nextMin.length];
+                for(int idx = 0; idx < nextMin.length; idx++) {
+                    final int left = 2 * idx;
+                    final int right = Math.min(left + 1, prevMin.length - 1);
+                    nextMin[idx] = lower(prevMin[left], prevMin[right]);
+                    nextMax[idx] = higher(prevMax[left], prevMax[right]);
+                }
+                levelsMin.add(nextMin);
+                levelsMax.add(nextMax);
+                prevMin = nextMin;
+                prevMax = nextMax;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private T get(Object o) {
+            return (T)o;
+        }
+        public T get(int idx) {
+            return get(sorted[idx]);
+        }
+        public int size() {
+            return sorted.length;
+        }
+        public TX x(int idx) {
+            return fnXValue.apply(get(idx));
+        }
+        public TY y(int idx) {
+            return fnYValue.apply(get(idx));
+        }
+
+        private int lower(int idx1, int idx2) {
+            return y(idx2).compareTo(y(idx1)) < 0 ? idx2 : idx1;
+        }
+        private int higher(int idx1, int idx2) {
+            return y(idx2).compareTo(y(idx1)) > 0 ? idx2 : idx1;
+        }
+
+        public int argMinY(int from, int to) {
+            return query(from, to, levelsMin, true);
+        }
+        public int argMaxY(int from, int to) {
+            return query(from, to, levelsMax, false);
+        }
+
+        /**
+         * Combines the largest aligned buckets that fit in [from, to).
+         */
+        private int query(int from, int to, List<int[]> levels, boolean isMin) {
+            int result = from;
+            while(from < to) {
+                int level = from == 0 ? levels.size() - 1 : Math.min(levels.size() - 1, Integer.numberOfTrailingZeros(from));
+                while((1 << level) > to - from) {
+                    level--;
+                }
+                final int candidate = level == 0 ? from : levels.get(level)[from >> level];
+                result = isMin ? lower(result, candidate) : higher(result, candidate);
+                from += 1 << level;
+            }
+            return result;
+        }
+
+        /**
+         * @return The index of the first point drawn at or to the right of pxX, or size() if there is none.
+         */
+        public int firstAtOrAfter(Range<TX> axisX, double pxX) {
+            int lo = 0;
+            int hi = sorted.length;
+            while(lo < hi) {
+                final int mid = (lo + hi) >>> 1;
+                if(chartXFromDataX(axisX, x(mid)) < pxX) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
     protected List<T> pointsNearLocation(final Point2D screenNear) {
         final Point2D ptNear = this.screenToLocal(screenNear);
         return renderedPoints.stream()
@@ -0,0 +1,47 @@
+package ui.custom.fx;
+
+import core.document.graph.NetworkGraph;
+import javafx.application.Platform;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.scene.control.Label;
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A JavaFX UI component that displays how long the most recent refresh of a graph took to commit to the UI.  The value is
+ * refreshed once per second, which is at least as often as a graph refreshes during an import.
+ */
+public class CommitLatencyTracker extends Label {
+    private final ObjectProperty<NetworkGraph<?, ?>> graph;
+
+    public CommitLatencyTracker() {
+        graph = new SimpleObjectProperty<>(null);
+
+        this.visibleProperty().bind(graph.isNotNull());
+        this.managedProperty().bind(graph.isNotNull());
+        graph.addListener((observable, oldValue, newValue) -> TakeReading());
+
+        final Timer timer = new Timer("graph commit latency", true);
+        timer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                if(graph.get() != null) {
+                    Platform.runLater(CommitLatencyTracker.this::TakeReading);
+                }
+            }
+        }, 1000, 1000);
+    }
+
+    public void TakeReading() {
+        final NetworkGraph<?, ?> current = graph.get();
+        this.setText(current == null ? "" : String.format("UI commit: %d ms", TimeUnit.NANOSECONDS.toMillis(current.getLastCommitDuration())));
+    }
+
+    // == Accessors
+    public ObjectProperty<NetworkGraph<?, ?>> graphProperty() {
+        return graph;
+    }
+}
@@ -0,0 +1,46 @@
+package ui.custom.fx;
+
+import core.importmodule.inputIterators.pcap.LiveCaptureStatistics;
+import javafx.application.Platform;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.scene.control.Label;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * A JavaFX UI component that displays the drop counters and stage latencies of the running live capture.  It is hidden
+ * while there is no capture, and the values are refreshed once per second.
+ */
+public class LiveCaptureTracker extends Label {
+    private final ObjectProperty<LiveCaptureStatistics> statistics;
+
+    public LiveCaptureTracker() {
+        statistics = new SimpleObjectProperty<>(null);
+
+        this.visibleProperty().bind(statistics.isNotNull());
+        this.managedProperty().bind(statistics.isNotNull());
+        statistics.addListener((observable, oldValue, newValue) -> TakeReading());
+
+        final Timer timer = new Timer("live capture statistics", true);
+        timer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                if(statistics.get() != null) {
+                    Platform.runLater(LiveCaptureTracker.this::TakeReading);
+                }
+            }
+        }, 1000, 1000);
+    }
+
+    public void TakeReading() {
+        final LiveCaptureStatistics current = statistics.get();
+        this.setText(current == null ? "" : current.toString());
+    }
+
+    // == Accessors
+    public ObjectProperty<LiveCaptureStatistics> statisticsProperty() {
+        return statistics;
+    }
+}
@@ -5,6 +5,8 @@ import core.document.graph.LogicalEdge;
 import core.document.graph.LogicalNode;
 import core.document.graph.NetworkGraph;
 import core.importmodule.ImportItem;
+import core.logging.Logger;
+import core.logging.Severity;
 import javafx.beans.Observable;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.geometry.Orientation;
@@ -28,11 +30,13 @@ import util.Csv;
 import util.Wireshark;
 
 import java.io.File;
+import java.io.IOException;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -207,17 +211,27 @@ public class ConnectionDetailsDialogFx extends Dialog {
         this.root.set(root);
         super.setTitle("Connections involving " + root.toString());
     }
+    protected List<LogicalEdge.ConnectionDetails.FrameRecord> framesFor(LogicalEdge.ConnectionDetails details, ImportItem item) {
+        try {
+            final List<LogicalEdge.ConnectionDetails.FrameRecord> frames = details.getFrames(item);
+            return frames == null ? Collections.emptyList() : frames;
+        } catch(IOException ex) {
+            //The frames remain in the saved session; they are only omitted from this view.
+            Logger.log(this, Severity.Error, "Unable to read frames from the saved session: " + ex.getMessage());
+            return Collections.emptyList();
+        }
+    }
     protected List<DetailLine> buildDetailList(LogicalEdge edge, LogicalEdge.ConnectionDetails detailsTo, LogicalEdge.ConnectionDetails detailsFrom) {
         //Pre-allocate for the full size requirement.
         final ArrayList<DetailLine> result = new ArrayList<>(detailsTo.getFrameCount() + detailsFrom.getFrameCount());
 
         for(ImportItem item : detailsTo.getFrameGroups()) {
-            for(LogicalEdge.ConnectionDetails.FrameRecord record : detailsTo.getFrames(item)) {
+            for(LogicalEdge.ConnectionDetails.FrameRecord record : framesFor(detailsTo, item)) {
                 result.add(new DetailLine(detailsTo == edge.getDetailsToDestination(), item, edge, record));
             }
         }
         for(ImportItem item : detailsFrom.getFrameGroups()) {
-            for(LogicalEdge.ConnectionDetails.FrameRecord record : detailsFrom.getFrames(item)) {
+            for(LogicalEdge.ConnectionDetails.FrameRecord record : framesFor(detailsFrom, item)) {
                 result.add(new DetailLine(detailsFrom == edge.getDetailsToDestination(), item, edge, record));
             }
         }
@@ -253,12 +267,12 @@ public class ConnectionDetailsDialogFx extends Dialog {
                 series.setName(nodeOther.getIp().toString());
 
                 for (ImportItem item : edge.getDetailsToSource().getFrameGroups()) {
-                    series.getData().addAll(edge.getDetailsToSource().getFrames(item).stream()
+                    series.getData().addAll(framesFor(edge.getDetailsToSource(), item).stream()
                             .map(frame -> new ChartPacketBytesOverTime.FrameWrapper(item, edge.getDestination().getIp(), edge.getSource().getIp(), frame))
                             .collect(Collectors.toList()));
                 }
                 for (ImportItem item : edge.getDetailsToDestination().getFrameGroups()) {
-                    series.getData().addAll(edge.getDetailsToDestination().getFrames(item).stream()
+                    series.getData().addAll(framesFor(edge.getDetailsToDestination(), item).stream()
                     .map(frame -> new ChartPacketBytesOverTime.FrameWrapper(item, edge.getSource().getIp(), edge.getDestination().getIp(), frame))
                     .collect(Collectors.toList()));
                 }
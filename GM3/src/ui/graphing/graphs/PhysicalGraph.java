@@ -96,7 +96,18 @@ public class PhysicalGraph extends Graph<PhysicalNode, PhysicalEdge> {
     protected void processRemoveVisualNode(final PhysicalNode node, final Cell<PhysicalNode> cell) {
         super.processRemoveVisualNode(node, cell);
 
-        //TODO: Remove from VLANs
+        //The topology is updated by removing and replacing nodes, so the VLAN groups have to let go of them as well.
+        final Set<Integer> vlans;
+        if(cell.getNode() instanceof PhysicalPort) {
+            vlans = ((PhysicalPort)cell.getNode()).getAllVlans();
+        } else {
+            vlans = cell.getNode().getVLans();
+        }
+        for(Integer vlan : vlans) {
+            final CellGroup<PhysicalNode, PhysicalEdge> groupVlan = factoryVLans.getGroup("VLAN", Integer.toString(vlan));
+            groupVlan.getMembers().remove(cell);
+            ((PhysicalGraphTreeController)treeController).removeVlanNode(groupVlan, cell);
+        }
     }
 
     @Override
@@ -77,6 +77,18 @@ public class PhysicalGraphTreeController extends GraphTreeController<PhysicalNod
         return item;
     }
 
+    public void removeVlanNode(CellGroup vlan, Cell<PhysicalNode> node) {
+        HashMap<Cell<PhysicalNode>, GraphTreeItem.GraphTreeNodeItem<PhysicalNode, PhysicalEdge>> lookupNodes = lookupVlanNodes.get(vlan);
+        if(lookupNodes == null) {
+            return;
+        }
+
+        GraphTreeItem.GraphTreeNodeItem<PhysicalNode, PhysicalEdge> item = lookupNodes.remove(node);
+        if(item != null && item.getParent() != null) {
+            item.getParent().getChildren().remove(item);
+        }
+    }
+
     @Override
     protected void initializeGroup(GraphTreeItem.GraphTreeGroupItem<PhysicalNode, PhysicalEdge> nodeGroup) {
         String nameGroup = nodeGroup.getName();
@@ -0,0 +1,189 @@
+package util;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe Map that iterates in insertion order, as a LinkedHashMap does.
+ *
+ * Lookups go straight to a ConcurrentHashMap and never block.  Insertions and removals lock only the hash bin of the
+ * key, so threads working on different keys do not contend; the insertion order is kept in a separate index that is
+ * only written when a key is added or removed.  Iteration is weakly consistent: it reflects the map at some point
+ * during or since the creation of the iterator and never throws ConcurrentModificationException.
+ *
+ * Replacing the value of an existing key keeps its original position.  Clearing the map replaces the hash map and the
+ * index together, so an insertion that races with clear() lands either entirely before it or entirely after it.
+ */
+public class InsertionOrderedConcurrentMap<K, V> extends AbstractMap<K, V> {
+    private static class OrderedEntry<K, V> implements Map.Entry<K, V> {
+        private final K key;
+        private volatile V value;
+        private final long sequence;
+
+        public OrderedEntry(final K key, final V value, final long sequence) {
+            this.key = key;
+            this.value = value;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+        @Override
+        public V getValue() {
+            return value;
+        }
+        @Override
+        public V setValue(final V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if(!(other instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?, ?> rhs = (Map.Entry<?, ?>)other;
+            return Objects.equals(key, rhs.getKey()) && Objects.equals(value, rhs.getValue());
+        }
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+    }
+
+    /**
+     * The entries and their insertion order; every operation works on the Store it read from the map when it started.
+     */
+    private static class Store<K, V> {
+        private final ConcurrentHashMap<K, OrderedEntry<K, V>> entries = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListMap<Long, OrderedEntry<K, V>> order = new ConcurrentSkipListMap<>();
+    }
+
+    private volatile Store<K, V> store;
+    private final AtomicLong sequence;
+    private final Set<Map.Entry<K, V>> entrySet;
+
+    public InsertionOrderedConcurrentMap() {
+        this.store = new Store<>();
+        this.sequence = new AtomicLong(0);
+        this.entrySet = new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                final Iterator<OrderedEntry<K, V>> base = store.order.values().iterator();
+                return new Iterator<Map.Entry<K, V>>() {
+                    private OrderedEntry<K, V> last = null;
+
+                    @Override
+                    public boolean hasNext() {
+                        return base.hasNext();
+                    }
+                    @Override
+                    public Map.Entry<K, V> next() {
+                        last = base.next();
+                        return last;
+                    }
+                    @Override
+                    public void remove() {
+                        if(last == null) {
+                            throw new IllegalStateException();
+                        }
+                        InsertionOrderedConcurrentMap.this.remove(last.key);
+                        last = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return store.entries.size();
+            }
+            @Override
+            public void clear() {
+                InsertionOrderedConcurrentMap.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return store.entries.size();
+    }
+    @Override
+    public boolean isEmpty() {
+        return store.entries.isEmpty();
+    }
+    @Override
+    public boolean containsKey(final Object key) {
+        return store.entries.containsKey(key);
+    }
+    @Override
+    public V get(final Object key) {
+        final OrderedEntry<K, V> entry = store.entries.get(key);
+        return entry == null ? null : entry.value;
+    }
+
+    @Override
+    public V put(final K key, final V value) {
+        final Store<K, V> store = this.store;
+        final List<V> previous = new ArrayList<>(1);
+        store.entries.compute(key, (k, existing) -> {
+            if(existing != null) {
+                previous.add(existing.value);
+                existing.value = value;
+                return existing;
+            } else {
+                final OrderedEntry<K, V> created = new OrderedEntry<>(key, value, sequence.getAndIncrement());
+                store.order.put(created.sequence, created);
+                return created;
+            }
+        });
+        return previous.isEmpty() ? null : previous.get(0);
+    }
+
+    /**
+     * Atomically adds the mapping if the key is not present.
+     * @return The value already associated with the key, or null if the mapping was added.
+     */
+    @Override
+    public V putIfAbsent(final K key, final V value) {
+        final Store<K, V> store = this.store;
+        //Try without locking first; for most callers the key is usually present.
+        OrderedEntry<K, V> existing = store.entries.get(key);
+        if(existing == null) {
+            final OrderedEntry<K, V> created = new OrderedEntry<>(key, value, sequence.getAndIncrement());
+            existing = store.entries.computeIfAbsent(key, k -> {
+                store.order.put(created.sequence, created);
+                return created;
+            });
+            if(existing == created) {
+                return null;
+            }
+        }
+        return existing.value;
+    }
+
+    @Override
+    public V remove(final Object key) {
+        final Store<K, V> store = this.store;
+        final OrderedEntry<K, V> removed = store.entries.remove(key);
+        if(removed == null) {
+            return null;
+        }
+        store.order.remove(removed.sequence);
+        return removed.value;
+    }
+
+    @Override
+    public void clear() {
+        store = new Store<>();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return entrySet;
+    }
+}
@@ -123,6 +123,8 @@ public class Launcher {
         } catch (final IOException ioe) {
             Logger.log(Launcher.class, Severity.Warning, "Unable to load system Fingerprints");
         }
+        //Compile the fingerprints loaded at startup before anything can be imported.
+        fpDoc.awaitCompiledFingerprints();
 
         if(allowPlugins) {
             LoadPlugins();
@@ -0,0 +1,102 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive long keys to non-null values.
+ *
+ * Keys are stored unboxed in a flat array with linear probing, so lookups do not allocate and there is no per-entry
+ * object.  Entries can only be removed all at once, through clear().  This class is not thread-safe.
+ */
+public class LongHashMap<V> {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int threshold;
+
+    public LongHashMap() {
+        this(16);
+    }
+
+    public LongHashMap(final int capacity) {
+        int sizeTable = 16;
+        while(sizeTable * LOAD_FACTOR < capacity) {
+            sizeTable <<= 1;
+        }
+        allocate(sizeTable);
+    }
+
+    private void allocate(final int sizeTable) {
+        keys = new long[sizeTable];
+        values = new Object[sizeTable];
+        threshold = (int)(sizeTable * LOAD_FACTOR);
+    }
+
+    private static int hash(final long key) {
+        //Fibonacci hashing spreads packed IP pairs, which tend to share their high bits, across the table.
+        final long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int)(mixed ^ (mixed >>> 32));
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(final long key) {
+        final int mask = keys.length - 1;
+        for(int idx = hash(key) & mask; values[idx] != null; idx = (idx + 1) & mask) {
+            if(keys[idx] == key) {
+                return (V)values[idx];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The value already associated with the key, or null if value was added.
+     */
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(final long key, final V value) {
+        if(value == null) {
+            throw new IllegalArgumentException("LongHashMap does not accept null values.");
+        }
+        final int mask = keys.length - 1;
+        int idx = hash(key) & mask;
+        for(; values[idx] != null; idx = (idx + 1) & mask) {
+            if(keys[idx] == key) {
+                return (V)values[idx];
+            }
+        }
+        keys[idx] = key;
+        values[idx] = value;
+        if(++size > threshold) {
+            rehash();
+        }
+        return null;
+    }
+
+    private void rehash() {
+        final long[] keysOld = keys;
+        final Object[] valuesOld = values;
+        allocate(keysOld.length << 1);
+        final int mask = keys.length - 1;
+        for(int idxOld = 0; idxOld < keysOld.length; idxOld++) {
+            if(valuesOld[idxOld] != null) {
+                int idx = hash(keysOld[idxOld]) & mask;
+                while(values[idx] != null) {
+                    idx = (idx + 1) & mask;
+                }
+                keys[idx] = keysOld[idxOld];
+                values[idx] = valuesOld[idxOld];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+}